@@ -0,0 +1,124 @@
+package com.smallworld.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.smallworld.aggregate.AmountKernels;
+import com.smallworld.data.MinorUnits;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionDatasetGenerator;
+
+/**
+ * Full scans of the amounts of every transaction. The baselines are the original stream
+ * implementations over transaction objects and a {@code double[]} column. They are compared with
+ * the {@link AmountKernels} over a {@code long[]} column of minor units, once on the Vector API
+ * and once with the scalar fallback, each in a JVM of its own.
+ * 
+ * Run with {@code java -jar target/benchmarks.jar AmountKernelBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class AmountKernelBenchmark {
+
+    @Param({"1000000"})
+    public long rows;
+
+    private List<Transaction> transactions;
+    private double[] amounts;
+    private long[] units;
+    private long threshold;
+
+    @Setup
+    public void setUp() {
+        transactions = new TransactionDatasetGenerator().seed(42).rows(rows).issueRowsPerMtn(0).generate();
+        amounts = transactions.stream().mapToDouble(Transaction::getAmount).toArray();
+        units = Arrays.stream(amounts).mapToLong(MinorUnits::of).toArray();
+        threshold = MinorUnits.of(100.0);
+    }
+
+    @Benchmark
+    public double sumTransactionStream() {
+        return transactions.stream().mapToDouble(Transaction::getAmount).sum();
+    }
+
+    @Benchmark
+    public double sumDoubleColumn() {
+        return Arrays.stream(amounts).sum();
+    }
+
+    @Benchmark
+    public long sumVector() {
+        return AmountKernels.sum(units, 0, units.length);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Dsmallworld.vector=false"})
+    public long sumScalar() {
+        return AmountKernels.sum(units, 0, units.length);
+    }
+
+    @Benchmark
+    public double maxTransactionStream() {
+        return transactions.stream().mapToDouble(Transaction::getAmount).max().orElse(0.0);
+    }
+
+    @Benchmark
+    public double maxDoubleColumn() {
+        return Arrays.stream(amounts).max().orElse(0.0);
+    }
+
+    @Benchmark
+    public long maxVector() {
+        return AmountKernels.max(units, 0, units.length);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Dsmallworld.vector=false"})
+    public long maxScalar() {
+        return AmountKernels.max(units, 0, units.length);
+    }
+
+    @Benchmark
+    public long minVector() {
+        return AmountKernels.min(units, 0, units.length);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Dsmallworld.vector=false"})
+    public long minScalar() {
+        return AmountKernels.min(units, 0, units.length);
+    }
+
+    @Benchmark
+    public long countAboveTransactionStream() {
+        return transactions.stream().filter(transaction -> transaction.getAmount() > 100.0).count();
+    }
+
+    @Benchmark
+    public int countAboveVector() {
+        return AmountKernels.countAbove(units, 0, units.length, threshold);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Dsmallworld.vector=false"})
+    public int countAboveScalar() {
+        return AmountKernels.countAbove(units, 0, units.length, threshold);
+    }
+}
@@ -0,0 +1,104 @@
+package com.smallworld.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.aggregate.HyperLogLog;
+import com.smallworld.io.TransactionDatasetGenerator;
+import com.smallworld.shard.ShardAggregates;
+import com.smallworld.store.ColumnarTransactionStore;
+
+/**
+ * Distinct client counting: the exact count of {@link TransactionDataFetcher}, which reads the
+ * size of its client dictionary, against the {@link HyperLogLog} estimate of the same fetcher and
+ * the shard partials computed with either.
+ * 
+ * Run with {@code java -jar target/benchmarks.jar ClientCountBenchmark -prof gc} to compare the
+ * bytes allocated per count. The relative error of the sketch against the exact count, its three
+ * standard error bound and the serialized size of an exact and a sketched shard partial are
+ * printed at the end of every trial; the partials differ by the client set only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientCountBenchmark {
+
+    @Param({"1000000"})
+    public long rows;
+
+    @Param({"10000", "1000000"})
+    public int clients;
+
+    @Param({"12", "14"})
+    public int precision;
+
+    private ColumnarTransactionStore store;
+    private TransactionDataFetcher fetcher;
+
+    @Setup
+    public void setUp() {
+        store = ColumnarTransactionStore.of(new TransactionDatasetGenerator().seed(42).rows(rows).clients(clients).generate());
+        fetcher = new TransactionDataFetcher(store);
+    }
+
+    @TearDown
+    public void tearDown() {
+        long exact = exactFetcher();
+        long estimate = sketchFetcher();
+        System.out.printf("%nexact %d, estimate %d, relative error %.4f%%, bound %.4f%%, sketch %d bytes%n", exact, estimate,
+                100.0 * Math.abs(estimate - exact) / exact, 300 * 1.04 / Math.sqrt(1 << precision), 1 << precision);
+        System.out.printf("serialized shard partial: exact %d bytes, sketch %d bytes%n",
+                serializedSize(exactShard()), serializedSize(sketchShard()));
+    }
+
+    @Benchmark
+    public long exactFetcher() {
+        return fetcher.countUniqueClients();
+    }
+
+    @Benchmark
+    public long sketchFetcher() {
+        return fetcher.countUniqueClients(precision);
+    }
+
+    @Benchmark
+    public ShardAggregates exactShard() {
+        return ShardAggregates.of(store, Set.of(), 3, ShardAggregates.EXACT_CLIENTS);
+    }
+
+    @Benchmark
+    public ShardAggregates sketchShard() {
+        return ShardAggregates.of(store, Set.of(), 3, precision);
+    }
+
+    private static long serializedSize(ShardAggregates aggregates) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(aggregates);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.size();
+    }
+}
@@ -0,0 +1,168 @@
+package com.smallworld.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionDatasetGenerator;
+import com.smallworld.issue.IntBitmap;
+import com.smallworld.metrics.QueryMetrics;
+import com.smallworld.query.Aggregate;
+import com.smallworld.query.Filter;
+import com.smallworld.query.Grouping;
+import com.smallworld.query.QueryResult;
+import com.smallworld.query.TransactionQuery;
+
+/**
+ * Throughput and latency percentiles of every {@link TransactionDataFetcher} query.
+ * 
+ * Run with {@code java -jar target/benchmarks.jar FetcherBenchmark -prof gc} to also report the
+ * allocation rate, and with {@code -p instrumented=false,true} to measure the cost of
+ * {@link QueryMetrics} recording.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FetcherBenchmark {
+
+    @Param({"1000", "1000000"})
+    public long rows;
+
+    @Param({"10000"})
+    public int clients;
+
+    @Param({"1.0"})
+    public double issueRowsPerMtn;
+
+    @Param({"1.0"})
+    public double senderSkew;
+
+    @Param({"false"})
+    public boolean instrumented;
+
+    private List<Transaction> transactions;
+    private TransactionDataFetcher dataFetcher;
+    private String client;
+    private TransactionQuery clientQuery;
+    private TransactionQuery ageQuery;
+
+    @Setup
+    public void setUp() {
+        QueryMetrics.global().setEnabled(instrumented);
+        transactions = new TransactionDatasetGenerator()
+                .seed(42)
+                .rows(rows)
+                .clients(clients)
+                .issueRowsPerMtn(issueRowsPerMtn)
+                .senderSkew(senderSkew)
+                .generate();
+        dataFetcher = new TransactionDataFetcher(transactions);
+        client = transactions.get(transactions.size() / 2).getSenderFullName();
+        // the name predicate is pushed down to the client index, the age query scans every row
+        clientQuery = TransactionQuery.select(Aggregate.SUM, Aggregate.COUNT)
+                .where(Filter.client(client).and(Filter.amountAbove(50)))
+                .groupBy(Grouping.beneficiaryAge(10));
+        ageQuery = TransactionQuery.select(Aggregate.SUM, Aggregate.COUNT)
+                .where(Filter.senderAgeBetween(20, 40).and(Filter.amountAbove(50)))
+                .groupBy(Grouping.beneficiaryAge(10));
+    }
+
+    @Benchmark
+    public TransactionDataFetcher build() {
+        return new TransactionDataFetcher(transactions);
+    }
+
+    @Benchmark
+    public double getTotalTransactionAmount() {
+        return dataFetcher.getTotalTransactionAmount();
+    }
+
+    @Benchmark
+    public double getTotalTransactionAmountSentBy() {
+        return dataFetcher.getTotalTransactionAmountSentBy(client);
+    }
+
+    @Benchmark
+    public double getMaxTransactionAmount() {
+        return dataFetcher.getMaxTransactionAmount();
+    }
+
+    @Benchmark
+    public long countUniqueClients() {
+        return dataFetcher.countUniqueClients();
+    }
+
+    @Benchmark
+    public boolean hasOpenComplianceIssues() {
+        return dataFetcher.hasOpenComplianceIssues(client);
+    }
+
+    @Benchmark
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return dataFetcher.getTransactionsByBeneficiaryName();
+    }
+
+    @Benchmark
+    public Set<Integer> getUnsolvedIssueIds() {
+        return dataFetcher.getUnsolvedIssueIds();
+    }
+
+    @Benchmark
+    public IntBitmap getUnsolvedIssues() {
+        return dataFetcher.getUnsolvedIssues();
+    }
+
+    @Benchmark
+    public List<String> getAllSolvedIssueMessages() {
+        return dataFetcher.getAllSolvedIssueMessages();
+    }
+
+    @Benchmark
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return dataFetcher.getTop3TransactionsByAmount();
+    }
+
+    @Benchmark
+    public List<Transaction> getTopTransactionsByAmount() {
+        return dataFetcher.getTopTransactionsByAmount(100);
+    }
+
+    @Benchmark
+    public List<Map.Entry<String, Double>> getTopSenders() {
+        return dataFetcher.getTopSenders(10);
+    }
+
+    @Benchmark
+    public Optional<String> getTopSender() {
+        return dataFetcher.getTopSender();
+    }
+
+    @Benchmark
+    public QueryResult queryByClient() {
+        return dataFetcher.query(clientQuery);
+    }
+
+    @Benchmark
+    public QueryResult queryByAge() {
+        return dataFetcher.query(ageQuery);
+    }
+}
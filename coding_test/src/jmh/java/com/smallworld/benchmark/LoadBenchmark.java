@@ -0,0 +1,107 @@
+package com.smallworld.benchmark;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionDatasetGenerator;
+import com.smallworld.io.TransactionJsonReader;
+
+/**
+ * Load path benchmarks: the streaming reader alone, a full fetcher load, opening a binary
+ * snapshot with and without checksum verification and the original Gson data binding as a baseline.
+ * 
+ * Run with {@code java -jar target/benchmarks.jar LoadBenchmark -prof gc} to also report the
+ * allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoadBenchmark {
+
+    // every snapshot open maps the file until the mapping is collected; at a million rows the
+    // mappings of the open benchmarks exhaust the native memory of a normal host
+    @Param({"10000", "100000"})
+    public long rows;
+
+    @Param({"false", "true"})
+    public boolean ndjson;
+
+    private Path file;
+    private Path snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("transactions", ndjson ? ".ndjson" : ".json");
+        new TransactionDatasetGenerator().seed(42).rows(rows).clients(10_000).write(file, ndjson);
+        snapshot = Files.createTempFile("transactions", ".snapshot");
+        TransactionDataFetcher.fromJson(file).writeSnapshot(snapshot);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public long streamingRead(Blackhole blackhole) throws IOException {
+        return TransactionJsonReader.read(file, blackhole::consume);
+    }
+
+    @Benchmark
+    public TransactionDataFetcher streamingFetcher() throws IOException {
+        return TransactionDataFetcher.fromJson(file);
+    }
+
+    @Benchmark
+    public TransactionDataFetcher snapshotFetcher() throws IOException {
+        return TransactionDataFetcher.openSnapshot(snapshot);
+    }
+
+    @Benchmark
+    public TransactionDataFetcher unverifiedSnapshotFetcher() throws IOException {
+        // maps the file and reads its header only, the same for every row count
+        return TransactionDataFetcher.openSnapshot(snapshot, false);
+    }
+
+    @Benchmark
+    public void gson(Blackhole blackhole) throws IOException {
+        Gson gson = new Gson();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            if (!ndjson) {
+                blackhole.consume(gson.fromJson(reader, Transaction[].class));
+                return;
+            }
+            JsonReader json = new JsonReader(reader);
+            json.setLenient(true);
+            while (json.peek() != JsonToken.END_DOCUMENT) {
+                blackhole.consume((Transaction) gson.fromJson(json, Transaction.class));
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.smallworld.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionDatasetGenerator;
+import com.smallworld.metrics.HistogramSnapshot;
+import com.smallworld.metrics.LatencyHistogram;
+import com.smallworld.server.TransactionQueryServer;
+
+/**
+ * Closed loop load test of {@link TransactionQueryServer}: every simulated connection sends a
+ * query, waits for its response and sends the next one, so the number of connections is the
+ * number of requests in flight. Requests mix scalar queries, top lists and batches of clients.
+ * 
+ * Run with {@code java -cp target/benchmarks.jar com.smallworld.benchmark.ServerLoadTest
+ * [connections] [warmup seconds] [seconds] [rows] [url]}, by default 10000 connections, 5 and 20
+ * seconds and 100000 generated rows. Without a url the server is started on the generated rows
+ * in a JVM of its own, so neither JVM needs a file descriptor per connection for both ends.
+ * Throughput and latency percentiles are printed for the measured seconds only.
+ */
+public final class ServerLoadTest {
+
+    private static final int BATCH_SIZE = 8;
+    private static final int REQUEST_MIX = 256;
+
+    private final HttpClient client;
+    private final List<HttpRequest> requests;
+    private final long measureFrom;
+    private final long deadline;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicReference<String> firstError = new AtomicReference<>();
+    private final CountDownLatch finished;
+
+    private ServerLoadTest(HttpClient client, List<HttpRequest> requests, int connections, long measureFrom, long deadline) {
+        this.client = client;
+        this.requests = requests;
+        this.measureFrom = measureFrom;
+        this.deadline = deadline;
+        this.finished = new CountDownLatch(connections);
+    }
+
+    private void next() {
+        if (System.nanoTime() >= deadline) {
+            finished.countDown();
+            return;
+        }
+        HttpRequest request = requests.get(ThreadLocalRandom.current().nextInt(requests.size()));
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            long end = System.nanoTime();
+            if (error != null || response.statusCode() != 200) {
+                errors.increment();
+                firstError.compareAndSet(null, error != null ? error.toString() : request.uri() + " answered " + response.statusCode());
+            } else if (start >= measureFrom && end < deadline) {
+                latency.record(end - start);
+            }
+            next();
+        });
+    }
+
+    private static List<HttpRequest> requestMix(String url, List<String> clients) {
+        String[] paths = {"/total", "/max", "/clients/count", "/senders/top-sender", "/transactions/top?k=3", "/senders/top?k=10"};
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<HttpRequest> requests = new ArrayList<>(REQUEST_MIX);
+        for (int i = 0; i < REQUEST_MIX; i++) {
+            String pathAndQuery;
+            if (i % 4 < 2) {
+                // half of the requests are batches of clients
+                StringBuilder query = new StringBuilder(i % 4 == 0 ? "/total/sent-by" : "/clients/open-issues");
+                for (int j = 0; j < BATCH_SIZE; j++) {
+                    String name = clients.get(random.nextInt(clients.size()));
+                    query.append(j == 0 ? '?' : '&').append("client=").append(URLEncoder.encode(name, StandardCharsets.UTF_8));
+                }
+                pathAndQuery = query.toString();
+            } else {
+                pathAndQuery = paths[random.nextInt(paths.length)];
+            }
+            requests.add(HttpRequest.newBuilder(URI.create(url + pathAndQuery)).timeout(Duration.ofSeconds(60)).build());
+        }
+        return requests;
+    }
+
+    /**
+     * Starts the query server in a new JVM on the same class path and returns its process once
+     * it prints the address it listens on.
+     */
+    private static Process startServer(Path data, int connections, String[] url) throws IOException {
+        List<String> command = List.of(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                // keep every connection open between requests instead of the default 200 idle ones
+                "-Dsun.net.httpserver.maxIdleConnections=" + 2 * connections,
+                "-cp", System.getProperty("java.class.path"), TransactionQueryServer.class.getName(), data.toString(), "0");
+        Process server = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        BufferedReader out = new BufferedReader(new InputStreamReader(server.getInputStream(), StandardCharsets.UTF_8));
+        String banner = out.readLine();
+        if (banner == null || !banner.startsWith("Listening on ")) {
+            server.destroyForcibly();
+            throw new IOException("Server did not start: " + banner);
+        }
+        System.out.println("server: " + banner);
+        url[0] = banner.substring("Listening on ".length(), banner.indexOf('/', "Listening on http://".length()));
+        return server;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int warmupSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        long rows = args.length > 3 ? Long.parseLong(args[3]) : 100_000;
+
+        TransactionDatasetGenerator generator = new TransactionDatasetGenerator().seed(42).rows(rows);
+        Set<String> names = new LinkedHashSet<>();
+        for (Transaction transaction : generator.generate()) {
+            names.add(transaction.getSenderFullName());
+            names.add(transaction.getBeneficiaryFullName());
+        }
+        names.remove(null);
+        List<String> clients = new ArrayList<>(names);
+
+        String[] url = {args.length > 4 ? args[4] : null};
+        Process server = null;
+        Path data = null;
+        if (url[0] == null) {
+            data = Files.createTempFile("server-load-", ".json");
+            generator.write(data, false);
+            server = startServer(data, connections, url);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor)
+                    .connectTimeout(Duration.ofSeconds(60)).build();
+            long start = System.nanoTime();
+            long measureFrom = start + warmupSeconds * 1_000_000_000L;
+            ServerLoadTest test = new ServerLoadTest(client, requestMix(url[0], clients), connections, measureFrom, measureFrom + seconds * 1_000_000_000L);
+            for (int i = 0; i < connections; i++) {
+                test.next();
+            }
+            test.finished.await();
+            test.report(connections, seconds, rows);
+        } finally {
+            executor.shutdownNow();
+            if (server != null) {
+                server.destroy();
+                server.waitFor();
+            }
+            if (data != null) {
+                Files.delete(data);
+            }
+        }
+    }
+
+    private void report(int connections, int seconds, long rows) {
+        HistogramSnapshot snapshot = latency.snapshot();
+        System.out.printf("%d connections, %d rows, %d s measured%n", connections, rows, seconds);
+        System.out.printf("requests %d, throughput %.0f req/s, errors %d%n", snapshot.count(), (double) snapshot.count() / seconds, errors.sum());
+        System.out.printf("latency ms: mean %.2f, p50 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n", snapshot.mean() / 1e6,
+                snapshot.p50() / 1e6, snapshot.p99() / 1e6, snapshot.p999() / 1e6, snapshot.max() / 1e6);
+        if (firstError.get() != null) {
+            System.out.println("first error: " + firstError.get());
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.smallworld;
+
+import com.smallworld.data.MinorUnits;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionJsonReader;
+import com.smallworld.io.TransactionParseException;
+import com.smallworld.metrics.Operation;
+import com.smallworld.metrics.QueryMetrics;
+import com.smallworld.query.QueryResult;
+import com.smallworld.query.TransactionQuery;
+import com.smallworld.report.ReportMetric;
+import com.smallworld.report.TransactionReport;
+import com.smallworld.store.ColumnarTransactionStore;
+import com.smallworld.store.TransactionColumns;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Thread-safe {@link TransactionDataFetcher} for many concurrent readers and one writer at a time.
+ * 
+ * Two identical fetchers are kept. Readers only ever query the published one and never block or
+ * retry: entering and leaving a read costs one counter increment each. Writers are serialized;
+ * a write is applied to the unpublished fetcher, which is then published, and once every reader
+ * still inside the previously published fetcher has left, the same write is applied to that one
+ * too. A reader therefore always sees a fetcher that no thread is writing to, holding either all
+ * or none of the rows and issue states of every write.
+ * 
+ * Transactions are copied when they are appended, so changing a {@link Transaction} object
+ * afterwards has no effect on the fetcher; issue states are changed with
+ * {@link #setIssueSolved(int, boolean)}. Every query returns a newly built result that the caller
+ * owns. Writes cost twice the work of a single fetcher and wait for in-flight reads to finish.
+ */
+public final class ConcurrentTransactionDataFetcher {
+
+    /** Rows appended per write by {@link #fromJson(Path, QueryMetrics)}. */
+    public static final int LOAD_BATCH = 8192;
+
+    /** Busy waits of a writer for readers to leave before it starts parking. */
+    private static final int MAX_SPINS = 128;
+    private static final long PARK_NANOS = 50_000L;
+
+    private final TransactionDataFetcher[] fetchers;
+    private final LongAdder[] ingress = { new LongAdder(), new LongAdder() };
+    private final LongAdder[] egress = { new LongAdder(), new LongAdder() };
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /** Index of the fetcher readers query. */
+    private volatile int published;
+    /** Index of the read counters new readers register with. */
+    private volatile int readEpoch;
+
+    public ConcurrentTransactionDataFetcher(List<Transaction> transactions) {
+        this(transactions, null);
+    }
+
+    /**
+     * Creates a concurrent fetcher whose bulk scans run in parallel on the given pool.
+     * 
+     * @param transactions The transaction rows.
+     * @param pool The pool running the scans, or null to scan sequentially.
+     */
+    public ConcurrentTransactionDataFetcher(List<Transaction> transactions, ForkJoinPool pool) {
+        this(transactions, pool, QueryMetrics.global());
+    }
+
+    /**
+     * Creates a concurrent fetcher that records its queries into the given metrics instead of
+     * the {@link QueryMetrics#global()} ones.
+     * 
+     * @param transactions The transaction rows.
+     * @param pool The pool running the scans, or null to scan sequentially.
+     * @param metrics The metrics recording every query.
+     */
+    public ConcurrentTransactionDataFetcher(List<Transaction> transactions, ForkJoinPool pool, QueryMetrics metrics) {
+        this(ColumnarTransactionStore.of(copyOf(transactions)), pool, metrics);
+    }
+
+    private ConcurrentTransactionDataFetcher(ColumnarTransactionStore store, ForkJoinPool pool, QueryMetrics metrics) {
+        this.fetchers = new TransactionDataFetcher[] {
+                new TransactionDataFetcher(store, pool, metrics),
+                new TransactionDataFetcher(ColumnarTransactionStore.of(store), pool, metrics) };
+        for (TransactionDataFetcher fetcher : fetchers) {
+            fetcher.completeLazyAggregates();
+        }
+    }
+
+    /**
+     * Creates a concurrent fetcher holding a copy of the given rows, for instance of a mapped
+     * snapshot, that further rows can be appended to.
+     * 
+     * @param rows The transaction rows, including their issue states.
+     * @param pool The pool running the scans, or null to scan sequentially.
+     * @param metrics The metrics recording every query.
+     * @return A fetcher over a copy of the rows.
+     */
+    public static ConcurrentTransactionDataFetcher of(TransactionColumns rows, ForkJoinPool pool, QueryMetrics metrics) {
+        return new ConcurrentTransactionDataFetcher(ColumnarTransactionStore.of(rows), pool, metrics);
+    }
+
+    /**
+     * Creates a concurrent fetcher over the transactions stored in a JSON array or NDJSON file.
+     * 
+     * Records are appended in writes of {@link #LOAD_BATCH} rows as they are parsed, so no list
+     * of the whole document is materialized.
+     * 
+     * @param path The transactions file.
+     * @param metrics The metrics recording the load and the queries.
+     * @return A fetcher over the transactions in the file.
+     * @throws TransactionParseException If the file is malformed; carries the failing line and column.
+     * @throws IOException If the file cannot be read.
+     */
+    public static ConcurrentTransactionDataFetcher fromJson(Path path, QueryMetrics metrics) throws IOException {
+        long start = metrics.start();
+        long allocatedBytes = metrics.allocatedBytes();
+        ConcurrentTransactionDataFetcher fetcher = new ConcurrentTransactionDataFetcher(List.of(), null, metrics);
+        List<Transaction> batch = new ArrayList<>(LOAD_BATCH);
+        long rows = TransactionJsonReader.read(path, transaction -> {
+            batch.add(transaction);
+            if (batch.size() == LOAD_BATCH) {
+                fetcher.appendAll(batch);
+                batch.clear();
+            }
+        });
+        fetcher.appendAll(batch);
+        metrics.record(Operation.FROM_JSON, start, rows, allocatedBytes);
+        return fetcher;
+    }
+
+    /**
+     * Runs several queries against one consistent state of the data.
+     * 
+     * The function must only call query methods and must not keep a reference to the fetcher
+     * it is given once it returns.
+     * 
+     * @param queries The queries to run.
+     * @param <R> The type of the result.
+     * @return The result of the queries.
+     */
+    public <R> R read(Function<? super TransactionDataFetcher, R> queries) {
+        int epoch = readEpoch;
+        ingress[epoch].increment();
+        try {
+            return queries.apply(fetchers[published]);
+        } finally {
+            egress[epoch].increment();
+        }
+    }
+
+    /**
+     * Appends a transaction row, see {@link TransactionDataFetcher#append(Transaction)}.
+     * 
+     * @param transaction The transaction or issue row to append.
+     */
+    public void append(Transaction transaction) {
+        Transaction row = copy(transaction);
+        write(fetcher -> {
+            fetcher.append(row);
+            return null;
+        });
+    }
+
+    /**
+     * Appends every given row as a single write, so readers see all of them or none.
+     * 
+     * @param transactions The transaction or issue rows to append.
+     */
+    public void appendAll(Iterable<? extends Transaction> transactions) {
+        List<Transaction> rows = copyOf(transactions);
+        write(fetcher -> {
+            fetcher.appendAll(rows);
+            return null;
+        });
+    }
+
+    /**
+     * Marks every row of a compliance issue as solved or unsolved, see
+     * {@link TransactionDataFetcher#setIssueSolved(int, boolean)}.
+     * 
+     * @param issueId The identifier of the issue.
+     * @param solved The new issue state.
+     * @return The number of rows whose state changed.
+     */
+    public int setIssueSolved(int issueId, boolean solved) {
+        return write(fetcher -> fetcher.setIssueSolved(issueId, solved));
+    }
+
+    /**
+     * Writes one consistent state of the data to a snapshot file, see
+     * {@link TransactionDataFetcher#writeSnapshot(Path, long)}. Writes wait until it is written.
+     * 
+     * @param path The snapshot file.
+     * @param position Where in their source the transactions end.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeSnapshot(Path path, long position) throws IOException {
+        writeLock.lock();
+        try {
+            fetchers[published].writeSnapshot(path, position);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public long version() {
+        return read(TransactionDataFetcher::version);
+    }
+
+    /**
+     * Returns the metrics recording the queries of this fetcher.
+     * 
+     * @return The query metrics.
+     */
+    public QueryMetrics metrics() {
+        return fetchers[0].metrics();
+    }
+
+    public double getTotalTransactionAmount() {
+        return read(TransactionDataFetcher::getTotalTransactionAmount);
+    }
+
+    public long getTotalTransactionAmountUnits() {
+        return read(TransactionDataFetcher::getTotalTransactionAmountUnits);
+    }
+
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        return read(fetcher -> fetcher.getTotalTransactionAmountSentBy(senderFullName));
+    }
+
+    public double getMaxTransactionAmount() {
+        return read(TransactionDataFetcher::getMaxTransactionAmount);
+    }
+
+    public long countTransactionsAbove(double amount) {
+        return read(fetcher -> fetcher.countTransactionsAbove(amount));
+    }
+
+    public long countUniqueClients() {
+        return read(TransactionDataFetcher::countUniqueClients);
+    }
+
+    public long countUniqueClients(int clientPrecision) {
+        return read(fetcher -> fetcher.countUniqueClients(clientPrecision));
+    }
+
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return read(fetcher -> fetcher.hasOpenComplianceIssues(clientFullName));
+    }
+
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return read(TransactionDataFetcher::getTransactionsByBeneficiaryName);
+    }
+
+    public Set<Integer> getUnsolvedIssueIds() {
+        return read(TransactionDataFetcher::getUnsolvedIssueIds);
+    }
+
+    public List<String> getAllSolvedIssueMessages() {
+        return read(TransactionDataFetcher::getAllSolvedIssueMessages);
+    }
+
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return read(TransactionDataFetcher::getTop3TransactionsByAmount);
+    }
+
+    public List<Transaction> getTopTransactionsByAmount(int k) {
+        return read(fetcher -> fetcher.getTopTransactionsByAmount(k));
+    }
+
+    public List<Map.Entry<String, Double>> getTopSenders(int k) {
+        return read(fetcher -> fetcher.getTopSenders(k));
+    }
+
+    public Optional<String> getTopSender() {
+        return read(TransactionDataFetcher::getTopSender);
+    }
+
+    public TransactionReport report(Set<ReportMetric> metrics, int topN) {
+        return read(fetcher -> fetcher.report(metrics, topN));
+    }
+
+    public TransactionReport report(Set<ReportMetric> metrics) {
+        return report(metrics, TransactionReport.DEFAULT_TOP_N);
+    }
+
+    public QueryResult query(TransactionQuery query) {
+        return read(fetcher -> fetcher.query(query));
+    }
+
+    private <R> R write(Function<TransactionDataFetcher, R> mutation) {
+        writeLock.lock();
+        try {
+            int standby = 1 - published;
+            R result = mutation.apply(fetchers[standby]);
+            fetchers[standby].completeLazyAggregates();
+            published = standby;
+            awaitRetiredReaders();
+            mutation.apply(fetchers[1 - standby]);
+            fetchers[1 - standby].completeLazyAggregates();
+            return result;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until no reader can still be querying the fetcher that was published before the
+     * current one.
+     * 
+     * Readers register with the counters of the current epoch before reading the published
+     * index. Draining the idle epoch, switching new readers to it and then draining the old
+     * epoch guarantees that every reader which may have seen the old index has left.
+     */
+    private void awaitRetiredReaders() {
+        int epoch = readEpoch;
+        awaitNoReaders(1 - epoch);
+        readEpoch = 1 - epoch;
+        awaitNoReaders(epoch);
+    }
+
+    private void awaitNoReaders(int epoch) {
+        // egress is read first: both only grow, so equal sums mean no reader was in between
+        for (int spins = 0; egress[epoch].sum() != ingress[epoch].sum(); spins++) {
+            if (spins < MAX_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                // a preempted reader needs the processor to leave
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    private static List<Transaction> copyOf(Iterable<? extends Transaction> transactions) {
+        List<Transaction> rows = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            rows.add(copy(transaction));
+        }
+        return rows;
+    }
+
+    private static Transaction copy(Transaction transaction) {
+        // rejects an amount or issue id the stores would reject, before either fetcher is written to
+        MinorUnits.of(transaction.getAmount());
+        TransactionColumns.issueIdOf(transaction.getIssueId());
+        return new Transaction(transaction.getMtn(), transaction.getAmount(), transaction.getSenderFullName(), transaction.getSenderAge(),
+                transaction.getBeneficiaryFullName(), transaction.getBeneficiaryAge(), transaction.getIssueId(),
+                transaction.isIssueSolved(), transaction.getIssueMessage());
+    }
+}
@@ -1,29 +1,317 @@
 package com.smallworld;
 
-import com.google.gson.Gson;
+import com.smallworld.aggregate.AmountColumn;
+import com.smallworld.aggregate.AmountKernels;
+import com.smallworld.aggregate.HyperLogLog;
+import com.smallworld.aggregate.ParallelAggregator;
+import com.smallworld.aggregate.TopK;
+import com.smallworld.aggregate.TransactionAggregates;
+import com.smallworld.data.MinorUnits;
 import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionJsonReader;
+import com.smallworld.io.TransactionParseException;
+import com.smallworld.issue.IntBitmap;
+import com.smallworld.issue.IssueEvent;
+import com.smallworld.issue.IssueOpened;
+import com.smallworld.issue.IssueResolved;
+import com.smallworld.issue.IssueStateEngine;
+import com.smallworld.metrics.Operation;
+import com.smallworld.metrics.QueryMetrics;
+import com.smallworld.query.Aggregate;
+import com.smallworld.query.QueryEngine;
+import com.smallworld.query.QueryResult;
+import com.smallworld.query.TransactionQuery;
+import com.smallworld.report.ReportMetric;
+import com.smallworld.report.TransactionReport;
+import com.smallworld.shard.ShardAggregates;
+import com.smallworld.store.ClientIndex;
+import com.smallworld.store.ColumnarTransactionStore;
+import com.smallworld.store.StringDictionary;
+import com.smallworld.store.TransactionColumns;
+import com.smallworld.store.TransactionSnapshot;
 
-import java.io.FileReader;
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ForkJoinPool;
 
 
 public class TransactionDataFetcher {
+
+	 private static final Comparator<Map.Entry<String, Double>> SENDER_ORDER = Map.Entry.<String, Double>comparingByValue()
+	         .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
 	
-	 private List<Transaction> transactions;
+	 private final TransactionColumns store;
+	 private final ColumnarTransactionStore appendableStore;
+	 // a view over the store's amount column, which appends extend without any work
+	 private final AmountColumn amounts;
+	 // built on first use over read-only columns, so opening a mapped snapshot reads no row; built
+	 // once under the fetcher's lock and published through the volatile field, so concurrent first
+	 // queries of a read-only fetcher neither build them twice nor see them half built
+	 private volatile ClientIndex clientIndex;
+	 private volatile IssueStateEngine issues;
+	 private volatile TransactionAggregates aggregates;
+	 private volatile QueryEngine queryEngine;
+	 private final ParallelAggregator parallelAggregator;
+	 private final QueryMetrics metrics;
+	 // bumped only by the single writer a fetcher allows at a time, so the unsynchronized increment
+	 // loses no update; volatile publishes each new value to readers polling version()
+	 private volatile long version;
 
 	    public TransactionDataFetcher(List<Transaction> transactions) {
-	        this.transactions = transactions;
+	        this(ColumnarTransactionStore.of(transactions));
+	    }
+
+	    /**
+	     * Creates a fetcher over the given columns. Only fetchers over a
+	     * {@link ColumnarTransactionStore} accept appends; any other columns, such as a mapped
+	     * snapshot, are read-only.
+	     * 
+	     * A read-only fetcher builds its client index, issue bitmaps and aggregates on the first
+	     * query that reads them, so creating it costs O(1) whatever the number of rows. Each is
+	     * built once even if the first queries run on several threads, which then wait for it.
+	     * 
+	     * @param store The transaction rows.
+	     */
+	    public TransactionDataFetcher(TransactionColumns store) {
+	        this(store, null);
 	    }
 
+	    /**
+	     * Creates a fetcher that runs its bulk scans in parallel on the given pool.
+	     * 
+	     * Aggregates are computed per chunk of rows and merged in row order, so every query
+	     * returns exactly what the sequential fetcher returns.
+	     * 
+	     * @param transactions The transaction rows.
+	     * @param pool The pool running the scans, or null to scan sequentially.
+	     */
+	    public TransactionDataFetcher(List<Transaction> transactions, ForkJoinPool pool) {
+	        this(ColumnarTransactionStore.of(transactions), pool);
+	    }
+
+	    public TransactionDataFetcher(TransactionColumns store, ForkJoinPool pool) {
+	        this(store, pool, QueryMetrics.global());
+	    }
+
+	    /**
+	     * Creates a fetcher that records its queries into the given metrics instead of the
+	     * {@link QueryMetrics#global()} ones.
+	     * 
+	     * @param store The transaction rows.
+	     * @param pool The pool running the scans, or null to scan sequentially.
+	     * @param metrics The metrics recording every query.
+	     */
+	    public TransactionDataFetcher(TransactionColumns store, ForkJoinPool pool, QueryMetrics metrics) {
+	        this.store = store;
+	        this.metrics = metrics;
+	        this.appendableStore = store instanceof ColumnarTransactionStore ? (ColumnarTransactionStore) store : null;
+	        this.amounts = new AmountColumn(store);
+	        this.parallelAggregator = pool == null ? null : new ParallelAggregator(pool);
+	        if (appendableStore != null) {
+	            // appends update every structure incrementally, so they must exist before the first one
+	            completeLazyAggregates();
+	        }
+	    }
+
+    /**
+     * Appends a transaction row and updates every maintained aggregate and index.
+     * 
+     * Issue rows of an already known mtn are appended the same way; the mtn deduplicated
+     * totals only count the first row of each mtn. Costs O(1) amortized for the columns and
+     * the totals and O(log n) for the top transactions and the sender ranking.
+     * 
+     * @param transaction The transaction or issue row to append.
+     * @throws UnsupportedOperationException If the fetcher is read-only.
+     * @throws IllegalArgumentException If the mtn is null, the amount is not a whole number of
+     *         minor units or the issue id is {@link TransactionColumns#NO_ISSUE}.
+     */
+    public void append(Transaction transaction) {
+        int row = appendable().append(transaction);
+        clientIndex().add(row);
+        issues().add(row);
+        aggregates().add(row);
+        version++;
+    }
+
+    /**
+     * Appends every given row in iteration order.
+     * 
+     * The rows are stored and indexed one by one, then aggregated as one batch, in parallel
+     * when the fetcher was created with a pool, and merged into the maintained aggregates.
+     * 
+     * @param transactions The transaction or issue rows to append.
+     * @throws UnsupportedOperationException If the fetcher is read-only.
+     * @throws IllegalArgumentException If an mtn is null, an amount is not a whole number of minor
+     *         units or an issue id is {@link TransactionColumns#NO_ISSUE}; the rows before it are appended.
+     */
+    public void appendAll(Iterable<? extends Transaction> transactions) {
+        ColumnarTransactionStore appendable = appendable();
+        int first = appendable.size();
+        try {
+            for (Transaction transaction : transactions) {
+                int row = appendable.append(transaction);
+                clientIndex().add(row);
+                issues().add(row);
+            }
+        } finally {
+            // aggregate whatever was stored, even if a row was rejected
+            aggregates().merge(aggregate(first, store.size()));
+            version++;
+        }
+    }
+
+    /**
+     * Marks every row of a compliance issue as solved or unsolved.
+     * 
+     * Rows are copied into the store when they are appended, so changing
+     * {@link Transaction#setIssueSolved(boolean)} on an appended transaction has no effect on
+     * the fetcher; issue state changes must go through this method or {@link #apply(IssueEvent)}.
+     * 
+     * @param issueId The identifier of the issue.
+     * @param solved The new issue state.
+     * @return The number of rows whose state changed.
+     * @throws UnsupportedOperationException If the fetcher is read-only.
+     */
+    public int setIssueSolved(int issueId, boolean solved) {
+        return apply(solved ? new IssueResolved(issueId) : new IssueOpened(issueId));
+    }
+
+    /**
+     * Applies an issue event to every row of its issue. Only the rows of the issue are visited.
+     * 
+     * @param event The issue event.
+     * @return The number of rows whose state changed.
+     * @throws UnsupportedOperationException If the fetcher is read-only.
+     */
+    public int apply(IssueEvent event) {
+        ColumnarTransactionStore appendable = appendable();
+        int[] changed = issues().apply(event);
+        for (int row : changed) {
+            appendable.setIssueSolved(row, event.solved());
+        }
+        if (changed.length > 0) {
+            version++;
+        }
+        return changed.length;
+    }
+
+    /**
+     * Returns the dataset version. It starts at 0 and grows with every append and every issue
+     * state change, so two equal versions of the same fetcher always answer every query alike.
+     * It may be read from any thread; appends and issue state changes must not run concurrently
+     * with each other, as {@link ConcurrentTransactionDataFetcher} guarantees.
+     * 
+     * @return The current version.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the metrics recording the queries of this fetcher.
+     * 
+     * @return The query metrics.
+     */
+    public QueryMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Builds the indexes and completes the aggregates that are otherwise built or brought up to
+     * date by the first query reading them, so that afterwards queries only read and can run on
+     * several threads at once.
+     */
+    void completeLazyAggregates() {
+        clientIndex();
+        issues();
+        queryEngine();
+        aggregates().topSender();
+    }
+
+    private ClientIndex clientIndex() {
+        ClientIndex index = clientIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = clientIndex;
+                if (index == null) {
+                    index = ClientIndex.build(store);
+                    clientIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private IssueStateEngine issues() {
+        IssueStateEngine engine = issues;
+        if (engine == null) {
+            synchronized (this) {
+                engine = issues;
+                if (engine == null) {
+                    engine = IssueStateEngine.build(store);
+                    issues = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    private TransactionAggregates aggregates() {
+        TransactionAggregates built = aggregates;
+        if (built == null) {
+            synchronized (this) {
+                built = aggregates;
+                if (built == null) {
+                    built = aggregate(0, store.size());
+                    // ranks the senders before publishing, so readers never rank them concurrently
+                    built.topSender();
+                    aggregates = built;
+                }
+            }
+        }
+        return built;
+    }
+
+    private QueryEngine queryEngine() {
+        QueryEngine engine = queryEngine;
+        if (engine == null) {
+            synchronized (this) {
+                engine = queryEngine;
+                if (engine == null) {
+                    engine = new QueryEngine(store, clientIndex());
+                    queryEngine = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    private ColumnarTransactionStore appendable() {
+        if (appendableStore == null) {
+            throw new UnsupportedOperationException("Fetcher over " + store.getClass().getSimpleName() + " is read-only");
+        }
+        return appendableStore;
+    }
+
+    private TransactionAggregates aggregate(int from, int to) {
+        if (parallelAggregator == null) {
+            return TransactionAggregates.of(store, from, to);
+        }
+        return parallelAggregator.aggregate(store, from, to);
+    }
+
     /**
      * Returns the sum of the amounts of all transactions.
      * 
@@ -34,11 +322,23 @@ public class TransactionDataFetcher {
      * @return The total sum of amounts for all unique transactions.
     */
     public double getTotalTransactionAmount() {
-         Set<String> uniqueMtns = new HashSet<>();
-        return transactions.stream()
-                .filter(transaction -> uniqueMtns.add(transaction.getMtn()))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        long start = metrics.start();
+        double total = aggregates().total();
+        metrics.record(Operation.GET_TOTAL_TRANSACTION_AMOUNT, start, 0);
+        return total;
+    }
+
+    /**
+     * Returns the exact sum of the amounts of all transactions in minor units, counting each mtn
+     * once like {@link #getTotalTransactionAmount()}, which rounds this sum to the nearest double.
+     * 
+     * @return The deduplicated total in minor units.
+     */
+    public long getTotalTransactionAmountUnits() {
+        long start = metrics.start();
+        long total = aggregates().totalUnits();
+        metrics.record(Operation.GET_TOTAL_TRANSACTION_AMOUNT, start, 0);
+        return total;
     }
 
     /**
@@ -48,16 +348,16 @@ public class TransactionDataFetcher {
     * sender's full name matches the sender's full name in each transaction. Each
     * transaction is considered uniquely based on its "mtn" (unique identifier), and
     * duplicate transactions with the same "mtn" are excluded to avoid double-counting.
+    * The total is precomputed per client by the {@link ClientIndex}, so this is a lookup.
     * 
     * @param senderFullName The full name of the client whose sent transactions are considered.
     * @return The total sum of amounts for all unique transactions sent by the specified client.
    */
     public double getTotalTransactionAmountSentBy(String senderFullName) {
-        Set<String> uniqueTransactions = new HashSet<>();
-        return transactions.stream()
-                .filter(transaction -> senderFullName.equals(transaction.getSenderFullName()) && uniqueTransactions.add(transaction.getMtn()))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        long start = metrics.start();
+        double total = clientIndex().totalSentBy(store.clients().idOf(senderFullName));
+        metrics.record(Operation.GET_TOTAL_TRANSACTION_AMOUNT_SENT_BY, start, 0);
+        return total;
     }
 
     /**
@@ -69,10 +369,30 @@ public class TransactionDataFetcher {
      * @return The highest transaction amount or 0.0 if there are no transactions.
     */
     public double getMaxTransactionAmount() {
-        return transactions.stream()
-                .max(Comparator.comparingDouble(Transaction::getAmount))
-                .map(Transaction::getAmount)
-                .orElse(0.0); // Default value if there are no transactions
+        long start = metrics.start();
+        double max = aggregates().max(); // 0.0 if there are no transactions
+        metrics.record(Operation.GET_MAX_TRANSACTION_AMOUNT, start, 0);
+        return max;
+    }
+
+    /**
+     * Counts the transactions whose amount is strictly above the given amount, counting each
+     * mtn once.
+     * 
+     * Amounts are compared exactly in minor units, and the scan runs over the dense column of
+     * transaction amounts with the {@link AmountKernels}, vectorized where the Vector API is
+     * available.
+     * 
+     * @param amount The amount to compare with.
+     * @return The number of unique transactions with a higher amount.
+     * @throws IllegalArgumentException If the amount is NaN.
+     */
+    public long countTransactionsAbove(double amount) {
+        long threshold = MinorUnits.floor(amount);
+        long start = metrics.start();
+        long count = amounts.countAbove(threshold);
+        metrics.record(Operation.COUNT_TRANSACTIONS_ABOVE, start, amounts.size());
+        return count;
     }
 
     /**
@@ -84,26 +404,55 @@ public class TransactionDataFetcher {
      * @return The count of unique clients involved in transactions.
     */
     public long countUniqueClients() {
-         Stream<String> senderNames = transactions.stream().map(Transaction::getSenderFullName);
-         Stream<String> beneficiaryNames = transactions.stream().map(Transaction::getBeneficiaryFullName);
+        long start = metrics.start();
+        // every name in the client dictionary was interned from a sender or beneficiary column
+        long clients = store.clients().size() + (store.hasNullClient() ? 1 : 0);
+        metrics.record(Operation.COUNT_UNIQUE_CLIENTS, start, 0);
+        return clients;
+    }
 
-        return Stream.concat(senderNames, beneficiaryNames)
-                .distinct()
-                .count();
+    /**
+     * Counts the number of unique clients exactly, or estimates it with a {@link HyperLogLog}
+     * sketch like {@link ShardAggregates#countUniqueClients()} does for the same precision.
+     * 
+     * The exact count reads the size of the client dictionary and is always cheaper here; the
+     * estimate sketches every client name and exists to check shard estimates against.
+     * 
+     * @param clientPrecision {@link ShardAggregates#EXACT_CLIENTS}, or the precision of the sketch counting clients.
+     * @return The count, or its estimate, of unique clients involved in transactions.
+     * @throws IllegalArgumentException If the precision is not supported by {@link HyperLogLog}.
+     */
+    public long countUniqueClients(int clientPrecision) {
+        if (clientPrecision == ShardAggregates.EXACT_CLIENTS) {
+            return countUniqueClients();
+        }
+        long start = metrics.start();
+        HyperLogLog sketch = new HyperLogLog(clientPrecision);
+        StringDictionary clients = store.clients();
+        for (int client = 0, size = clients.size(); client < size; client++) {
+            sketch.add(clients.get(client));
+        }
+        if (store.hasNullClient()) {
+            sketch.add(null);
+        }
+        long estimate = sketch.estimate();
+        metrics.record(Operation.COUNT_UNIQUE_CLIENTS, start, clients.size());
+        return estimate;
     }
 
     /**
      * Checks whether a client (either sender or beneficiary) has at least one transaction
      * with a compliance issue that has not been solved.
+     * Answered from the per client open issue bitmap of the {@link IssueStateEngine}.
      * 
      * @param clientFullName The full name of the client to check for compliance issues.
      * @return True if the client has at least one unresolved compliance issue, false otherwise.
     */
     public boolean hasOpenComplianceIssues(String clientFullName) {
-        return transactions.stream()
-        .anyMatch(transaction ->
-                (clientFullName.equals(transaction.getSenderFullName()) || clientFullName.equals(transaction.getBeneficiaryFullName()))
-                        && transaction.isIssueSolved() == false);
+        long start = metrics.start();
+        boolean open = issues().hasOpenIssues(store.clients().idOf(clientFullName));
+        metrics.record(Operation.HAS_OPEN_COMPLIANCE_ISSUES, start, 0);
+        return open;
     }
 
     /**
@@ -114,21 +463,72 @@ public class TransactionDataFetcher {
      * @return A map where keys are beneficiary names and values are corresponding transactions.
     */
     public Map<String, Transaction> getTransactionsByBeneficiaryName() {
-         return transactions.stream()
-                .collect(Collectors.toMap(Transaction::getBeneficiaryFullName, transaction -> transaction, (existing, replacement) -> existing));
+        long start = metrics.start();
+        long rows = 0;
+        // the first beneficiary posting of every client is the transaction to retain
+        StringDictionary clients = store.clients();
+        Map<String, Transaction> transactionsByBeneficiary = new HashMap<>();
+        for (int client = 0, size = clients.size(); client < size; client++) {
+            int row = clientIndex().firstBeneficiaryRow(client);
+            if (row >= 0) {
+                transactionsByBeneficiary.put(clients.get(client), store.toTransaction(row));
+                rows++;
+            }
+        }
+        if (store.hasNullClient()) {
+            for (int row = 0, size = store.size(); row < size; row++) {
+                rows++;
+                if (store.beneficiary(row) == StringDictionary.NULL_ID) {
+                    transactionsByBeneficiary.put(null, store.toTransaction(row));
+                    break;
+                }
+            }
+        }
+        metrics.record(Operation.GET_TRANSACTIONS_BY_BENEFICIARY_NAME, start, rows);
+        return transactionsByBeneficiary;
     }
 
     /**
      * Returns a set of unique identifiers for all open compliance issues.
      * An issue is considered open if its corresponding transaction has not been solved.
+     * Transactions without an issue have no issue id and are never reported.
      * 
      * @return A set containing the identifiers of all open compliance issues.
     */
     public Set<Integer> getUnsolvedIssueIds() {
-        return transactions.stream()
-        .filter(transaction -> !transaction.isIssueSolved())
-        .map(Transaction::getIssueId)
-        .collect(Collectors.toSet());
+        long start = metrics.start();
+        Set<Integer> unsolvedIssueIds = new HashSet<>();
+        issues().openIssues().forEach(unsolvedIssueIds::add);
+        metrics.record(Operation.GET_UNSOLVED_ISSUE_IDS, start, 0);
+        return unsolvedIssueIds;
+    }
+
+    /**
+     * Returns the identifiers of all open compliance issues as a compressed bitmap, without
+     * boxing a single id.
+     * 
+     * @return A new bitmap of the open issue ids.
+     */
+    public IntBitmap getUnsolvedIssues() {
+        long start = metrics.start();
+        IntBitmap unsolvedIssues = issues().openIssues();
+        metrics.record(Operation.GET_UNSOLVED_ISSUES, start, 0);
+        return unsolvedIssues;
+    }
+
+    /**
+     * Returns the identifiers of the open compliance issues of the transactions any of the given
+     * clients sends or receives.
+     * 
+     * @param clientFullNames The full names of the clients.
+     * @return A new bitmap holding the union of the clients' open issue ids.
+     */
+    public IntBitmap getOpenIssues(Collection<String> clientFullNames) {
+        long start = metrics.start();
+        StringDictionary clients = store.clients();
+        IntBitmap openIssues = issues().openIssuesOf(clientFullNames.stream().mapToInt(clients::idOf).toArray());
+        metrics.record(Operation.GET_OPEN_ISSUES, start, 0);
+        return openIssues;
     }
 
     /**
@@ -138,23 +538,87 @@ public class TransactionDataFetcher {
      * @return A list containing messages of all solved compliance issues.
     */
     public List<String> getAllSolvedIssueMessages() {
-        return transactions.stream()
-                .filter(Transaction::isIssueSolved)
-                .map(Transaction::getIssueMessage)
-                .collect(Collectors.toList());
+        long start = metrics.start();
+        StringDictionary messages = store.messages();
+        List<String> solvedIssueMessages;
+        if (parallelAggregator != null) {
+            solvedIssueMessages = parallelAggregator.collect(store, store::isIssueSolved, row -> messages.get(store.issueMessage(row)));
+        } else {
+            solvedIssueMessages = new ArrayList<>();
+            for (int row = 0, size = store.size(); row < size; row++) {
+                if (store.isIssueSolved(row)) {
+                    solvedIssueMessages.add(messages.get(store.issueMessage(row)));
+                }
+            }
+        }
+        metrics.record(Operation.GET_ALL_SOLVED_ISSUE_MESSAGES, start, store.size());
+        return solvedIssueMessages;
     }
 
     /**
      * Returns a list of the top 3 transactions with the highest amounts, sorted in descending order.
      * If there are fewer than 3 transactions, it returns the available transactions.
+     * Each transaction is counted once, whatever its number of issues.
      * 
      * @return A list containing the top 3 transactions by amount.
     */
     public List<Transaction> getTop3TransactionsByAmount() {
-        return transactions.stream()
-                .sorted(Comparator.comparingDouble(Transaction::getAmount).reversed())
-                .limit(3)
-                .collect(Collectors.toList());
+        return getTopTransactionsByAmount(3);
+    }
+
+    /**
+     * Returns the k transactions with the highest amounts, sorted in descending order.
+     * 
+     * Transactions are deduplicated by mtn, so a transaction with several issues takes a single
+     * slot. Ties keep the transaction that was loaded first. Up to
+     * {@link TransactionAggregates#TOP_ROWS} transactions are read from the maintained aggregates;
+     * larger selections are a {@link Aggregate#TOP_TRANSACTIONS} query, one O(n log k) pass with a
+     * bounded min-heap.
+     * 
+     * @param k The number of transactions to return.
+     * @return A list containing at most k transactions by amount descending.
+     */
+    public List<Transaction> getTopTransactionsByAmount(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        long start = metrics.start();
+        if (k > TransactionAggregates.TOP_ROWS) {
+            QueryResult result = queryEngine().execute(TransactionQuery.select().topTransactions(k));
+            metrics.record(Operation.GET_TOP_TRANSACTIONS_BY_AMOUNT, start, result.getScannedRows());
+            return new ArrayList<>(result.single().getTopTransactions());
+        }
+        int[] top = aggregates().topRows();
+        List<Transaction> topTransactions = new ArrayList<>(Math.min(k, top.length));
+        for (int i = 0; i < top.length && i < k; i++) {
+            topTransactions.add(store.toTransaction(top[i]));
+        }
+        metrics.record(Operation.GET_TOP_TRANSACTIONS_BY_AMOUNT, start, 0);
+        return topTransactions;
+    }
+
+    /**
+     * Returns the k senders with the highest total sent amounts, sorted in descending order.
+     * 
+     * Unlike {@link #getTopSender()}, which adds up every row, totals count each mtn once, like
+     * {@link #getTotalTransactionAmountSentBy(String)}. Totals are read from the client index and
+     * ranked with a bounded min-heap in O(clients log k); ties rank the smaller name first.
+     * 
+     * @param k The number of senders to return.
+     * @return Sender names with their deduplicated totals, by total descending.
+     */
+    public List<Map.Entry<String, Double>> getTopSenders(int k) {
+        long start = metrics.start();
+        TopK<Map.Entry<String, Double>> topSenders = new TopK<>(k, SENDER_ORDER, Map.Entry::getKey);
+        StringDictionary clients = store.clients();
+        for (int client = 0, size = clients.size(); client < size; client++) {
+            if (clientIndex().isSender(client)) {
+                topSenders.offer(new AbstractMap.SimpleImmutableEntry<>(clients.get(client), clientIndex().totalSentBy(client)));
+            }
+        }
+        List<Map.Entry<String, Double>> senders = topSenders.toList();
+        metrics.record(Operation.GET_TOP_SENDERS, start, 0);
+        return senders;
     }
 
     /**
@@ -165,48 +629,175 @@ public class TransactionDataFetcher {
      * @return An Optional containing the senderFullName of the top sender, or an empty Optional if there are no transactions.
      */
     public Optional<String> getTopSender() {
-          Map<String, Double> totalSentAmountBySender = new HashMap<>();
+        long start = metrics.start();
+        Optional<String> topSender = Optional.ofNullable(aggregates().topSender());
+        metrics.record(Operation.GET_TOP_SENDER, start, 0);
+        return topSender;
+    }
+    
+ 
+    /**
+     * Computes the selected metrics in a single fused pass over the transactions.
+     * 
+     * Each metric has the same meaning as the method of this class that returns it, but all of
+     * them are collected by one scan instead of one scan per method call.
+     * 
+     * @param metrics The metrics to compute.
+     * @param topN The number of transactions reported for {@link ReportMetric#TOP_TRANSACTIONS}.
+     * @return An immutable report holding the selected metrics.
+     */
+    public TransactionReport report(Set<ReportMetric> metrics, int topN) {
+        long start = this.metrics.start();
+        TransactionReport report = TransactionReport.compute(store, metrics, topN);
+        this.metrics.record(Operation.REPORT, start, store.size());
+        return report;
+    }
 
-        for (Transaction transaction : transactions) {
-            totalSentAmountBySender.merge(transaction.getSenderFullName(), transaction.getAmount(), Double::sum);
-        }
+    /**
+     * Computes the selected metrics in a single fused pass over the transactions, reporting
+     * the top 3 transactions for {@link ReportMetric#TOP_TRANSACTIONS}.
+     * 
+     * @param metrics The metrics to compute.
+     * @return An immutable report holding the selected metrics.
+     */
+    public TransactionReport report(Set<ReportMetric> metrics) {
+        return report(metrics, TransactionReport.DEFAULT_TOP_N);
+    }
 
-        Optional<Map.Entry<String, Double>> maxEntry = totalSentAmountBySender.entrySet().stream()
-                .max(Map.Entry.comparingByValue());
+    /**
+     * Runs a filter, group-by and aggregate query over the transactions in one fused pass.
+     * 
+     * Questions that no method of this class answers are expressed as a {@link TransactionQuery}
+     * instead of a new scan method; a name filter makes the pass read only the rows of those
+     * clients from the client index. Amounts and counts take each mtn once, like the totals of
+     * this class, unless the query counts {@link TransactionQuery#everyRow() every row}.
+     * 
+     * @param query The query to run.
+     * @return The aggregates of every group.
+     */
+    public QueryResult query(TransactionQuery query) {
+        long start = metrics.start();
+        QueryResult result = queryEngine().execute(query);
+        metrics.record(Operation.QUERY, start, result.getScannedRows());
+        return result;
+    }
 
-        return maxEntry.map(Map.Entry::getKey);
+    /**
+     * Writes the transactions to a binary snapshot file that {@link #openSnapshot(Path)} can map
+     * back in without parsing.
+     * 
+     * @param path The snapshot file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        writeSnapshot(path, 0);
     }
-    
- 
-    private static Transaction[] loadTransactionsFromJson(String filePath) {
-        try (FileReader reader = new FileReader(filePath)) {
-            Gson gson = new Gson();
-            return gson.fromJson(reader, Transaction[].class);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
+
+    /**
+     * Writes the transactions to a binary snapshot file together with the position in their
+     * source they were read up to, see {@link TransactionSnapshot#write(TransactionColumns, Path, long)}.
+     * 
+     * @param path The snapshot file.
+     * @param position Where in their source the transactions end.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeSnapshot(Path path, long position) throws IOException {
+        TransactionSnapshot.write(store, path, position);
+    }
+
+    /**
+     * Creates a read-only fetcher over a binary snapshot file.
+     * 
+     * The file is memory-mapped and its checksum verified; every query then reads the mapped
+     * columns directly, so no transaction object is rebuilt on startup.
+     * 
+     * @param path The snapshot file written by {@link #writeSnapshot(Path)}.
+     * @return A fetcher over the snapshot.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static TransactionDataFetcher openSnapshot(Path path) throws IOException {
+        return openSnapshot(path, true);
+    }
+
+    /**
+     * Creates a read-only fetcher over a binary snapshot file.
+     * 
+     * Without checksum verification, opening maps the file and reads only its header, so it
+     * takes the same time for any number of rows. Indexes and aggregates are built by the first
+     * query that reads them.
+     * 
+     * @param path The snapshot file written by {@link #writeSnapshot(Path)}.
+     * @param verifyChecksum True to read the whole file once to check its CRC32C.
+     * @return A fetcher over the snapshot.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static TransactionDataFetcher openSnapshot(Path path, boolean verifyChecksum) throws IOException {
+        return new TransactionDataFetcher(TransactionSnapshot.open(path, verifyChecksum));
+    }
+
+    /**
+     * Creates a fetcher over the transactions stored in a JSON array or NDJSON file.
+     * 
+     * The file is read with the streaming {@link TransactionJsonReader} and every record is
+     * appended as soon as it is parsed, so no intermediate list of the whole document is
+     * materialized.
+     * 
+     * @param path The transactions file.
+     * @return A fetcher over the transactions in the file.
+     * @throws TransactionParseException If the file is malformed; carries the failing line and column.
+     * @throws IOException If the file cannot be read.
+     */
+    public static TransactionDataFetcher fromJson(Path path) throws IOException {
+        return fromJson(path, QueryMetrics.global());
+    }
+
+    /**
+     * Creates a fetcher over the transactions stored in a JSON array or NDJSON file, recording
+     * the load, including the bytes it allocates, and the queries of the new fetcher into the
+     * given metrics.
+     * 
+     * @param path The transactions file.
+     * @param metrics The metrics recording the load and the queries.
+     * @return A fetcher over the transactions in the file.
+     * @throws TransactionParseException If the file is malformed; carries the failing line and column.
+     * @throws IOException If the file cannot be read.
+     */
+    public static TransactionDataFetcher fromJson(Path path, QueryMetrics metrics) throws IOException {
+        long start = metrics.start();
+        long allocatedBytes = metrics.allocatedBytes();
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(new ColumnarTransactionStore(), null, metrics);
+        long rows = TransactionJsonReader.read(path, dataFetcher::append);
+        metrics.record(Operation.FROM_JSON, start, rows, allocatedBytes);
+        return dataFetcher;
     }
     
     public static void main(String[] args) {
-  	  // Load JSON data into an array of Transaction objects
-      Transaction[] transactionsArray = loadTransactionsFromJson("D:\\java\\test\\coding_test_v3 (1)(1)\\coding_test\\transactions.json");
-
-      // Convert the array to a List for convenience
-      List<Transaction> transactions = Arrays.asList(transactionsArray);
+      Path path = Paths.get(args.length > 0 ? args[0] : "transactions.json");
 
-      // Create a TransactionDataFetcher instance
-      TransactionDataFetcher dataFetcher = new TransactionDataFetcher(transactions);
+      // Stream the JSON data into a TransactionDataFetcher instance
+      TransactionDataFetcher dataFetcher;
+      try {
+          dataFetcher = fromJson(path);
+      } catch (TransactionParseException e) {
+          System.err.println("Malformed transactions file " + path + ": " + e.getMessage());
+          return;
+      } catch (IOException e) {
+          System.err.println("Cannot read transactions file " + path + ": " + e.getMessage());
+          return;
+      }
 
       
-      System.out.println("Total Transaction Amount: " + dataFetcher.getTotalTransactionAmount());
+      // All dataset wide metrics come from a single pass over the data
+      TransactionReport report = dataFetcher.report(EnumSet.allOf(ReportMetric.class));
+
+      System.out.println("Total Transaction Amount: " + report.getTotalTransactionAmount());
       System.out.println("Sum of Amounts of all transactions sent by the specified client: " + dataFetcher.getTotalTransactionAmountSentBy("Tom Shelby"));
-      System.out.println("Max Transaction Amount: " + dataFetcher.getMaxTransactionAmount());
-      System.out.println("Counts the number of unique clients that sent or received a transaction: " + dataFetcher.countUniqueClients());
+      System.out.println("Max Transaction Amount: " + report.getMaxTransactionAmount());
+      System.out.println("Counts the number of unique clients that sent or received a transaction: " + report.getUniqueClientCount());
       System.out.println("sender or beneficiary) has at least one transaction with a compliance issue that has not been solved: " + dataFetcher.hasOpenComplianceIssues("Tom Shelby"));
      
       
-      Map<String, Transaction> transactionsByBeneficiary = dataFetcher.getTransactionsByBeneficiaryName();
+      Map<String, Transaction> transactionsByBeneficiary = report.getTransactionsByBeneficiaryName();
 
       System.out.println("Transactions indexed by beneficiary name:");
       for (Map.Entry<String, Transaction> entry : transactionsByBeneficiary.entrySet()) {
@@ -215,17 +806,17 @@ public class TransactionDataFetcher {
           System.out.println("---");
       }
 
-      System.out.println("Returns the identifiers of all open compliance issues: " + dataFetcher.getUnsolvedIssueIds()); 
-      System.out.println("Returns a list of all solved issue messages: " + dataFetcher.getAllSolvedIssueMessages()); 
+      System.out.println("Returns the identifiers of all open compliance issues: " + report.getUnsolvedIssueIds()); 
+      System.out.println("Returns a list of all solved issue messages: " + report.getSolvedIssueMessages()); 
       System.out.println("Returns the 3 transactions with the highest amount sorted by amount descending:");
 
-      List<Transaction> top3Transactions = dataFetcher.getTop3TransactionsByAmount();
+      List<Transaction> top3Transactions = report.getTopTransactionsByAmount();
 
         for (Transaction transaction : top3Transactions) {
             System.out.println("Transaction: " + transaction.toString());
         }
 
-      System.out.println("Returns the senderFullName of the sender with the most total sent amount: " + dataFetcher.getTopSender()); 
+      System.out.println("Returns the senderFullName of the sender with the most total sent amount: " + report.getTopSender()); 
   }
 
 }
@@ -0,0 +1,113 @@
+package com.smallworld.aggregate;
+
+import com.smallworld.store.ColumnarTransactionStore;
+import com.smallworld.store.TransactionColumns;
+
+/**
+ * The amount of every transaction in minor units, read from the first row of every mtn in row
+ * order, and the {@link AmountKernels} aggregating it.
+ * 
+ * The column is a view: over a {@link ColumnarTransactionStore} the kernels run directly on the
+ * store's dense amount column, a vector at a time, without copying it, and always see the rows
+ * appended so far. Other stores, such as a mapped snapshot, hold amounts per row, so their
+ * first-of-mtn amounts are gathered into a buffer of {@link #BUFFER_SIZE} amounts that is
+ * aggregated whenever it is full; the view holds no memory between calls either way.
+ */
+public final class AmountColumn {
+
+    /** Amounts gathered per kernel call from stores without a dense amount column. */
+    static final int BUFFER_SIZE = 4096;
+
+    private final TransactionColumns store;
+    private final ColumnarTransactionStore columnarStore;
+
+    /**
+     * Creates the view of the amounts of a store.
+     * 
+     * @param store The rows whose amounts to aggregate.
+     */
+    public AmountColumn(TransactionColumns store) {
+        this.store = store;
+        this.columnarStore = store instanceof ColumnarTransactionStore ? (ColumnarTransactionStore) store : null;
+    }
+
+    /**
+     * Returns the number of transactions.
+     * 
+     * @return The number of amounts in the column.
+     */
+    public int size() {
+        if (columnarStore != null) {
+            return columnarStore.firstAmountCount();
+        }
+        int[] size = new int[1];
+        forEachRange((units, from, to) -> size[0] += to - from);
+        return size[0];
+    }
+
+    /**
+     * Returns the exact sum of the amounts, the deduplicated total.
+     * 
+     * @return The sum in minor units.
+     */
+    public long sum() {
+        ExactSum sum = new ExactSum();
+        forEachRange((units, from, to) -> sum.add(AmountKernels.sum(units, from, to)));
+        return sum.units();
+    }
+
+    /**
+     * Returns the highest amount.
+     * 
+     * @return The maximum in minor units, or {@link Long#MIN_VALUE} without transactions.
+     */
+    public long max() {
+        long[] max = {Long.MIN_VALUE};
+        forEachRange((units, from, to) -> max[0] = Math.max(max[0], AmountKernels.max(units, from, to)));
+        return max[0];
+    }
+
+    /**
+     * Returns the lowest amount.
+     * 
+     * @return The minimum in minor units, or {@link Long#MAX_VALUE} without transactions.
+     */
+    public long min() {
+        long[] min = {Long.MAX_VALUE};
+        forEachRange((units, from, to) -> min[0] = Math.min(min[0], AmountKernels.min(units, from, to)));
+        return min[0];
+    }
+
+    /**
+     * Counts the transactions whose amount is strictly above a threshold.
+     * 
+     * @param threshold The threshold in minor units.
+     * @return The number of transactions above it.
+     */
+    public int countAbove(long threshold) {
+        int[] count = new int[1];
+        forEachRange((units, from, to) -> count[0] += AmountKernels.countAbove(units, from, to, threshold));
+        return count[0];
+    }
+
+    private void forEachRange(ColumnarTransactionStore.AmountRange action) {
+        if (columnarStore != null) {
+            columnarStore.forEachFirstAmountRange(action);
+            return;
+        }
+        long[] buffer = new long[BUFFER_SIZE];
+        int count = 0;
+        for (int row = 0, size = store.size(); row < size; row++) {
+            if (store.isFirstOfMtn(row)) {
+                buffer[count++] = store.amountUnits(row);
+                if (count == BUFFER_SIZE) {
+                    action.accept(buffer, 0, count);
+                    count = 0;
+                }
+            }
+        }
+        if (count > 0) {
+            action.accept(buffer, 0, count);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.smallworld.aggregate;
+
+/**
+ * Aggregation kernels over dense columns of amounts in {@link com.smallworld.data.MinorUnits}:
+ * sum, maximum, minimum and the count of amounts above a threshold.
+ * 
+ * With the {@code jdk.incubator.vector} module in the boot layer, which takes
+ * {@code --add-modules jdk.incubator.vector} on JDK 17, the kernels run on the Vector API and
+ * process as many amounts per instruction as the widest vectors of the CPU hold. Without the
+ * module, or with {@code -Dsmallworld.vector=false}, they run plain scalar loops instead. Integer
+ * sums are exact in any order, so both return identical results.
+ */
+public final class AmountKernels {
+
+    private static final Kernels KERNELS = select();
+
+    private AmountKernels() {
+    }
+
+    private static Kernels select() {
+        Kernels vector = Boolean.parseBoolean(System.getProperty("smallworld.vector", "true")) ? vector() : null;
+        return vector != null ? vector : new ScalarKernels();
+    }
+
+    /**
+     * Returns the Vector API kernels, or null if the incubator module is not available.
+     */
+    static Kernels vector() {
+        // VectorKernels is only loaded, and its jdk.incubator.vector references resolved, here
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() ? new VectorKernels() : null;
+    }
+
+    static Kernels scalar() {
+        return new ScalarKernels();
+    }
+
+    /**
+     * Returns whether the kernels run on the Vector API.
+     * 
+     * @return True for the Vector API kernels, false for the scalar fallback.
+     */
+    public static boolean isVectorized() {
+        return KERNELS instanceof VectorKernels;
+    }
+
+    /**
+     * Adds up a range of amounts.
+     * 
+     * @param units The amounts in minor units.
+     * @param from The first index, inclusive.
+     * @param to The last index, exclusive.
+     * @return The exact sum, 0 for an empty range.
+     */
+    public static long sum(long[] units, int from, int to) {
+        checkRange(units, from, to);
+        return KERNELS.sum(units, from, to);
+    }
+
+    /**
+     * Returns the highest amount of a range.
+     * 
+     * @param units The amounts in minor units.
+     * @param from The first index, inclusive.
+     * @param to The last index, exclusive.
+     * @return The maximum, or {@link Long#MIN_VALUE} for an empty range.
+     */
+    public static long max(long[] units, int from, int to) {
+        checkRange(units, from, to);
+        return KERNELS.max(units, from, to);
+    }
+
+    /**
+     * Returns the lowest amount of a range.
+     * 
+     * @param units The amounts in minor units.
+     * @param from The first index, inclusive.
+     * @param to The last index, exclusive.
+     * @return The minimum, or {@link Long#MAX_VALUE} for an empty range.
+     */
+    public static long min(long[] units, int from, int to) {
+        checkRange(units, from, to);
+        return KERNELS.min(units, from, to);
+    }
+
+    /**
+     * Counts the amounts of a range that are strictly above a threshold.
+     * 
+     * @param units The amounts in minor units.
+     * @param from The first index, inclusive.
+     * @param to The last index, exclusive.
+     * @param threshold The threshold in minor units.
+     * @return The number of amounts above the threshold.
+     */
+    public static int countAbove(long[] units, int from, int to, long threshold) {
+        checkRange(units, from, to);
+        return KERNELS.countAbove(units, from, to, threshold);
+    }
+
+    private static void checkRange(long[] units, int from, int to) {
+        if (from < 0 || from > to || to > units.length) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + units.length);
+        }
+    }
+
+    /**
+     * One implementation of every kernel; ranges are checked by the caller.
+     */
+    interface Kernels {
+
+        long sum(long[] units, int from, int to);
+
+        long max(long[] units, int from, int to);
+
+        long min(long[] units, int from, int to);
+
+        int countAbove(long[] units, int from, int to, long threshold);
+    }
+
+    private static final class ScalarKernels implements Kernels {
+
+        @Override
+        public long sum(long[] units, int from, int to) {
+            long sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += units[i];
+            }
+            return sum;
+        }
+
+        @Override
+        public long max(long[] units, int from, int to) {
+            long max = Long.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                max = Math.max(max, units[i]);
+            }
+            return max;
+        }
+
+        @Override
+        public long min(long[] units, int from, int to) {
+            long min = Long.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, units[i]);
+            }
+            return min;
+        }
+
+        @Override
+        public int countAbove(long[] units, int from, int to, long threshold) {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (units[i] > threshold) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.smallworld.aggregate;
+
+import com.smallworld.data.MinorUnits;
+
+import java.io.Serializable;
+
+/**
+ * Running exact sum of amounts in {@link MinorUnits}.
+ * 
+ * Integer addition is associative, so sums of the same values are identical whatever their order
+ * and however partial sums of chunks, threads or shards are combined with {@link #add(ExactSum)}.
+ */
+public final class ExactSum implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long units;
+
+    /**
+     * Adds an amount to the sum.
+     * 
+     * @param amountUnits The amount in minor units.
+     * @return This sum, for chaining.
+     */
+    public ExactSum add(long amountUnits) {
+        units += amountUnits;
+        return this;
+    }
+
+    /**
+     * Adds another partial sum to this one.
+     * 
+     * @param other The partial sum to add.
+     * @return This sum, for chaining.
+     */
+    public ExactSum add(ExactSum other) {
+        units += other.units;
+        return this;
+    }
+
+    /**
+     * Returns the sum in minor units.
+     * 
+     * @return The exact sum.
+     */
+    public long units() {
+        return units;
+    }
+
+    /**
+     * Returns the sum as an amount.
+     * 
+     * @return The double nearest to the exact sum.
+     */
+    public double value() {
+        return MinorUnits.toAmount(units);
+    }
+}
@@ -0,0 +1,180 @@
+package com.smallworld.aggregate;
+
+import java.io.Serializable;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct strings added to it.
+ *
+ * The sketch keeps {@code 2^precision} one byte registers, whatever the number of values added:
+ * 16 KB at precision 14. Its estimates have a relative standard error of about
+ * {@code 1.04 / sqrt(2^precision)}, 0.81% at precision 14, and 99.7% of them fall within three
+ * standard errors. Adding a value costs one hash and one register update, and sketches of the
+ * same precision merge without loss into the sketch of the union of their values, so partial
+ * sketches of chunks or shards combine like every other aggregate.
+ *
+ * Values are hashed to 64 bits, so there is no range correction for large cardinalities.
+ * Estimates use Ertl's improved raw estimator ("New cardinality estimation algorithms for
+ * HyperLogLog sketches", 2017), which is unbiased from zero values up without the empirical
+ * bias tables of HyperLogLog++.
+ */
+public final class HyperLogLog implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Smallest supported precision: 16 registers, about 26% standard error. */
+    public static final int MIN_PRECISION = 4;
+
+    /** Largest supported precision: 256 KB of registers, about 0.2% standard error. */
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param precision The number of index bits, between {@link #MIN_PRECISION} and {@link #MAX_PRECISION}.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value The value to add, may be null.
+     */
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    /**
+     * Adds a value by its 64 bit hash, which must be uniformly distributed.
+     *
+     * @param hash The hash of the value.
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // a sentinel bit bounds the rank of all zero remaining bits at 65 - precision
+        int rank = Long.numberOfLeadingZeros(hash << precision | 1L << (precision - 1)) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Merges another sketch into this one, which then estimates the union of both.
+     *
+     * @param other A sketch of the same precision.
+     * @return This sketch.
+     * @throws IllegalArgumentException If the precisions differ.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge a sketch of precision " + other.precision + " into precision " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Estimates the number of distinct values added.
+     *
+     * @return The rounded estimate.
+     */
+    public long estimate() {
+        int m = registers.length;
+        int maxRank = 65 - precision;
+        int[] histogram = new int[maxRank + 1];
+        for (byte register : registers) {
+            histogram[register]++;
+        }
+        double z = m * tau(1.0 - (double) histogram[maxRank] / m);
+        for (int rank = maxRank - 1; rank >= 1; rank--) {
+            z = 0.5 * (z + histogram[rank]);
+        }
+        z += m * sigma((double) histogram[0] / m);
+        return Math.round(m / (2 * Math.log(2)) * m / z);
+    }
+
+    /**
+     * Returns the relative standard error of the estimates of this sketch.
+     *
+     * @return The relative standard error, {@code 1.04 / sqrt(2^precision)}.
+     */
+    public double relativeStandardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * Returns the precision of the sketch.
+     *
+     * @return The number of index bits.
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Hashes a string to 64 bits: FNV-1a over its chars, finished with the MurmurHash3 mix.
+     *
+     * @param value The value to hash, may be null.
+     * @return The hash.
+     */
+    public static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        if (value == null) {
+            return mix(hash);
+        }
+        for (int i = 0, length = value.length(); i < length; i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash ^ value.length());
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ hash >>> 33) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ hash >>> 33) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ hash >>> 33;
+    }
+
+    private static double sigma(double x) {
+        if (x == 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1.0;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0.0 || x == 1.0) {
+            return 0.0;
+        }
+        double y = 1.0;
+        double z = 1.0 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1.0 - x) * (1.0 - x) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+}
@@ -0,0 +1,120 @@
+package com.smallworld.aggregate;
+
+import com.smallworld.store.TransactionColumns;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Fork-join execution of scans over a {@link TransactionColumns}.
+ * 
+ * A row range is split into chunks of {@link TransactionAggregates#CHUNK_SIZE} rows. Every chunk
+ * is scanned into its own partial result on the pool, and the partial results are then merged in
+ * row order. Chunk boundaries depend only on the range, never on the pool or on scheduling, so
+ * a scan returns exactly what the sequential computation returns, on every run and with every
+ * parallelism.
+ * 
+ * Scans only read the store. They must not run concurrently with appends to it.
+ */
+public final class ParallelAggregator {
+
+    private final ForkJoinPool pool;
+
+    public ParallelAggregator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Computes the aggregates of a range of rows of the store in parallel.
+     * 
+     * @param store The store to aggregate.
+     * @param from The first row, inclusive.
+     * @param to The last row, exclusive.
+     * @return The aggregates of the rows in the range, identical to {@link TransactionAggregates#of(TransactionColumns, int, int)}.
+     */
+    public TransactionAggregates aggregate(TransactionColumns store, int from, int to) {
+        TransactionAggregates[] partials = new TransactionAggregates[chunkCount(from, to)];
+        pool.invoke(new ChunkTask(from, 0, partials.length,
+                (chunk, end) -> partials[(chunk - from) / TransactionAggregates.CHUNK_SIZE] = TransactionAggregates.ofChunk(store, chunk, end), to));
+        TransactionAggregates aggregates = partials[0];
+        for (int i = 1; i < partials.length; i++) {
+            aggregates.merge(partials[i]);
+        }
+        return aggregates;
+    }
+
+    /**
+     * Collects a value for every row of the store that matches the filter, in row order.
+     * 
+     * @param store The store to scan.
+     * @param filter Selects the rows to collect.
+     * @param mapper Extracts the value of a selected row.
+     * @param <T> The type of the collected values.
+     * @return The values of the selected rows in row order.
+     */
+    public <T> List<T> collect(TransactionColumns store, IntPredicate filter, IntFunction<T> mapper) {
+        int size = store.size();
+        List<List<T>> partials = new ArrayList<>();
+        for (int i = 0, chunks = chunkCount(0, size); i < chunks; i++) {
+            partials.add(null);
+        }
+        pool.invoke(new ChunkTask(0, 0, partials.size(), (chunk, end) -> {
+            List<T> values = new ArrayList<>();
+            for (int row = chunk; row < end; row++) {
+                if (filter.test(row)) {
+                    values.add(mapper.apply(row));
+                }
+            }
+            partials.set(chunk / TransactionAggregates.CHUNK_SIZE, values);
+        }, size));
+        List<T> values = new ArrayList<>();
+        for (List<T> partial : partials) {
+            values.addAll(partial);
+        }
+        return values;
+    }
+
+    private static int chunkCount(int from, int to) {
+        return Math.max(1, (to - from + TransactionAggregates.CHUNK_SIZE - 1) / TransactionAggregates.CHUNK_SIZE);
+    }
+
+    private interface ChunkScan {
+
+        void scan(int from, int to);
+    }
+
+    private static final class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int origin;
+        private final int firstChunk;
+        private final int lastChunk;
+        private final transient ChunkScan scan;
+        private final int end;
+
+        ChunkTask(int origin, int firstChunk, int lastChunk, ChunkScan scan, int end) {
+            this.origin = origin;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+            this.scan = scan;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (lastChunk - firstChunk <= 1) {
+                int from = origin + firstChunk * TransactionAggregates.CHUNK_SIZE;
+                scan.scan(from, Math.min(end, from + TransactionAggregates.CHUNK_SIZE));
+                return;
+            }
+            int middle = (firstChunk + lastChunk) >>> 1;
+            invokeAll(new ChunkTask(origin, firstChunk, middle, scan, end),
+                    new ChunkTask(origin, middle, lastChunk, scan, end));
+        }
+    }
+}
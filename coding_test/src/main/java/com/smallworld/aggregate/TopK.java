@@ -0,0 +1,115 @@
+package com.smallworld.aggregate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Mergeable top-k selection backed by a bounded min-heap.
+ * 
+ * Keeps the {@code k} highest ranked elements offered so far in O(log k) per offer of a new key,
+ * so the top elements of n distinct values are found in one O(n log k) pass. Elements are
+ * deduplicated by a key, for transactions their mtn, so an element offered several times takes a
+ * single slot; re-offering a kept key with a higher rank removes the kept element from the heap,
+ * which costs O(k). Partial results
+ * computed on chunks or shards are combined with {@link #merge(TopK)}; merging yields the same
+ * elements as offering everything to one instance.
+ * 
+ * @param <T> The type of the ranked elements.
+ */
+public final class TopK<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int k;
+    private final Comparator<? super T> order;
+    private final Function<? super T, ?> key;
+    private final PriorityQueue<T> heap;
+    private final Map<Object, T> members = new HashMap<>();
+
+    /**
+     * Creates an empty selection. The comparator and key function must be serializable for the
+     * selection to be serializable.
+     * 
+     * @param k The number of elements to keep.
+     * @param order Ranks elements; the greatest elements are kept. Must be a total order for merges to be deterministic.
+     * @param key Identifies duplicates; an element whose key is already kept replaces it only if it ranks higher.
+     */
+    public TopK(int k, Comparator<? super T> order, Function<? super T, ?> key) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        this.k = k;
+        this.order = order;
+        this.key = key;
+        this.heap = new PriorityQueue<>(Math.max(1, k), order);
+    }
+
+    /**
+     * Offers an element, keeping it if it ranks among the top {@code k} seen so far.
+     * 
+     * @param element The element to offer.
+     */
+    public void offer(T element) {
+        if (k == 0) {
+            return;
+        }
+        Object elementKey = key.apply(element);
+        T existing = members.get(elementKey);
+        if (existing != null) {
+            if (order.compare(element, existing) > 0) {
+                // a linear search of the heap, the only offer that is not O(log k)
+                heap.remove(existing);
+                heap.add(element);
+                members.put(elementKey, element);
+            }
+            return;
+        }
+        if (heap.size() < k) {
+            heap.add(element);
+            members.put(elementKey, element);
+        } else if (order.compare(element, heap.peek()) > 0) {
+            members.remove(key.apply(heap.poll()));
+            heap.add(element);
+            members.put(elementKey, element);
+        }
+    }
+
+    /**
+     * Offers every element kept by another selection.
+     * 
+     * @param other A partial selection, typically of another chunk or shard.
+     * @return This selection, holding the top elements of both.
+     */
+    public TopK<T> merge(TopK<? extends T> other) {
+        for (T element : other.heap) {
+            offer(element);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the kept elements from the highest to the lowest ranked.
+     * 
+     * @return A new list of at most {@code k} elements.
+     */
+    public List<T> toList() {
+        List<T> elements = new ArrayList<>(heap);
+        elements.sort(order.reversed());
+        return elements;
+    }
+
+    /**
+     * Returns the number of elements currently kept.
+     * 
+     * @return The number of kept elements, at most {@code k}.
+     */
+    public int size() {
+        return heap.size();
+    }
+}
@@ -0,0 +1,125 @@
+package com.smallworld.aggregate;
+
+import java.util.Arrays;
+
+/**
+ * Bounded min-heap keeping the rows with the highest amounts.
+ * 
+ * Offering a row costs O(log k) and the heap never holds more than {@code k} rows, so the top
+ * rows of a dataset are found in one pass without sorting it. Among rows with the same amount
+ * the earlier row ranks higher, matching a stable descending sort.
+ */
+public final class TopRows {
+
+    private final double[] amounts;
+    private final int[] rows;
+    private int size;
+
+    public TopRows(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        this.amounts = new double[capacity];
+        this.rows = new int[capacity];
+    }
+
+    /**
+     * Offers a row, keeping it if it ranks among the top {@code k} seen so far.
+     * 
+     * @param amount The row's amount.
+     * @param row The row position.
+     */
+    public void offer(double amount, int row) {
+        if (size < rows.length) {
+            amounts[size] = amount;
+            rows[size] = row;
+            siftUp(size++);
+        } else if (size > 0 && ranksAbove(amount, row, amounts[0], rows[0])) {
+            amounts[0] = amount;
+            rows[0] = row;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Offers every row kept by another heap, as if its rows had been offered to this one.
+     * 
+     * @param other The heap to merge in.
+     */
+    public void merge(TopRows other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.amounts[i], other.rows[i]);
+        }
+    }
+
+    /**
+     * Returns the number of rows currently kept.
+     * 
+     * @return The heap size, at most the capacity.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the kept rows ordered from the highest to the lowest amount.
+     * 
+     * @return The row positions in descending order.
+     */
+    public int[] rowsDescending() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> ranksAbove(amounts[a], rows[a], amounts[b], rows[b]) ? -1 : 1);
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = rows[order[i]];
+        }
+        return result;
+    }
+
+    private static boolean ranksAbove(double amount, int row, double otherAmount, int otherRow) {
+        int comparison = Double.compare(amount, otherAmount);
+        return comparison > 0 || (comparison == 0 && row < otherRow);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksAbove(amounts[parent], rows[parent], amounts[index], rows[index])) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int lowest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && ranksAbove(amounts[lowest], rows[lowest], amounts[left], rows[left])) {
+                lowest = left;
+            }
+            if (right < size && ranksAbove(amounts[lowest], rows[lowest], amounts[right], rows[right])) {
+                lowest = right;
+            }
+            if (lowest == index) {
+                return;
+            }
+            swap(index, lowest);
+            index = lowest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        double amount = amounts[i];
+        amounts[i] = amounts[j];
+        amounts[j] = amount;
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+    }
+}
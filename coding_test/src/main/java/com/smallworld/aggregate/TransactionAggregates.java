@@ -0,0 +1,204 @@
+package com.smallworld.aggregate;
+
+import com.smallworld.data.MinorUnits;
+import com.smallworld.store.TransactionColumns;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Continuously maintained, mergeable aggregates over the rows of a {@link TransactionColumns}.
+ * 
+ * Every row is folded in once through {@link #add(int)}, which costs O(1) for the totals, the
+ * maximum and the top sender and O(log k) for the top rows. Queries then read the maintained
+ * values instead of rescanning the store.
+ * 
+ * Aggregates of adjacent row ranges can be combined with {@link #merge(TransactionAggregates)}.
+ * Bulk computations split the rows into chunks of {@link #CHUNK_SIZE}, aggregate every chunk on
+ * its own and merge the chunks from left to right. {@link ParallelAggregator} follows exactly
+ * the same steps with the chunks spread over a fork-join pool, so sequential and parallel
+ * results are identical. Sums are exact {@link MinorUnits}, which do not depend on the chunking
+ * anyway.
+ */
+public final class TransactionAggregates {
+
+    /** Number of top transactions by amount that are maintained; larger selections need a scan. */
+    public static final int TOP_ROWS = 16;
+
+    /** Number of rows aggregated as one unit by bulk computations. */
+    public static final int CHUNK_SIZE = 1 << 16;
+
+    private final TransactionColumns store;
+
+    private long rowCount;
+    private final ExactSum total = new ExactSum();
+    private long max = Long.MIN_VALUE;
+    private final TopRows topRows = new TopRows(TOP_ROWS);
+    private final Map<String, ExactSum> sentBySender = new HashMap<>();
+    private String topSender;
+    private boolean topSenderStale;
+
+    public TransactionAggregates(TransactionColumns store) {
+        this.store = store;
+    }
+
+    /**
+     * Computes the aggregates of every row currently in the store.
+     * 
+     * @param store The store to aggregate.
+     * @return The aggregates of all rows.
+     */
+    public static TransactionAggregates of(TransactionColumns store) {
+        return of(store, 0, store.size());
+    }
+
+    /**
+     * Computes the aggregates of a range of rows of the store, sequentially, one chunk of
+     * {@link #CHUNK_SIZE} rows at a time.
+     * 
+     * @param store The store to aggregate.
+     * @param from The first row, inclusive.
+     * @param to The last row, exclusive.
+     * @return The aggregates of the rows in the range.
+     */
+    public static TransactionAggregates of(TransactionColumns store, int from, int to) {
+        TransactionAggregates aggregates = ofChunk(store, from, Math.min(to, from + CHUNK_SIZE));
+        for (int chunk = from + CHUNK_SIZE; chunk < to; chunk += CHUNK_SIZE) {
+            aggregates.merge(ofChunk(store, chunk, Math.min(to, chunk + CHUNK_SIZE)));
+        }
+        return aggregates;
+    }
+
+    static TransactionAggregates ofChunk(TransactionColumns store, int from, int to) {
+        TransactionAggregates aggregates = new TransactionAggregates(store);
+        for (int row = from; row < to; row++) {
+            aggregates.add(row);
+        }
+        return aggregates;
+    }
+
+    /**
+     * Folds a row of the store into the aggregates.
+     * 
+     * @param row The row position.
+     */
+    public void add(int row) {
+        long amount = store.amountUnits(row);
+        rowCount++;
+        if (store.isFirstOfMtn(row)) {
+            total.add(amount);
+        }
+        max = Math.max(max, amount);
+        if (store.isFirstOfMtn(row)) {
+            topRows.offer(store.amount(row), row);
+        }
+
+        String sender = store.clients().get(store.sender(row));
+        if (sender != null) {
+            ExactSum sent = sentBySender.computeIfAbsent(sender, name -> new ExactSum());
+            sent.add(amount);
+            updateTopSender(sender, sent.units(), amount < 0);
+        }
+    }
+
+    /**
+     * Merges the aggregates of the rows that directly follow the rows of this instance.
+     * 
+     * @param following The aggregates of the next row range of the same store.
+     * @return This instance, holding the aggregates of both ranges.
+     */
+    public TransactionAggregates merge(TransactionAggregates following) {
+        rowCount += following.rowCount;
+        total.add(following.total);
+        max = Math.max(max, following.max);
+        topRows.merge(following.topRows);
+        for (Map.Entry<String, ExactSum> entry : following.sentBySender.entrySet()) {
+            ExactSum sent = sentBySender.computeIfAbsent(entry.getKey(), name -> new ExactSum());
+            sent.add(entry.getValue());
+            updateTopSender(entry.getKey(), sent.units(), entry.getValue().units() < 0);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of rows folded in.
+     * 
+     * @return The row count.
+     */
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the sum of the amounts of all rows, counting each mtn once.
+     * 
+     * @return The deduplicated total.
+     */
+    public double total() {
+        return total.value();
+    }
+
+    /**
+     * Returns the sum of the amounts of all rows, counting each mtn once.
+     * 
+     * @return The exact deduplicated total in minor units.
+     */
+    public long totalUnits() {
+        return total.units();
+    }
+
+    /**
+     * Returns the highest amount of any row.
+     * 
+     * @return The maximum amount, or 0.0 if no row has been added.
+     */
+    public double max() {
+        return rowCount == 0 ? 0.0 : MinorUnits.toAmount(max);
+    }
+
+    /**
+     * Returns the {@link #TOP_ROWS} rows with the highest amounts, one row per mtn.
+     * 
+     * @return The row positions ordered by amount descending.
+     */
+    public int[] topRows() {
+        return topRows.rowsDescending();
+    }
+
+    /**
+     * Returns the sender with the highest sum of row amounts. Ties are resolved in favour of
+     * the lexicographically smallest name.
+     * 
+     * @return The name of the top sender, or null if no row has a sender.
+     */
+    public String topSender() {
+        if (topSenderStale) {
+            // only reached after a negative amount lowered the leading sender
+            topSender = null;
+            for (Map.Entry<String, ExactSum> entry : sentBySender.entrySet()) {
+                if (topSender == null || ranksAbove(entry.getKey(), entry.getValue().units(), topSender)) {
+                    topSender = entry.getKey();
+                }
+            }
+            topSenderStale = false;
+        }
+        return topSender;
+    }
+
+    private void updateTopSender(String sender, long sent, boolean decreased) {
+        if (topSenderStale) {
+            return;
+        }
+        if (decreased) {
+            // a lower total can only matter if it belonged to the current leader
+            topSenderStale = sender.equals(topSender);
+        } else if (topSender == null || ranksAbove(sender, sent, topSender)) {
+            topSender = sender;
+        }
+    }
+
+    private boolean ranksAbove(String sender, long sent, String other) {
+        int comparison = Long.compare(sent, sentBySender.get(other).units());
+        return comparison > 0 || (comparison == 0 && sender.compareTo(other) < 0);
+    }
+}
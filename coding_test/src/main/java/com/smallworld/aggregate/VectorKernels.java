@@ -0,0 +1,79 @@
+package com.smallworld.aggregate;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link AmountKernels} on the Vector API: every kernel keeps one accumulator lane per amount of
+ * the preferred vector shape, reduces the lanes once at the end and finishes the tail of the
+ * range that does not fill a whole vector with scalar code.
+ * 
+ * Only loaded when the {@code jdk.incubator.vector} module is present.
+ */
+final class VectorKernels implements AmountKernels.Kernels {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    public long sum(long[] units, int from, int to) {
+        LongVector sums = LongVector.zero(SPECIES);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += LANES) {
+            sums = sums.add(LongVector.fromArray(SPECIES, units, i));
+        }
+        long sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            sum += units[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public long max(long[] units, int from, int to) {
+        LongVector maxima = LongVector.broadcast(SPECIES, Long.MIN_VALUE);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += LANES) {
+            maxima = maxima.max(LongVector.fromArray(SPECIES, units, i));
+        }
+        long max = maxima.reduceLanes(VectorOperators.MAX);
+        for (; i < to; i++) {
+            max = Math.max(max, units[i]);
+        }
+        return max;
+    }
+
+    @Override
+    public long min(long[] units, int from, int to) {
+        LongVector minima = LongVector.broadcast(SPECIES, Long.MAX_VALUE);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += LANES) {
+            minima = minima.min(LongVector.fromArray(SPECIES, units, i));
+        }
+        long min = minima.reduceLanes(VectorOperators.MIN);
+        for (; i < to; i++) {
+            min = Math.min(min, units[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public int countAbove(long[] units, int from, int to, long threshold) {
+        LongVector one = LongVector.broadcast(SPECIES, 1L);
+        LongVector counts = LongVector.zero(SPECIES);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += LANES) {
+            VectorMask<Long> above = LongVector.fromArray(SPECIES, units, i).compare(VectorOperators.GT, threshold);
+            counts = counts.add(one, above);
+        }
+        int count = (int) counts.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            if (units[i] > threshold) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,164 @@
+package com.smallworld.cache;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.query.QueryResult;
+import com.smallworld.query.TransactionQuery;
+import com.smallworld.report.ReportMetric;
+import com.smallworld.report.TransactionReport;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Memoizing front of a {@link TransactionDataFetcher} for callers that repeat the same queries.
+ * 
+ * Every query is cached under its name and arguments in a {@link QueryCache} bound to
+ * {@link TransactionDataFetcher#version()}, so results are recomputed after rows are appended or
+ * issue states change, whether through this instance or directly on the fetcher. Collection
+ * results are shared between callers and are therefore returned unmodifiable; transactions are
+ * mutable, so every hit returns fresh copies of them and a caller changing one cannot change what
+ * the next caller sees. Reports and query results copy their transactions the same way.
+ */
+public final class CachingTransactionDataFetcher {
+
+    /** Number of cached results used when no size is given. */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final TransactionDataFetcher fetcher;
+    private final QueryCache cache;
+
+    public CachingTransactionDataFetcher(TransactionDataFetcher fetcher) {
+        this(fetcher, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache in front of the fetcher.
+     * 
+     * @param fetcher The fetcher answering cache misses.
+     * @param maxEntries The maximum number of cached results.
+     */
+    public CachingTransactionDataFetcher(TransactionDataFetcher fetcher, int maxEntries) {
+        this.fetcher = fetcher;
+        this.cache = new QueryCache(maxEntries, fetcher::version);
+    }
+
+    /**
+     * Returns the cached fetcher.
+     * 
+     * @return The fetcher answering cache misses.
+     */
+    public TransactionDataFetcher fetcher() {
+        return fetcher;
+    }
+
+    /**
+     * Returns the cache, which exposes the hit, miss, eviction and invalidation counters.
+     * 
+     * @return The query cache.
+     */
+    public QueryCache cache() {
+        return cache;
+    }
+
+    public void append(Transaction transaction) {
+        fetcher.append(transaction);
+    }
+
+    public void appendAll(Iterable<? extends Transaction> transactions) {
+        fetcher.appendAll(transactions);
+    }
+
+    public int setIssueSolved(int issueId, boolean solved) {
+        return fetcher.setIssueSolved(issueId, solved);
+    }
+
+    public double getTotalTransactionAmount() {
+        return cache.get(new Query("getTotalTransactionAmount", null), fetcher::getTotalTransactionAmount);
+    }
+
+    public long getTotalTransactionAmountUnits() {
+        return cache.get(new Query("getTotalTransactionAmountUnits", null), fetcher::getTotalTransactionAmountUnits);
+    }
+
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        return cache.get(new Query("getTotalTransactionAmountSentBy", senderFullName),
+                () -> fetcher.getTotalTransactionAmountSentBy(senderFullName));
+    }
+
+    public double getMaxTransactionAmount() {
+        return cache.get(new Query("getMaxTransactionAmount", null), fetcher::getMaxTransactionAmount);
+    }
+
+    public long countTransactionsAbove(double amount) {
+        return cache.get(new Query("countTransactionsAbove", amount), () -> fetcher.countTransactionsAbove(amount));
+    }
+
+    public long countUniqueClients() {
+        return cache.get(new Query("countUniqueClients", null), fetcher::countUniqueClients);
+    }
+
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        return cache.get(new Query("hasOpenComplianceIssues", clientFullName),
+                () -> fetcher.hasOpenComplianceIssues(clientFullName));
+    }
+
+    /**
+     * Returns the first transaction of every beneficiary, see
+     * {@link TransactionDataFetcher#getTransactionsByBeneficiaryName()}.
+     * 
+     * @return An unmodifiable map of fresh copies of the cached transactions, made on every call.
+     */
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return Transaction.copyOf(cache.get(new Query("getTransactionsByBeneficiaryName", null),
+                fetcher::getTransactionsByBeneficiaryName));
+    }
+
+    public Set<Integer> getUnsolvedIssueIds() {
+        return cache.get(new Query("getUnsolvedIssueIds", null),
+                () -> Collections.unmodifiableSet(fetcher.getUnsolvedIssueIds()));
+    }
+
+    public List<String> getAllSolvedIssueMessages() {
+        return cache.get(new Query("getAllSolvedIssueMessages", null),
+                () -> Collections.unmodifiableList(fetcher.getAllSolvedIssueMessages()));
+    }
+
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return getTopTransactionsByAmount(3);
+    }
+
+    public List<Transaction> getTopTransactionsByAmount(int k) {
+        List<Transaction> top = cache.get(new Query("getTopTransactionsByAmount", k), () -> fetcher.getTopTransactionsByAmount(k));
+        return top.stream().map(Transaction::new).toList();
+    }
+
+    public List<Map.Entry<String, Double>> getTopSenders(int k) {
+        return cache.get(new Query("getTopSenders", k),
+                () -> Collections.unmodifiableList(fetcher.getTopSenders(k)));
+    }
+
+    public Optional<String> getTopSender() {
+        return cache.get(new Query("getTopSender", null), fetcher::getTopSender);
+    }
+
+    public TransactionReport report(Set<ReportMetric> metrics, int topN) {
+        Set<ReportMetric> key = metrics.isEmpty() ? EnumSet.noneOf(ReportMetric.class) : EnumSet.copyOf(metrics);
+        return cache.get(new Query("report", List.of(key, topN)), () -> fetcher.report(key, topN));
+    }
+
+    public TransactionReport report(Set<ReportMetric> metrics) {
+        return report(metrics, TransactionReport.DEFAULT_TOP_N);
+    }
+
+    public QueryResult query(TransactionQuery query) {
+        return cache.get(new Query("query", query), () -> fetcher.query(query));
+    }
+
+    private record Query(String name, Object argument) {
+    }
+}
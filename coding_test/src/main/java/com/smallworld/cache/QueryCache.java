@@ -0,0 +1,147 @@
+package com.smallworld.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Size-bounded memo of query results, tied to the version of the data they were computed from.
+ * 
+ * Entries are evicted in least recently used order once more than the maximum number of entries
+ * is held. Every lookup first reads the version of the data; when it differs from the version the
+ * cached entries were computed at, all entries are dropped, since any change to the data may
+ * change any result. A result whose data changed while it was being computed is returned but
+ * not cached.
+ * 
+ * Lookups are thread-safe. Results are computed outside the lock, so two threads missing the same
+ * key at once both compute it.
+ */
+public final class QueryCache {
+
+    private final int maxEntries;
+    private final LongSupplier version;
+    private final LinkedHashMap<Object, Object> entries;
+
+    private long entriesVersion;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates an empty cache.
+     * 
+     * @param maxEntries The maximum number of cached results.
+     * @param version Reads the current version of the cached data.
+     */
+    public QueryCache(int maxEntries, LongSupplier version) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.version = version;
+        this.entriesVersion = version.getAsLong();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                if (size() <= QueryCache.this.maxEntries) {
+                    return false;
+                }
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for the key, computing and caching it on a miss.
+     * 
+     * @param key Identifies the query and its arguments; must implement equals and hashCode.
+     * @param loader Computes the result. It must not return null.
+     * @param <V> The type of the result.
+     * @return The result for the current version of the data.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(Object key, Supplier<V> loader) {
+        long current = version.getAsLong();
+        synchronized (this) {
+            invalidateIfStale(current);
+            Object cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return (V) cached;
+            }
+            misses++;
+        }
+        V value = loader.get();
+        synchronized (this) {
+            if (version.getAsLong() == current) {
+                invalidateIfStale(current);
+                entries.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Drops every cached result.
+     */
+    public synchronized void clear() {
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached results.
+     * 
+     * @return The entry count.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     * 
+     * @return The hit count.
+     */
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to compute their result.
+     * 
+     * @return The miss count.
+     */
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of results dropped to make room for newer ones.
+     * 
+     * @return The eviction count.
+     */
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of results dropped because the data changed or the cache was cleared.
+     * 
+     * @return The invalidation count.
+     */
+    public synchronized long invalidationCount() {
+        return invalidations;
+    }
+
+    private void invalidateIfStale(long current) {
+        if (current != entriesVersion) {
+            invalidations += entries.size();
+            entries.clear();
+            entriesVersion = current;
+        }
+    }
+}
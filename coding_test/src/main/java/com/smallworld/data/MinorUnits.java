@@ -0,0 +1,94 @@
+package com.smallworld.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point amounts: a whole number of minor units, cents, held in a {@code long}.
+ * 
+ * Amounts arrive as doubles parsed from decimal JSON numbers with at most two decimal places.
+ * Such a double is the one nearest to its decimal value, so it converts to minor units exactly
+ * and back to the same double. Sums, maxima and comparisons of minor units are exact and do not
+ * depend on the order of the values, unlike floating-point sums; a total only becomes a double,
+ * the one nearest to its exact decimal value, when a query returns it.
+ * 
+ * Amounts of up to 2^50 minor units, about 11 trillion, convert exactly: below that, doubles
+ * are less than a minor unit apart and the conversion error stays below half a minor unit. Sums
+ * are exact while they stay within {@link Long#MAX_VALUE} minor units and are not checked for
+ * overflow.
+ */
+public final class MinorUnits {
+
+    /** Minor units per unit of currency. */
+    public static final int SCALE = 100;
+
+    private static final long MAX_EXACT = 1L << 50;
+
+    private MinorUnits() {
+    }
+
+    /**
+     * Converts an amount to minor units.
+     * 
+     * @param amount The amount, with at most two decimal places.
+     * @return The amount in minor units.
+     * @throws IllegalArgumentException If the amount is not finite, exceeds 2^50 minor units or
+     *         is not a whole number of minor units.
+     */
+    public static long of(double amount) {
+        long units = Math.round(amount * SCALE);
+        if (!isExact(amount, units)) {
+            throw new IllegalArgumentException("Amount is not a whole number of minor units: " + amount);
+        }
+        return units;
+    }
+
+    /**
+     * Returns whether an amount converts to minor units exactly.
+     * 
+     * @param amount The amount.
+     * @return True if {@link #of(double)} accepts the amount.
+     */
+    public static boolean isExact(double amount) {
+        return isExact(amount, Math.round(amount * SCALE));
+    }
+
+    private static boolean isExact(double amount, long units) {
+        // NaN rounds to 0 and infinities to a long beyond the exact range
+        return Math.abs(units) <= MAX_EXACT && toAmount(units) == amount;
+    }
+
+    /**
+     * Returns the largest number of minor units that is not above the amount. An amount with at
+     * most two decimal places counts as its decimal value, like in {@link #of(double)}, so
+     * comparing minor units against the result matches comparing the decimal amounts.
+     * 
+     * @param amount A finite amount, with any number of decimal places.
+     * @return The amount rounded down to minor units, clamped to the range of a long.
+     * @throws IllegalArgumentException If the amount is NaN.
+     */
+    public static long floor(double amount) {
+        if (Double.isNaN(amount)) {
+            throw new IllegalArgumentException("Amount is NaN");
+        }
+        if (isExact(amount)) {
+            return Math.round(amount * SCALE);
+        }
+        if (Double.isInfinite(amount)) {
+            return amount > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        BigDecimal units = new BigDecimal(amount).movePointRight(2).setScale(0, RoundingMode.FLOOR);
+        return units.max(BigDecimal.valueOf(Long.MIN_VALUE)).min(BigDecimal.valueOf(Long.MAX_VALUE)).longValueExact();
+    }
+
+    /**
+     * Converts minor units to the nearest double amount.
+     * 
+     * @param units The amount in minor units.
+     * @return The amount.
+     */
+    public static double toAmount(long units) {
+        // both operands are exact up to 2^53 and the division is correctly rounded
+        return (double) units / SCALE;
+    }
+}
@@ -1,8 +1,15 @@
 package com.smallworld.data;
 
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
-public class Transaction {
+public class Transaction implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
     // transaction data.
 	private String mtn;
     private double amount;
@@ -10,13 +17,13 @@ public class Transaction {
     private int senderAge;
     private String beneficiaryFullName;
     private int beneficiaryAge;
-    private int issueId;
+    private Integer issueId;
     private boolean issueSolved;
     private String issueMessage;
     
     
     // Constructor
-    public Transaction(String mtn, double amount, String senderFullName, int senderAge,String beneficiaryFullName, int beneficiaryAge, int issueId,boolean issueSolved, String issueMessage) {
+    public Transaction(String mtn, double amount, String senderFullName, int senderAge,String beneficiaryFullName, int beneficiaryAge, Integer issueId,boolean issueSolved, String issueMessage) {
         this.mtn = mtn;
         this.amount = amount;
         this.senderFullName = senderFullName;
@@ -28,6 +35,28 @@ public class Transaction {
         this.issueMessage = issueMessage;
     }
 
+    /**
+     * Copies a transaction, so that a caller holding the copy cannot change the original.
+     * 
+     * @param other The transaction to copy.
+     */
+    public Transaction(Transaction other) {
+        this(other.mtn, other.amount, other.senderFullName, other.senderAge, other.beneficiaryFullName,
+                other.beneficiaryAge, other.issueId, other.issueSolved, other.issueMessage);
+    }
+
+    /**
+     * Copies every transaction of a map by name, keeping a null key.
+     * 
+     * @param transactions The transactions to copy.
+     * @return An unmodifiable map of copies under the same keys.
+     */
+    public static Map<String, Transaction> copyOf(Map<String, Transaction> transactions) {
+        Map<String, Transaction> copies = new HashMap<>(transactions.size() * 2);
+        transactions.forEach((name, transaction) -> copies.put(name, new Transaction(transaction)));
+        return Collections.unmodifiableMap(copies);
+    }
+
 	@Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -94,10 +123,10 @@ public class Transaction {
 	public void setBeneficiaryAge(int beneficiaryAge) {
 		this.beneficiaryAge = beneficiaryAge;
 	}
-	public int getIssueId() {
+	public Integer getIssueId() {
 		return issueId;
 	}
-	public void setIssueId(int issueId) {
+	public void setIssueId(Integer issueId) {
 		this.issueId = issueId;
 	}
 	public boolean isIssueSolved() {
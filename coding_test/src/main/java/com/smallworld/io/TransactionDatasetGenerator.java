@@ -0,0 +1,295 @@
+package com.smallworld.io;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.smallworld.data.Transaction;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * Seeded generator of synthetic transaction datasets for benchmarks and tests.
+ * 
+ * Rows follow the layout of {@code transactions.json}: every transaction (mtn) is repeated once
+ * per issue, and transactions without issues appear once with a null issue. The number of issue
+ * rows per mtn, the number of distinct clients and the skew of the sender distribution are
+ * configurable, and the same seed and settings always produce the same rows.
+ */
+public final class TransactionDatasetGenerator {
+
+    private static final String[] FIRST_NAMES = {
+        "Tom", "Arthur", "Ada", "John", "Polly", "Grace", "Michael", "Alfie", "Billy", "Aberama",
+        "Luca", "May", "Esme", "Lizzie", "Linda", "Finn", "Isaiah", "Jeremiah", "Johnny", "Ruben",
+        "Charlie", "Curly", "Frances", "Oswald", "Diana", "Jessie", "Gina", "Erasmus", "Hayden", "Laura"
+    };
+    private static final String[] LAST_NAMES = {
+        "Shelby", "Solomons", "Gold", "Kimber", "Burgess", "Changretta", "Carleton", "Gray", "Boswell", "Eden",
+        "Stark", "Mosley", "Jesus", "Dogs", "Strong", "Sabini", "Thorne", "Campbell", "Lee", "Ross"
+    };
+    private static final String[] ISSUE_MESSAGES = {
+        "Looks like money laundering", "Never gonna give you up", "Something's fishy",
+        "Don't let this transaction happen", "Never gonna let you down", "Never gonna run around and desert you",
+        "Sender under sanctions review", "Beneficiary identity unverified"
+    };
+
+    private long seed = 1L;
+    private long rows = 1_000;
+    private int clients = 1_000;
+    private double issueRowsPerMtn = 1.0;
+    private double senderSkew = 0.0;
+    private double solvedRatio = 0.7;
+
+    /**
+     * Sets the seed of the random number generator.
+     * 
+     * @param seed The seed.
+     * @return This generator.
+     */
+    public TransactionDatasetGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the number of rows to generate, e.g. from 1K to 50M.
+     * 
+     * @param rows The row count.
+     * @return This generator.
+     */
+    public TransactionDatasetGenerator rows(long rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("rows must not be negative: " + rows);
+        }
+        this.rows = rows;
+        return this;
+    }
+
+    /**
+     * Sets the number of distinct clients that appear as senders and beneficiaries.
+     * 
+     * @param clients The client cardinality.
+     * @return This generator.
+     */
+    public TransactionDatasetGenerator clients(int clients) {
+        if (clients < 1) {
+            throw new IllegalArgumentException("clients must be positive: " + clients);
+        }
+        this.clients = clients;
+        return this;
+    }
+
+    /**
+     * Sets the mean number of issues per transaction. Every transaction produces one row per
+     * issue, or a single row with a null issue if it has none.
+     * 
+     * @param issueRowsPerMtn The mean issue count per mtn.
+     * @return This generator.
+     */
+    public TransactionDatasetGenerator issueRowsPerMtn(double issueRowsPerMtn) {
+        if (issueRowsPerMtn < 0) {
+            throw new IllegalArgumentException("issueRowsPerMtn must not be negative: " + issueRowsPerMtn);
+        }
+        this.issueRowsPerMtn = issueRowsPerMtn;
+        return this;
+    }
+
+    /**
+     * Sets the Zipf exponent of the sender distribution. 0 picks senders uniformly, 1 gives
+     * the classic Zipf skew where a few clients send most transactions.
+     * 
+     * @param senderSkew The Zipf exponent.
+     * @return This generator.
+     */
+    public TransactionDatasetGenerator senderSkew(double senderSkew) {
+        if (senderSkew < 0) {
+            throw new IllegalArgumentException("senderSkew must not be negative: " + senderSkew);
+        }
+        this.senderSkew = senderSkew;
+        return this;
+    }
+
+    /**
+     * Sets the probability that an issue is solved.
+     * 
+     * @param solvedRatio The solved probability, between 0 and 1.
+     * @return This generator.
+     */
+    public TransactionDatasetGenerator solvedRatio(double solvedRatio) {
+        this.solvedRatio = solvedRatio;
+        return this;
+    }
+
+    /**
+     * Generates the rows and passes them to the sink one at a time.
+     * 
+     * @param sink Receives every generated row in order.
+     */
+    public void generate(Consumer<? super Transaction> sink) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] senderCdf = senderSkew > 0 ? zipfCdf(clients, senderSkew) : null;
+        long mtn = 100_000;
+        int issueId = 0;
+        long produced = 0;
+        while (produced < rows) {
+            mtn += 1 + random.nextInt(1_000);
+            int sender = senderCdf == null ? random.nextInt(clients) : sample(senderCdf, random.nextDouble());
+            int beneficiary = random.nextInt(clients);
+            double amount = Math.round(Math.exp(3 + 2 * random.nextDouble() + random.nextDouble()) * 100) / 100.0;
+            String mtnText = Long.toString(mtn);
+            String senderName = clientName(sender);
+            String beneficiaryName = clientName(beneficiary);
+            int issues = issueCount(random);
+            if (issues == 0) {
+                sink.accept(new Transaction(mtnText, amount, senderName, clientAge(sender), beneficiaryName, clientAge(beneficiary), null, true, null));
+                produced++;
+            }
+            for (int i = 0; i < issues && produced < rows; i++) {
+                sink.accept(new Transaction(mtnText, amount, senderName, clientAge(sender), beneficiaryName, clientAge(beneficiary),
+                        ++issueId, random.nextDouble() < solvedRatio, ISSUE_MESSAGES[random.nextInt(ISSUE_MESSAGES.length)]));
+                produced++;
+            }
+        }
+    }
+
+    /**
+     * Generates the rows into a list.
+     * 
+     * @return The generated rows in order.
+     */
+    public List<Transaction> generate() {
+        List<Transaction> transactions = new ArrayList<>((int) Math.min(rows, Integer.MAX_VALUE - 8));
+        generate(transactions::add);
+        return transactions;
+    }
+
+    /**
+     * Writes the rows to a file as a JSON array in the {@code transactions.json} layout, or as
+     * newline-delimited JSON. Rows are streamed to the file as they are generated.
+     * 
+     * @param path The file to write.
+     * @param ndjson True to write one object per line instead of a JSON array.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path, boolean ndjson) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path);
+                JsonGenerator json = new JsonFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            // arrays are indented like transactions.json, NDJSON keeps every object on one line
+            json.setPrettyPrinter(ndjson ? new MinimalPrettyPrinter("\n") : new DefaultPrettyPrinter());
+            if (!ndjson) {
+                json.writeStartArray();
+            }
+            try {
+                generate(transaction -> writeTransaction(json, transaction));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (!ndjson) {
+                json.writeEndArray();
+            }
+            json.writeRaw('\n');
+        }
+    }
+
+    private static void writeTransaction(JsonGenerator json, Transaction transaction) {
+        try {
+            json.writeStartObject();
+            json.writeNumberField("mtn", Long.parseLong(transaction.getMtn()));
+            json.writeNumberField("amount", transaction.getAmount());
+            json.writeStringField("senderFullName", transaction.getSenderFullName());
+            json.writeNumberField("senderAge", transaction.getSenderAge());
+            json.writeStringField("beneficiaryFullName", transaction.getBeneficiaryFullName());
+            json.writeNumberField("beneficiaryAge", transaction.getBeneficiaryAge());
+            if (transaction.getIssueId() == null) {
+                json.writeNullField("issueId");
+            } else {
+                json.writeNumberField("issueId", transaction.getIssueId());
+            }
+            json.writeBooleanField("issueSolved", transaction.isIssueSolved());
+            json.writeStringField("issueMessage", transaction.getIssueMessage());
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int issueCount(SplittableRandom random) {
+        // geometric number of issues with the configured mean
+        double p = 1.0 / (1.0 + issueRowsPerMtn);
+        int issues = 0;
+        while (random.nextDouble() >= p) {
+            issues++;
+        }
+        return issues;
+    }
+
+    private static String clientName(int client) {
+        int combinations = FIRST_NAMES.length * LAST_NAMES.length;
+        String name = FIRST_NAMES[client % FIRST_NAMES.length] + " " + LAST_NAMES[(client / FIRST_NAMES.length) % LAST_NAMES.length];
+        return client < combinations ? name : name + " " + (client / combinations + 1);
+    }
+
+    private static int clientAge(int client) {
+        return 18 + Math.floorMod(client * 0x9E3779B9, 70);
+    }
+
+    private static double[] zipfCdf(int clients, double exponent) {
+        double[] cdf = new double[clients];
+        double sum = 0;
+        for (int i = 0; i < clients; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < clients; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, double u) {
+        int index = Arrays.binarySearch(cdf, u);
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    /**
+     * Writes a dataset file.
+     * 
+     * Usage: {@code TransactionDatasetGenerator <output> <rows> [clients] [issueRowsPerMtn] [senderSkew] [seed] [--ndjson]}
+     * 
+     * @param args The command line arguments.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean ndjson = arguments.remove("--ndjson");
+        if (arguments.size() < 2) {
+            System.err.println("Usage: TransactionDatasetGenerator <output> <rows> [clients] [issueRowsPerMtn] [senderSkew] [seed] [--ndjson]");
+            return;
+        }
+        TransactionDatasetGenerator generator = new TransactionDatasetGenerator().rows(Long.parseLong(arguments.get(1)));
+        if (arguments.size() > 2) {
+            generator.clients(Integer.parseInt(arguments.get(2)));
+        }
+        if (arguments.size() > 3) {
+            generator.issueRowsPerMtn(Double.parseDouble(arguments.get(3)));
+        }
+        if (arguments.size() > 4) {
+            generator.senderSkew(Double.parseDouble(arguments.get(4)));
+        }
+        if (arguments.size() > 5) {
+            generator.seed(Long.parseLong(arguments.get(5)));
+        }
+        generator.write(Paths.get(arguments.get(0)), ndjson);
+    }
+}
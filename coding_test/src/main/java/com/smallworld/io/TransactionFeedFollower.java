@@ -0,0 +1,354 @@
+package com.smallworld.io;
+
+import com.smallworld.ConcurrentTransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.metrics.Operation;
+import com.smallworld.metrics.QueryMetrics;
+import com.smallworld.store.MappedTransactionStore;
+import com.smallworld.store.TransactionSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Follows an append-only NDJSON feed of transaction and issue rows, like {@code tail -f}.
+ * 
+ * The follower remembers the byte offset up to which the feed has been applied. Every poll reads
+ * only the bytes appended since then through a positional {@link FileChannel} read, parses the
+ * complete lines with the streaming {@link TransactionJsonReader} and hands their rows to the
+ * sink as one batch, so the work of a poll is proportional to the new bytes and never to the
+ * size of the feed. A line that is still being written is left for a later poll until its
+ * newline arrives. Batches hold at most {@link #BATCH_BYTES} of input, unless a single line is
+ * longer; passing {@code ConcurrentTransactionDataFetcher::appendAll} as the sink makes every
+ * batch visible to readers at once.
+ * 
+ * A follower {@link #open opened} on a sink always starts at the beginning of the feed. A
+ * follower {@link #resume resumed} from a checkpoint applies the feed to a
+ * {@link ConcurrentTransactionDataFetcher} of its own and, every {@link #CHECKPOINT_BYTES} of
+ * applied feed and when it is closed, writes a {@link TransactionSnapshot} of that fetcher whose
+ * position is the offset its rows were applied up to, replacing the checkpoint atomically. The
+ * rows and their offset are thus always saved together: resuming restores the fetcher from the
+ * snapshot and reads the feed from its offset, so a restart ends in the state a single follower
+ * would have reached, and a crash only replays the feed after the last checkpoint.
+ * 
+ * {@link #start()} polls from a background thread that sleeps on a {@link WatchService}
+ * registered for the feed's directory, so new rows are applied within milliseconds of being
+ * written. The thread also polls every {@link #FALLBACK_POLL_MILLIS} ms, for file systems whose
+ * watch service polls slowly or drops events; such a poll costs one {@code size} call when the
+ * feed has not grown. If the feed is malformed, shrinks below the offset or the sink throws, the
+ * thread stops, leaving the offset before the failing batch, and {@link #failure()} returns the
+ * cause.
+ */
+public final class TransactionFeedFollower implements AutoCloseable {
+
+    /** Bytes of input read and applied per batch. */
+    public static final int BATCH_BYTES = 1 << 20;
+
+    /** Longest time the background thread waits for a watch event before polling anyway. */
+    public static final long FALLBACK_POLL_MILLIS = 200;
+
+    /** Bytes of feed a resumed follower applies between two checkpoints, at most replayed after a crash. */
+    public static final long CHECKPOINT_BYTES = 64L << 20;
+
+    private final Path feed;
+    private final Path checkpoint;
+    private final ConcurrentTransactionDataFetcher fetcher;
+    private final Consumer<? super List<Transaction>> sink;
+    private final QueryMetrics metrics;
+
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BATCH_BYTES);
+    private volatile long offset;
+    private volatile long rows;
+    private long checkpointOffset;
+
+    private WatchService watcher;
+    private Thread thread;
+    private volatile boolean closed;
+    private volatile Exception failure;
+
+    private TransactionFeedFollower(Path feed, Path checkpoint, ConcurrentTransactionDataFetcher fetcher,
+            Consumer<? super List<Transaction>> sink, QueryMetrics metrics, long offset) {
+        this.feed = feed;
+        this.checkpoint = checkpoint;
+        this.fetcher = fetcher;
+        this.sink = sink;
+        this.metrics = metrics;
+        this.offset = offset;
+        this.checkpointOffset = offset;
+    }
+
+    /**
+     * Opens a follower on a feed without reading it yet; call {@link #poll()} or {@link #start()}.
+     * 
+     * @param feed The NDJSON file, which does not have to exist yet.
+     * @param sink Receives the rows of every batch, in feed order.
+     * @return The follower, positioned at the beginning of the feed.
+     */
+    public static TransactionFeedFollower open(Path feed, Consumer<? super List<Transaction>> sink) {
+        return open(feed, sink, QueryMetrics.global());
+    }
+
+    /**
+     * Opens a follower on a feed, recording every applied batch into the given metrics.
+     * 
+     * @param feed The NDJSON file, which does not have to exist yet.
+     * @param sink Receives the rows of every batch, in feed order.
+     * @param metrics The metrics recording the apply latency of every batch.
+     * @return The follower, positioned at the beginning of the feed.
+     */
+    public static TransactionFeedFollower open(Path feed, Consumer<? super List<Transaction>> sink, QueryMetrics metrics) {
+        return new TransactionFeedFollower(feed, null, null, sink, metrics, 0);
+    }
+
+    /**
+     * Opens a follower applying a feed to a fetcher restored from a checkpoint, and checkpointing
+     * that fetcher as it follows the feed; the fetcher is returned by {@link #fetcher()}.
+     * 
+     * @param feed The NDJSON file, which does not have to exist yet.
+     * @param checkpoint The snapshot the follower saves its fetcher and offset to; if it does not
+     *        exist yet, the fetcher starts empty at the beginning of the feed.
+     * @param metrics The metrics recording the apply latency of every batch and the queries of
+     *        the fetcher.
+     * @return The follower, positioned at the offset of the checkpoint.
+     * @throws IOException If the checkpoint exists but cannot be read or is not a valid snapshot.
+     */
+    public static TransactionFeedFollower resume(Path feed, Path checkpoint, QueryMetrics metrics) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            ConcurrentTransactionDataFetcher fetcher = new ConcurrentTransactionDataFetcher(List.of(), null, metrics);
+            return new TransactionFeedFollower(feed, checkpoint, fetcher, fetcher::appendAll, metrics, 0);
+        }
+        MappedTransactionStore snapshot = TransactionSnapshot.open(checkpoint);
+        if (snapshot.position() < 0) {
+            throw new IOException("Malformed feed checkpoint " + checkpoint + ": offset " + snapshot.position());
+        }
+        ConcurrentTransactionDataFetcher fetcher = ConcurrentTransactionDataFetcher.of(snapshot, null, metrics);
+        return new TransactionFeedFollower(feed, checkpoint, fetcher, fetcher::appendAll, metrics, snapshot.position());
+    }
+
+    /**
+     * Applies every complete line appended to the feed since the last poll, in batches.
+     * 
+     * @return The number of rows applied.
+     * @throws TransactionParseException If a line is malformed; its line, column and record are
+     *         counted from the offset of the failing batch, which is not applied.
+     * @throws IOException If the feed cannot be read, is shorter than the offset, or a
+     *         checkpoint cannot be written.
+     */
+    public synchronized long poll() throws IOException {
+        if (channel == null) {
+            try {
+                channel = FileChannel.open(feed, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                // the feed has not been created yet
+                return 0;
+            }
+        }
+        long size = channel.size();
+        if (size < offset) {
+            throw new IOException("Feed " + feed + " shrank to " + size + " bytes, below the applied offset " + offset);
+        }
+        long applied = 0;
+        while (offset < size) {
+            // the batch apply latency; how long its bytes waited for this poll is not known here
+            long start = metrics.start();
+            int length = readLines(size);
+            if (length == 0) {
+                // the last line is still being written
+                break;
+            }
+            List<Transaction> batch = new ArrayList<>();
+            try {
+                TransactionJsonReader.read(buffer.array(), 0, length, batch::add);
+            } catch (TransactionParseException e) {
+                throw new TransactionParseException("Malformed row in feed " + feed + " after byte " + offset,
+                        e.getLineNumber(), e.getColumnNumber(), e.getRecordNumber(), e);
+            }
+            if (!batch.isEmpty()) {
+                sink.accept(batch);
+            }
+            offset += length;
+            rows += batch.size();
+            applied += batch.size();
+            metrics.record(Operation.FOLLOW, start, batch.size());
+            if (offset - checkpointOffset >= CHECKPOINT_BYTES) {
+                checkpoint();
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Saves the fetcher of a resumed follower and the offset it was applied up to, replacing the
+     * checkpoint atomically; does nothing if nothing was applied since the last checkpoint or the
+     * follower was opened on a sink.
+     * 
+     * @throws IOException If the checkpoint cannot be written.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (checkpoint == null || offset == checkpointOffset) {
+            return;
+        }
+        // the snapshot replaces the checkpoint atomically once it is on disk
+        fetcher.writeSnapshot(checkpoint, offset);
+        checkpointOffset = offset;
+    }
+
+    /**
+     * Reads the bytes after the offset into the buffer, growing it until it holds at least one
+     * complete line or the end of the feed.
+     * 
+     * @param size The size of the feed.
+     * @return The length of the complete lines at the start of the buffer, 0 if there is none.
+     */
+    private int readLines(long size) throws IOException {
+        buffer.clear();
+        while (true) {
+            int limit = (int) Math.min(buffer.capacity(), size - offset);
+            buffer.limit(limit);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Feed " + feed + " shrank while it was read at offset " + offset);
+                }
+            }
+            byte[] bytes = buffer.array();
+            for (int i = limit - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            if (limit < buffer.capacity()) {
+                return 0;
+            }
+            // a single line longer than the buffer
+            ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    /**
+     * Starts polling the feed from a background thread whenever it changes.
+     * 
+     * @return This follower.
+     * @throws IOException If the feed's directory cannot be watched.
+     * @throws IllegalStateException If the follower was already started or is closed.
+     */
+    public synchronized TransactionFeedFollower start() throws IOException {
+        if (thread != null || closed) {
+            throw new IllegalStateException("The follower of " + feed + " was already started");
+        }
+        Path directory = feed.toAbsolutePath().getParent();
+        watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::follow, "feed-follower-" + feed.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    private void follow() {
+        try {
+            while (!closed) {
+                poll();
+                WatchKey key = watcher.poll(FALLBACK_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // any event in the directory triggers a poll; checking the feed's size is cheap
+                    key.pollEvents();
+                    key.reset();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // closed
+        } catch (IOException | RuntimeException e) {
+            if (!closed) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Returns the offset up to which the feed has been applied.
+     * 
+     * @return The byte offset, just after the newline of the last applied line.
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the fetcher a resumed follower applies the feed to.
+     * 
+     * @return The fetcher, or null if the follower was opened on a sink.
+     */
+    public ConcurrentTransactionDataFetcher fetcher() {
+        return fetcher;
+    }
+
+    /**
+     * Returns the number of rows applied by this follower, not counting the rows of the
+     * checkpoint it was resumed from.
+     * 
+     * @return The applied rows.
+     */
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * Returns why the background thread stopped.
+     * 
+     * @return The exception that stopped it, or null while it follows the feed.
+     */
+    public Exception failure() {
+        return failure;
+    }
+
+    /**
+     * Stops the background thread, waiting for the batch it is applying, checkpoints a resumed
+     * follower and closes the feed.
+     * 
+     * @throws IOException If the checkpoint cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread follower;
+        synchronized (this) {
+            closed = true;
+            follower = thread;
+        }
+        if (watcher != null) {
+            watcher.close();
+        }
+        if (follower != null) {
+            try {
+                follower.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            try {
+                checkpoint();
+            } finally {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+    }
+}
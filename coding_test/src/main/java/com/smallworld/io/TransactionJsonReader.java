@@ -0,0 +1,257 @@
+package com.smallworld.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.smallworld.data.MinorUnits;
+import com.smallworld.data.Transaction;
+import com.smallworld.store.TransactionColumns;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader for transaction exports built on the Jackson streaming parser.
+ * 
+ * Accepts either a single JSON array of transactions (the {@code transactions.json} layout)
+ * or newline-delimited JSON with one transaction object per line. Values the stores cannot hold,
+ * such as amounts that are not a whole number of cents, are rejected with their position. Records are handed to the
+ * sink one at a time as soon as they are parsed, so the reader itself runs in constant memory
+ * regardless of the size of the input.
+ */
+public final class TransactionJsonReader {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private TransactionJsonReader() {
+    }
+
+    /**
+     * Reads every transaction in the given file and passes it to the sink in file order.
+     * 
+     * @param path The JSON array or NDJSON file to read.
+     * @param sink Receives each transaction as soon as it is parsed.
+     * @return The number of transactions read.
+     * @throws TransactionParseException If the input is malformed; carries the failing line and column.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long read(Path path, Consumer<? super Transaction> sink) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in, sink);
+        }
+    }
+
+    /**
+     * Reads every transaction from the given stream and passes it to the sink in input order.
+     * The stream is not closed.
+     * 
+     * @param in The JSON array or NDJSON input.
+     * @param sink Receives each transaction as soon as it is parsed.
+     * @return The number of transactions read.
+     * @throws TransactionParseException If the input is malformed; carries the failing line and column.
+     * @throws IOException If the stream cannot be read.
+     */
+    public static long read(InputStream in, Consumer<? super Transaction> sink) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            return read(parser, sink);
+        }
+    }
+
+    /**
+     * Reads every transaction from the given reader and passes it to the sink in input order.
+     * The reader is not closed.
+     * 
+     * @param in The JSON array or NDJSON input.
+     * @param sink Receives each transaction as soon as it is parsed.
+     * @return The number of transactions read.
+     * @throws TransactionParseException If the input is malformed; carries the failing line and column.
+     * @throws IOException If the reader cannot be read.
+     */
+    public static long read(Reader in, Consumer<? super Transaction> sink) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            return read(parser, sink);
+        }
+    }
+
+    /**
+     * Reads every transaction from a range of bytes and passes it to the sink in input order.
+     * 
+     * @param data The buffer holding the JSON array or NDJSON input, encoded as UTF-8.
+     * @param offset The position of the first byte of the input.
+     * @param length The number of bytes of the input.
+     * @param sink Receives each transaction as soon as it is parsed.
+     * @return The number of transactions read.
+     * @throws TransactionParseException If the input is malformed; carries the failing line and column within the range.
+     * @throws IOException If the input cannot be read.
+     */
+    public static long read(byte[] data, int offset, int length, Consumer<? super Transaction> sink) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(data, offset, length)) {
+            return read(parser, sink);
+        }
+    }
+
+    /**
+     * Reads every transaction in the given file into a list.
+     * 
+     * Convenience for small inputs; large exports should use {@link #read(Path, Consumer)}
+     * so that records are consumed as they are parsed.
+     * 
+     * @param path The JSON array or NDJSON file to read.
+     * @return The transactions in file order.
+     * @throws TransactionParseException If the input is malformed; carries the failing line and column.
+     * @throws IOException If the file cannot be read.
+     */
+    public static List<Transaction> readAll(Path path) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        read(path, transactions::add);
+        return transactions;
+    }
+
+    private static long read(JsonParser parser, Consumer<? super Transaction> sink) throws IOException {
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        long count = 0;
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                // transactions.json layout: one top level array of objects
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        throw error(parser, "Unexpected end of input inside transaction array", count + 1, null);
+                    }
+                    sink.accept(readTransaction(parser, token, count + 1));
+                    count++;
+                }
+                if (parser.nextToken() != null) {
+                    throw error(parser, "Unexpected content after transaction array", count + 1, null);
+                }
+            } else {
+                // NDJSON layout: a sequence of root level objects
+                while (token != null) {
+                    sink.accept(readTransaction(parser, token, count + 1));
+                    count++;
+                    token = parser.nextToken();
+                }
+            }
+        } catch (TransactionParseException e) {
+            throw e;
+        } catch (JsonProcessingException e) {
+            throw error(e.getLocation(), e.getOriginalMessage(), count + 1, e);
+        }
+        return count;
+    }
+
+    private static Transaction readTransaction(JsonParser parser, JsonToken token, long recordNumber) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            throw error(parser, "Expected a transaction object but found " + token, recordNumber, null);
+        }
+        String mtn = null;
+        double amount = 0.0;
+        String senderFullName = null;
+        int senderAge = 0;
+        String beneficiaryFullName = null;
+        int beneficiaryAge = 0;
+        Integer issueId = null;
+        boolean issueSolved = false;
+        String issueMessage = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                // null keeps the field default, e.g. a null issueId for rows without an issue
+                continue;
+            }
+            switch (field) {
+                case "mtn":
+                    // exports write the mtn as a number, other producers as a string
+                    if (value != JsonToken.VALUE_NUMBER_INT) {
+                        expect(parser, field, JsonToken.VALUE_STRING, recordNumber);
+                    }
+                    mtn = parser.getText();
+                    break;
+                case "amount":
+                    if (value != JsonToken.VALUE_NUMBER_INT) {
+                        expect(parser, field, JsonToken.VALUE_NUMBER_FLOAT, recordNumber);
+                    }
+                    amount = parser.getDoubleValue();
+                    if (!MinorUnits.isExact(amount)) {
+                        // stores keep exact minor units; rejecting here reports where the amount is
+                        throw error(parser, "Amount " + parser.getText() + " is not a whole number of minor units", recordNumber, null);
+                    }
+                    break;
+                case "senderFullName":
+                    expect(parser, field, JsonToken.VALUE_STRING, recordNumber);
+                    senderFullName = parser.getText();
+                    break;
+                case "senderAge":
+                    expect(parser, field, JsonToken.VALUE_NUMBER_INT, recordNumber);
+                    senderAge = parser.getIntValue();
+                    break;
+                case "beneficiaryFullName":
+                    expect(parser, field, JsonToken.VALUE_STRING, recordNumber);
+                    beneficiaryFullName = parser.getText();
+                    break;
+                case "beneficiaryAge":
+                    expect(parser, field, JsonToken.VALUE_NUMBER_INT, recordNumber);
+                    beneficiaryAge = parser.getIntValue();
+                    break;
+                case "issueId":
+                    expect(parser, field, JsonToken.VALUE_NUMBER_INT, recordNumber);
+                    issueId = parser.getIntValue();
+                    if (issueId == TransactionColumns.NO_ISSUE) {
+                        throw error(parser, "Issue id " + issueId + " is reserved for transactions without an issue", recordNumber, null);
+                    }
+                    break;
+                case "issueSolved":
+                    if (value != JsonToken.VALUE_TRUE) {
+                        expect(parser, field, JsonToken.VALUE_FALSE, recordNumber);
+                    }
+                    issueSolved = parser.getBooleanValue();
+                    break;
+                case "issueMessage":
+                    expect(parser, field, JsonToken.VALUE_STRING, recordNumber);
+                    issueMessage = parser.getText();
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw error(parser, "Unterminated transaction object", recordNumber, null);
+        }
+        if (mtn == null) {
+            // stores reject rows without an mtn; rejecting here reports where the row is
+            throw error(parser, "Transaction has no mtn", recordNumber, null);
+        }
+        return new Transaction(mtn, amount, senderFullName, senderAge, beneficiaryFullName, beneficiaryAge, issueId, issueSolved, issueMessage);
+    }
+
+    /**
+     * Rejects a value of the wrong type instead of coercing it, so that a string amount does not
+     * silently become 0 and an object under a known field does not desynchronize the parser.
+     */
+    private static void expect(JsonParser parser, String field, JsonToken expected, long recordNumber) throws TransactionParseException {
+        if (parser.currentToken() != expected) {
+            throw error(parser, "Unexpected " + parser.currentToken() + " for field " + field, recordNumber, null);
+        }
+    }
+
+    private static TransactionParseException error(JsonParser parser, String message, long recordNumber, Throwable cause) {
+        return error(parser.getCurrentLocation(), message, recordNumber, cause);
+    }
+
+    private static TransactionParseException error(JsonLocation location, String message, long recordNumber, Throwable cause) {
+        long line = location == null ? -1 : location.getLineNr();
+        int column = location == null ? -1 : location.getColumnNr();
+        return new TransactionParseException(message, line, column, recordNumber, cause);
+    }
+}
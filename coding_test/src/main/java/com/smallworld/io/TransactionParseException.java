@@ -0,0 +1,52 @@
+package com.smallworld.io;
+
+import java.io.IOException;
+
+/**
+ * Signals that a transactions file could not be parsed.
+ * 
+ * Carries the position of the offending token in the input so that broken rows in
+ * multi-GB exports can be located without re-reading the whole file.
+ */
+public class TransactionParseException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long lineNumber;
+    private final int columnNumber;
+    private final long recordNumber;
+
+    public TransactionParseException(String message, long lineNumber, int columnNumber, long recordNumber, Throwable cause) {
+        super(message + " (record " + recordNumber + ", line " + lineNumber + ", column " + columnNumber + ")", cause);
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+        this.recordNumber = recordNumber;
+    }
+
+    /**
+     * Returns the 1-based line of the input where parsing failed, or -1 if unknown.
+     * 
+     * @return The line number of the failure.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the 1-based column of the input where parsing failed, or -1 if unknown.
+     * 
+     * @return The column number of the failure.
+     */
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * Returns the 1-based index of the record that was being read when parsing failed.
+     * 
+     * @return The record number of the failure.
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+}
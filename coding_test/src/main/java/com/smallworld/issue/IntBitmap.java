@@ -0,0 +1,530 @@
+package com.smallworld.issue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of {@code int} values in the layout of a roaring bitmap.
+ * 
+ * Values are partitioned by their high 16 bits. Every partition is a container of the low 16 bits
+ * of its values: a sorted {@code char[]} while it holds at most {@value #MAX_ARRAY_SIZE} values,
+ * and a 65536 bit {@code long[]} bitmap once it holds more. Sparse ids such as issue ids then take
+ * about 2 bytes each and dense ranges 1 bit each, adding or removing a value touches a single
+ * container, and the set operations combine containers pairwise without boxing.
+ * 
+ * Values are visited in ascending signed order, negative values first: partitions are keyed by
+ * the high 16 bits with the sign bit flipped. Set operations return new bitmaps and leave their
+ * operands unchanged. The class is not thread safe.
+ */
+public final class IntBitmap implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Largest number of values kept in a sorted array container. */
+    static final int MAX_ARRAY_SIZE = 4096;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    /**
+     * Creates a bitmap holding the given values.
+     * 
+     * @param values The values to add.
+     * @return A new bitmap.
+     */
+    public static IntBitmap of(int... values) {
+        IntBitmap bitmap = new IntBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Adds a value.
+     * 
+     * @param value The value to add.
+     * @return True if the value was not present.
+     */
+    public boolean add(int value) {
+        char key = highKey(value);
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        Container container = containers[index];
+        int cardinality = container.cardinality();
+        containers[index] = container.add((char) value);
+        return containers[index].cardinality() > cardinality;
+    }
+
+    /**
+     * Removes a value.
+     * 
+     * @param value The value to remove.
+     * @return True if the value was present.
+     */
+    public boolean remove(int value) {
+        int index = Arrays.binarySearch(keys, 0, size, highKey(value));
+        if (index < 0) {
+            return false;
+        }
+        Container container = containers[index];
+        int cardinality = container.cardinality();
+        Container updated = container.remove((char) value);
+        if (updated.cardinality() == 0) {
+            removeContainer(index);
+        } else {
+            containers[index] = updated;
+        }
+        return updated.cardinality() < cardinality;
+    }
+
+    /**
+     * Returns whether a value is present.
+     * 
+     * @param value The value to look up.
+     * @return True if the bitmap holds the value.
+     */
+    public boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, 0, size, highKey(value));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * Returns the number of values.
+     * 
+     * @return The cardinality.
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the values present in this bitmap or in the other one.
+     * 
+     * @param other The other operand.
+     * @return A new bitmap holding the union.
+     */
+    public IntBitmap or(IntBitmap other) {
+        IntBitmap result = new IntBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            int comparison = i == size ? 1 : j == other.size ? -1 : Character.compare(keys[i], other.keys[j]);
+            if (comparison < 0) {
+                result.appendContainer(keys[i], containers[i++].copy());
+            } else if (comparison > 0) {
+                result.appendContainer(other.keys[j], other.containers[j++].copy());
+            } else {
+                result.appendContainer(keys[i], containers[i++].or(other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values present in both this bitmap and the other one.
+     * 
+     * @param other The other operand.
+     * @return A new bitmap holding the intersection.
+     */
+    public IntBitmap and(IntBitmap other) {
+        IntBitmap result = new IntBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            int comparison = Character.compare(keys[i], other.keys[j]);
+            if (comparison < 0) {
+                i++;
+            } else if (comparison > 0) {
+                j++;
+            } else {
+                result.appendContainer(keys[i], containers[i++].and(other.containers[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values present in this bitmap but not in the other one.
+     * 
+     * @param other The values to exclude.
+     * @return A new bitmap holding the difference.
+     */
+    public IntBitmap andNot(IntBitmap other) {
+        IntBitmap result = new IntBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            boolean shared = j < other.size && other.keys[j] == keys[i];
+            result.appendContainer(keys[i], shared ? containers[i].andNot(other.containers[j]) : containers[i].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Returns an independent copy of this bitmap.
+     * 
+     * @return A new bitmap holding the same values.
+     */
+    public IntBitmap copy() {
+        IntBitmap copy = new IntBitmap();
+        for (int i = 0; i < size; i++) {
+            copy.appendContainer(keys[i], containers[i].copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Passes every value to the action, in ascending order.
+     * 
+     * @param action Receives the values.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(highBits(keys[i]), action);
+        }
+    }
+
+    /**
+     * Returns the values in ascending order.
+     * 
+     * @return A new array of the values.
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] next = new int[1];
+        forEach(value -> values[next[0]++] = value);
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IntBitmap)) {
+            return false;
+        }
+        IntBitmap that = (IntBitmap) o;
+        return Arrays.equals(toArray(), that.toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        forEach(value -> joiner.add(Integer.toString(value)));
+        return joiner.toString();
+    }
+
+    /** Flips the sign bit so that unsigned key order is signed value order. */
+    private static char highKey(int value) {
+        return (char) ((value >>> 16) ^ 0x8000);
+    }
+
+    private static int highBits(char key) {
+        return (key ^ 0x8000) << 16;
+    }
+
+    private void appendContainer(char key, Container container) {
+        if (container.cardinality() > 0) {
+            insertContainer(size, key, container);
+        }
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * Low 16 bits of the values sharing one high 16 bit key. Updates return the container that
+     * holds the result, which is a different kind of container once its size crosses
+     * {@link #MAX_ARRAY_SIZE}.
+     */
+    private abstract static class Container implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract Container copy();
+
+        abstract BitmapContainer toBitmap();
+
+        abstract void forEach(int high, IntConsumer action);
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                    && cardinality() + other.cardinality() <= MAX_ARRAY_SIZE) {
+                return ((ArrayContainer) this).merge((ArrayContainer) other);
+            }
+            BitmapContainer result = toBitmap();
+            if (other instanceof BitmapContainer) {
+                long[] words = ((BitmapContainer) other).words;
+                for (int i = 0; i < words.length; i++) {
+                    result.words[i] |= words[i];
+                }
+            } else {
+                other.forEach(0, value -> result.words[value >>> 6] |= 1L << value);
+            }
+            return result.recount();
+        }
+
+        Container and(Container other) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).retain(other, true);
+            }
+            if (other instanceof ArrayContainer) {
+                return ((ArrayContainer) other).retain(this, true);
+            }
+            BitmapContainer result = toBitmap();
+            long[] words = ((BitmapContainer) other).words;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] &= words[i];
+            }
+            return result.recount();
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).retain(other, false);
+            }
+            BitmapContainer result = toBitmap();
+            if (other instanceof BitmapContainer) {
+                long[] words = ((BitmapContainer) other).words;
+                for (int i = 0; i < words.length; i++) {
+                    result.words[i] &= ~words[i];
+                }
+            } else {
+                other.forEach(0, value -> result.words[value >>> 6] &= ~(1L << value));
+            }
+            return result.recount();
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        private static final long serialVersionUID = 1L;
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == MAX_ARRAY_SIZE) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, MAX_ARRAY_SIZE));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        ArrayContainer merge(ArrayContainer other) {
+            char[] merged = new char[cardinality + other.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < other.cardinality) {
+                if (j == other.cardinality || (i < cardinality && values[i] < other.values[j])) {
+                    merged[count++] = values[i++];
+                } else if (i == cardinality || other.values[j] < values[i]) {
+                    merged[count++] = other.values[j++];
+                } else {
+                    merged[count++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(merged, count);
+        }
+
+        ArrayContainer retain(Container other, boolean present) {
+            char[] kept = new char[Math.max(cardinality, 1)];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i]) == present) {
+                    kept[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(kept, count);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] words = new long[1024];
+        private int cardinality;
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long word = words[value >>> 6];
+            long updated = word | (1L << value);
+            if (updated != word) {
+                words[value >>> 6] = updated;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long word = words[value >>> 6];
+            long updated = word & ~(1L << value);
+            if (updated != word) {
+                words[value >>> 6] = updated;
+                cardinality--;
+            }
+            return cardinality > MAX_ARRAY_SIZE ? this : toArray();
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, words.length);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return (BitmapContainer) copy();
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        Container recount() {
+            cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            return cardinality > MAX_ARRAY_SIZE ? this : toArray();
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int[] count = new int[1];
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
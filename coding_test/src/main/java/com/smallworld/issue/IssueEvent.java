@@ -0,0 +1,21 @@
+package com.smallworld.issue;
+
+/**
+ * Change of the state of a compliance issue, applied with {@link IssueStateEngine#apply(IssueEvent)}.
+ */
+public sealed interface IssueEvent permits IssueResolved, IssueOpened {
+
+    /**
+     * Returns the identifier of the issue that changed.
+     * 
+     * @return The issue id.
+     */
+    int issueId();
+
+    /**
+     * Returns whether the issue is solved after the event.
+     * 
+     * @return The new issue state.
+     */
+    boolean solved();
+}
@@ -0,0 +1,14 @@
+package com.smallworld.issue;
+
+/**
+ * Every row of the issue is unsolved again.
+ * 
+ * @param issueId The identifier of the reopened issue.
+ */
+public record IssueOpened(int issueId) implements IssueEvent {
+
+    @Override
+    public boolean solved() {
+        return false;
+    }
+}
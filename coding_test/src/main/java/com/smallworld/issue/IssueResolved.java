@@ -0,0 +1,14 @@
+package com.smallworld.issue;
+
+/**
+ * Every row of the issue has been solved.
+ * 
+ * @param issueId The identifier of the solved issue.
+ */
+public record IssueResolved(int issueId) implements IssueEvent {
+
+    @Override
+    public boolean solved() {
+        return true;
+    }
+}
@@ -0,0 +1,270 @@
+package com.smallworld.issue;
+
+import com.smallworld.store.StringDictionary;
+import com.smallworld.store.TransactionColumns;
+
+import java.util.Arrays;
+
+/**
+ * State of the compliance issues of a {@link TransactionColumns}, kept in {@link IntBitmap}s.
+ * 
+ * An issue is open while at least one of its rows is unsolved and solved otherwise; the ids of
+ * open and solved issues are kept in two bitmaps, and every client has a bitmap of the open
+ * issues of the rows it sends or receives. Rows without an issue
+ * ({@link TransactionColumns#NO_ISSUE}) are not tracked at all.
+ * 
+ * The rows of every issue are chained through an open-addressing table of issue ids, so an
+ * {@link IssueEvent} only visits the rows of its own issue: O(1) for the usual single row issue.
+ * The engine is kept current by calling {@link #add(int)} for every row appended to the store.
+ * It is not thread safe.
+ */
+public final class IssueStateEngine {
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final TransactionColumns store;
+    private final IntBitmap open = new IntBitmap();
+    private final IntBitmap solved = new IntBitmap();
+    private IntBitmap[] openIssuesByClient = new IntBitmap[16];
+
+    // one slot per issue id; rows are stored as row + 1 so that 0 marks an empty slot
+    private int[] slotIssueIds = new int[32];
+    private int[] slotFirstRows = new int[32];
+    private int[] slotLastRows = new int[32];
+    private int[] slotRowCounts = new int[32];
+    private int[] slotOpenRowCounts = new int[32];
+    private int issueCount;
+    // next row of the same issue, as row + 1, or 0 for the last row
+    private int[] nextRows = new int[16];
+
+    private IssueStateEngine(TransactionColumns store) {
+        this.store = store;
+    }
+
+    /**
+     * Builds the issue state of every row currently in the store.
+     * 
+     * @param store The store to track.
+     * @return A new engine.
+     */
+    public static IssueStateEngine build(TransactionColumns store) {
+        IssueStateEngine engine = new IssueStateEngine(store);
+        for (int row = 0, size = store.size(); row < size; row++) {
+            engine.add(row);
+        }
+        return engine;
+    }
+
+    /**
+     * Tracks a row that has been appended to the store.
+     * 
+     * @param row The position of the new row.
+     */
+    public void add(int row) {
+        int issueId = store.issueId(row);
+        if (issueId == TransactionColumns.NO_ISSUE) {
+            return;
+        }
+        if (row >= nextRows.length) {
+            nextRows = Arrays.copyOf(nextRows, Math.max(row + 1, nextRows.length * 2));
+        }
+        int slot = slot(issueId);
+        if (slotFirstRows[slot] == 0) {
+            slotIssueIds[slot] = issueId;
+            slotFirstRows[slot] = row + 1;
+            issueCount++;
+        } else {
+            nextRows[slotLastRows[slot] - 1] = row + 1;
+        }
+        slotLastRows[slot] = row + 1;
+        slotRowCounts[slot]++;
+        if (!store.isIssueSolved(row)) {
+            slotOpenRowCounts[slot]++;
+            open.add(issueId);
+            solved.remove(issueId);
+            addOpenIssue(store.sender(row), issueId);
+            addOpenIssue(store.beneficiary(row), issueId);
+        } else if (slotOpenRowCounts[slot] == 0) {
+            solved.add(issueId);
+        }
+        if (issueCount * 2 > slotIssueIds.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * Applies an issue event: every row of the issue takes the state of the event.
+     * 
+     * The engine only reads the store. The caller writes the new state of the returned rows
+     * to the store, so that row scans agree with the engine.
+     * 
+     * @param event The event to apply.
+     * @return The rows whose solved flag has to change, empty for an unknown issue.
+     */
+    public int[] apply(IssueEvent event) {
+        int issueId = event.issueId();
+        int slot = slot(issueId);
+        if (slotFirstRows[slot] == 0) {
+            return NO_ROWS;
+        }
+        boolean solvedNow = event.solved();
+        int[] changed = new int[slotRowCounts[slot]];
+        int changedCount = 0;
+        for (int next = slotFirstRows[slot]; next != 0; next = nextRows[next - 1]) {
+            int row = next - 1;
+            if (store.isIssueSolved(row) != solvedNow) {
+                changed[changedCount++] = row;
+            }
+            if (solvedNow) {
+                removeOpenIssue(store.sender(row), issueId);
+                removeOpenIssue(store.beneficiary(row), issueId);
+            } else {
+                addOpenIssue(store.sender(row), issueId);
+                addOpenIssue(store.beneficiary(row), issueId);
+            }
+        }
+        if (solvedNow) {
+            slotOpenRowCounts[slot] = 0;
+            open.remove(issueId);
+            solved.add(issueId);
+        } else {
+            slotOpenRowCounts[slot] = slotRowCounts[slot];
+            solved.remove(issueId);
+            open.add(issueId);
+        }
+        return Arrays.copyOf(changed, changedCount);
+    }
+
+    /**
+     * Returns whether the issue has at least one unsolved row.
+     * 
+     * @param issueId The issue id.
+     * @return True if the issue is open.
+     */
+    public boolean isOpen(int issueId) {
+        return open.contains(issueId);
+    }
+
+    /**
+     * Returns the ids of all open issues.
+     * 
+     * @return A copy of the open issue bitmap.
+     */
+    public IntBitmap openIssues() {
+        return open.copy();
+    }
+
+    /**
+     * Returns the ids of all issues whose rows are all solved.
+     * 
+     * @return A copy of the solved issue bitmap.
+     */
+    public IntBitmap solvedIssues() {
+        return solved.copy();
+    }
+
+    /**
+     * Returns the number of open issues.
+     * 
+     * @return The open issue count.
+     */
+    public int openIssueCount() {
+        return open.cardinality();
+    }
+
+    /**
+     * Returns whether the client sends or receives a row of an open issue.
+     * 
+     * @param client The client id.
+     * @return True if the client has an open issue.
+     */
+    public boolean hasOpenIssues(int client) {
+        return isTracked(client) && openIssuesByClient[client] != null && !openIssuesByClient[client].isEmpty();
+    }
+
+    /**
+     * Returns the open issues of the rows the client sends or receives.
+     * 
+     * @param client The client id.
+     * @return A new bitmap of issue ids.
+     */
+    public IntBitmap openIssuesOf(int client) {
+        return isTracked(client) && openIssuesByClient[client] != null ? openIssuesByClient[client].copy() : new IntBitmap();
+    }
+
+    /**
+     * Returns the open issues of the rows any of the clients sends or receives.
+     * 
+     * @param clients The client ids.
+     * @return A new bitmap holding the union of the clients' open issues.
+     */
+    public IntBitmap openIssuesOf(int... clients) {
+        IntBitmap union = new IntBitmap();
+        for (int client : clients) {
+            if (isTracked(client) && openIssuesByClient[client] != null) {
+                union = union.or(openIssuesByClient[client]);
+            }
+        }
+        return union;
+    }
+
+    private boolean isTracked(int client) {
+        return client >= 0 && client < openIssuesByClient.length;
+    }
+
+    private void addOpenIssue(int client, int issueId) {
+        if (client == StringDictionary.NULL_ID) {
+            return;
+        }
+        if (client >= openIssuesByClient.length) {
+            openIssuesByClient = Arrays.copyOf(openIssuesByClient, Math.max(client + 1, openIssuesByClient.length * 2));
+        }
+        if (openIssuesByClient[client] == null) {
+            openIssuesByClient[client] = new IntBitmap();
+        }
+        openIssuesByClient[client].add(issueId);
+    }
+
+    private void removeOpenIssue(int client, int issueId) {
+        if (isTracked(client) && openIssuesByClient[client] != null) {
+            openIssuesByClient[client].remove(issueId);
+        }
+    }
+
+    /**
+     * Finds the slot of the issue id, or the empty slot where it belongs.
+     */
+    private int slot(int issueId) {
+        int mask = slotIssueIds.length - 1;
+        int hash = issueId * 0x9E3779B9;
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (slotFirstRows[slot] != 0 && slotIssueIds[slot] != issueId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int[] issueIds = slotIssueIds;
+        int[] firstRows = slotFirstRows;
+        int[] lastRows = slotLastRows;
+        int[] rowCounts = slotRowCounts;
+        int[] openRowCounts = slotOpenRowCounts;
+        int capacity = issueIds.length * 2;
+        slotIssueIds = new int[capacity];
+        slotFirstRows = new int[capacity];
+        slotLastRows = new int[capacity];
+        slotRowCounts = new int[capacity];
+        slotOpenRowCounts = new int[capacity];
+        for (int old = 0; old < issueIds.length; old++) {
+            if (firstRows[old] != 0) {
+                int slot = slot(issueIds[old]);
+                slotIssueIds[slot] = issueIds[old];
+                slotFirstRows[slot] = firstRows[old];
+                slotLastRows[slot] = lastRows[old];
+                slotRowCounts[slot] = rowCounts[old];
+                slotOpenRowCounts[slot] = openRowCounts[old];
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.smallworld.metrics;
+
+/**
+ * Immutable copy of a {@link LatencyHistogram}.
+ */
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long sum, long min, long max) {
+        this.counts = counts;
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        this.count = count;
+        this.sum = sum;
+        this.min = count == 0 ? 0 : min;
+        this.max = max;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * 
+     * @return The value count.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the smallest recorded value.
+     * 
+     * @return The minimum, or 0 if nothing was recorded.
+     */
+    public long min() {
+        return min;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     * 
+     * @return The maximum, or 0 if nothing was recorded.
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     * 
+     * @return The mean, or 0.0 if nothing was recorded.
+     */
+    public double mean() {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the value below or at which the given percentage of the recorded values fall,
+     * rounded up to the end of its bucket and capped at the maximum.
+     * 
+     * @param percentile The percentile, between 0 and 100.
+     * @return The value at the percentile, or 0 if nothing was recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.highestValueOf(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the 50th percentile, see {@link #valueAtPercentile(double)}.
+     * 
+     * @return The value at the percentile.
+     */
+    public long p50() {
+        return valueAtPercentile(50);
+    }
+
+    /**
+     * Returns the 99th percentile, see {@link #valueAtPercentile(double)}.
+     * 
+     * @return The value at the percentile.
+     */
+    public long p99() {
+        return valueAtPercentile(99);
+    }
+
+    /**
+     * Returns the 99.9th percentile, see {@link #valueAtPercentile(double)}.
+     * 
+     * @return The value at the percentile.
+     */
+    public long p999() {
+        return valueAtPercentile(99.9);
+    }
+}
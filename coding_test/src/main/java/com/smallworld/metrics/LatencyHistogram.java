@@ -0,0 +1,87 @@
+package com.smallworld.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative {@code long} values, such as latencies in nanoseconds, in the
+ * log-linear bucket layout of HdrHistogram.
+ * 
+ * Values below {@value #SUB_BUCKETS} have a bucket each. Above, every power of two is split into
+ * {@code SUB_BUCKETS / 2} equal buckets, so a bucket is never wider than 1/64 of its values and
+ * percentiles are reported with two significant digits over the whole {@code long} range, in a
+ * fixed {@value #BUCKET_COUNT} counters. Recording finds the bucket with a few shifts and
+ * increments its counter atomically: it never locks and never allocates.
+ * 
+ * Threads may record while a {@link #snapshot()} is taken; the snapshot then holds some of the
+ * concurrent values and not others.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_BITS = SUB_BUCKET_BITS - 1;
+
+    /** Number of counters; the largest shift of a value is 63 - {@link #SUB_BUCKET_BITS}. */
+    static final int BUCKET_COUNT = ((63 - SUB_BUCKET_BITS) << HALF_SUB_BUCKET_BITS) + SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value. Negative values, such as those of a clock going backwards, count as 0.
+     * 
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        long recorded = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(recorded));
+        sum.addAndGet(recorded);
+        // the extremes rarely change, so they are only written when they do
+        for (long current = min.get(); recorded < current && !min.compareAndSet(current, recorded); current = min.get()) {
+        }
+        for (long current = max.get(); recorded > current && !max.compareAndSet(current, recorded); current = max.get()) {
+        }
+    }
+
+    /**
+     * Returns a copy of the recorded values.
+     * 
+     * @return A new snapshot.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            copy[bucket] = counts.get(bucket);
+        }
+        return new HistogramSnapshot(copy, sum.get(), min.get(), max.get());
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, 0);
+        }
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+
+    static int bucketOf(long value) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << HALF_SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the highest value counted by a bucket.
+     */
+    static long highestValueOf(int bucket) {
+        int shift = Math.max(0, (bucket >> HALF_SUB_BUCKET_BITS) - 1);
+        long top = bucket - ((long) shift << HALF_SUB_BUCKET_BITS);
+        return ((top + 1) << shift) - 1;
+    }
+}
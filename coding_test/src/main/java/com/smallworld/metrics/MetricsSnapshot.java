@@ -0,0 +1,109 @@
+package com.smallworld.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of a {@link QueryMetrics}, with plain text and JSON dumps of the operations
+ * that have been called.
+ */
+public final class MetricsSnapshot {
+
+    private final Map<Operation, OperationSnapshot> operations;
+
+    MetricsSnapshot(Map<Operation, OperationSnapshot> operations) {
+        this.operations = Collections.unmodifiableMap(operations);
+    }
+
+    /**
+     * Returns the metrics of an operation.
+     * 
+     * @param operation The operation.
+     * @return The metrics of the operation.
+     */
+    public OperationSnapshot get(Operation operation) {
+        return operations.get(operation);
+    }
+
+    /**
+     * Returns the metrics of the operations that have been called at least once.
+     * 
+     * @return The called operations in {@link Operation} order.
+     */
+    public List<OperationSnapshot> calledOperations() {
+        List<OperationSnapshot> called = new ArrayList<>();
+        for (OperationSnapshot operation : operations.values()) {
+            if (operation.calls() > 0) {
+                called.add(operation);
+            }
+        }
+        return called;
+    }
+
+    /**
+     * Formats the called operations as a table, one line per operation, latencies in
+     * microseconds.
+     * 
+     * @return The table.
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder(String.format("%-34s %10s %14s %14s %10s %10s %10s %10s%n",
+                "operation", "calls", "rows", "allocated", "p50 us", "p99 us", "p999 us", "max us"));
+        for (OperationSnapshot operation : calledOperations()) {
+            HistogramSnapshot latency = operation.latencyNanos();
+            text.append(String.format("%-34s %10d %14d %14d %10.1f %10.1f %10.1f %10.1f%n", operation.operation().methodName(),
+                    operation.calls(), operation.rowsScanned(), operation.allocatedBytes(), latency.p50() / 1e3,
+                    latency.p99() / 1e3, latency.p999() / 1e3, latency.max() / 1e3));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Formats the called operations as a JSON object keyed by method name, latencies in
+     * nanoseconds.
+     * 
+     * @return The JSON document.
+     */
+    public String toJson() {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator json = new JsonFactory().createGenerator(out)) {
+            json.setPrettyPrinter(new DefaultPrettyPrinter());
+            json.writeStartObject();
+            for (OperationSnapshot operation : calledOperations()) {
+                HistogramSnapshot latency = operation.latencyNanos();
+                json.writeObjectFieldStart(operation.operation().methodName());
+                json.writeNumberField("calls", operation.calls());
+                json.writeNumberField("rowsScanned", operation.rowsScanned());
+                json.writeNumberField("allocatedBytes", operation.allocatedBytes());
+                json.writeObjectFieldStart("latencyNanos");
+                json.writeNumberField("min", latency.min());
+                json.writeNumberField("mean", latency.mean());
+                json.writeNumberField("p50", latency.p50());
+                json.writeNumberField("p99", latency.p99());
+                json.writeNumberField("p999", latency.p999());
+                json.writeNumberField("max", latency.max());
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+            json.writeEndObject();
+        } catch (IOException e) {
+            // a StringWriter does not fail
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
@@ -0,0 +1,66 @@
+package com.smallworld.metrics;
+
+/**
+ * Operations of a {@link com.smallworld.TransactionDataFetcher} recorded by {@link QueryMetrics}.
+ */
+public enum Operation {
+
+    /** Loading a fetcher from a JSON array or NDJSON file; its rows are the rows loaded. */
+    FROM_JSON("fromJson"),
+
+    GET_TOTAL_TRANSACTION_AMOUNT("getTotalTransactionAmount"),
+
+    GET_TOTAL_TRANSACTION_AMOUNT_SENT_BY("getTotalTransactionAmountSentBy"),
+
+    GET_MAX_TRANSACTION_AMOUNT("getMaxTransactionAmount"),
+
+    COUNT_TRANSACTIONS_ABOVE("countTransactionsAbove"),
+
+    COUNT_UNIQUE_CLIENTS("countUniqueClients"),
+
+    HAS_OPEN_COMPLIANCE_ISSUES("hasOpenComplianceIssues"),
+
+    GET_TRANSACTIONS_BY_BENEFICIARY_NAME("getTransactionsByBeneficiaryName"),
+
+    GET_UNSOLVED_ISSUE_IDS("getUnsolvedIssueIds"),
+
+    GET_UNSOLVED_ISSUES("getUnsolvedIssues"),
+
+    GET_OPEN_ISSUES("getOpenIssues"),
+
+    GET_ALL_SOLVED_ISSUE_MESSAGES("getAllSolvedIssueMessages"),
+
+    /** Also records {@code getTop3TransactionsByAmount}. */
+    GET_TOP_TRANSACTIONS_BY_AMOUNT("getTopTransactionsByAmount"),
+
+    GET_TOP_SENDERS("getTopSenders"),
+
+    GET_TOP_SENDER("getTopSender"),
+
+    REPORT("report"),
+
+    /** Runs of {@link com.smallworld.query.TransactionQuery}s; its rows are the rows the engine visited. */
+    QUERY("query"),
+
+    /**
+     * Batches applied by a {@link com.smallworld.io.TransactionFeedFollower}; its latency is the
+     * time taken to read, parse and apply the batch once a poll found its bytes, without the wait
+     * for the poll or any checkpoint, and its rows are the rows applied.
+     */
+    FOLLOW("follow");
+
+    private final String methodName;
+
+    Operation(String methodName) {
+        this.methodName = methodName;
+    }
+
+    /**
+     * Returns the name of the fetcher method, used as the operation's name in dumps.
+     * 
+     * @return The method name.
+     */
+    public String methodName() {
+        return methodName;
+    }
+}
@@ -0,0 +1,13 @@
+package com.smallworld.metrics;
+
+/**
+ * Metrics of one {@link Operation} at the time of a {@link QueryMetrics#snapshot()}.
+ * 
+ * @param operation The operation.
+ * @param calls The number of recorded calls.
+ * @param rowsScanned The number of rows the calls scanned.
+ * @param allocatedBytes The bytes the calls allocated, 0 for operations whose allocations are not measured.
+ * @param latencyNanos The latencies of the calls in nanoseconds.
+ */
+public record OperationSnapshot(Operation operation, long calls, long rowsScanned, long allocatedBytes, HistogramSnapshot latencyNanos) {
+}
@@ -0,0 +1,160 @@
+package com.smallworld.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Call counts, rows scanned and latency histograms of the {@link Operation}s of fetchers.
+ * 
+ * An operation is timed with {@link #start()} before it runs and {@link #record(Operation, long, long)}
+ * after. Recording only updates atomic counters and a {@link LatencyHistogram}, so it neither
+ * locks nor allocates. While the metrics are disabled {@link #start()} does not even read the
+ * clock and recording returns at once, which leaves a field read and a branch per operation.
+ * 
+ * Fetchers record into the {@link #global()} metrics unless they are given their own. The
+ * global metrics are enabled by the {@code smallworld.metrics} system property or by
+ * {@link #setEnabled(boolean)}, and can be read at any time with {@link #snapshot()}.
+ */
+public final class QueryMetrics {
+
+    /** Start time returned by {@link #start()} while the metrics are disabled. */
+    public static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static final QueryMetrics GLOBAL = new QueryMetrics(Boolean.getBoolean("smallworld.metrics"));
+
+    private static final com.sun.management.ThreadMXBean ALLOCATION_COUNTER = allocationCounter();
+
+    private final Recorder[] recorders = new Recorder[Operation.values().length];
+    private volatile boolean enabled;
+
+    public QueryMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new Recorder();
+        }
+    }
+
+    /**
+     * Returns the metrics shared by every fetcher that is not given its own.
+     * 
+     * @return The global metrics.
+     */
+    public static QueryMetrics global() {
+        return GLOBAL;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. Operations already started when recording is turned on are not
+     * recorded.
+     * 
+     * @param enabled True to record operations.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts timing an operation.
+     * 
+     * @return The start time to pass to {@link #record(Operation, long, long)}, or {@link #NOT_STARTED} while disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * Returns the number of bytes the current thread has allocated so far, to measure what an
+     * operation allocates. Costs a call into the JVM, so it is meant for bulk operations such as
+     * loads rather than queries.
+     * 
+     * @return The allocated bytes, or {@link #NOT_STARTED} while disabled or if the JVM does not count allocations.
+     */
+    public long allocatedBytes() {
+        return enabled && ALLOCATION_COUNTER != null ? ALLOCATION_COUNTER.getCurrentThreadAllocatedBytes() : NOT_STARTED;
+    }
+
+    /**
+     * Records a finished operation.
+     * 
+     * @param operation The operation.
+     * @param start The value {@link #start()} returned when the operation started.
+     * @param rows The number of rows the operation scanned.
+     */
+    public void record(Operation operation, long start, long rows) {
+        record(operation, start, rows, NOT_STARTED);
+    }
+
+    /**
+     * Records a finished operation together with the bytes it allocated.
+     * 
+     * @param operation The operation.
+     * @param start The value {@link #start()} returned when the operation started.
+     * @param rows The number of rows the operation scanned.
+     * @param allocatedBytesAtStart The value {@link #allocatedBytes()} returned when the operation started.
+     */
+    public void record(Operation operation, long start, long rows, long allocatedBytesAtStart) {
+        if (start == NOT_STARTED) {
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        Recorder recorder = recorders[operation.ordinal()];
+        if (rows != 0) {
+            recorder.rows.addAndGet(rows);
+        }
+        if (allocatedBytesAtStart != NOT_STARTED) {
+            recorder.allocatedBytes.addAndGet(ALLOCATION_COUNTER.getCurrentThreadAllocatedBytes() - allocatedBytesAtStart);
+        }
+        recorder.latency.record(latency);
+    }
+
+    /**
+     * Returns a copy of the metrics of every operation.
+     * 
+     * @return A new snapshot.
+     */
+    public MetricsSnapshot snapshot() {
+        Map<Operation, OperationSnapshot> operations = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            Recorder recorder = recorders[operation.ordinal()];
+            HistogramSnapshot latency = recorder.latency.snapshot();
+            operations.put(operation, new OperationSnapshot(operation, latency.count(), recorder.rows.get(),
+                    recorder.allocatedBytes.get(), latency));
+        }
+        return new MetricsSnapshot(operations);
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        for (Recorder recorder : recorders) {
+            recorder.rows.set(0);
+            recorder.allocatedBytes.set(0);
+            recorder.latency.reset();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            counter.setThreadAllocatedMemoryEnabled(true);
+            return counter;
+        }
+        return null;
+    }
+
+    private static final class Recorder {
+
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
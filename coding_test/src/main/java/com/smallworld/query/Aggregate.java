@@ -0,0 +1,35 @@
+package com.smallworld.query;
+
+/**
+ * Aggregates that can be selected for every group of a {@link TransactionQuery}.
+ * 
+ * Unless the query counts every row, amounts and counts take each mtn once, like the totals of
+ * {@code TransactionDataFetcher}: a transaction with several issues is aggregated from its first
+ * row, or from the first of its rows in the accepted states when the filter selects issue states.
+ */
+public enum Aggregate {
+
+    /** Sum of the amounts. */
+    SUM,
+
+    /** Number of transactions, or of rows when every row is counted. */
+    COUNT,
+
+    /** Highest amount. */
+    MAX,
+
+    /** Lowest amount. */
+    MIN,
+
+    /** Number of distinct sender names, a missing name counting as one. */
+    DISTINCT_SENDERS,
+
+    /** Number of distinct beneficiary names, a missing name counting as one. */
+    DISTINCT_BENEFICIARIES,
+
+    /** Number of distinct names among senders and beneficiaries, a missing name counting as one. */
+    DISTINCT_CLIENTS,
+
+    /** Transactions with the highest amounts, ties keeping the earlier row. */
+    TOP_TRANSACTIONS
+}
@@ -0,0 +1,321 @@
+package com.smallworld.query;
+
+import com.smallworld.data.MinorUnits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable row filter of a {@link TransactionQuery}: a conjunction of constraints on the
+ * amount, both ages, both names and the issue state of a row.
+ * 
+ * Filters are composed with {@link #and(Filter)}, which intersects the constraints of both
+ * sides field by field. A filter is therefore always one normalized constraint per field, which
+ * the {@link QueryEngine} compiles into primitive comparisons on the columns, and never a chain
+ * of predicates. Disjunctions are expressed within a field by passing several names or issue
+ * states to one factory.
+ * 
+ * Amounts are compared exactly in {@link MinorUnits}; amount bounds may have any number of
+ * decimal places.
+ */
+public final class Filter {
+
+    private static final Filter ALL = new Filter(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE,
+            Integer.MIN_VALUE, Integer.MAX_VALUE, null, null, Collections.emptyList(), EnumSet.allOf(IssueState.class));
+
+    private final long minAmountUnits;
+    private final long maxAmountUnits;
+    private final int minSenderAge;
+    private final int maxSenderAge;
+    private final int minBeneficiaryAge;
+    private final int maxBeneficiaryAge;
+    private final Set<String> senders;
+    private final Set<String> beneficiaries;
+    private final List<Set<String>> clients;
+    private final EnumSet<IssueState> issueStates;
+
+    private Filter(long minAmountUnits, long maxAmountUnits, int minSenderAge, int maxSenderAge,
+            int minBeneficiaryAge, int maxBeneficiaryAge, Set<String> senders, Set<String> beneficiaries,
+            List<Set<String>> clients, EnumSet<IssueState> issueStates) {
+        this.minAmountUnits = minAmountUnits;
+        this.maxAmountUnits = maxAmountUnits;
+        this.minSenderAge = minSenderAge;
+        this.maxSenderAge = maxSenderAge;
+        this.minBeneficiaryAge = minBeneficiaryAge;
+        this.maxBeneficiaryAge = maxBeneficiaryAge;
+        this.senders = senders;
+        this.beneficiaries = beneficiaries;
+        this.clients = clients;
+        this.issueStates = issueStates;
+    }
+
+    /**
+     * Returns the filter matching every row.
+     * 
+     * @return The empty conjunction.
+     */
+    public static Filter all() {
+        return ALL;
+    }
+
+    /**
+     * Matches the rows whose amount is strictly above the given amount.
+     * 
+     * @param amount The exclusive lower bound.
+     * @return A new filter.
+     * @throws IllegalArgumentException If the amount is NaN.
+     */
+    public static Filter amountAbove(double amount) {
+        long floor = MinorUnits.floor(amount);
+        return floor == Long.MAX_VALUE ? amountUnits(Long.MAX_VALUE, Long.MIN_VALUE) : amountUnits(floor + 1, Long.MAX_VALUE);
+    }
+
+    /**
+     * Matches the rows whose amount is at least the given amount.
+     * 
+     * @param amount The inclusive lower bound.
+     * @return A new filter.
+     * @throws IllegalArgumentException If the amount is NaN.
+     */
+    public static Filter amountAtLeast(double amount) {
+        // an amount between two minor units is exceeded by exactly the units above its floor
+        return MinorUnits.isExact(amount) ? amountUnits(MinorUnits.of(amount), Long.MAX_VALUE) : amountAbove(amount);
+    }
+
+    /**
+     * Matches the rows whose amount is strictly below the given amount.
+     * 
+     * @param amount The exclusive upper bound.
+     * @return A new filter.
+     * @throws IllegalArgumentException If the amount is NaN.
+     */
+    public static Filter amountBelow(double amount) {
+        if (!MinorUnits.isExact(amount)) {
+            return amountAtMost(amount);
+        }
+        return amountUnits(Long.MIN_VALUE, MinorUnits.of(amount) - 1);
+    }
+
+    /**
+     * Matches the rows whose amount is at most the given amount.
+     * 
+     * @param amount The inclusive upper bound.
+     * @return A new filter.
+     * @throws IllegalArgumentException If the amount is NaN.
+     */
+    public static Filter amountAtMost(double amount) {
+        return amountUnits(Long.MIN_VALUE, MinorUnits.floor(amount));
+    }
+
+    /**
+     * Matches the rows whose amount lies in the given range, both bounds included.
+     * 
+     * @param min The inclusive lower bound.
+     * @param max The inclusive upper bound.
+     * @return A new filter, matching nothing if min is above max.
+     * @throws IllegalArgumentException If a bound is NaN.
+     */
+    public static Filter amountBetween(double min, double max) {
+        return amountAtLeast(min).and(amountAtMost(max));
+    }
+
+    private static Filter amountUnits(long min, long max) {
+        return new Filter(min, max, ALL.minSenderAge, ALL.maxSenderAge, ALL.minBeneficiaryAge, ALL.maxBeneficiaryAge,
+                null, null, ALL.clients, ALL.issueStates);
+    }
+
+    /**
+     * Matches the rows whose sender age lies in the given range, both bounds included.
+     * 
+     * @param min The lowest age.
+     * @param max The highest age.
+     * @return A new filter, matching nothing if min is above max.
+     */
+    public static Filter senderAgeBetween(int min, int max) {
+        return new Filter(ALL.minAmountUnits, ALL.maxAmountUnits, min, max, ALL.minBeneficiaryAge, ALL.maxBeneficiaryAge,
+                null, null, ALL.clients, ALL.issueStates);
+    }
+
+    /**
+     * Matches the rows whose beneficiary age lies in the given range, both bounds included.
+     * 
+     * @param min The lowest age.
+     * @param max The highest age.
+     * @return A new filter, matching nothing if min is above max.
+     */
+    public static Filter beneficiaryAgeBetween(int min, int max) {
+        return new Filter(ALL.minAmountUnits, ALL.maxAmountUnits, ALL.minSenderAge, ALL.maxSenderAge, min, max,
+                null, null, ALL.clients, ALL.issueStates);
+    }
+
+    /**
+     * Matches the rows sent by any of the given clients. The engine reads the rows of these
+     * clients from the client index instead of scanning every row.
+     * 
+     * @param senderFullNames The full names of the senders; may contain null.
+     * @return A new filter.
+     */
+    public static Filter sender(String... senderFullNames) {
+        return new Filter(ALL.minAmountUnits, ALL.maxAmountUnits, ALL.minSenderAge, ALL.maxSenderAge,
+                ALL.minBeneficiaryAge, ALL.maxBeneficiaryAge, names(senderFullNames), null, ALL.clients, ALL.issueStates);
+    }
+
+    /**
+     * Matches the rows received by any of the given clients. The engine reads the rows of these
+     * clients from the client index instead of scanning every row.
+     * 
+     * @param beneficiaryFullNames The full names of the beneficiaries; may contain null.
+     * @return A new filter.
+     */
+    public static Filter beneficiary(String... beneficiaryFullNames) {
+        return new Filter(ALL.minAmountUnits, ALL.maxAmountUnits, ALL.minSenderAge, ALL.maxSenderAge,
+                ALL.minBeneficiaryAge, ALL.maxBeneficiaryAge, null, names(beneficiaryFullNames), ALL.clients, ALL.issueStates);
+    }
+
+    /**
+     * Matches the rows sent or received by any of the given clients.
+     * 
+     * @param clientFullNames The full names of the clients; may contain null.
+     * @return A new filter.
+     */
+    public static Filter client(String... clientFullNames) {
+        return new Filter(ALL.minAmountUnits, ALL.maxAmountUnits, ALL.minSenderAge, ALL.maxSenderAge,
+                ALL.minBeneficiaryAge, ALL.maxBeneficiaryAge, null, null, List.of(names(clientFullNames)), ALL.issueStates);
+    }
+
+    /**
+     * Matches the rows whose issue is in any of the given states.
+     * 
+     * @param states The accepted issue states.
+     * @return A new filter.
+     */
+    public static Filter issueState(IssueState... states) {
+        EnumSet<IssueState> issueStates = EnumSet.noneOf(IssueState.class);
+        issueStates.addAll(Arrays.asList(states));
+        return new Filter(ALL.minAmountUnits, ALL.maxAmountUnits, ALL.minSenderAge, ALL.maxSenderAge,
+                ALL.minBeneficiaryAge, ALL.maxBeneficiaryAge, null, null, ALL.clients, issueStates);
+    }
+
+    /**
+     * Returns the filter matching the rows matched by both this filter and the other one.
+     * 
+     * @param other The filter to intersect with.
+     * @return A new filter holding the intersection of the constraints of both filters.
+     */
+    public Filter and(Filter other) {
+        List<Set<String>> bothClients = new ArrayList<>(clients);
+        bothClients.addAll(other.clients);
+        EnumSet<IssueState> bothIssueStates = EnumSet.copyOf(issueStates);
+        bothIssueStates.retainAll(other.issueStates);
+        return new Filter(Math.max(minAmountUnits, other.minAmountUnits), Math.min(maxAmountUnits, other.maxAmountUnits),
+                Math.max(minSenderAge, other.minSenderAge), Math.min(maxSenderAge, other.maxSenderAge),
+                Math.max(minBeneficiaryAge, other.minBeneficiaryAge), Math.min(maxBeneficiaryAge, other.maxBeneficiaryAge),
+                intersect(senders, other.senders), intersect(beneficiaries, other.beneficiaries),
+                Collections.unmodifiableList(bothClients), bothIssueStates);
+    }
+
+    long minAmountUnits() {
+        return minAmountUnits;
+    }
+
+    long maxAmountUnits() {
+        return maxAmountUnits;
+    }
+
+    int minSenderAge() {
+        return minSenderAge;
+    }
+
+    int maxSenderAge() {
+        return maxSenderAge;
+    }
+
+    int minBeneficiaryAge() {
+        return minBeneficiaryAge;
+    }
+
+    int maxBeneficiaryAge() {
+        return maxBeneficiaryAge;
+    }
+
+    /**
+     * Returns the accepted sender names.
+     * 
+     * @return The names, or null if any sender is accepted.
+     */
+    Set<String> senders() {
+        return senders;
+    }
+
+    /**
+     * Returns the accepted beneficiary names.
+     * 
+     * @return The names, or null if any beneficiary is accepted.
+     */
+    Set<String> beneficiaries() {
+        return beneficiaries;
+    }
+
+    /**
+     * Returns the client constraints; a row must send or receive for a name of every set.
+     * 
+     * @return The name sets, empty if any client is accepted.
+     */
+    List<Set<String>> clients() {
+        return clients;
+    }
+
+    EnumSet<IssueState> issueStates() {
+        return EnumSet.copyOf(issueStates);
+    }
+
+    private static Set<String> names(String... names) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(names)));
+    }
+
+    private static Set<String> intersect(Set<String> names, Set<String> otherNames) {
+        if (names == null || otherNames == null) {
+            return names == null ? otherNames : names;
+        }
+        Set<String> both = new HashSet<>(names);
+        both.retainAll(otherNames);
+        return Collections.unmodifiableSet(both);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Filter that = (Filter) o;
+        return minAmountUnits == that.minAmountUnits && maxAmountUnits == that.maxAmountUnits
+                && minSenderAge == that.minSenderAge && maxSenderAge == that.maxSenderAge
+                && minBeneficiaryAge == that.minBeneficiaryAge && maxBeneficiaryAge == that.maxBeneficiaryAge
+                && Objects.equals(senders, that.senders) && Objects.equals(beneficiaries, that.beneficiaries)
+                && clients.equals(that.clients) && issueStates.equals(that.issueStates);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minAmountUnits, maxAmountUnits, minSenderAge, maxSenderAge, minBeneficiaryAge,
+                maxBeneficiaryAge, senders, beneficiaries, clients, issueStates);
+    }
+
+    @Override
+    public String toString() {
+        return "Filter{" +
+                "amountUnits=[" + minAmountUnits + ", " + maxAmountUnits + "]" +
+                ", senderAge=[" + minSenderAge + ", " + maxSenderAge + "]" +
+                ", beneficiaryAge=[" + minBeneficiaryAge + ", " + maxBeneficiaryAge + "]" +
+                ", senders=" + senders +
+                ", beneficiaries=" + beneficiaries +
+                ", clients=" + clients +
+                ", issueStates=" + issueStates +
+                '}';
+    }
+}
@@ -0,0 +1,142 @@
+package com.smallworld.query;
+
+import com.smallworld.store.TransactionColumns;
+
+import java.util.Objects;
+
+/**
+ * Immutable group-by clause of a {@link TransactionQuery}.
+ * 
+ * Rows are grouped by sender name, by beneficiary name or by age buckets of a fixed width. Group
+ * keys are the client names, null for a missing name, or bucket labels such as {@code "20-29"}
+ * ({@code "22"} for buckets of width 1).
+ */
+public final class Grouping {
+
+    enum Kind {
+        NONE, SENDER, BENEFICIARY, SENDER_AGE, BENEFICIARY_AGE
+    }
+
+    private static final Grouping NONE = new Grouping(Kind.NONE, 1);
+    private static final Grouping SENDER = new Grouping(Kind.SENDER, 1);
+    private static final Grouping BENEFICIARY = new Grouping(Kind.BENEFICIARY, 1);
+
+    private final Kind kind;
+    private final int bucketWidth;
+
+    private Grouping(Kind kind, int bucketWidth) {
+        this.kind = kind;
+        this.bucketWidth = bucketWidth;
+    }
+
+    /**
+     * Aggregates every matching row into a single group.
+     * 
+     * @return The grouping of an ungrouped query.
+     */
+    public static Grouping none() {
+        return NONE;
+    }
+
+    public static Grouping sender() {
+        return SENDER;
+    }
+
+    public static Grouping beneficiary() {
+        return BENEFICIARY;
+    }
+
+    /**
+     * Groups rows by sender age, in buckets of the given width starting at age 0.
+     * 
+     * @param bucketWidth The number of ages in a bucket.
+     * @return A new grouping.
+     */
+    public static Grouping senderAge(int bucketWidth) {
+        return new Grouping(Kind.SENDER_AGE, checkWidth(bucketWidth));
+    }
+
+    /**
+     * Groups rows by beneficiary age, in buckets of the given width starting at age 0.
+     * 
+     * @param bucketWidth The number of ages in a bucket.
+     * @return A new grouping.
+     */
+    public static Grouping beneficiaryAge(int bucketWidth) {
+        return new Grouping(Kind.BENEFICIARY_AGE, checkWidth(bucketWidth));
+    }
+
+    private static int checkWidth(int bucketWidth) {
+        if (bucketWidth <= 0) {
+            throw new IllegalArgumentException("bucketWidth must be positive: " + bucketWidth);
+        }
+        return bucketWidth;
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    /**
+     * Returns the number identifying the group of a row: the client id, which is
+     * {@link com.smallworld.store.StringDictionary#NULL_ID} for a missing name, or the bucket
+     * index, and 0 without grouping.
+     * 
+     * @param store The rows.
+     * @param row The row position.
+     * @return The group number.
+     */
+    int groupOf(TransactionColumns store, int row) {
+        switch (kind) {
+            case SENDER:
+                return store.sender(row);
+            case BENEFICIARY:
+                return store.beneficiary(row);
+            case SENDER_AGE:
+                return Math.floorDiv(store.senderAge(row), bucketWidth);
+            case BENEFICIARY_AGE:
+                return Math.floorDiv(store.beneficiaryAge(row), bucketWidth);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns the key of a group.
+     * 
+     * @param store The rows, resolving client ids.
+     * @param group The group number returned by {@link #groupOf(TransactionColumns, int)}.
+     * @return The group key.
+     */
+    String keyOf(TransactionColumns store, int group) {
+        switch (kind) {
+            case SENDER:
+            case BENEFICIARY:
+                return store.clients().get(group);
+            case SENDER_AGE:
+            case BENEFICIARY_AGE:
+                long from = (long) group * bucketWidth;
+                return bucketWidth == 1 ? Long.toString(from) : from + "-" + (from + bucketWidth - 1);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Grouping that = (Grouping) o;
+        return kind == that.kind && bucketWidth == that.bucketWidth;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, bucketWidth);
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.SENDER_AGE || kind == Kind.BENEFICIARY_AGE ? kind + "/" + bucketWidth : kind.toString();
+    }
+}
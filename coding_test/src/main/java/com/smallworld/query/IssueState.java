@@ -0,0 +1,32 @@
+package com.smallworld.query;
+
+import com.smallworld.store.TransactionColumns;
+
+/**
+ * Compliance issue state of a single transaction row, as matched by {@link Filter#issueState(IssueState...)}.
+ */
+public enum IssueState {
+
+    /** The row's transaction has no issue. */
+    NONE,
+
+    /** The row's issue has not been solved. */
+    OPEN,
+
+    /** The row's issue has been solved. */
+    SOLVED;
+
+    /**
+     * Returns the issue state of a row.
+     * 
+     * @param store The rows.
+     * @param row The row position.
+     * @return The state of the row's issue.
+     */
+    public static IssueState of(TransactionColumns store, int row) {
+        if (store.issueId(row) == TransactionColumns.NO_ISSUE) {
+            return NONE;
+        }
+        return store.isIssueSolved(row) ? SOLVED : OPEN;
+    }
+}
@@ -0,0 +1,516 @@
+package com.smallworld.query;
+
+import com.smallworld.aggregate.AmountColumn;
+import com.smallworld.aggregate.TopK;
+import com.smallworld.aggregate.TopRows;
+import com.smallworld.data.Transaction;
+import com.smallworld.store.ClientIndex;
+import com.smallworld.store.StringDictionary;
+import com.smallworld.store.TransactionColumns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Runs {@link TransactionQuery}s over the rows of a {@link TransactionColumns}.
+ * 
+ * A query is compiled into a plan before any row is read: the {@link Filter} becomes a handful of
+ * primitive bounds and client id bitsets, and names that are not in the client dictionary turn
+ * the plan into one that matches nothing. Every matching row is then folded into the
+ * accumulators of its group in a single fused pass, only updating the selected aggregates, like
+ * {@link com.smallworld.report.TransactionReport} does for its fixed metrics.
+ * 
+ * When the filter names senders, beneficiaries or clients, the pass does not visit every row. The
+ * plan reads the posting lists of the {@link ClientIndex} for the name predicate with the fewest
+ * postings, merges them into row order and only evaluates the filter on those rows, so a query
+ * about one client costs O(rows of the client) instead of O(n). An unfiltered, ungrouped query of
+ * sums, counts and extremes skips the rows altogether and runs the vectorized
+ * {@link com.smallworld.aggregate.AmountKernels} over the transaction amounts.
+ * 
+ * The engine reads the store and the index as they are when a query runs; like them, it is not
+ * thread safe.
+ */
+public final class QueryEngine {
+
+    private static final Set<Aggregate> AMOUNT_AGGREGATES = EnumSet.of(Aggregate.SUM, Aggregate.COUNT, Aggregate.MAX, Aggregate.MIN);
+
+    private final TransactionColumns store;
+    private final ClientIndex clientIndex;
+    private final AmountColumn amounts;
+
+    /**
+     * Creates an engine over the given rows.
+     * 
+     * @param store The rows to query.
+     * @param clientIndex The index of the same rows, or null to always scan every row.
+     */
+    public QueryEngine(TransactionColumns store, ClientIndex clientIndex) {
+        this.store = store;
+        this.clientIndex = clientIndex;
+        this.amounts = new AmountColumn(store);
+    }
+
+    /**
+     * Runs a query.
+     * 
+     * @param query The query.
+     * @return The aggregates of every group with at least one matching row.
+     */
+    public QueryResult execute(TransactionQuery query) {
+        Plan plan = new Plan(store, query.filter());
+        if (plan.matchesAll && query.grouping().kind() == Grouping.Kind.NONE && !query.isEveryRow()
+                && AMOUNT_AGGREGATES.containsAll(query.aggregates())) {
+            return amountAggregates(query);
+        }
+        Scan scan = new Scan(store, query, plan.checkIssueState);
+        int[] rows = plan.empty ? new int[0] : plan.indexedRows(store, clientIndex);
+        if (rows == null) {
+            boolean all = plan.matchesAll;
+            for (int row = 0, size = store.size(); row < size; row++) {
+                if (all || plan.matches(store, row)) {
+                    scan.add(row);
+                }
+            }
+            return scan.result(store.size(), false);
+        }
+        for (int row : rows) {
+            if (plan.matches(store, row)) {
+                scan.add(row);
+            }
+        }
+        return scan.result(rows.length, !plan.empty);
+    }
+
+    /**
+     * Answers an unfiltered, ungrouped query of amount aggregates from the {@link AmountColumn},
+     * whose kernels only read the amount of every transaction instead of visiting every row.
+     */
+    private QueryResult amountAggregates(TransactionQuery query) {
+        Set<Aggregate> aggregates = query.aggregates();
+        int count = amounts.size();
+        long sum = aggregates.contains(Aggregate.SUM) ? amounts.sum() : 0;
+        long max = aggregates.contains(Aggregate.MAX) ? amounts.max() : Long.MIN_VALUE;
+        long min = aggregates.contains(Aggregate.MIN) ? amounts.min() : Long.MAX_VALUE;
+        QueryResult.Group group = new QueryResult.Group(aggregates, null, count, sum, max, min, 0, 0, 0, List.of());
+        return new QueryResult(query, List.of(group), count, false);
+    }
+
+    /**
+     * Client ids accepted by a name predicate, resolved against the client dictionary.
+     */
+    private static final class ClientSet {
+
+        private final BitSet ids = new BitSet();
+        private final boolean containsNull;
+
+        ClientSet(StringDictionary clients, Set<String> names) {
+            boolean nullName = false;
+            for (String name : names) {
+                if (name == null) {
+                    nullName = true;
+                } else {
+                    int id = clients.idOf(name);
+                    // names that were never stored cannot match any row
+                    if (id != StringDictionary.NULL_ID) {
+                        ids.set(id);
+                    }
+                }
+            }
+            this.containsNull = nullName;
+        }
+
+        boolean contains(int client) {
+            return client == StringDictionary.NULL_ID ? containsNull : ids.get(client);
+        }
+
+        boolean isEmpty() {
+            return !containsNull && ids.isEmpty();
+        }
+    }
+
+    /**
+     * Compiled filter. Only the constraints the filter actually sets are checked per row.
+     */
+    private static final class Plan {
+
+        private final boolean empty;
+        private final boolean matchesAll;
+        private final boolean checkAmount;
+        private final long minAmountUnits;
+        private final long maxAmountUnits;
+        private final boolean checkSenderAge;
+        private final int minSenderAge;
+        private final int maxSenderAge;
+        private final boolean checkBeneficiaryAge;
+        private final int minBeneficiaryAge;
+        private final int maxBeneficiaryAge;
+        private final ClientSet senders;
+        private final ClientSet beneficiaries;
+        private final ClientSet[] clients;
+        private final boolean checkIssueState;
+        private final boolean[] issueStates = new boolean[IssueState.values().length];
+
+        Plan(TransactionColumns store, Filter filter) {
+            StringDictionary dictionary = store.clients();
+            minAmountUnits = filter.minAmountUnits();
+            maxAmountUnits = filter.maxAmountUnits();
+            checkAmount = minAmountUnits != Long.MIN_VALUE || maxAmountUnits != Long.MAX_VALUE;
+            minSenderAge = filter.minSenderAge();
+            maxSenderAge = filter.maxSenderAge();
+            checkSenderAge = minSenderAge != Integer.MIN_VALUE || maxSenderAge != Integer.MAX_VALUE;
+            minBeneficiaryAge = filter.minBeneficiaryAge();
+            maxBeneficiaryAge = filter.maxBeneficiaryAge();
+            checkBeneficiaryAge = minBeneficiaryAge != Integer.MIN_VALUE || maxBeneficiaryAge != Integer.MAX_VALUE;
+            senders = filter.senders() == null ? null : new ClientSet(dictionary, filter.senders());
+            beneficiaries = filter.beneficiaries() == null ? null : new ClientSet(dictionary, filter.beneficiaries());
+            clients = filter.clients().stream().map(names -> new ClientSet(dictionary, names)).toArray(ClientSet[]::new);
+            Set<IssueState> states = filter.issueStates();
+            for (IssueState state : states) {
+                issueStates[state.ordinal()] = true;
+            }
+            checkIssueState = states.size() < issueStates.length;
+
+            boolean noClient = (senders != null && senders.isEmpty()) || (beneficiaries != null && beneficiaries.isEmpty());
+            for (ClientSet set : clients) {
+                noClient |= set.isEmpty();
+            }
+            empty = noClient || states.isEmpty() || minAmountUnits > maxAmountUnits
+                    || minSenderAge > maxSenderAge || minBeneficiaryAge > maxBeneficiaryAge;
+            matchesAll = !empty && !checkAmount && !checkSenderAge && !checkBeneficiaryAge && senders == null
+                    && beneficiaries == null && clients.length == 0 && !checkIssueState;
+        }
+
+        boolean matches(TransactionColumns store, int row) {
+            if (checkAmount) {
+                long amount = store.amountUnits(row);
+                if (amount < minAmountUnits || amount > maxAmountUnits) {
+                    return false;
+                }
+            }
+            if (checkSenderAge) {
+                int age = store.senderAge(row);
+                if (age < minSenderAge || age > maxSenderAge) {
+                    return false;
+                }
+            }
+            if (checkBeneficiaryAge) {
+                int age = store.beneficiaryAge(row);
+                if (age < minBeneficiaryAge || age > maxBeneficiaryAge) {
+                    return false;
+                }
+            }
+            if (senders != null && !senders.contains(store.sender(row))) {
+                return false;
+            }
+            if (beneficiaries != null && !beneficiaries.contains(store.beneficiary(row))) {
+                return false;
+            }
+            for (ClientSet set : clients) {
+                if (!set.contains(store.sender(row)) && !set.contains(store.beneficiary(row))) {
+                    return false;
+                }
+            }
+            return !checkIssueState || issueStates[IssueState.of(store, row).ordinal()];
+        }
+
+        /**
+         * Picks the name predicate with the fewest postings and returns its rows in row order.
+         * 
+         * @param store The rows.
+         * @param index The client index, or null.
+         * @return The candidate rows, or null if every row has to be scanned.
+         */
+        int[] indexedRows(TransactionColumns store, ClientIndex index) {
+            if (index == null) {
+                return null;
+            }
+            ClientSet best = null;
+            boolean bestSends = false;
+            boolean bestReceives = false;
+            long bestPostings = store.size();
+            ClientSet[] candidates = new ClientSet[clients.length + 2];
+            candidates[0] = senders;
+            candidates[1] = beneficiaries;
+            System.arraycopy(clients, 0, candidates, 2, clients.length);
+            for (int i = 0; i < candidates.length; i++) {
+                ClientSet set = candidates[i];
+                // null names are not indexed
+                if (set == null || set.containsNull) {
+                    continue;
+                }
+                boolean sends = i != 1;
+                boolean receives = i != 0;
+                long postings = 0;
+                for (int client = set.ids.nextSetBit(0); client >= 0; client = set.ids.nextSetBit(client + 1)) {
+                    postings += (sends ? index.senderRowCount(client) : 0) + (receives ? index.beneficiaryRowCount(client) : 0);
+                }
+                if (postings < bestPostings) {
+                    best = set;
+                    bestSends = sends;
+                    bestReceives = receives;
+                    bestPostings = postings;
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            List<int[]> postings = new ArrayList<>();
+            for (int client = best.ids.nextSetBit(0); client >= 0; client = best.ids.nextSetBit(client + 1)) {
+                if (bestSends) {
+                    postings.add(index.senderRows(client));
+                }
+                if (bestReceives) {
+                    postings.add(index.beneficiaryRows(client));
+                }
+            }
+            // posting lists are in row order; merging them pairwise costs O(postings log lists)
+            while (postings.size() > 1) {
+                List<int[]> merged = new ArrayList<>((postings.size() + 1) / 2);
+                for (int i = 0; i < postings.size(); i += 2) {
+                    merged.add(i + 1 < postings.size() ? union(postings.get(i), postings.get(i + 1)) : postings.get(i));
+                }
+                postings = merged;
+            }
+            return postings.get(0);
+        }
+
+        private static int[] union(int[] rows, int[] otherRows) {
+            int[] union = new int[rows.length + otherRows.length];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < rows.length && j < otherRows.length) {
+                if (rows[i] < otherRows[j]) {
+                    union[count++] = rows[i++];
+                } else if (rows[i] > otherRows[j]) {
+                    union[count++] = otherRows[j++];
+                } else {
+                    // a client sending to itself, or two names of the same row
+                    union[count++] = rows[i++];
+                    j++;
+                }
+            }
+            while (i < rows.length) {
+                union[count++] = rows[i++];
+            }
+            while (j < otherRows.length) {
+                union[count++] = otherRows[j++];
+            }
+            return count == union.length ? union : Arrays.copyOf(union, count);
+        }
+    }
+
+    /**
+     * Accumulators of one group. Only the selected aggregates are updated.
+     */
+    private static final class Accumulator {
+
+        private final int group;
+        private final String key;
+        private long count;
+        private long sumUnits;
+        private long maxUnits = Long.MIN_VALUE;
+        private long minUnits = Long.MAX_VALUE;
+        // client ids shifted by one, so that bit 0 is the missing name
+        private final BitSet senders;
+        private final BitSet beneficiaries;
+        private final BitSet clients;
+        private final TopRows topRows;
+        private long distinctSenders;
+        private long distinctBeneficiaries;
+        private long distinctClients;
+
+        Accumulator(int group, String key, Set<Aggregate> aggregates, int topN) {
+            this.group = group;
+            this.key = key;
+            this.senders = aggregates.contains(Aggregate.DISTINCT_SENDERS) ? new BitSet() : null;
+            this.beneficiaries = aggregates.contains(Aggregate.DISTINCT_BENEFICIARIES) ? new BitSet() : null;
+            this.clients = aggregates.contains(Aggregate.DISTINCT_CLIENTS) ? new BitSet() : null;
+            this.topRows = aggregates.contains(Aggregate.TOP_TRANSACTIONS) ? new TopRows(topN) : null;
+        }
+
+        void finish() {
+            distinctSenders = senders == null ? 0 : senders.cardinality();
+            distinctBeneficiaries = beneficiaries == null ? 0 : beneficiaries.cardinality();
+            distinctClients = clients == null ? 0 : clients.cardinality();
+        }
+
+        long rank(Aggregate aggregate) {
+            switch (aggregate) {
+                case SUM:
+                    return sumUnits;
+                case COUNT:
+                    return count;
+                case MAX:
+                    return maxUnits;
+                case MIN:
+                    return minUnits;
+                case DISTINCT_SENDERS:
+                    return distinctSenders;
+                case DISTINCT_BENEFICIARIES:
+                    return distinctBeneficiaries;
+                case DISTINCT_CLIENTS:
+                    return distinctClients;
+                default:
+                    throw new IllegalArgumentException("Groups cannot be ranked by " + aggregate);
+            }
+        }
+    }
+
+    /**
+     * Mutable state of the fused pass.
+     */
+    private static final class Scan {
+
+        private final TransactionColumns store;
+        private final TransactionQuery query;
+        private final Grouping grouping;
+        private final boolean byName;
+        private final boolean needSum;
+        private final boolean needMax;
+        private final boolean needMin;
+        private final boolean firstRows;
+        private final BitSet seenMtns;
+        // groups by client id + 1 when grouping by name, by group number otherwise
+        private final Accumulator[] clientGroups;
+        private final Map<Integer, Accumulator> numberedGroups = new HashMap<>();
+        private Accumulator lastGroup;
+
+        Scan(TransactionColumns store, TransactionQuery query, boolean filtersIssueState) {
+            this.store = store;
+            this.query = query;
+            this.grouping = query.grouping();
+            this.byName = grouping.kind() == Grouping.Kind.SENDER || grouping.kind() == Grouping.Kind.BENEFICIARY;
+            Set<Aggregate> aggregates = query.aggregates();
+            this.needSum = aggregates.contains(Aggregate.SUM);
+            this.needMax = aggregates.contains(Aggregate.MAX);
+            this.needMin = aggregates.contains(Aggregate.MIN);
+            // the transaction fields of an mtn are those of its first row, which the store marks; only
+            // an issue state filter can skip that row and needs the mtns of earlier matches
+            this.firstRows = !query.isEveryRow() && !filtersIssueState;
+            this.seenMtns = query.isEveryRow() || firstRows ? null : new BitSet(store.mtns().size());
+            this.clientGroups = byName ? new Accumulator[store.clients().size() + 1] : null;
+            if (grouping.kind() == Grouping.Kind.NONE) {
+                // an ungrouped query reports its single group even if no row matches
+                accumulator(0);
+            }
+        }
+
+        void add(int row) {
+            if (isNewTransaction(row)) {
+                fold(accumulator(grouping.groupOf(store, row)), row);
+            }
+        }
+
+        private boolean isNewTransaction(int row) {
+            if (firstRows) {
+                return store.isFirstOfMtn(row);
+            }
+            if (seenMtns == null) {
+                return true;
+            }
+            int mtn = store.mtn(row);
+            if (seenMtns.get(mtn)) {
+                return false;
+            }
+            seenMtns.set(mtn);
+            return true;
+        }
+
+        private void fold(Accumulator accumulator, int row) {
+            accumulator.count++;
+            if (needSum || needMax || needMin) {
+                long amount = store.amountUnits(row);
+                if (needSum) {
+                    accumulator.sumUnits += amount;
+                }
+                if (needMax) {
+                    accumulator.maxUnits = Math.max(accumulator.maxUnits, amount);
+                }
+                if (needMin) {
+                    accumulator.minUnits = Math.min(accumulator.minUnits, amount);
+                }
+            }
+            if (accumulator.senders != null) {
+                accumulator.senders.set(store.sender(row) + 1);
+            }
+            if (accumulator.beneficiaries != null) {
+                accumulator.beneficiaries.set(store.beneficiary(row) + 1);
+            }
+            if (accumulator.clients != null) {
+                accumulator.clients.set(store.sender(row) + 1);
+                accumulator.clients.set(store.beneficiary(row) + 1);
+            }
+            if (accumulator.topRows != null) {
+                accumulator.topRows.offer(store.amount(row), row);
+            }
+        }
+
+        private Accumulator accumulator(int group) {
+            if (clientGroups != null) {
+                Accumulator accumulator = clientGroups[group + 1];
+                if (accumulator == null) {
+                    accumulator = new Accumulator(group, grouping.keyOf(store, group), query.aggregates(), query.topN());
+                    clientGroups[group + 1] = accumulator;
+                }
+                return accumulator;
+            }
+            // consecutive rows mostly fall into the same age bucket, and always into the only group
+            if (lastGroup == null || lastGroup.group != group) {
+                lastGroup = numberedGroups.computeIfAbsent(group,
+                        number -> new Accumulator(number, grouping.keyOf(store, number), query.aggregates(), query.topN()));
+            }
+            return lastGroup;
+        }
+
+        QueryResult result(int scannedRows, boolean indexed) {
+            List<Accumulator> accumulators = new ArrayList<>(numberedGroups.values());
+            if (clientGroups != null) {
+                for (Accumulator accumulator : clientGroups) {
+                    if (accumulator != null) {
+                        accumulators.add(accumulator);
+                    }
+                }
+            }
+            Comparator<Accumulator> keyOrder = byName
+                    ? Comparator.comparing(accumulator -> accumulator.key, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    : Comparator.comparingInt(accumulator -> accumulator.group);
+            accumulators.forEach(Accumulator::finish);
+            Aggregate rankBy = query.rankBy();
+            if (rankBy == null || grouping.kind() == Grouping.Kind.NONE) {
+                accumulators.sort(keyOrder);
+            } else {
+                TopK<Accumulator> top = new TopK<>(query.groupLimit(),
+                        Comparator.<Accumulator>comparingLong(accumulator -> accumulator.rank(rankBy)).thenComparing(keyOrder.reversed()),
+                        Function.identity());
+                accumulators.forEach(top::offer);
+                accumulators = top.toList();
+            }
+            List<QueryResult.Group> groups = new ArrayList<>(accumulators.size());
+            for (Accumulator accumulator : accumulators) {
+                groups.add(new QueryResult.Group(query.aggregates(), accumulator.key, accumulator.count, accumulator.sumUnits,
+                        accumulator.maxUnits, accumulator.minUnits, accumulator.distinctSenders,
+                        accumulator.distinctBeneficiaries, accumulator.distinctClients, topTransactions(accumulator)));
+            }
+            return new QueryResult(query, groups, scannedRows, indexed);
+        }
+
+        private List<Transaction> topTransactions(Accumulator accumulator) {
+            List<Transaction> transactions = new ArrayList<>();
+            if (accumulator.topRows != null) {
+                for (int row : accumulator.topRows.rowsDescending()) {
+                    transactions.add(store.toTransaction(row));
+                }
+            }
+            return transactions;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.smallworld.query;
+
+import com.smallworld.data.MinorUnits;
+import com.smallworld.data.Transaction;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable result of a {@link TransactionQuery}: one {@link Group} of aggregates per group key.
+ * 
+ * Groups are ordered by the ranking aggregate descending if the query ranks them, and otherwise
+ * by key: names alphabetically with the missing name first, age buckets from the youngest. An
+ * ungrouped query has exactly one group, returned by {@link #single()}, even if no row matched.
+ */
+public final class QueryResult {
+
+    private final TransactionQuery query;
+    private final List<Group> groups;
+    private final Map<String, Group> groupsByKey = new HashMap<>();
+    private final int scannedRows;
+    private final boolean indexed;
+
+    QueryResult(TransactionQuery query, List<Group> groups, int scannedRows, boolean indexed) {
+        this.query = query;
+        this.groups = Collections.unmodifiableList(groups);
+        this.scannedRows = scannedRows;
+        this.indexed = indexed;
+        for (Group group : groups) {
+            groupsByKey.put(group.key, group);
+        }
+    }
+
+    public TransactionQuery getQuery() {
+        return query;
+    }
+
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Returns the group with the given key.
+     * 
+     * @param key The group key, null for the group of a missing name.
+     * @return The group, or null if no matching row belongs to it or it was not ranked among the top groups.
+     */
+    public Group getGroup(String key) {
+        return groupsByKey.get(key);
+    }
+
+    /**
+     * Returns the only group of an ungrouped query.
+     * 
+     * @return The aggregates of every matching row.
+     * @throws IllegalStateException If the query groups its rows.
+     */
+    public Group single() {
+        if (query.grouping().kind() != Grouping.Kind.NONE) {
+            throw new IllegalStateException("Query is grouped by " + query.grouping());
+        }
+        return groups.get(0);
+    }
+
+    /**
+     * Returns the number of rows the engine visited, which is below the row count when the rows
+     * were read from the client index.
+     * 
+     * @return The number of visited rows.
+     */
+    public int getScannedRows() {
+        return scannedRows;
+    }
+
+    /**
+     * Returns whether the rows were read from the client index instead of scanning every row.
+     * 
+     * @return True if a name predicate was pushed down to the index.
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Aggregates of the rows of one group. Reading an aggregate that the query did not select
+     * throws {@link IllegalStateException}.
+     */
+    public static final class Group {
+
+        private final Set<Aggregate> aggregates;
+        private final String key;
+        private final long count;
+        private final long sumUnits;
+        private final long maxUnits;
+        private final long minUnits;
+        private final long distinctSenders;
+        private final long distinctBeneficiaries;
+        private final long distinctClients;
+        private final List<Transaction> topTransactions;
+
+        Group(Set<Aggregate> aggregates, String key, long count, long sumUnits, long maxUnits, long minUnits,
+                long distinctSenders, long distinctBeneficiaries, long distinctClients, List<Transaction> topTransactions) {
+            this.aggregates = aggregates;
+            this.key = key;
+            this.count = count;
+            this.sumUnits = sumUnits;
+            this.maxUnits = maxUnits;
+            this.minUnits = minUnits;
+            this.distinctSenders = distinctSenders;
+            this.distinctBeneficiaries = distinctBeneficiaries;
+            this.distinctClients = distinctClients;
+            this.topTransactions = Collections.unmodifiableList(topTransactions);
+        }
+
+        /**
+         * Returns the key of the group.
+         * 
+         * @return The client name or age bucket label, null for a missing name or an ungrouped query.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public double getSum() {
+            require(Aggregate.SUM);
+            return MinorUnits.toAmount(sumUnits);
+        }
+
+        public long getCount() {
+            require(Aggregate.COUNT);
+            return count;
+        }
+
+        /**
+         * Returns the highest amount.
+         * 
+         * @return The highest amount, or 0.0 if no row matched.
+         */
+        public double getMax() {
+            require(Aggregate.MAX);
+            return count == 0 ? 0.0 : MinorUnits.toAmount(maxUnits);
+        }
+
+        /**
+         * Returns the lowest amount.
+         * 
+         * @return The lowest amount, or 0.0 if no row matched.
+         */
+        public double getMin() {
+            require(Aggregate.MIN);
+            return count == 0 ? 0.0 : MinorUnits.toAmount(minUnits);
+        }
+
+        public long getDistinctSenders() {
+            require(Aggregate.DISTINCT_SENDERS);
+            return distinctSenders;
+        }
+
+        public long getDistinctBeneficiaries() {
+            require(Aggregate.DISTINCT_BENEFICIARIES);
+            return distinctBeneficiaries;
+        }
+
+        public long getDistinctClients() {
+            require(Aggregate.DISTINCT_CLIENTS);
+            return distinctClients;
+        }
+
+        /**
+         * Returns the highest transactions of the group by amount.
+         * 
+         * @return An unmodifiable list of copies, so that changing a transaction does not change this result.
+         */
+        public List<Transaction> getTopTransactions() {
+            require(Aggregate.TOP_TRANSACTIONS);
+            return topTransactions.stream().map(Transaction::new).toList();
+        }
+
+        private void require(Aggregate aggregate) {
+            if (!aggregates.contains(aggregate)) {
+                throw new IllegalStateException(aggregate + " was not selected for this query");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Group{" +
+                    "key='" + key + '\'' +
+                    ", count=" + count +
+                    ", sum=" + MinorUnits.toAmount(sumUnits) +
+                    '}';
+        }
+    }
+}
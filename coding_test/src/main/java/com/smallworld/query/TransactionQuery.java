@@ -0,0 +1,189 @@
+package com.smallworld.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable description of a filter, group-by and aggregate query over transaction rows, run by
+ * a {@link QueryEngine}.
+ * 
+ * A query starts from the aggregates it selects and is refined by methods returning a new query:
+ * <pre>{@code
+ * TransactionQuery.select(Aggregate.SUM, Aggregate.COUNT)
+ *         .where(Filter.sender("Tom Shelby").and(Filter.amountAbove(100)))
+ *         .groupBy(Grouping.beneficiary())
+ *         .topGroups(3, Aggregate.SUM);
+ * }</pre>
+ * Queries have value semantics, so equal queries can share a cached result.
+ */
+public final class TransactionQuery {
+
+    /** Number of transactions selected by {@link Aggregate#TOP_TRANSACTIONS} when no other count is requested. */
+    public static final int DEFAULT_TOP_N = 3;
+
+    private final Set<Aggregate> aggregates;
+    private final Filter filter;
+    private final Grouping grouping;
+    private final int topN;
+    private final boolean everyRow;
+    private final Aggregate rankBy;
+    private final int groupLimit;
+
+    private TransactionQuery(Set<Aggregate> aggregates, Filter filter, Grouping grouping, int topN, boolean everyRow,
+            Aggregate rankBy, int groupLimit) {
+        this.aggregates = aggregates;
+        this.filter = filter;
+        this.grouping = grouping;
+        this.topN = topN;
+        this.everyRow = everyRow;
+        this.rankBy = rankBy;
+        this.groupLimit = groupLimit;
+    }
+
+    /**
+     * Starts an ungrouped query over every row, each mtn counted once.
+     * 
+     * @param aggregates The aggregates computed for every group.
+     * @return A new query.
+     */
+    public static TransactionQuery select(Aggregate... aggregates) {
+        EnumSet<Aggregate> selected = EnumSet.noneOf(Aggregate.class);
+        selected.addAll(Arrays.asList(aggregates));
+        return new TransactionQuery(Collections.unmodifiableSet(selected), Filter.all(), Grouping.none(), DEFAULT_TOP_N,
+                false, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Restricts the query to the rows matching the filter, in addition to any earlier filter.
+     * 
+     * @param filter The rows to aggregate.
+     * @return A new query.
+     */
+    public TransactionQuery where(Filter filter) {
+        return new TransactionQuery(aggregates, this.filter.and(filter), grouping, topN, everyRow, rankBy, groupLimit);
+    }
+
+    /**
+     * Aggregates the matching rows per group instead of into a single group.
+     * 
+     * @param grouping The group of every row.
+     * @return A new query.
+     */
+    public TransactionQuery groupBy(Grouping grouping) {
+        return new TransactionQuery(aggregates, filter, Objects.requireNonNull(grouping), topN, everyRow, rankBy, groupLimit);
+    }
+
+    /**
+     * Sets the number of transactions selected per group by {@link Aggregate#TOP_TRANSACTIONS},
+     * which is selected as well.
+     * 
+     * @param n The number of transactions.
+     * @return A new query.
+     */
+    public TransactionQuery topTransactions(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative: " + n);
+        }
+        return new TransactionQuery(with(Aggregate.TOP_TRANSACTIONS), filter, grouping, n, everyRow, rankBy, groupLimit);
+    }
+
+    /**
+     * Keeps only the k groups with the highest value of an aggregate, which is selected as well,
+     * ordered by that value descending. Ties rank the smaller key first, null first. An ungrouped
+     * query always keeps its single group.
+     * 
+     * @param k The number of groups to keep.
+     * @param by The aggregate ranking the groups.
+     * @return A new query.
+     * @throws IllegalArgumentException If k is negative or the aggregate is not a number.
+     */
+    public TransactionQuery topGroups(int k, Aggregate by) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        if (by == Aggregate.TOP_TRANSACTIONS) {
+            throw new IllegalArgumentException("Groups cannot be ranked by " + by);
+        }
+        return new TransactionQuery(with(by), filter, grouping, topN, everyRow, by, k);
+    }
+
+    /**
+     * Aggregates every matching row instead of counting each mtn once, so a transaction with
+     * several issues is summed and counted once per issue.
+     * 
+     * @return A new query.
+     */
+    public TransactionQuery everyRow() {
+        return new TransactionQuery(aggregates, filter, grouping, topN, true, rankBy, groupLimit);
+    }
+
+    private Set<Aggregate> with(Aggregate aggregate) {
+        EnumSet<Aggregate> selected = aggregates.isEmpty() ? EnumSet.noneOf(Aggregate.class) : EnumSet.copyOf(aggregates);
+        selected.add(aggregate);
+        return Collections.unmodifiableSet(selected);
+    }
+
+    public Set<Aggregate> aggregates() {
+        return aggregates;
+    }
+
+    public Filter filter() {
+        return filter;
+    }
+
+    public Grouping grouping() {
+        return grouping;
+    }
+
+    public int topN() {
+        return topN;
+    }
+
+    public boolean isEveryRow() {
+        return everyRow;
+    }
+
+    /**
+     * Returns the aggregate ranking the groups.
+     * 
+     * @return The aggregate, or null if every group is returned in key order.
+     */
+    public Aggregate rankBy() {
+        return rankBy;
+    }
+
+    public int groupLimit() {
+        return groupLimit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TransactionQuery that = (TransactionQuery) o;
+        return topN == that.topN && everyRow == that.everyRow && groupLimit == that.groupLimit
+                && aggregates.equals(that.aggregates) && filter.equals(that.filter) && grouping.equals(that.grouping)
+                && rankBy == that.rankBy;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(aggregates, filter, grouping, topN, everyRow, rankBy, groupLimit);
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionQuery{" +
+                "aggregates=" + aggregates +
+                ", filter=" + filter +
+                ", grouping=" + grouping +
+                ", topN=" + topN +
+                ", everyRow=" + everyRow +
+                ", rankBy=" + rankBy +
+                ", groupLimit=" + groupLimit +
+                '}';
+    }
+}
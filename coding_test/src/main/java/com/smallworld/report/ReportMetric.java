@@ -0,0 +1,34 @@
+package com.smallworld.report;
+
+/**
+ * Metrics that can be selected for a {@link TransactionReport}.
+ */
+public enum ReportMetric {
+
+    /** Sum of the amounts of all transactions, counting each mtn once. */
+    TOTAL,
+
+    /** Sum of the amounts sent by every sender, counting each mtn once. */
+    TOTAL_BY_SENDER,
+
+    /** Highest transaction amount. */
+    MAX,
+
+    /** Number of distinct clients that sent or received a transaction. */
+    UNIQUE_CLIENTS,
+
+    /** Identifiers of all unsolved issues. */
+    UNSOLVED_ISSUE_IDS,
+
+    /** Messages of all solved issues. */
+    SOLVED_ISSUE_MESSAGES,
+
+    /** First transaction of every beneficiary. */
+    TRANSACTIONS_BY_BENEFICIARY,
+
+    /** Transactions with the highest amounts, each mtn counted once. */
+    TOP_TRANSACTIONS,
+
+    /** Sender with the highest total sent amount. */
+    TOP_SENDER
+}
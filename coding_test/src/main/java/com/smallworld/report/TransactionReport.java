@@ -0,0 +1,293 @@
+package com.smallworld.report;
+
+import com.smallworld.aggregate.ExactSum;
+import com.smallworld.aggregate.TopRows;
+import com.smallworld.data.MinorUnits;
+import com.smallworld.data.Transaction;
+import com.smallworld.store.StringDictionary;
+import com.smallworld.store.TransactionColumns;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Immutable result of computing several metrics in a single pass over the transaction rows.
+ * 
+ * Instead of calling one fetcher method per metric, each doing its own full scan, the selected
+ * {@link ReportMetric}s are evaluated together in one fused loop over the columns of a
+ * {@link TransactionColumns}. Every metric has the same semantics as the corresponding
+ * {@code TransactionDataFetcher} method. Reading a metric that was not selected throws
+ * {@link IllegalStateException}.
+ */
+public final class TransactionReport {
+
+    /** Number of top transactions reported when no other count is requested. */
+    public static final int DEFAULT_TOP_N = 3;
+
+    private final Set<ReportMetric> metrics;
+    private final double total;
+    private final Map<String, Double> totalBySender;
+    private final double max;
+    private final long uniqueClients;
+    private final Set<Integer> unsolvedIssueIds;
+    private final List<String> solvedIssueMessages;
+    private final Map<String, Transaction> transactionsByBeneficiary;
+    private final List<Transaction> topTransactions;
+    private final Optional<String> topSender;
+
+    private TransactionReport(Scan scan) {
+        this.metrics = Collections.unmodifiableSet(scan.metrics);
+        this.total = scan.total.value();
+        this.totalBySender = Collections.unmodifiableMap(scan.totalBySender());
+        this.max = scan.rows == 0 ? 0.0 : MinorUnits.toAmount(scan.max);
+        this.uniqueClients = scan.uniqueClients;
+        this.unsolvedIssueIds = Collections.unmodifiableSet(scan.unsolvedIssueIds);
+        this.solvedIssueMessages = Collections.unmodifiableList(scan.solvedIssueMessages);
+        this.transactionsByBeneficiary = Collections.unmodifiableMap(scan.transactionsByBeneficiary);
+        this.topTransactions = Collections.unmodifiableList(scan.topTransactions());
+        this.topSender = Optional.ofNullable(scan.topSender());
+    }
+
+    /**
+     * Computes the selected metrics over every row of the store in one pass.
+     * 
+     * @param store The rows to report on.
+     * @param metrics The metrics to compute.
+     * @param topN The number of transactions reported for {@link ReportMetric#TOP_TRANSACTIONS}.
+     * @return The report.
+     */
+    public static TransactionReport compute(TransactionColumns store, Set<ReportMetric> metrics, int topN) {
+        if (topN < 0) {
+            throw new IllegalArgumentException("topN must not be negative: " + topN);
+        }
+        Scan scan = new Scan(store, metrics.isEmpty() ? EnumSet.noneOf(ReportMetric.class) : EnumSet.copyOf(metrics), topN);
+        scan.run();
+        return new TransactionReport(scan);
+    }
+
+    /**
+     * Returns the metrics this report holds.
+     * 
+     * @return The selected metrics.
+     */
+    public Set<ReportMetric> getMetrics() {
+        return metrics;
+    }
+
+    public double getTotalTransactionAmount() {
+        require(ReportMetric.TOTAL);
+        return total;
+    }
+
+    public Map<String, Double> getTotalTransactionAmountBySender() {
+        require(ReportMetric.TOTAL_BY_SENDER);
+        return totalBySender;
+    }
+
+    public double getMaxTransactionAmount() {
+        require(ReportMetric.MAX);
+        return max;
+    }
+
+    public long getUniqueClientCount() {
+        require(ReportMetric.UNIQUE_CLIENTS);
+        return uniqueClients;
+    }
+
+    public Set<Integer> getUnsolvedIssueIds() {
+        require(ReportMetric.UNSOLVED_ISSUE_IDS);
+        return unsolvedIssueIds;
+    }
+
+    public List<String> getSolvedIssueMessages() {
+        require(ReportMetric.SOLVED_ISSUE_MESSAGES);
+        return solvedIssueMessages;
+    }
+
+    /**
+     * Returns the first transaction of every beneficiary, in row order.
+     * 
+     * @return An unmodifiable map of copies, so that changing a transaction does not change this report.
+     */
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        require(ReportMetric.TRANSACTIONS_BY_BENEFICIARY);
+        return Transaction.copyOf(transactionsByBeneficiary);
+    }
+
+    /**
+     * Returns the highest transactions by amount.
+     * 
+     * @return An unmodifiable list of copies, so that changing a transaction does not change this report.
+     */
+    public List<Transaction> getTopTransactionsByAmount() {
+        require(ReportMetric.TOP_TRANSACTIONS);
+        return topTransactions.stream().map(Transaction::new).toList();
+    }
+
+    public Optional<String> getTopSender() {
+        require(ReportMetric.TOP_SENDER);
+        return topSender;
+    }
+
+    private void require(ReportMetric metric) {
+        if (!metrics.contains(metric)) {
+            throw new IllegalStateException(metric + " was not selected for this report");
+        }
+    }
+
+    /**
+     * Mutable state of the fused scan. Only the accumulators of selected metrics are updated.
+     */
+    private static final class Scan {
+
+        private final TransactionColumns store;
+        private final EnumSet<ReportMetric> metrics;
+        private final StringDictionary clients;
+
+        private long rows;
+        private final ExactSum total = new ExactSum();
+        private final ExactSum[] dedupBySender;
+        private final ExactSum[] rawBySender;
+        private long max = Long.MIN_VALUE;
+        private long uniqueClients;
+        private final boolean[] seenClients;
+        private final Set<Integer> unsolvedIssueIds = new HashSet<>();
+        private final List<String> solvedIssueMessages = new ArrayList<>();
+        private final Map<String, Transaction> transactionsByBeneficiary = new HashMap<>();
+        private final boolean[] seenBeneficiaries;
+        private final TopRows topRows;
+
+        Scan(TransactionColumns store, EnumSet<ReportMetric> metrics, int topN) {
+            this.store = store;
+            this.metrics = metrics;
+            this.clients = store.clients();
+            int clientCount = clients.size();
+            this.dedupBySender = metrics.contains(ReportMetric.TOTAL_BY_SENDER) ? new ExactSum[clientCount] : null;
+            this.rawBySender = metrics.contains(ReportMetric.TOP_SENDER) ? new ExactSum[clientCount] : null;
+            this.seenClients = metrics.contains(ReportMetric.UNIQUE_CLIENTS) ? new boolean[clientCount] : null;
+            this.seenBeneficiaries = metrics.contains(ReportMetric.TRANSACTIONS_BY_BENEFICIARY) ? new boolean[clientCount] : null;
+            this.topRows = metrics.contains(ReportMetric.TOP_TRANSACTIONS) ? new TopRows(topN) : null;
+        }
+
+        void run() {
+            boolean needTotal = metrics.contains(ReportMetric.TOTAL);
+            boolean needMax = metrics.contains(ReportMetric.MAX);
+            boolean needUnsolved = metrics.contains(ReportMetric.UNSOLVED_ISSUE_IDS);
+            boolean needSolved = metrics.contains(ReportMetric.SOLVED_ISSUE_MESSAGES);
+            boolean nullBeneficiarySeen = false;
+            boolean nullClientSeen = false;
+            for (int row = 0, size = store.size(); row < size; row++) {
+                rows++;
+                long amount = store.amountUnits(row);
+                boolean firstOfMtn = store.isFirstOfMtn(row);
+                int sender = store.sender(row);
+                int beneficiary = store.beneficiary(row);
+                if (needTotal && firstOfMtn) {
+                    total.add(amount);
+                }
+                if (dedupBySender != null && firstOfMtn && sender != StringDictionary.NULL_ID) {
+                    add(dedupBySender, sender, amount);
+                }
+                if (rawBySender != null && sender != StringDictionary.NULL_ID) {
+                    add(rawBySender, sender, amount);
+                }
+                if (needMax) {
+                    max = Math.max(max, amount);
+                }
+                if (seenClients != null) {
+                    nullClientSeen |= sender == StringDictionary.NULL_ID || beneficiary == StringDictionary.NULL_ID;
+                    markClient(sender);
+                    markClient(beneficiary);
+                }
+                if (store.isIssueSolved(row)) {
+                    if (needSolved) {
+                        solvedIssueMessages.add(store.messages().get(store.issueMessage(row)));
+                    }
+                } else if (needUnsolved && store.issueId(row) != TransactionColumns.NO_ISSUE) {
+                    unsolvedIssueIds.add(store.issueId(row));
+                }
+                if (seenBeneficiaries != null) {
+                    if (beneficiary == StringDictionary.NULL_ID) {
+                        if (!nullBeneficiarySeen) {
+                            nullBeneficiarySeen = true;
+                            transactionsByBeneficiary.put(null, store.toTransaction(row));
+                        }
+                    } else if (!seenBeneficiaries[beneficiary]) {
+                        seenBeneficiaries[beneficiary] = true;
+                        transactionsByBeneficiary.put(clients.get(beneficiary), store.toTransaction(row));
+                    }
+                }
+                if (topRows != null && firstOfMtn) {
+                    topRows.offer(store.amount(row), row);
+                }
+            }
+            if (nullClientSeen) {
+                uniqueClients++;
+            }
+        }
+
+        Map<String, Double> totalBySender() {
+            Map<String, Double> totals = new HashMap<>();
+            if (dedupBySender != null) {
+                for (int sender = 0; sender < dedupBySender.length; sender++) {
+                    if (dedupBySender[sender] != null) {
+                        totals.put(clients.get(sender), dedupBySender[sender].value());
+                    }
+                }
+            }
+            return totals;
+        }
+
+        List<Transaction> topTransactions() {
+            List<Transaction> transactions = new ArrayList<>();
+            if (topRows != null) {
+                for (int row : topRows.rowsDescending()) {
+                    transactions.add(store.toTransaction(row));
+                }
+            }
+            return transactions;
+        }
+
+        String topSender() {
+            if (rawBySender == null) {
+                return null;
+            }
+            String topSender = null;
+            long topTotal = 0;
+            for (int sender = 0; sender < rawBySender.length; sender++) {
+                if (rawBySender[sender] == null) {
+                    continue;
+                }
+                String name = clients.get(sender);
+                long sent = rawBySender[sender].units();
+                int comparison = topSender == null ? 1 : Long.compare(sent, topTotal);
+                if (comparison > 0 || (comparison == 0 && name.compareTo(topSender) < 0)) {
+                    topSender = name;
+                    topTotal = sent;
+                }
+            }
+            return topSender;
+        }
+
+        private void markClient(int client) {
+            if (client != StringDictionary.NULL_ID && !seenClients[client]) {
+                seenClients[client] = true;
+                uniqueClients++;
+            }
+        }
+
+        private static void add(ExactSum[] sums, int client, long amount) {
+            if (sums[client] == null) {
+                sums[client] = new ExactSum();
+            }
+            sums[client].add(amount);
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package com.smallworld.server;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.ConcurrentTransactionDataFetcher;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionParseException;
+import com.smallworld.issue.IntBitmap;
+import com.smallworld.metrics.QueryMetrics;
+import com.smallworld.report.ReportMetric;
+import com.smallworld.report.TransactionReport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP server exposing the queries of a {@link ConcurrentTransactionDataFetcher} as JSON
+ * endpoints, on the JDK's built-in {@code com.sun.net.httpserver}.
+ * 
+ * Every request runs on a virtual thread of its own when the JDK has them (JDK 21 and later).
+ * Older JDKs run requests on a fixed pool of {@link #PLATFORM_THREADS} platform threads instead;
+ * queries never block, so the pool keeps up with thousands of open connections.
+ * 
+ * Every endpoint answers GET requests:
+ * <pre>
+ * /version                             dataset version
+ * /total                               getTotalTransactionAmount
+ * /total/sent-by?client=..             getTotalTransactionAmountSentBy, an object keyed by client
+ * /max                                 getMaxTransactionAmount
+ * /transactions/count-above?amount=..  countTransactionsAbove
+ * /clients/count                       countUniqueClients
+ * /clients/open-issues?client=..       hasOpenComplianceIssues, an object keyed by client
+ * /beneficiaries                       getTransactionsByBeneficiaryName as name/transaction pairs, streamed
+ * /issues/unsolved                     getUnsolvedIssues, ascending and streamed
+ * /issues/open?client=..               getOpenIssues, ascending and streamed
+ * /issues/solved/messages              getAllSolvedIssueMessages, streamed
+ * /transactions/top?k=3                getTopTransactionsByAmount
+ * /senders/top?k=10                    getTopSenders
+ * /senders/top-sender                  getTopSender, null if there is none
+ * /report?topN=3                       report of every metric, streamed
+ * /metrics                             snapshot of the fetcher's query metrics
+ * </pre>
+ * The batch endpoints, taking clients, accept any number of {@code client} parameters and also a
+ * POST body holding a JSON array of client names. They answer every client from the same state
+ * of the data. Streamed responses are written to the connection with chunked transfer encoding
+ * while they are serialized, so large results are never held as one JSON document; the others
+ * are sent with a content length.
+ */
+public final class TransactionQueryServer implements AutoCloseable {
+
+    /** Request threads when the JDK has no virtual threads. */
+    public static final int PLATFORM_THREADS = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+
+    private static final int BACKLOG = 10_000;
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final ConcurrentTransactionDataFetcher fetcher;
+
+    private TransactionQueryServer(HttpServer server, ExecutorService executor, boolean virtualThreads, ConcurrentTransactionDataFetcher fetcher) {
+        this.server = server;
+        this.executor = executor;
+        this.virtualThreads = virtualThreads;
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Starts a server answering queries on the given fetcher.
+     * 
+     * @param fetcher The fetcher to query; it may be appended to while the server runs.
+     * @param address The address to listen on; port 0 picks a free port.
+     * @return The running server.
+     * @throws IOException If the address cannot be bound.
+     */
+    public static TransactionQueryServer start(ConcurrentTransactionDataFetcher fetcher, InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, BACKLOG);
+        ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+        ExecutorService executor = virtual != null ? virtual : Executors.newFixedThreadPool(PLATFORM_THREADS, new RequestThreadFactory());
+        TransactionQueryServer queryServer = new TransactionQueryServer(server, executor, virtual != null, fetcher);
+        queryServer.addEndpoints();
+        server.setExecutor(executor);
+        server.start();
+        return queryServer;
+    }
+
+    /**
+     * Returns {@code Executors.newVirtualThreadPerTaskExecutor()} when the JDK has it and the
+     * preview it was part of before JDK 21 is enabled.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the address the server listens on.
+     * 
+     * @return The bound address, with the actual port.
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Returns whether requests run on virtual threads.
+     * 
+     * @return True on a virtual thread per request, false on the platform thread pool.
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Stops accepting requests, closes every connection and stops the request threads.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void addEndpoints() {
+        endpoint("/version", request -> number(fetcher.version()));
+        endpoint("/total", request -> number(fetcher.getTotalTransactionAmount()));
+        endpoint("/total/sent-by", request -> {
+            List<String> clients = request.clients();
+            double[] totals = fetcher.read(snapshot -> {
+                double[] sent = new double[clients.size()];
+                for (int i = 0; i < sent.length; i++) {
+                    sent[i] = snapshot.getTotalTransactionAmountSentBy(clients.get(i));
+                }
+                return sent;
+            });
+            return json -> {
+                json.writeStartObject();
+                for (int i = 0; i < totals.length; i++) {
+                    json.writeNumberField(clients.get(i), totals[i]);
+                }
+                json.writeEndObject();
+            };
+        });
+        endpoint("/max", request -> number(fetcher.getMaxTransactionAmount()));
+        endpoint("/transactions/count-above", request -> number(fetcher.countTransactionsAbove(request.doubleParameter("amount"))));
+        endpoint("/clients/count", request -> number(fetcher.countUniqueClients()));
+        endpoint("/clients/open-issues", request -> {
+            List<String> clients = request.clients();
+            boolean[] open = fetcher.read(snapshot -> {
+                boolean[] hasOpenIssues = new boolean[clients.size()];
+                for (int i = 0; i < hasOpenIssues.length; i++) {
+                    hasOpenIssues[i] = snapshot.hasOpenComplianceIssues(clients.get(i));
+                }
+                return hasOpenIssues;
+            });
+            return json -> {
+                json.writeStartObject();
+                for (int i = 0; i < open.length; i++) {
+                    json.writeBooleanField(clients.get(i), open[i]);
+                }
+                json.writeEndObject();
+            };
+        });
+        streamedEndpoint("/beneficiaries", request -> {
+            Map<String, Transaction> transactionsByBeneficiary = fetcher.getTransactionsByBeneficiaryName();
+            return json -> writeTransactionsByName(json, transactionsByBeneficiary);
+        });
+        streamedEndpoint("/issues/unsolved", request -> {
+            IntBitmap unsolvedIssues = fetcher.read(TransactionDataFetcher::getUnsolvedIssues);
+            return json -> json.writeArray(unsolvedIssues.toArray(), 0, unsolvedIssues.cardinality());
+        });
+        streamedEndpoint("/issues/open", request -> {
+            List<String> clients = request.clients();
+            IntBitmap openIssues = fetcher.read(snapshot -> snapshot.getOpenIssues(clients));
+            return json -> json.writeArray(openIssues.toArray(), 0, openIssues.cardinality());
+        });
+        streamedEndpoint("/issues/solved/messages", request -> {
+            List<String> messages = fetcher.getAllSolvedIssueMessages();
+            return json -> writeStrings(json, messages);
+        });
+        endpoint("/transactions/top", request -> {
+            List<Transaction> top = fetcher.getTopTransactionsByAmount(request.intParameter("k", 3));
+            return json -> writeTransactions(json, top);
+        });
+        endpoint("/senders/top", request -> {
+            List<Map.Entry<String, Double>> senders = fetcher.getTopSenders(request.intParameter("k", 10));
+            return json -> {
+                json.writeStartArray();
+                for (Map.Entry<String, Double> sender : senders) {
+                    json.writeStartObject();
+                    json.writeStringField("sender", sender.getKey());
+                    json.writeNumberField("total", sender.getValue());
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+            };
+        });
+        endpoint("/senders/top-sender", request -> {
+            String topSender = fetcher.getTopSender().orElse(null);
+            return json -> json.writeString(topSender);
+        });
+        streamedEndpoint("/report", request -> {
+            TransactionReport report = fetcher.report(EnumSet.allOf(ReportMetric.class), request.intParameter("topN", TransactionReport.DEFAULT_TOP_N));
+            return json -> writeReport(json, report);
+        });
+        endpoint("/metrics", request -> {
+            String metrics = fetcher.metrics().snapshot().toJson();
+            return json -> json.writeRawValue(metrics);
+        });
+    }
+
+    private void endpoint(String path, Endpoint endpoint) {
+        server.createContext(path, exchange -> handle(exchange, path, endpoint, false));
+    }
+
+    private void streamedEndpoint(String path, Endpoint endpoint) {
+        server.createContext(path, exchange -> handle(exchange, path, endpoint, true));
+    }
+
+    private static void handle(HttpExchange exchange, String path, Endpoint endpoint, boolean streamed) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            // contexts match by prefix
+            if (!exchange.getRequestURI().getPath().equals(path)) {
+                sendError(exchange, 404, "No endpoint " + exchange.getRequestURI().getPath());
+                return;
+            }
+            if (!method.equals("GET") && !method.equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                sendError(exchange, 405, "Method " + method + " not allowed");
+                return;
+            }
+            JsonBody body;
+            ByteArrayOutputStream buffer = null;
+            try {
+                body = endpoint.handle(Request.parse(exchange));
+                if (!streamed) {
+                    buffer = new ByteArrayOutputStream(256);
+                    write(body, buffer);
+                }
+            } catch (IllegalArgumentException | JsonParseException | JsonMappingException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            } catch (IOException | RuntimeException e) {
+                // the exception may describe internals, so the client only learns that the query failed
+                System.err.println("Query " + exchange.getRequestURI() + " failed: " + e);
+                sendError(exchange, 500, "Internal error");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (streamed) {
+                exchange.sendResponseHeaders(200, 0);
+                write(body, exchange.getResponseBody());
+            } else {
+                exchange.sendResponseHeaders(200, buffer.size());
+                buffer.writeTo(exchange.getResponseBody());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void write(JsonBody body, OutputStream out) throws IOException {
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            body.writeTo(json);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        write(json -> {
+            json.writeStartObject();
+            json.writeStringField("error", message);
+            json.writeEndObject();
+        }, buffer);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, buffer.size());
+        buffer.writeTo(exchange.getResponseBody());
+    }
+
+    private static JsonBody number(double value) {
+        return json -> json.writeNumber(value);
+    }
+
+    private static JsonBody number(long value) {
+        return json -> json.writeNumber(value);
+    }
+
+    private static void writeStrings(JsonGenerator json, List<String> values) throws IOException {
+        json.writeStartArray();
+        for (String value : values) {
+            json.writeString(value);
+        }
+        json.writeEndArray();
+    }
+
+    private static void writeTransactions(JsonGenerator json, List<Transaction> transactions) throws IOException {
+        json.writeStartArray();
+        for (Transaction transaction : transactions) {
+            writeTransaction(json, transaction);
+        }
+        json.writeEndArray();
+    }
+
+    /**
+     * Writes transactions keyed by client name as an array of {@code name}/{@code transaction}
+     * pairs: JSON objects have no null keys, and the client without a name must stay distinct
+     * from a client named by the empty string.
+     */
+    private static void writeTransactionsByName(JsonGenerator json, Map<String, Transaction> transactions) throws IOException {
+        json.writeStartArray();
+        for (Map.Entry<String, Transaction> entry : transactions.entrySet()) {
+            json.writeStartObject();
+            json.writeStringField("name", entry.getKey());
+            json.writeFieldName("transaction");
+            writeTransaction(json, entry.getValue());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    private static void writeTransaction(JsonGenerator json, Transaction transaction) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("mtn", transaction.getMtn());
+        json.writeNumberField("amount", transaction.getAmount());
+        json.writeStringField("senderFullName", transaction.getSenderFullName());
+        json.writeNumberField("senderAge", transaction.getSenderAge());
+        json.writeStringField("beneficiaryFullName", transaction.getBeneficiaryFullName());
+        json.writeNumberField("beneficiaryAge", transaction.getBeneficiaryAge());
+        if (transaction.getIssueId() == null) {
+            json.writeNullField("issueId");
+        } else {
+            json.writeNumberField("issueId", transaction.getIssueId());
+        }
+        json.writeBooleanField("issueSolved", transaction.isIssueSolved());
+        json.writeStringField("issueMessage", transaction.getIssueMessage());
+        json.writeEndObject();
+    }
+
+    private static void writeReport(JsonGenerator json, TransactionReport report) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("totalTransactionAmount", report.getTotalTransactionAmount());
+        // an array like /senders/top, which keeps the sender without a name
+        json.writeArrayFieldStart("totalTransactionAmountBySender");
+        for (Map.Entry<String, Double> entry : report.getTotalTransactionAmountBySender().entrySet()) {
+            json.writeStartObject();
+            json.writeStringField("sender", entry.getKey());
+            json.writeNumberField("total", entry.getValue());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeNumberField("maxTransactionAmount", report.getMaxTransactionAmount());
+        json.writeNumberField("uniqueClientCount", report.getUniqueClientCount());
+        int[] unsolvedIssueIds = report.getUnsolvedIssueIds().stream().mapToInt(Integer::intValue).sorted().toArray();
+        json.writeFieldName("unsolvedIssueIds");
+        json.writeArray(unsolvedIssueIds, 0, unsolvedIssueIds.length);
+        json.writeFieldName("solvedIssueMessages");
+        writeStrings(json, report.getSolvedIssueMessages());
+        json.writeFieldName("transactionsByBeneficiaryName");
+        writeTransactionsByName(json, report.getTransactionsByBeneficiaryName());
+        json.writeFieldName("topTransactionsByAmount");
+        writeTransactions(json, report.getTopTransactionsByAmount());
+        json.writeStringField("topSender", report.getTopSender().orElse(null));
+        json.writeEndObject();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "transactions.json");
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        ConcurrentTransactionDataFetcher fetcher;
+        try {
+            fetcher = ConcurrentTransactionDataFetcher.fromJson(path, QueryMetrics.global());
+        } catch (TransactionParseException e) {
+            System.err.println("Malformed transactions file " + path + ": " + e.getMessage());
+            return;
+        } catch (IOException e) {
+            System.err.println("Cannot read transactions file " + path + ": " + e.getMessage());
+            return;
+        }
+        TransactionQueryServer server = start(fetcher, new InetSocketAddress(port));
+        System.out.println("Listening on http://localhost:" + server.address().getPort() + "/ with "
+                + (server.usesVirtualThreads() ? "a virtual thread per request" : PLATFORM_THREADS + " request threads"));
+    }
+
+    /**
+     * Runs the query of a request and returns how to write its result. Throwing
+     * {@link IllegalArgumentException} answers 400, any other exception 500 with a generic error.
+     */
+    private interface Endpoint {
+
+        JsonBody handle(Request request) throws IOException;
+    }
+
+    private interface JsonBody {
+
+        void writeTo(JsonGenerator json) throws IOException;
+    }
+
+    private static final class Request {
+
+        private final Map<String, List<String>> parameters;
+        private final List<String> clients;
+
+        private Request(Map<String, List<String>> parameters, List<String> clients) {
+            this.parameters = parameters;
+            this.clients = clients;
+        }
+
+        static Request parse(HttpExchange exchange) throws IOException {
+            Map<String, List<String>> parameters = new HashMap<>();
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    int equals = parameter.indexOf('=');
+                    String name = URLDecoder.decode(equals < 0 ? parameter : parameter.substring(0, equals), StandardCharsets.UTF_8);
+                    String value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+                    parameters.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+                }
+            }
+            List<String> clients = new ArrayList<>(parameters.getOrDefault("client", List.of()));
+            if (exchange.getRequestMethod().equals("POST")) {
+                try (InputStream body = exchange.getRequestBody()) {
+                    clients.addAll(Arrays.asList(MAPPER.readValue(body, String[].class)));
+                }
+                if (clients.contains(null)) {
+                    // answers are objects keyed by client name
+                    throw new IllegalArgumentException("Client names must not be null");
+                }
+            }
+            return new Request(parameters, clients);
+        }
+
+        List<String> clients() {
+            return clients;
+        }
+
+        double doubleParameter(String name) {
+            List<String> values = parameters.get(name);
+            if (values == null) {
+                throw new IllegalArgumentException("Missing parameter " + name);
+            }
+            return Double.parseDouble(values.get(0));
+        }
+
+        int intParameter(String name, int defaultValue) {
+            List<String> values = parameters.get(name);
+            // NumberFormatException is an IllegalArgumentException and answers 400
+            return values == null ? defaultValue : Integer.parseInt(values.get(0));
+        }
+    }
+
+    private static final class RequestThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            return new Thread(task, "query-server-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.smallworld.shard;
+
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionJsonReader;
+import com.smallworld.store.ColumnarTransactionStore;
+import com.smallworld.store.StringDictionary;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link Shard} held in the current JVM, over a transactions file or a list of transactions.
+ * 
+ * The rows are loaded into a {@link ColumnarTransactionStore} on the first call, on the thread
+ * that makes it, so a coordinator running shards on an executor loads them in parallel.
+ */
+public final class LocalShard implements Shard {
+
+    private final Path path;
+    private final List<Transaction> transactions;
+    private ColumnarTransactionStore store;
+
+    private LocalShard(Path path, List<Transaction> transactions) {
+        this.path = path;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Creates a shard over a JSON array or NDJSON transactions file.
+     * 
+     * @param path The transactions file.
+     * @return A shard that reads the file when it is loaded.
+     */
+    public static LocalShard ofFile(Path path) {
+        return new LocalShard(path, null);
+    }
+
+    /**
+     * Creates a shard over transactions already in memory.
+     * 
+     * @param transactions The rows of the shard.
+     * @return A shard holding the transactions.
+     */
+    public static LocalShard of(List<Transaction> transactions) {
+        return new LocalShard(null, List.copyOf(transactions));
+    }
+
+    @Override
+    public synchronized int load() throws IOException {
+        return store().mtns().size();
+    }
+
+    @Override
+    public synchronized Set<String> mtns(int partition, int partitions) throws IOException {
+        StringDictionary mtns = store().mtns();
+        Set<String> distinct = new HashSet<>();
+        for (int mtn = 0, size = mtns.size(); mtn < size; mtn++) {
+            String value = mtns.get(mtn);
+            if (Shard.partitionOf(value, partitions) == partition) {
+                distinct.add(value);
+            }
+        }
+        return distinct;
+    }
+
+    @Override
+    public synchronized ShardAggregates aggregate(Set<String> excludedMtns, int topN, int clientPrecision) throws IOException {
+        return ShardAggregates.of(store(), excludedMtns, topN, clientPrecision);
+    }
+
+    private ColumnarTransactionStore store() throws IOException {
+        if (store == null) {
+            ColumnarTransactionStore loaded = new ColumnarTransactionStore();
+            if (path != null) {
+                TransactionJsonReader.read(path, loaded::append);
+            } else {
+                transactions.forEach(loaded::append);
+            }
+            store = loaded;
+        }
+        return store;
+    }
+
+    @Override
+    public String toString() {
+        return "LocalShard[" + (path != null ? path : transactions.size() + " transactions") + "]";
+    }
+}
@@ -0,0 +1,59 @@
+package com.smallworld.shard;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * A part of a dataset held by one worker, such as the transactions of one day and region.
+ * 
+ * The {@link ShardCoordinator} talks to a shard in three steps. {@link #load()} brings the rows
+ * in and counts the shard's mtns. {@link #mtns(int, int)} then reports them one hash partition
+ * at a time, from which the coordinator works out which mtns earlier shards already hold.
+ * {@link #aggregate(Set, int, int)} finally computes the shard's partial aggregates without
+ * counting those mtns twice. Only mtns and {@link ShardAggregates} cross the shard boundary, so a
+ * shard may live in another thread, process or JVM.
+ */
+public interface Shard {
+
+    /**
+     * Loads the rows of the shard unless they are loaded already.
+     * 
+     * @return The number of distinct mtns of the shard.
+     * @throws IOException If the rows cannot be loaded.
+     */
+    int load() throws IOException;
+
+    /**
+     * Returns the distinct mtns of the shard that fall into one hash partition.
+     * 
+     * @param partition The partition, from 0 to {@code partitions - 1}.
+     * @param partitions The number of partitions.
+     * @return The mtns whose {@link #partitionOf(String, int)} is the partition.
+     * @throws IOException If the rows cannot be loaded.
+     */
+    Set<String> mtns(int partition, int partitions) throws IOException;
+
+    /**
+     * Computes the partial aggregates of the shard.
+     * 
+     * @param excludedMtns The mtns held by earlier shards.
+     * @param topN The number of top transactions to keep.
+     * @param clientPrecision {@link ShardAggregates#EXACT_CLIENTS}, or the precision of the sketch counting clients.
+     * @return The aggregates of the shard's rows.
+     * @throws IOException If the rows cannot be loaded.
+     */
+    ShardAggregates aggregate(Set<String> excludedMtns, int topN, int clientPrecision) throws IOException;
+
+    /**
+     * Returns the hash partition of an mtn. {@link String#hashCode()} is specified, so shards in
+     * different JVMs agree on it.
+     * 
+     * @param mtn The mtn.
+     * @param partitions The number of partitions.
+     * @return The partition, from 0 to {@code partitions - 1}.
+     */
+    static int partitionOf(String mtn, int partitions) {
+        // spreads the hash of numeric mtns, which differ in their last characters only
+        return Math.floorMod(mtn.hashCode() * 0x9E3779B9, partitions);
+    }
+}
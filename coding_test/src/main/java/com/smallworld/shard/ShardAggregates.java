@@ -0,0 +1,409 @@
+package com.smallworld.shard;
+
+import com.smallworld.aggregate.ExactSum;
+import com.smallworld.aggregate.HyperLogLog;
+import com.smallworld.aggregate.TopK;
+import com.smallworld.aggregate.TopRows;
+import com.smallworld.data.MinorUnits;
+import com.smallworld.data.Transaction;
+import com.smallworld.issue.IntBitmap;
+import com.smallworld.store.StringDictionary;
+import com.smallworld.store.TransactionColumns;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Serializable, mergeable partial aggregates of the rows of one or more shards.
+ * 
+ * Every shard computes the aggregates of its own rows with
+ * {@link #of(TransactionColumns, Set, int)} and ships them to the {@link ShardCoordinator},
+ * which merges them in shard order with {@link #merge(ShardAggregates)}. The merged aggregates
+ * answer the queries of {@link com.smallworld.TransactionDataFetcher} as if the rows of all
+ * shards had been appended to one fetcher in shard order.
+ * 
+ * The total, the per sender totals and the top transactions count each mtn once, for its first
+ * row. A shard cannot tell on its own whether an earlier shard holds one of its mtns, so it is
+ * given the mtns that earlier shards already hold: rows of those mtns are left out of the mtn
+ * deduplicated values and count for everything else, like repeated rows of a single fetcher.
+ * 
+ * Sums are exact {@link MinorUnits}, so merged totals equal those of a single fetcher whatever
+ * the split. Only the top {@code topN} transactions are kept.
+ * 
+ * Clients are counted exactly with a set of their names by default. With a client precision,
+ * they are counted by a fixed size {@link HyperLogLog} sketch instead, at the cost of an
+ * approximate {@link #countUniqueClients()}. The sketch only replaces that set: the per sender
+ * totals, the first transaction of every beneficiary and the open issues of every client are
+ * still kept by name, so a partial remains proportional to the number of clients of its shard
+ * and the sketch saves at most one name per client.
+ */
+public final class ShardAggregates implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    /** Client precision that counts clients exactly. */
+    public static final int EXACT_CLIENTS = 0;
+
+    private static final Comparator<Map.Entry<String, Double>> SENDER_ORDER = Map.Entry.<String, Double>comparingByValue()
+            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+
+    private final int topN;
+    private long rowCount;
+    private final ExactSum total = new ExactSum();
+    private long max = Long.MIN_VALUE;
+    // counting each mtn once, for the sender totals and ranking
+    private final Map<String, ExactSum> sentBySender = new HashMap<>();
+    // counting every row, for the top sender
+    private final Map<String, ExactSum> rowsSentBySender = new HashMap<>();
+    // exactly one of the two is set; the set may hold null, a client without a name
+    private final Set<String> clients;
+    private final HyperLogLog clientSketch;
+    private final Map<String, Transaction> transactionsByBeneficiary = new HashMap<>();
+    private IntBitmap openIssues = new IntBitmap();
+    private final Map<String, IntBitmap> openIssuesByClient = new HashMap<>();
+    private final List<String> solvedIssueMessages = new ArrayList<>();
+    // ordered by amount descending, earlier rows first among equal amounts
+    private List<Transaction> topTransactions = new ArrayList<>();
+
+    /**
+     * Creates the aggregates of no rows at all, counting clients exactly.
+     * 
+     * @param topN The number of top transactions to keep.
+     */
+    public ShardAggregates(int topN) {
+        this(topN, EXACT_CLIENTS);
+    }
+
+    /**
+     * Creates the aggregates of no rows at all.
+     * 
+     * @param topN The number of top transactions to keep.
+     * @param clientPrecision {@link #EXACT_CLIENTS}, or the precision of the sketch counting clients.
+     */
+    public ShardAggregates(int topN, int clientPrecision) {
+        if (topN < 0) {
+            throw new IllegalArgumentException("topN must not be negative: " + topN);
+        }
+        this.topN = topN;
+        this.clients = clientPrecision == EXACT_CLIENTS ? new HashSet<>() : null;
+        this.clientSketch = clientPrecision == EXACT_CLIENTS ? null : new HyperLogLog(clientPrecision);
+    }
+
+    /**
+     * Computes the aggregates of every row of a shard in one pass, counting clients exactly.
+     * 
+     * @param store The rows of the shard.
+     * @param excludedMtns The mtns held by earlier shards, left out of the mtn deduplicated values.
+     * @param topN The number of top transactions to keep.
+     * @return The aggregates of the shard.
+     */
+    public static ShardAggregates of(TransactionColumns store, Set<String> excludedMtns, int topN) {
+        return of(store, excludedMtns, topN, EXACT_CLIENTS);
+    }
+
+    /**
+     * Computes the aggregates of every row of a shard in one pass.
+     * 
+     * @param store The rows of the shard.
+     * @param excludedMtns The mtns held by earlier shards, left out of the mtn deduplicated values.
+     * @param topN The number of top transactions to keep.
+     * @param clientPrecision {@link #EXACT_CLIENTS}, or the precision of the sketch counting clients.
+     * @return The aggregates of the shard.
+     */
+    public static ShardAggregates of(TransactionColumns store, Set<String> excludedMtns, int topN, int clientPrecision) {
+        ShardAggregates aggregates = new ShardAggregates(topN, clientPrecision);
+        StringDictionary mtns = store.mtns();
+        StringDictionary clients = store.clients();
+        StringDictionary messages = store.messages();
+        TopRows topRows = new TopRows(topN);
+        for (int row = 0, size = store.size(); row < size; row++) {
+            long amount = store.amountUnits(row);
+            String sender = clients.get(store.sender(row));
+            String beneficiary = clients.get(store.beneficiary(row));
+            aggregates.max = Math.max(aggregates.max, amount);
+            if (store.isFirstOfMtn(row) && !isExcluded(store.mtn(row), mtns, excludedMtns)) {
+                aggregates.total.add(amount);
+                topRows.offer(store.amount(row), row);
+                if (sender != null) {
+                    aggregates.sentBySender.computeIfAbsent(sender, name -> new ExactSum()).add(amount);
+                }
+            }
+            if (sender != null) {
+                aggregates.rowsSentBySender.computeIfAbsent(sender, name -> new ExactSum()).add(amount);
+            }
+            if (!aggregates.transactionsByBeneficiary.containsKey(beneficiary)) {
+                aggregates.transactionsByBeneficiary.put(beneficiary, store.toTransaction(row));
+            }
+            int issueId = store.issueId(row);
+            if (store.isIssueSolved(row)) {
+                aggregates.solvedIssueMessages.add(messages.get(store.issueMessage(row)));
+            } else if (issueId != TransactionColumns.NO_ISSUE) {
+                aggregates.openIssues.add(issueId);
+                aggregates.addOpenIssue(sender, issueId);
+                aggregates.addOpenIssue(beneficiary, issueId);
+            }
+        }
+        for (int client = 0, size = clients.size(); client < size; client++) {
+            aggregates.addClient(clients.get(client));
+        }
+        if (store.hasNullClient()) {
+            aggregates.addClient(null);
+        }
+        for (int row : topRows.rowsDescending()) {
+            aggregates.topTransactions.add(store.toTransaction(row));
+        }
+        aggregates.rowCount = store.size();
+        return aggregates;
+    }
+
+    private static boolean isExcluded(int mtn, StringDictionary mtns, Set<String> excludedMtns) {
+        return !excludedMtns.isEmpty() && excludedMtns.contains(mtns.get(mtn));
+    }
+
+    private void addClient(String client) {
+        if (clients != null) {
+            clients.add(client);
+        } else {
+            clientSketch.add(client);
+        }
+    }
+
+    private void addOpenIssue(String client, int issueId) {
+        if (client != null) {
+            openIssuesByClient.computeIfAbsent(client, name -> new IntBitmap()).add(issueId);
+        }
+    }
+
+    /**
+     * Merges the aggregates of the shards that directly follow the shards of this instance.
+     * 
+     * @param following The aggregates of the next shards, computed without the mtns of this instance.
+     * @return This instance, holding the aggregates of both.
+     * @throws IllegalArgumentException If the aggregates keep a different number of top transactions
+     *         or count clients differently.
+     */
+    public ShardAggregates merge(ShardAggregates following) {
+        if (following.topN != topN) {
+            throw new IllegalArgumentException("Cannot merge the top " + following.topN + " transactions into the top " + topN);
+        }
+        if (following.clientPrecision() != clientPrecision()) {
+            throw new IllegalArgumentException("Cannot merge clients counted with precision " + following.clientPrecision()
+                    + " into precision " + clientPrecision());
+        }
+        rowCount += following.rowCount;
+        total.add(following.total);
+        max = Math.max(max, following.max);
+        following.sentBySender.forEach((sender, sent) -> sentBySender.computeIfAbsent(sender, name -> new ExactSum()).add(sent));
+        following.rowsSentBySender.forEach((sender, sent) -> rowsSentBySender.computeIfAbsent(sender, name -> new ExactSum()).add(sent));
+        if (clients != null) {
+            clients.addAll(following.clients);
+        } else {
+            clientSketch.merge(following.clientSketch);
+        }
+        following.transactionsByBeneficiary.forEach(transactionsByBeneficiary::putIfAbsent);
+        openIssues = openIssues.or(following.openIssues);
+        following.openIssuesByClient.forEach((client, issues) -> openIssuesByClient.merge(client, issues.copy(), IntBitmap::or));
+        solvedIssueMessages.addAll(following.solvedIssueMessages);
+        topTransactions = mergeDescending(topTransactions, following.topTransactions, topN);
+        return this;
+    }
+
+    /**
+     * Merges two lists ordered by amount descending, taking the first list's transaction first
+     * among equal amounts, as a stable sort of both lists in row order would.
+     */
+    private static List<Transaction> mergeDescending(List<Transaction> first, List<Transaction> second, int limit) {
+        List<Transaction> merged = new ArrayList<>(Math.min(limit, first.size() + second.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < first.size() || j < second.size())) {
+            if (j == second.size() || (i < first.size() && Double.compare(first.get(i).getAmount(), second.get(j).getAmount()) >= 0)) {
+                merged.add(first.get(i++));
+            } else {
+                merged.add(second.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the number of rows aggregated.
+     * 
+     * @return The row count.
+     */
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of top transactions kept.
+     * 
+     * @return The largest {@code k} accepted by {@link #getTopTransactionsByAmount(int)}.
+     */
+    public int topN() {
+        return topN;
+    }
+
+    /**
+     * Returns how clients are counted.
+     * 
+     * @return {@link #EXACT_CLIENTS}, or the precision of the sketch counting clients.
+     */
+    public int clientPrecision() {
+        return clients != null ? EXACT_CLIENTS : clientSketch.precision();
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions, counting each mtn once.
+     * 
+     * @return The total sum of amounts for all unique transactions.
+     */
+    public double getTotalTransactionAmount() {
+        return total.value();
+    }
+
+    /**
+     * Returns the sum of the amounts of all transactions sent by the client, counting each mtn once.
+     * 
+     * @param senderFullName The full name of the sender.
+     * @return The deduplicated total, or 0.0 if the client never sent a transaction.
+     */
+    public double getTotalTransactionAmountSentBy(String senderFullName) {
+        ExactSum sent = sentBySender.get(senderFullName);
+        return sent == null ? 0.0 : sent.value();
+    }
+
+    /**
+     * Returns the highest transaction amount.
+     * 
+     * @return The highest transaction amount or 0.0 if there are no transactions.
+     */
+    public double getMaxTransactionAmount() {
+        return rowCount == 0 ? 0.0 : MinorUnits.toAmount(max);
+    }
+
+    /**
+     * Counts the clients that either sent or received a transaction.
+     * 
+     * With a client precision the count is an estimate, within three times
+     * {@link HyperLogLog#relativeStandardError()} of the exact count for 99.7% of datasets.
+     * 
+     * @return The count of unique clients.
+     */
+    public long countUniqueClients() {
+        return clients != null ? clients.size() : clientSketch.estimate();
+    }
+
+    /**
+     * Checks whether the client sends or receives a transaction with an unsolved compliance issue.
+     * 
+     * @param clientFullName The full name of the client.
+     * @return True if the client has at least one unresolved compliance issue.
+     */
+    public boolean hasOpenComplianceIssues(String clientFullName) {
+        IntBitmap issues = openIssuesByClient.get(clientFullName);
+        return issues != null && !issues.isEmpty();
+    }
+
+    /**
+     * Returns the first transaction of every beneficiary, by beneficiary name.
+     * 
+     * @return A new map from beneficiary names to transactions.
+     */
+    public Map<String, Transaction> getTransactionsByBeneficiaryName() {
+        return new HashMap<>(transactionsByBeneficiary);
+    }
+
+    /**
+     * Returns the identifiers of all open compliance issues.
+     * 
+     * @return A new set of issue ids.
+     */
+    public Set<Integer> getUnsolvedIssueIds() {
+        Set<Integer> unsolvedIssueIds = new HashSet<>();
+        openIssues.forEach(unsolvedIssueIds::add);
+        return unsolvedIssueIds;
+    }
+
+    /**
+     * Returns the identifiers of all open compliance issues as a compressed bitmap.
+     * 
+     * @return A new bitmap of issue ids.
+     */
+    public IntBitmap getUnsolvedIssues() {
+        return openIssues.copy();
+    }
+
+    /**
+     * Returns the messages of all solved compliance issues, in row order.
+     * 
+     * @return A new list of messages.
+     */
+    public List<String> getAllSolvedIssueMessages() {
+        return new ArrayList<>(solvedIssueMessages);
+    }
+
+    /**
+     * Returns the 3 transactions with the highest amounts, sorted in descending order.
+     * 
+     * @return A list containing at most 3 transactions by amount.
+     */
+    public List<Transaction> getTop3TransactionsByAmount() {
+        return getTopTransactionsByAmount(3);
+    }
+
+    /**
+     * Returns the k transactions with the highest amounts, sorted in descending order, counting
+     * each mtn once. Ties keep the transaction of the earlier row.
+     * 
+     * @param k The number of transactions to return, at most {@link #topN()}.
+     * @return A new list containing at most k transactions by amount descending.
+     * @throws IllegalArgumentException If k is negative or larger than the kept transactions.
+     */
+    public List<Transaction> getTopTransactionsByAmount(int k) {
+        if (k < 0 || k > topN) {
+            throw new IllegalArgumentException("k must be between 0 and " + topN + ": " + k);
+        }
+        return new ArrayList<>(topTransactions.subList(0, Math.min(k, topTransactions.size())));
+    }
+
+    /**
+     * Returns the k senders with the highest totals counting each mtn once, sorted in descending
+     * order; ties rank the smaller name first.
+     * 
+     * @param k The number of senders to return.
+     * @return Sender names with their deduplicated totals, by total descending.
+     */
+    public List<Map.Entry<String, Double>> getTopSenders(int k) {
+        TopK<Map.Entry<String, Double>> topSenders = new TopK<>(k, SENDER_ORDER, Map.Entry::getKey);
+        sentBySender.forEach((sender, sent) -> topSenders.offer(new AbstractMap.SimpleImmutableEntry<>(sender, sent.value())));
+        return topSenders.toList();
+    }
+
+    /**
+     * Returns the sender with the highest sum of row amounts; ties return the smallest name.
+     * 
+     * @return An Optional containing the top sender, or an empty Optional if no row has a sender.
+     */
+    public Optional<String> getTopSender() {
+        String topSender = null;
+        long topSent = 0;
+        for (Map.Entry<String, ExactSum> entry : rowsSentBySender.entrySet()) {
+            long sent = entry.getValue().units();
+            int comparison = topSender == null ? 1 : Long.compare(sent, topSent);
+            if (comparison > 0 || (comparison == 0 && entry.getKey().compareTo(topSender) < 0)) {
+                topSender = entry.getKey();
+                topSent = sent;
+            }
+        }
+        return Optional.ofNullable(topSender);
+    }
+}
@@ -0,0 +1,177 @@
+package com.smallworld.shard;
+
+import com.smallworld.aggregate.TransactionAggregates;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the aggregates of a dataset split into {@link Shard}s.
+ * 
+ * Shards are kept in dataset order: the merged result equals a single fetcher over the rows of
+ * the first shard followed by those of the second, and so on. Aggregation runs in two rounds of
+ * parallel shard calls on the executor:
+ * <ol>
+ * <li>every shard is loaded and counts its mtns. The coordinator then splits the mtns into hash
+ * partitions of about {@code mtnsPerPartition} mtns and, one partition at a time, collects the
+ * shards' mtns of that partition. Walking the shards in order, it assigns each mtn to the first
+ * shard holding it, so every later shard holding it is told to exclude it. For shards
+ * partitioned by day and region these exclusion sets are usually empty.</li>
+ * <li>every shard computes its {@link ShardAggregates}, which are merged in shard order.</li>
+ * </ol>
+ * 
+ * The coordinator only holds the mtns of one partition and the exclusion sets at a time, so its
+ * memory is O(mtnsPerPartition + duplicate mtns) rather than O(total mtns). The price is that
+ * every shard reads its mtns once per partition.
+ */
+public final class ShardCoordinator {
+
+    /** Number of mtns the coordinator deduplicates at once when no other number is given. */
+    public static final int DEFAULT_MTNS_PER_PARTITION = 1 << 20;
+
+    private final List<? extends Shard> shards;
+    private final ExecutorService executor;
+    private final int mtnsPerPartition;
+
+    /**
+     * Creates a coordinator over the given shards.
+     * 
+     * @param shards The shards in dataset order.
+     * @param executor Runs the shard calls; its parallelism bounds the shards loaded at once.
+     */
+    public ShardCoordinator(List<? extends Shard> shards, ExecutorService executor) {
+        this(shards, executor, DEFAULT_MTNS_PER_PARTITION);
+    }
+
+    /**
+     * Creates a coordinator over the given shards.
+     * 
+     * @param shards The shards in dataset order.
+     * @param executor Runs the shard calls; its parallelism bounds the shards loaded at once.
+     * @param mtnsPerPartition The number of shard mtns, counting every shard, deduplicated at once.
+     */
+    public ShardCoordinator(List<? extends Shard> shards, ExecutorService executor, int mtnsPerPartition) {
+        if (mtnsPerPartition <= 0) {
+            throw new IllegalArgumentException("mtnsPerPartition must be positive: " + mtnsPerPartition);
+        }
+        this.shards = List.copyOf(shards);
+        this.executor = executor;
+        this.mtnsPerPartition = mtnsPerPartition;
+    }
+
+    /**
+     * Computes the aggregates of all shards, keeping the top {@link TransactionAggregates#TOP_ROWS}
+     * transactions.
+     * 
+     * @return The merged aggregates.
+     * @throws IOException If a shard cannot be loaded.
+     */
+    public ShardAggregates aggregate() throws IOException {
+        return aggregate(TransactionAggregates.TOP_ROWS);
+    }
+
+    /**
+     * Computes the aggregates of all shards, counting clients exactly.
+     * 
+     * @param topN The number of top transactions to keep.
+     * @return The merged aggregates.
+     * @throws IOException If a shard cannot be loaded.
+     */
+    public ShardAggregates aggregate(int topN) throws IOException {
+        return aggregate(topN, ShardAggregates.EXACT_CLIENTS);
+    }
+
+    /**
+     * Computes the aggregates of all shards.
+     * 
+     * Counting clients exactly ships a set of every client name of every shard to the
+     * coordinator; with a client precision, every shard ships a
+     * {@link com.smallworld.aggregate.HyperLogLog} sketch of {@code 2^clientPrecision} bytes in
+     * place of that set and the client count is an estimate. The other aggregates are still kept
+     * per client name either way, see {@link ShardAggregates}.
+     * 
+     * @param topN The number of top transactions to keep.
+     * @param clientPrecision {@link ShardAggregates#EXACT_CLIENTS}, or the precision of the sketch counting clients.
+     * @return The merged aggregates.
+     * @throws IOException If a shard cannot be loaded.
+     */
+    public ShardAggregates aggregate(int topN, int clientPrecision) throws IOException {
+        // fail before loading any shard
+        ShardAggregates merged = new ShardAggregates(topN, clientPrecision);
+        List<Callable<Integer>> loads = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            loads.add(shard::load);
+        }
+        long totalMtns = 0;
+        for (int mtns : invokeAll(loads)) {
+            totalMtns += mtns;
+        }
+
+        List<Set<String>> excluded = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            excluded.add(new HashSet<>());
+        }
+        int partitions = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (totalMtns + mtnsPerPartition - 1) / mtnsPerPartition));
+        for (int partition = 0; partition < partitions; partition++) {
+            int current = partition;
+            List<Callable<Set<String>>> reads = new ArrayList<>(shards.size());
+            for (Shard shard : shards) {
+                reads.add(() -> shard.mtns(current, partitions));
+            }
+            List<Set<String>> shardMtns = invokeAll(reads);
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < shards.size(); i++) {
+                for (String mtn : shardMtns.get(i)) {
+                    if (!seen.add(mtn)) {
+                        excluded.get(i).add(mtn);
+                    }
+                }
+            }
+        }
+
+        List<Callable<ShardAggregates>> aggregations = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            Shard shard = shards.get(i);
+            Set<String> shardExcluded = excluded.get(i);
+            aggregations.add(() -> shard.aggregate(shardExcluded, topN, clientPrecision));
+        }
+
+        for (ShardAggregates partial : invokeAll(aggregations)) {
+            merged.merge(partial);
+        }
+        return merged;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for shards");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
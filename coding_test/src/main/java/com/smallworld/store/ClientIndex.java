@@ -0,0 +1,178 @@
+package com.smallworld.store;
+
+import com.smallworld.aggregate.ExactSum;
+
+import java.util.Arrays;
+
+/**
+ * Per client index over a {@link TransactionColumns}.
+ * 
+ * For every client id it keeps the posting lists of row positions where the client is the
+ * sender and where it is the beneficiary and the total amount sent by the client counting each
+ * mtn once. Per client queries then cost a dictionary lookup plus O(1) or O(postings) work
+ * instead of a full scan. Open issues per client are tracked by the
+ * {@link com.smallworld.issue.IssueStateEngine}.
+ * 
+ * The index is kept current by calling {@link #add(int)} for every row appended to the store.
+ */
+public final class ClientIndex {
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final TransactionColumns store;
+
+    private int[][] senderRows = new int[16][];
+    private int[] senderRowCounts = new int[16];
+    private int[][] beneficiaryRows = new int[16][];
+    private int[] beneficiaryRowCounts = new int[16];
+    private ExactSum[] sentTotals = new ExactSum[16];
+
+    private ClientIndex(TransactionColumns store) {
+        this.store = store;
+    }
+
+    /**
+     * Builds the index over every row currently in the store.
+     * 
+     * @param store The store to index.
+     * @return A new index.
+     */
+    public static ClientIndex build(TransactionColumns store) {
+        ClientIndex index = new ClientIndex(store);
+        for (int row = 0, size = store.size(); row < size; row++) {
+            index.add(row);
+        }
+        return index;
+    }
+
+    /**
+     * Indexes a row that has been appended to the store.
+     * 
+     * @param row The position of the new row.
+     */
+    public void add(int row) {
+        ensureCapacity(store.clients().size());
+        int sender = store.sender(row);
+        int beneficiary = store.beneficiary(row);
+        if (sender != StringDictionary.NULL_ID) {
+            senderRows[sender] = append(senderRows[sender], senderRowCounts[sender]++, row);
+            if (store.isFirstOfMtn(row)) {
+                if (sentTotals[sender] == null) {
+                    sentTotals[sender] = new ExactSum();
+                }
+                sentTotals[sender].add(store.amountUnits(row));
+            }
+        }
+        if (beneficiary != StringDictionary.NULL_ID) {
+            beneficiaryRows[beneficiary] = append(beneficiaryRows[beneficiary], beneficiaryRowCounts[beneficiary]++, row);
+        }
+    }
+
+    /**
+     * Returns the rows where the client is the sender, in row order.
+     * 
+     * @param client The client id.
+     * @return A copy of the client's sender posting list.
+     */
+    public int[] senderRows(int client) {
+        if (!isIndexed(client) || senderRows[client] == null) {
+            return NO_ROWS;
+        }
+        return Arrays.copyOf(senderRows[client], senderRowCounts[client]);
+    }
+
+    /**
+     * Returns the rows where the client is the beneficiary, in row order.
+     * 
+     * @param client The client id.
+     * @return A copy of the client's beneficiary posting list.
+     */
+    public int[] beneficiaryRows(int client) {
+        if (!isIndexed(client) || beneficiaryRows[client] == null) {
+            return NO_ROWS;
+        }
+        return Arrays.copyOf(beneficiaryRows[client], beneficiaryRowCounts[client]);
+    }
+
+    /**
+     * Returns the number of rows where the client is the sender, without copying them.
+     * 
+     * @param client The client id.
+     * @return The length of the client's sender posting list.
+     */
+    public int senderRowCount(int client) {
+        return isIndexed(client) ? senderRowCounts[client] : 0;
+    }
+
+    /**
+     * Returns the number of rows where the client is the beneficiary, without copying them.
+     * 
+     * @param client The client id.
+     * @return The length of the client's beneficiary posting list.
+     */
+    public int beneficiaryRowCount(int client) {
+        return isIndexed(client) ? beneficiaryRowCounts[client] : 0;
+    }
+
+    /**
+     * Returns the first row where the client is the beneficiary.
+     * 
+     * @param client The client id.
+     * @return The first beneficiary row, or -1 if the client never received a transaction.
+     */
+    public int firstBeneficiaryRow(int client) {
+        if (!isIndexed(client) || beneficiaryRowCounts[client] == 0) {
+            return -1;
+        }
+        return beneficiaryRows[client][0];
+    }
+
+    /**
+     * Returns whether the client sent at least one transaction.
+     * 
+     * @param client The client id.
+     * @return True if the client appears as a sender.
+     */
+    public boolean isSender(int client) {
+        return isIndexed(client) && sentTotals[client] != null;
+    }
+
+    /**
+     * Returns the total amount sent by the client, counting each mtn once.
+     * 
+     * @param client The client id.
+     * @return The deduplicated total, or 0.0 if the client never sent a transaction.
+     */
+    public double totalSentBy(int client) {
+        if (!isIndexed(client) || sentTotals[client] == null) {
+            return 0.0;
+        }
+        return sentTotals[client].value();
+    }
+
+    private boolean isIndexed(int client) {
+        return client >= 0 && client < sentTotals.length;
+    }
+
+    private void ensureCapacity(int clients) {
+        if (clients <= sentTotals.length) {
+            return;
+        }
+        int capacity = Math.max(clients, sentTotals.length * 2);
+        senderRows = Arrays.copyOf(senderRows, capacity);
+        senderRowCounts = Arrays.copyOf(senderRowCounts, capacity);
+        beneficiaryRows = Arrays.copyOf(beneficiaryRows, capacity);
+        beneficiaryRowCounts = Arrays.copyOf(beneficiaryRowCounts, capacity);
+        sentTotals = Arrays.copyOf(sentTotals, capacity);
+    }
+
+    private static int[] append(int[] rows, int count, int row) {
+        if (rows == null) {
+            rows = new int[4];
+        } else if (count == rows.length) {
+            rows = Arrays.copyOf(rows, count * 2);
+        }
+        rows[count] = row;
+        return rows;
+    }
+}
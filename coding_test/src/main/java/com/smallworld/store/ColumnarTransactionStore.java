@@ -0,0 +1,343 @@
+package com.smallworld.store;
+
+import com.smallworld.data.MinorUnits;
+import com.smallworld.data.Transaction;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Column oriented, primitive specialized heap storage for transaction rows, normalized per mtn.
+ * 
+ * Rows are the transaction and issue join of {@code transactions.json}: a transaction with several
+ * issues is repeated once per issue. On append the store splits every row into its transaction
+ * part (mtn, amount, both names and both ages), kept once per mtn, and its issue part (issue id,
+ * message and solved flag), kept per row together with the index of its transaction. A row that
+ * repeats an mtn with the same transaction fields as the stored transaction only adds an issue;
+ * a row whose transaction fields differ gets a transaction record of its own, so every row reads
+ * back exactly as it was appended.
+ * 
+ * Every field is kept in its own primitive array: amounts as exact {@link MinorUnits} in
+ * {@code long[]}, names and issue messages as dictionary ids in {@code int[]}, numeric mtns as
+ * {@code long} values in a {@link MtnDictionary} and the solved flag as a packed bitset. A second bitset marks the first
+ * row of every mtn, so queries that count each transaction once regardless of its number of
+ * issues do not need a per call {@code HashSet}.
+ * 
+ * Rows are identified by their position, starting at 0, in insertion order. The store is not
+ * thread safe.
+ */
+public final class ColumnarTransactionStore implements TransactionColumns {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final MtnDictionary mtnDictionary = new MtnDictionary();
+    private final HeapStringDictionary clientDictionary = new HeapStringDictionary();
+    private final HeapStringDictionary messageDictionary = new HeapStringDictionary();
+
+    // transaction columns, one entry per distinct mtn and transaction fields
+    private int transactionCount;
+    private int[] mtns;
+    private long[] amounts;
+    private int[] senders;
+    private int[] senderAges;
+    private int[] beneficiaries;
+    private int[] beneficiaryAges;
+    private int[] latestTransactionOfMtn = new int[INITIAL_CAPACITY];
+    // records added for a row that repeats an mtn with different fields
+    private final BitSet divergentTransactions = new BitSet();
+
+    // issue columns, one entry per row
+    private int size;
+    private int[] transactions;
+    private int[] issueIds;
+    private int[] issueMessages;
+    private final BitSet issueSolved = new BitSet();
+    private final BitSet firstOfMtn = new BitSet();
+    private boolean nullClient;
+
+    public ColumnarTransactionStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public ColumnarTransactionStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        mtns = new int[capacity];
+        amounts = new long[capacity];
+        senders = new int[capacity];
+        senderAges = new int[capacity];
+        beneficiaries = new int[capacity];
+        beneficiaryAges = new int[capacity];
+        transactions = new int[capacity];
+        issueIds = new int[capacity];
+        issueMessages = new int[capacity];
+    }
+
+    /**
+     * Builds a store holding the given transactions in iteration order.
+     * 
+     * @param transactions The rows to store.
+     * @return A new store.
+     */
+    public static ColumnarTransactionStore of(Iterable<Transaction> transactions) {
+        ColumnarTransactionStore store = new ColumnarTransactionStore();
+        for (Transaction transaction : transactions) {
+            store.append(transaction);
+        }
+        return store;
+    }
+
+    /**
+     * Builds a store holding a copy of the given rows, for instance to append to the rows of a
+     * read-only {@link MappedTransactionStore}.
+     * 
+     * @param columns The rows to copy.
+     * @return A new store with the same rows, in the same order.
+     */
+    public static ColumnarTransactionStore of(TransactionColumns columns) {
+        ColumnarTransactionStore store = new ColumnarTransactionStore(columns.size());
+        for (int row = 0, size = columns.size(); row < size; row++) {
+            store.append(columns.toTransaction(row));
+        }
+        return store;
+    }
+
+    /**
+     * Appends a transaction row, copying its fields into the columns. The transaction fields
+     * are only stored if the row is the first of its mtn or differs from the stored transaction.
+     * 
+     * @param transaction The row to append.
+     * @return The position of the new row.
+     * @throws IllegalArgumentException If the mtn is null, the amount is not a whole number of minor
+     *         units or the issue id is {@link #NO_ISSUE}; the store is left unchanged.
+     */
+    public int append(Transaction transaction) {
+        if (transaction.getMtn() == null) {
+            // the mtn identifies the transaction, a row without one cannot be counted once
+            throw new IllegalArgumentException("Transaction has no mtn");
+        }
+        long amount = MinorUnits.of(transaction.getAmount());
+        int issueId = TransactionColumns.issueIdOf(transaction.getIssueId());
+        if (size == transactions.length) {
+            transactions = Arrays.copyOf(transactions, size * 2);
+            issueIds = Arrays.copyOf(issueIds, size * 2);
+            issueMessages = Arrays.copyOf(issueMessages, size * 2);
+        }
+        int row = size;
+        int mtnCount = mtnDictionary.size();
+        int mtn = mtnDictionary.intern(transaction.getMtn());
+        boolean newMtn = mtnDictionary.size() > mtnCount;
+        if (newMtn) {
+            firstOfMtn.set(row);
+        }
+        int sender = internClient(transaction.getSenderFullName());
+        int beneficiary = internClient(transaction.getBeneficiaryFullName());
+        int stored = newMtn ? -1 : latestTransactionOfMtn[mtn];
+        if (stored < 0 || !sameTransaction(stored, amount, sender, transaction.getSenderAge(), beneficiary, transaction.getBeneficiaryAge())) {
+            stored = addTransaction(mtn, amount, sender, transaction.getSenderAge(), beneficiary, transaction.getBeneficiaryAge());
+            if (!newMtn) {
+                divergentTransactions.set(stored);
+            }
+        }
+        transactions[row] = stored;
+        issueIds[row] = issueId;
+        issueSolved.set(row, transaction.isIssueSolved());
+        issueMessages[row] = messageDictionary.intern(transaction.getIssueMessage());
+        size++;
+        return row;
+    }
+
+    /**
+     * Marks the issue of a stored row as solved or unsolved.
+     * 
+     * @param row The row position.
+     * @param solved The new issue state.
+     */
+    public void setIssueSolved(int row, boolean solved) {
+        Objects.checkIndex(row, size);
+        issueSolved.set(row, solved);
+    }
+
+    /**
+     * Returns the number of stored transaction records. For a well formed join this is the
+     * number of distinct mtns.
+     * 
+     * @return The transaction record count.
+     */
+    public int transactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Passes the amounts of the first row of every mtn to the action, straight from the dense
+     * amount column and in row order. The column holds one amount per transaction record; the
+     * records of the first rows form ranges that are only interrupted by the rare records of rows
+     * repeating an mtn with different fields, so a well formed join is a single range.
+     * 
+     * @param action Receives every range; it must not modify the array or keep it.
+     */
+    public void forEachFirstAmountRange(AmountRange action) {
+        int from = 0;
+        while (from < transactionCount) {
+            int divergent = divergentTransactions.nextSetBit(from);
+            int to = divergent < 0 ? transactionCount : divergent;
+            if (to > from) {
+                action.accept(amounts, from, to);
+            }
+            from = to + 1;
+        }
+    }
+
+    /**
+     * Returns the number of rows that are the first of their mtn.
+     * 
+     * @return The number of amounts passed by {@link #forEachFirstAmountRange(AmountRange)}.
+     */
+    public int firstAmountCount() {
+        return transactionCount - divergentTransactions.cardinality();
+    }
+
+    /**
+     * Returns the transaction record a row belongs to. Rows of the same transaction share it.
+     * 
+     * @param row The row position.
+     * @return The transaction record index.
+     */
+    public int transactionOf(int row) {
+        Objects.checkIndex(row, size);
+        return transactions[row];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int mtn(int row) {
+        return mtns[transactions[row]];
+    }
+
+    @Override
+    public boolean isFirstOfMtn(int row) {
+        return firstOfMtn.get(row);
+    }
+
+    @Override
+    public double amount(int row) {
+        return MinorUnits.toAmount(amounts[transactions[row]]);
+    }
+
+    @Override
+    public long amountUnits(int row) {
+        return amounts[transactions[row]];
+    }
+
+    @Override
+    public int sender(int row) {
+        return senders[transactions[row]];
+    }
+
+    @Override
+    public int senderAge(int row) {
+        return senderAges[transactions[row]];
+    }
+
+    @Override
+    public int beneficiary(int row) {
+        return beneficiaries[transactions[row]];
+    }
+
+    @Override
+    public int beneficiaryAge(int row) {
+        return beneficiaryAges[transactions[row]];
+    }
+
+    @Override
+    public int issueId(int row) {
+        return issueIds[row];
+    }
+
+    @Override
+    public boolean isIssueSolved(int row) {
+        return issueSolved.get(row);
+    }
+
+    @Override
+    public int issueMessage(int row) {
+        return issueMessages[row];
+    }
+
+    @Override
+    public StringDictionary mtns() {
+        return mtnDictionary;
+    }
+
+    @Override
+    public StringDictionary clients() {
+        return clientDictionary;
+    }
+
+    @Override
+    public StringDictionary messages() {
+        return messageDictionary;
+    }
+
+    @Override
+    public boolean hasNullClient() {
+        return nullClient;
+    }
+
+    private int internClient(String name) {
+        if (name == null) {
+            nullClient = true;
+        }
+        return clientDictionary.intern(name);
+    }
+
+    private boolean sameTransaction(int transaction, long amount, int sender, int senderAge, int beneficiary, int beneficiaryAge) {
+        return amounts[transaction] == amount
+                && senders[transaction] == sender && senderAges[transaction] == senderAge
+                && beneficiaries[transaction] == beneficiary && beneficiaryAges[transaction] == beneficiaryAge;
+    }
+
+    private int addTransaction(int mtn, long amount, int sender, int senderAge, int beneficiary, int beneficiaryAge) {
+        if (transactionCount == amounts.length) {
+            int capacity = transactionCount * 2;
+            mtns = Arrays.copyOf(mtns, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            senders = Arrays.copyOf(senders, capacity);
+            senderAges = Arrays.copyOf(senderAges, capacity);
+            beneficiaries = Arrays.copyOf(beneficiaries, capacity);
+            beneficiaryAges = Arrays.copyOf(beneficiaryAges, capacity);
+        }
+        int transaction = transactionCount++;
+        mtns[transaction] = mtn;
+        amounts[transaction] = amount;
+        senders[transaction] = sender;
+        senderAges[transaction] = senderAge;
+        beneficiaries[transaction] = beneficiary;
+        beneficiaryAges[transaction] = beneficiaryAge;
+        if (mtn >= latestTransactionOfMtn.length) {
+            latestTransactionOfMtn = Arrays.copyOf(latestTransactionOfMtn, Math.max(mtn + 1, latestTransactionOfMtn.length * 2));
+        }
+        latestTransactionOfMtn[mtn] = transaction;
+        return transaction;
+    }
+
+    /**
+     * Receives a range of a column of amounts in minor units.
+     */
+    @FunctionalInterface
+    public interface AmountRange {
+
+        /**
+         * Processes the amounts {@code units[from]} to {@code units[to - 1]}.
+         * 
+         * @param units The column.
+         * @param from The first index, inclusive.
+         * @param to The last index, exclusive.
+         */
+        void accept(long[] units, int from, int to);
+    }
+}
@@ -0,0 +1,56 @@
+package com.smallworld.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Heap resident {@link StringDictionary} that assigns the next free id to every new string.
+ */
+public final class HeapStringDictionary implements StringDictionary {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] values = new String[16];
+    private int size;
+
+    /**
+     * Returns the id of the given value, assigning the next free id if it has not been seen yet.
+     * 
+     * @param value The value to intern, may be null.
+     * @return The id of the value, or {@link #NULL_ID} for null.
+     */
+    public int intern(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        ids.put(value, size);
+        return size++;
+    }
+
+    @Override
+    public int idOf(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        return id == null ? NULL_ID : id;
+    }
+
+    @Override
+    public String get(int id) {
+        return id == NULL_ID ? null : values[id];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
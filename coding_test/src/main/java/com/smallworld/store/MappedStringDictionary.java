@@ -0,0 +1,103 @@
+package com.smallworld.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link StringDictionary} read directly from a dictionary section of a {@link TransactionSnapshot}.
+ * 
+ * The section holds the UTF-8 bytes of every value, their offsets and an open addressing hash
+ * table from value hash to id, so both directions are answered off the mapped pages. A string is
+ * only materialized the first time {@link #get(int)} returns it; the dictionary holds distinct
+ * values only, so this cache stays small next to the row columns. The cache is allocated in pages
+ * of {@link #PAGE_SIZE} ids on first use, so opening a dictionary does not depend on its size.
+ */
+final class MappedStringDictionary implements StringDictionary {
+
+    private static final int PAGE_BITS = 12;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private final int size;
+    private final int mask;
+    private final IntBuffer offsets;
+    private final IntBuffer table;
+    private final ByteBuffer bytes;
+    private final String[][] decoded;
+
+    MappedStringDictionary(ByteBuffer section) {
+        ByteBuffer buffer = section.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.size = buffer.getInt(0);
+        int tableSize = buffer.getInt(4);
+        this.mask = tableSize - 1;
+        int offsetsStart = 8;
+        int tableStart = offsetsStart + (size + 1) * Integer.BYTES;
+        int bytesStart = tableStart + tableSize * Integer.BYTES;
+        this.offsets = slice(buffer, offsetsStart, (size + 1) * Integer.BYTES).asIntBuffer();
+        this.table = slice(buffer, tableStart, tableSize * Integer.BYTES).asIntBuffer();
+        this.bytes = slice(buffer, bytesStart, buffer.capacity() - bytesStart);
+        this.decoded = new String[(size + PAGE_SIZE - 1) >>> PAGE_BITS][];
+    }
+
+    @Override
+    public int idOf(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        for (int slot = TransactionSnapshot.slot(value, mask); ; slot = (slot + 1) & mask) {
+            int entry = table.get(slot);
+            if (entry == 0) {
+                return NULL_ID;
+            }
+            if (matches(entry - 1, encoded)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    @Override
+    public String get(int id) {
+        if (id == NULL_ID) {
+            return null;
+        }
+        // racing readers decode equal strings or allocate equal pages, so the unsynchronized cache is harmless
+        String[] page = decoded[id >>> PAGE_BITS];
+        if (page == null) {
+            page = new String[PAGE_SIZE];
+            decoded[id >>> PAGE_BITS] = page;
+        }
+        String value = page[id & (PAGE_SIZE - 1)];
+        if (value == null) {
+            int from = offsets.get(id);
+            byte[] encoded = new byte[offsets.get(id + 1) - from];
+            bytes.get(from, encoded);
+            value = new String(encoded, StandardCharsets.UTF_8);
+            page[id & (PAGE_SIZE - 1)] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private boolean matches(int id, byte[] encoded) {
+        int from = offsets.get(id);
+        if (offsets.get(id + 1) - from != encoded.length) {
+            return false;
+        }
+        for (int i = 0; i < encoded.length; i++) {
+            if (bytes.get(from + i) != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int from, int length) {
+        return buffer.slice(from, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,145 @@
+package com.smallworld.store;
+
+import com.smallworld.data.MinorUnits;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Read-only {@link TransactionColumns} backed by the memory-mapped pages of a
+ * {@link TransactionSnapshot} file.
+ * 
+ * Every accessor reads the fixed-width column directly from the mapping, so opening a snapshot
+ * costs no parsing and no per row objects; the operating system pages columns in as queries
+ * touch them. Instances are created by {@link TransactionSnapshot#open(java.nio.file.Path)} and
+ * are safe for concurrent reads.
+ */
+public final class MappedTransactionStore implements TransactionColumns {
+
+    private final int size;
+    private final boolean nullClient;
+    private final long position;
+    private final LongBuffer amounts;
+    private final IntBuffer mtns;
+    private final IntBuffer senders;
+    private final IntBuffer senderAges;
+    private final IntBuffer beneficiaries;
+    private final IntBuffer beneficiaryAges;
+    private final IntBuffer issueIds;
+    private final IntBuffer issueMessages;
+    private final LongBuffer issueSolved;
+    private final LongBuffer firstOfMtn;
+    private final StringDictionary mtnDictionary;
+    private final StringDictionary clientDictionary;
+    private final StringDictionary messageDictionary;
+
+    MappedTransactionStore(int size, boolean nullClient, long position, LongBuffer amounts, IntBuffer mtns, IntBuffer senders, IntBuffer senderAges,
+            IntBuffer beneficiaries, IntBuffer beneficiaryAges, IntBuffer issueIds, IntBuffer issueMessages, LongBuffer issueSolved,
+            LongBuffer firstOfMtn, StringDictionary mtnDictionary, StringDictionary clientDictionary, StringDictionary messageDictionary) {
+        this.size = size;
+        this.nullClient = nullClient;
+        this.position = position;
+        this.amounts = amounts;
+        this.mtns = mtns;
+        this.senders = senders;
+        this.senderAges = senderAges;
+        this.beneficiaries = beneficiaries;
+        this.beneficiaryAges = beneficiaryAges;
+        this.issueIds = issueIds;
+        this.issueMessages = issueMessages;
+        this.issueSolved = issueSolved;
+        this.firstOfMtn = firstOfMtn;
+        this.mtnDictionary = mtnDictionary;
+        this.clientDictionary = clientDictionary;
+        this.messageDictionary = messageDictionary;
+    }
+
+    /**
+     * Returns the position the snapshot was written with.
+     * 
+     * @return Where in their source the rows end, 0 if the writer did not say.
+     */
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int mtn(int row) {
+        return mtns.get(row);
+    }
+
+    @Override
+    public boolean isFirstOfMtn(int row) {
+        return (firstOfMtn.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    @Override
+    public double amount(int row) {
+        return MinorUnits.toAmount(amounts.get(row));
+    }
+
+    @Override
+    public long amountUnits(int row) {
+        return amounts.get(row);
+    }
+
+    @Override
+    public int sender(int row) {
+        return senders.get(row);
+    }
+
+    @Override
+    public int senderAge(int row) {
+        return senderAges.get(row);
+    }
+
+    @Override
+    public int beneficiary(int row) {
+        return beneficiaries.get(row);
+    }
+
+    @Override
+    public int beneficiaryAge(int row) {
+        return beneficiaryAges.get(row);
+    }
+
+    @Override
+    public int issueId(int row) {
+        return issueIds.get(row);
+    }
+
+    @Override
+    public boolean isIssueSolved(int row) {
+        return (issueSolved.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    @Override
+    public int issueMessage(int row) {
+        return issueMessages.get(row);
+    }
+
+    @Override
+    public StringDictionary mtns() {
+        return mtnDictionary;
+    }
+
+    @Override
+    public StringDictionary clients() {
+        return clientDictionary;
+    }
+
+    @Override
+    public StringDictionary messages() {
+        return messageDictionary;
+    }
+
+    @Override
+    public boolean hasNullClient() {
+        return nullClient;
+    }
+}
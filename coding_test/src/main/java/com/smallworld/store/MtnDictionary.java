@@ -0,0 +1,142 @@
+package com.smallworld.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Heap resident dictionary of mtns that keeps numeric mtns as primitive {@code long} values.
+ * 
+ * Mtns are decimal numbers in practice, so every mtn whose text is the canonical decimal form of
+ * a {@code long} is stored as 8 bytes and looked up through an open-addressing table of ids,
+ * instead of as a {@code String} boxed in a hash map entry. Any other text is kept as a string in
+ * a side table. {@link #get(int)} formats numeric mtns back to the exact text they were interned
+ * from.
+ */
+final class MtnDictionary implements StringDictionary {
+
+    private static final long TEXT = Long.MIN_VALUE;
+
+    private long[] numbers = new long[16];
+    private String[] texts;
+    private final Map<String, Integer> textIds = new HashMap<>();
+    private int[] table = new int[32];
+    private int size;
+
+    /**
+     * Returns the id of the given mtn, assigning the next free id if it has not been seen yet.
+     * 
+     * @param value The mtn to intern, may be null.
+     * @return The id of the mtn, or {@link #NULL_ID} for null.
+     */
+    int intern(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        long number = parseCanonical(value);
+        if (number == TEXT) {
+            Integer id = textIds.get(value);
+            if (id != null) {
+                return id;
+            }
+            int newId = add(TEXT);
+            if (texts == null) {
+                texts = new String[numbers.length];
+            }
+            texts[newId] = value;
+            textIds.put(value, newId);
+            return newId;
+        }
+        int slot = slot(number);
+        if (table[slot] != 0) {
+            return table[slot] - 1;
+        }
+        int id = add(number);
+        if (size * 2 > table.length) {
+            rehash();
+        } else {
+            table[slot] = id + 1;
+        }
+        return id;
+    }
+
+    @Override
+    public int idOf(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        long number = parseCanonical(value);
+        if (number == TEXT) {
+            Integer id = textIds.get(value);
+            return id == null ? NULL_ID : id;
+        }
+        return table[slot(number)] - 1;
+    }
+
+    @Override
+    public String get(int id) {
+        if (id == NULL_ID) {
+            return null;
+        }
+        return numbers[id] == TEXT ? texts[id] : Long.toString(numbers[id]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int add(long number) {
+        if (size == numbers.length) {
+            numbers = Arrays.copyOf(numbers, size * 2);
+            if (texts != null) {
+                texts = Arrays.copyOf(texts, size * 2);
+            }
+        }
+        numbers[size] = number;
+        return size++;
+    }
+
+    /**
+     * Finds the slot holding the number, or the empty slot where it belongs.
+     */
+    private int slot(long number) {
+        int mask = table.length - 1;
+        int slot = (int) ((number * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (table[slot] != 0 && numbers[table[slot] - 1] != number) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        for (int id = 0; id < size; id++) {
+            if (numbers[id] != TEXT) {
+                table[slot(numbers[id])] = id + 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the number whose canonical decimal text is the given value, or {@link #TEXT} if
+     * formatting the number would not give the value back.
+     */
+    private static long parseCanonical(String value) {
+        int length = value.length();
+        int start = length > 1 && value.charAt(0) == '-' ? 1 : 0;
+        // 18 digits always fit in a long and exclude the TEXT sentinel
+        if (length == start || length - start > 18 || (value.charAt(start) == '0' && length > 1)) {
+            return TEXT;
+        }
+        long number = 0;
+        for (int i = start; i < length; i++) {
+            char digit = value.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return TEXT;
+            }
+            number = number * 10 + (digit - '0');
+        }
+        return start == 0 ? number : -number;
+    }
+}
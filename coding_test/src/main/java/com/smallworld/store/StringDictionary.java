@@ -0,0 +1,37 @@
+package com.smallworld.store;
+
+/**
+ * Maps distinct strings to dense integer ids.
+ * 
+ * Columns store the id instead of the string, so every repeated name is kept once and
+ * comparisons in scan loops are plain {@code int} comparisons. {@code null} is never stored
+ * and is always represented by {@link #NULL_ID}.
+ */
+public interface StringDictionary {
+
+    /** Id used for {@code null} values. */
+    int NULL_ID = -1;
+
+    /**
+     * Returns the id of the given value without assigning one.
+     * 
+     * @param value The value to look up, may be null.
+     * @return The id of the value, or {@link #NULL_ID} if it is null or unknown.
+     */
+    int idOf(String value);
+
+    /**
+     * Returns the value stored under the given id.
+     * 
+     * @param id A valid id, or {@link #NULL_ID}.
+     * @return The value, or null for {@link #NULL_ID}.
+     */
+    String get(int id);
+
+    /**
+     * Returns the number of distinct values in the dictionary. Ids range from 0 to size - 1.
+     * 
+     * @return The number of ids assigned.
+     */
+    int size();
+}
@@ -0,0 +1,133 @@
+package com.smallworld.store;
+
+import com.smallworld.data.Transaction;
+
+/**
+ * Read access to transaction rows stored column by column.
+ * 
+ * Rows are identified by their position, starting at 0. Names, mtns and issue messages are
+ * dictionary ids resolved through {@link #clients()}, {@link #mtns()} and {@link #messages()}.
+ * Implementations keep the columns on the heap ({@link ColumnarTransactionStore}) or in a
+ * memory-mapped snapshot file ({@link MappedTransactionStore}); indexes, aggregates and
+ * queries only depend on this interface.
+ */
+public interface TransactionColumns {
+
+    /**
+     * Issue id of the rows of transactions without any issue, whose {@code issueId} is null. A
+     * transaction cannot use it as a real issue id; stores reject it on append.
+     */
+    int NO_ISSUE = Integer.MIN_VALUE;
+
+    /**
+     * Returns the issue id column value of a transaction's issue id.
+     * 
+     * @param issueId The issue id of a transaction, null if it has no issue.
+     * @return The issue id, or {@link #NO_ISSUE} for null.
+     * @throws IllegalArgumentException If the issue id is {@link #NO_ISSUE}, which would read back as no issue.
+     */
+    static int issueIdOf(Integer issueId) {
+        if (issueId == null) {
+            return NO_ISSUE;
+        }
+        if (issueId == NO_ISSUE) {
+            throw new IllegalArgumentException("Issue id " + NO_ISSUE + " is reserved for transactions without an issue");
+        }
+        return issueId;
+    }
+
+    /**
+     * Returns the number of rows.
+     * 
+     * @return The row count.
+     */
+    int size();
+
+    int mtn(int row);
+
+    /**
+     * Returns whether the row is the first one stored for its mtn. Summing the amounts of
+     * these rows only counts every transaction once.
+     * 
+     * @param row The row position.
+     * @return True if no earlier row has the same mtn.
+     */
+    boolean isFirstOfMtn(int row);
+
+    double amount(int row);
+
+    /**
+     * Returns the amount of the row as a whole number of minor units. Aggregates add these up
+     * exactly; {@link #amount(int)} is the same amount as the nearest double.
+     * 
+     * @param row The row position.
+     * @return The amount in {@link com.smallworld.data.MinorUnits}.
+     */
+    long amountUnits(int row);
+
+    int sender(int row);
+
+    int senderAge(int row);
+
+    int beneficiary(int row);
+
+    int beneficiaryAge(int row);
+
+    /**
+     * Returns the issue id of the row.
+     * 
+     * @param row The row position.
+     * @return The issue id, or {@link #NO_ISSUE} if the row's transaction has no issue.
+     */
+    int issueId(int row);
+
+    boolean isIssueSolved(int row);
+
+    int issueMessage(int row);
+
+    /**
+     * Returns the dictionary of mtns referenced by {@link #mtn(int)}.
+     * 
+     * @return The mtn dictionary.
+     */
+    StringDictionary mtns();
+
+    /**
+     * Returns the dictionary of sender and beneficiary names referenced by {@link #sender(int)}
+     * and {@link #beneficiary(int)}. Both roles share one dictionary, so a client has the same
+     * id whether it sends or receives.
+     * 
+     * @return The client name dictionary.
+     */
+    StringDictionary clients();
+
+    /**
+     * Returns the dictionary of issue messages referenced by {@link #issueMessage(int)}.
+     * 
+     * @return The issue message dictionary.
+     */
+    StringDictionary messages();
+
+    /**
+     * Returns whether any row has a null sender or beneficiary name.
+     * 
+     * @return True if a null client name is stored.
+     */
+    boolean hasNullClient();
+
+    /**
+     * Rebuilds a {@link Transaction} object from the columns of the given row.
+     * 
+     * @param row The row position.
+     * @return A new transaction holding the row's values.
+     */
+    default Transaction toTransaction(int row) {
+        if (row < 0 || row >= size()) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size());
+        }
+        return new Transaction(mtns().get(mtn(row)), amount(row),
+                clients().get(sender(row)), senderAge(row),
+                clients().get(beneficiary(row)), beneficiaryAge(row),
+                issueId(row) == NO_ISSUE ? null : issueId(row), isIssueSolved(row), messages().get(issueMessage(row)));
+    }
+}
@@ -0,0 +1,408 @@
+package com.smallworld.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary snapshot of a transaction dataset, written once and memory-mapped on startup.
+ * 
+ * The file starts with a fixed size header holding a magic number, the format version, the row
+ * count, a CRC32C checksum of everything after the header, a table of section offsets, a
+ * position: where in their source the rows end, such as the feed offset a
+ * {@link com.smallworld.io.TransactionFeedFollower} resumes from, or 0, and a CRC32C checksum of
+ * the header itself. The
+ * sections are the fixed-width row columns (amounts in minor units, dictionary ids, ages, issue ids and the
+ * packed solved and first-of-mtn bitsets) followed by the mtn, client and issue message
+ * dictionaries. All values are little-endian and every section is 8 byte aligned.
+ * 
+ * {@link #open(Path)} maps every section with a {@link FileChannel} and returns a
+ * {@link MappedTransactionStore} that reads the columns in place, without rebuilding any row object.
+ * The header is always verified and every section checked against the file size, so a corrupt
+ * header is reported as an {@link IOException}, with or without verifying the body.
+ * 
+ * {@link #write(TransactionColumns, Path)} writes a temporary file next to the snapshot, forces it
+ * to disk and renames it over the snapshot atomically, so a crash never leaves a partial snapshot
+ * and a store that has mapped the previous file keeps reading it.
+ */
+public final class TransactionSnapshot {
+
+    private static final int MAGIC = 0x53575458; // "SWTX"
+    // since 2, rows without an issue hold TransactionColumns.NO_ISSUE; since 3, amounts are minor
+    // units; since 4, the header holds a position and its own checksum
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 256;
+    private static final int SECTION_TABLE = 32;
+    private static final int FLAG_NULL_CLIENT = 1;
+    private static final int MAX_WINDOW = 1 << 30;
+
+    private static final int AMOUNTS = 0;
+    private static final int MTNS = 1;
+    private static final int SENDERS = 2;
+    private static final int SENDER_AGES = 3;
+    private static final int BENEFICIARIES = 4;
+    private static final int BENEFICIARY_AGES = 5;
+    private static final int ISSUE_IDS = 6;
+    private static final int ISSUE_MESSAGES = 7;
+    private static final int ISSUE_SOLVED = 8;
+    private static final int FIRST_OF_MTN = 9;
+    private static final int MTN_DICTIONARY = 10;
+    private static final int CLIENT_DICTIONARY = 11;
+    private static final int MESSAGE_DICTIONARY = 12;
+    private static final int SECTIONS = 13;
+    // after the section table
+    private static final int POSITION = SECTION_TABLE + SECTIONS * 2 * Long.BYTES;
+    private static final int HEADER_CHECKSUM = POSITION + Long.BYTES;
+
+    private TransactionSnapshot() {
+    }
+
+    /**
+     * Writes the given rows to a snapshot file, replacing any existing file.
+     * 
+     * @param columns The rows to write.
+     * @param path The snapshot file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(TransactionColumns columns, Path path) throws IOException {
+        write(columns, path, 0);
+    }
+
+    /**
+     * Writes the given rows to a snapshot file together with the position they were read up to,
+     * replacing any existing file.
+     * 
+     * @param columns The rows to write.
+     * @param path The snapshot file.
+     * @param position Where in their source the rows end, returned by
+     *        {@link MappedTransactionStore#position()}.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(TransactionColumns columns, Path path, long position) throws IOException {
+        Path target = path.toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                write(columns, channel, position);
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void write(TransactionColumns columns, FileChannel channel, long position) throws IOException {
+        int size = columns.size();
+        long[] sections = new long[SECTIONS * 2];
+        SectionWriter out = new SectionWriter(channel, HEADER_SIZE);
+
+        out.begin(sections, AMOUNTS);
+        for (int row = 0; row < size; row++) {
+            out.putLong(columns.amountUnits(row));
+        }
+        out.end(sections, AMOUNTS);
+        writeInts(out, sections, MTNS, size, columns::mtn);
+        writeInts(out, sections, SENDERS, size, columns::sender);
+        writeInts(out, sections, SENDER_AGES, size, columns::senderAge);
+        writeInts(out, sections, BENEFICIARIES, size, columns::beneficiary);
+        writeInts(out, sections, BENEFICIARY_AGES, size, columns::beneficiaryAge);
+        writeInts(out, sections, ISSUE_IDS, size, columns::issueId);
+        writeInts(out, sections, ISSUE_MESSAGES, size, columns::issueMessage);
+        writeBits(out, sections, ISSUE_SOLVED, size, columns::isIssueSolved);
+        writeBits(out, sections, FIRST_OF_MTN, size, columns::isFirstOfMtn);
+        writeDictionary(out, sections, MTN_DICTIONARY, columns.mtns());
+        writeDictionary(out, sections, CLIENT_DICTIONARY, columns.clients());
+        writeDictionary(out, sections, MESSAGE_DICTIONARY, columns.messages());
+        out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, size);
+        header.putInt(12, columns.hasNullClient() ? FLAG_NULL_CLIENT : 0);
+        header.putLong(16, out.checksum());
+        header.putLong(24, out.position());
+        for (int i = 0; i < sections.length; i++) {
+            header.putLong(SECTION_TABLE + i * Long.BYTES, sections[i]);
+        }
+        header.putLong(POSITION, position);
+        header.putLong(HEADER_CHECKSUM, headerChecksum(header));
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Opens a snapshot file after verifying its checksum.
+     * 
+     * @param path The snapshot file.
+     * @return A read-only store over the mapped file.
+     * @throws IOException If the file cannot be read, is not a snapshot or is corrupt.
+     */
+    public static MappedTransactionStore open(Path path) throws IOException {
+        return open(path, true);
+    }
+
+    /**
+     * Opens a snapshot file.
+     * 
+     * Verifying the checksum reads the whole file once; skipping it makes opening independent
+     * of the file size, for trusted files that have already been verified.
+     * 
+     * @param path The snapshot file.
+     * @param verifyChecksum True to check the CRC32C of the file before using it.
+     * @return A read-only store over the mapped file.
+     * @throws IOException If the file cannot be read, is not a snapshot or fails verification.
+     */
+    public static MappedTransactionStore open(Path path, boolean verifyChecksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a transaction snapshot: " + path);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // read the whole header
+            }
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a transaction snapshot: " + path);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported snapshot version " + header.getInt(4) + ": " + path);
+            }
+            if (headerChecksum(header) != header.getLong(HEADER_CHECKSUM)) {
+                throw new IOException("Snapshot header checksum mismatch: " + path);
+            }
+            int size = header.getInt(8);
+            boolean nullClient = (header.getInt(12) & FLAG_NULL_CLIENT) != 0;
+            long length = header.getLong(24);
+            if (channel.size() != length) {
+                throw new IOException("Truncated snapshot, expected " + length + " bytes but found " + channel.size() + ": " + path);
+            }
+            if (size < 0) {
+                throw new IOException("Malformed snapshot, negative row count " + size + ": " + path);
+            }
+            long[] minimumLengths = minimumSectionLengths(size);
+            for (int i = 0; i < SECTIONS; i++) {
+                long offset = header.getLong(SECTION_TABLE + i * 2 * Long.BYTES);
+                long sectionLength = header.getLong(SECTION_TABLE + (i * 2 + 1) * Long.BYTES);
+                if (offset < HEADER_SIZE || sectionLength < minimumLengths[i] || sectionLength > Integer.MAX_VALUE
+                        || offset > length - sectionLength) {
+                    throw new IOException("Malformed snapshot, section " + i + " of " + sectionLength + " bytes at " + offset
+                            + " does not fit the rows or the file: " + path);
+                }
+            }
+            if (verifyChecksum && checksum(channel, length) != header.getLong(16)) {
+                throw new IOException("Snapshot checksum mismatch: " + path);
+            }
+            ByteBuffer[] sections = new ByteBuffer[SECTIONS];
+            // a mapping stays valid after its channel is closed; files that fit in one buffer are
+            // mapped once and sliced, so an open costs a single mapping
+            MappedByteBuffer whole = length <= MAX_WINDOW ? channel.map(FileChannel.MapMode.READ_ONLY, 0, length) : null;
+            for (int i = 0; i < SECTIONS; i++) {
+                long offset = header.getLong(SECTION_TABLE + i * 2 * Long.BYTES);
+                long sectionLength = header.getLong(SECTION_TABLE + (i * 2 + 1) * Long.BYTES);
+                ByteBuffer section = whole != null
+                        ? whole.slice((int) offset, (int) sectionLength)
+                        : channel.map(FileChannel.MapMode.READ_ONLY, offset, sectionLength);
+                sections[i] = section.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new MappedTransactionStore(size, nullClient, header.getLong(POSITION),
+                    sections[AMOUNTS].asLongBuffer(),
+                    sections[MTNS].asIntBuffer(),
+                    sections[SENDERS].asIntBuffer(),
+                    sections[SENDER_AGES].asIntBuffer(),
+                    sections[BENEFICIARIES].asIntBuffer(),
+                    sections[BENEFICIARY_AGES].asIntBuffer(),
+                    sections[ISSUE_IDS].asIntBuffer(),
+                    sections[ISSUE_MESSAGES].asIntBuffer(),
+                    sections[ISSUE_SOLVED].asLongBuffer(),
+                    sections[FIRST_OF_MTN].asLongBuffer(),
+                    new MappedStringDictionary(sections[MTN_DICTIONARY]),
+                    new MappedStringDictionary(sections[CLIENT_DICTIONARY]),
+                    new MappedStringDictionary(sections[MESSAGE_DICTIONARY]));
+        }
+    }
+
+    private static long[] minimumSectionLengths(int size) {
+        long[] lengths = new long[SECTIONS];
+        lengths[AMOUNTS] = (long) size * Long.BYTES;
+        for (int section : new int[] {MTNS, SENDERS, SENDER_AGES, BENEFICIARIES, BENEFICIARY_AGES, ISSUE_IDS, ISSUE_MESSAGES}) {
+            lengths[section] = (long) size * Integer.BYTES;
+        }
+        lengths[ISSUE_SOLVED] = (size + Long.SIZE - 1L) / Long.SIZE * Long.BYTES;
+        lengths[FIRST_OF_MTN] = lengths[ISSUE_SOLVED];
+        // entry count, table size and the end offset of the empty prefix
+        lengths[MTN_DICTIONARY] = 3 * Integer.BYTES;
+        lengths[CLIENT_DICTIONARY] = 3 * Integer.BYTES;
+        lengths[MESSAGE_DICTIONARY] = 3 * Integer.BYTES;
+        return lengths;
+    }
+
+    private static long headerChecksum(ByteBuffer header) {
+        CRC32C crc = new CRC32C();
+        crc.update(header.duplicate().position(0).limit(HEADER_CHECKSUM));
+        return crc.getValue();
+    }
+
+    static int slot(String value, int mask) {
+        int hash = value.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static long checksum(FileChannel channel, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        for (long offset = HEADER_SIZE; offset < length; offset += MAX_WINDOW) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAX_WINDOW, length - offset)));
+        }
+        return crc.getValue();
+    }
+
+    private interface RowInt {
+
+        int get(int row);
+    }
+
+    private interface RowBit {
+
+        boolean get(int row);
+    }
+
+    private static void writeInts(SectionWriter out, long[] sections, int section, int size, RowInt column) throws IOException {
+        out.begin(sections, section);
+        for (int row = 0; row < size; row++) {
+            out.putInt(column.get(row));
+        }
+        out.end(sections, section);
+    }
+
+    private static void writeBits(SectionWriter out, long[] sections, int section, int size, RowBit column) throws IOException {
+        out.begin(sections, section);
+        for (int word = 0; word < size; word += Long.SIZE) {
+            long bits = 0;
+            for (int row = word; row < Math.min(size, word + Long.SIZE); row++) {
+                if (column.get(row)) {
+                    bits |= 1L << row;
+                }
+            }
+            out.putLong(bits);
+        }
+        out.end(sections, section);
+    }
+
+    private static void writeDictionary(SectionWriter out, long[] sections, int section, StringDictionary dictionary) throws IOException {
+        int size = dictionary.size();
+        int tableSize = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+        int mask = tableSize - 1;
+        byte[][] encoded = new byte[size][];
+        int[] table = new int[tableSize];
+        for (int id = 0; id < size; id++) {
+            String value = dictionary.get(id);
+            encoded[id] = value.getBytes(StandardCharsets.UTF_8);
+            int slot = slot(value, mask);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+        out.begin(sections, section);
+        out.putInt(size);
+        out.putInt(tableSize);
+        int offset = 0;
+        out.putInt(offset);
+        for (byte[] value : encoded) {
+            offset += value.length;
+            out.putInt(offset);
+        }
+        for (int entry : table) {
+            out.putInt(entry);
+        }
+        for (byte[] value : encoded) {
+            out.putBytes(value);
+        }
+        out.end(sections, section);
+    }
+
+    /**
+     * Buffered, checksummed sequential writer of the snapshot body.
+     */
+    private static final class SectionWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+        private long position;
+
+        SectionWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void begin(long[] sections, int section) {
+            sections[section * 2] = position;
+        }
+
+        void end(long[] sections, int section) throws IOException {
+            sections[section * 2 + 1] = position - sections[section * 2];
+            while ((position & 7) != 0) {
+                ensure(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+            position += Long.BYTES;
+        }
+
+        void putBytes(byte[] value) throws IOException {
+            for (int from = 0; from < value.length; ) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), value.length - from);
+                buffer.put(value, from, length);
+                from += length;
+                position += length;
+            }
+        }
+
+        long position() {
+            return position;
+        }
+
+        long checksum() {
+            return crc.getValue();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            long offset = position - buffer.remaining();
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.smallworld;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionDatasetGenerator;
+import com.smallworld.metrics.Operation;
+import com.smallworld.metrics.QueryMetrics;
+
+public class ConcurrentTransactionDataFetcherTest {
+
+    private static final int PAIRS = 1_000;
+    private static final int READERS = 4;
+
+    // Every write appends one row sent by Tom Shelby and one sent by Arthur Shelby, both carrying
+    // the same issue, or solves the issue of an earlier pair. A reader that saw half a write
+    // would find different totals for the two senders or a solved count that disagrees with the
+    // unsolved issues.
+    private static List<Transaction> pair(int pair) {
+        return List.of(
+                new Transaction("T" + pair, 1.0, "Tom Shelby", 22, "Alfie Solomons", 33, pair, false, "Issue " + pair),
+                new Transaction("A" + pair, 1.0, "Arthur Shelby", 60, "Aunt Polly", 55, pair, false, "Issue " + pair));
+    }
+
+    // Stress test: readers querying while one writer appends rows and solves issues always see a consistent dataset.
+    @Test
+    public void testReadersSeeConsistentSnapshots() throws Exception {
+        ConcurrentTransactionDataFetcher fetcher = new ConcurrentTransactionDataFetcher(List.of());
+        ExecutorService executor = Executors.newFixedThreadPool(READERS + 1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Long>> readers = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                readers.add(executor.submit(() -> {
+                    start.await();
+                    long reads = 0;
+                    long lastVersion = -1;
+                    while (writing.get() || reads == 0) {
+                        long previousVersion = lastVersion;
+                        lastVersion = fetcher.read(snapshot -> {
+                            double total = snapshot.getTotalTransactionAmount();
+                            double sentByTom = snapshot.getTotalTransactionAmountSentBy("Tom Shelby");
+                            double sentByArthur = snapshot.getTotalTransactionAmountSentBy("Arthur Shelby");
+                            Set<Integer> unsolvedIssueIds = snapshot.getUnsolvedIssueIds();
+                            int solvedRows = snapshot.getAllSolvedIssueMessages().size();
+                            int pairs = (int) (total / 2);
+
+                            assertEquals(sentByTom, sentByArthur, 0.0);
+                            assertEquals(total, sentByTom + sentByArthur, 0.0);
+                            assertEquals(2 * (pairs - unsolvedIssueIds.size()), solvedRows);
+                            assertEquals(!unsolvedIssueIds.isEmpty(), snapshot.hasOpenComplianceIssues("Tom Shelby"));
+                            assertEquals(snapshot.hasOpenComplianceIssues("Tom Shelby"), snapshot.hasOpenComplianceIssues("Aunt Polly"));
+                            return snapshot.version();
+                        });
+                        assertTrue(lastVersion >= previousVersion);
+                        reads++;
+                    }
+                    return reads;
+                }));
+            }
+
+            Future<?> writer = executor.submit(() -> {
+                start.await();
+                for (int pair = 0; pair < PAIRS; pair++) {
+                    fetcher.appendAll(pair(pair));
+                    if (pair % 2 == 1) {
+                        assertEquals(2, fetcher.setIssueSolved(pair - 1, true));
+                    }
+                }
+                writing.set(false);
+                return null;
+            });
+
+            start.countDown();
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<Long> reader : readers) {
+                assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            writing.set(false);
+            executor.shutdownNow();
+        }
+
+        assertEquals(2.0 * PAIRS, fetcher.getTotalTransactionAmount(), 0.0);
+        assertEquals(PAIRS / 2, fetcher.getUnsolvedIssueIds().size());
+        assertEquals(PAIRS, fetcher.getAllSolvedIssueMessages().size());
+        assertEquals(PAIRS + PAIRS / 2, fetcher.version());
+    }
+
+    // Unit test that transactions are copied, so changing an appended object does not change the fetcher.
+    @Test
+    public void testAppendedTransactionsAreCopied() {
+        Transaction transaction = new Transaction("1", 100.0, "Tom Shelby", 22, "Alfie Solomons", 33, 1, false, "Looks like money laundering");
+        ConcurrentTransactionDataFetcher fetcher = new ConcurrentTransactionDataFetcher(List.of(transaction));
+
+        transaction.setIssueSolved(true);
+        transaction.setAmount(1_000.0);
+
+        assertTrue(fetcher.hasOpenComplianceIssues("Tom Shelby"));
+        assertEquals(100.0, fetcher.getTotalTransactionAmount(), 0.0);
+
+        fetcher.setIssueSolved(1, true);
+
+        assertFalse(fetcher.hasOpenComplianceIssues("Tom Shelby"));
+    }
+
+    // Unit test that a fetcher streamed from a file in batches answers like one built from the whole list.
+    @Test
+    public void testFromJsonInBatches(@TempDir Path directory) throws IOException {
+        TransactionDatasetGenerator generator = new TransactionDatasetGenerator().seed(5).rows(3 * ConcurrentTransactionDataFetcher.LOAD_BATCH + 17).clients(200);
+        Path file = directory.resolve("transactions.ndjson");
+        generator.write(file, true);
+        QueryMetrics metrics = new QueryMetrics(true);
+
+        ConcurrentTransactionDataFetcher streamed = ConcurrentTransactionDataFetcher.fromJson(file, metrics);
+        TransactionDataFetcher expected = new TransactionDataFetcher(generator.generate());
+
+        assertEquals(expected.getTotalTransactionAmount(), streamed.getTotalTransactionAmount(), 0.0);
+        assertEquals(expected.countUniqueClients(), streamed.countUniqueClients());
+        assertEquals(expected.getUnsolvedIssueIds(), streamed.getUnsolvedIssueIds());
+        assertEquals(expected.getTopSender(), streamed.getTopSender());
+        assertSame(metrics, streamed.metrics());
+        assertEquals(1, metrics.snapshot().get(Operation.FROM_JSON).calls());
+    }
+}
@@ -2,10 +2,13 @@ package com.smallworld;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -13,9 +16,11 @@ import java.util.Optional;
 import java.util.Set;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import com.google.gson.Gson;
 import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionParseException;
 
 public class TransactionDataFetcherTest {
 
@@ -30,7 +35,7 @@ public class TransactionDataFetcherTest {
     }
 
       // Load JSON data into an array of Transaction objects
-      Transaction[] transactionsArray = loadTransactionsFromJson("D:\\java\\test\\coding_test_v3 (1)(1)\\coding_test\\transactions.json");
+      Transaction[] transactionsArray = loadTransactionsFromJson("transactions.json");
 
       // Convert the array to a List for convenience
       List<Transaction> transactions = Arrays.asList(transactionsArray);
@@ -47,7 +52,8 @@ public class TransactionDataFetcherTest {
         double actualTotalAmount = dataFetcher.getTotalTransactionAmount();
 
         // Assert that the actual total amount matches the expected total amount
-        assertEquals(expectedTotalAmount, actualTotalAmount, 0.01); // Using a delta to account for possible floating-point errors
+        assertEquals(expectedTotalAmount, actualTotalAmount, 0.0); // amounts add up exactly in minor units
+        assertEquals(288917L, dataFetcher.getTotalTransactionAmountUnits());
     }
 
     // Unit test for the getTotalTransactionAmountSentBy method in the TransactionDataFetcher class.
@@ -59,8 +65,8 @@ public class TransactionDataFetcherTest {
         double totalAmountSentBySender2 = dataFetcher.getTotalTransactionAmountSentBy("Grace Burgess");
 
         // Assert the results
-        assertEquals(459.09, totalAmountSentBySender1, 0.01); // Using a delta for possible floating-point errors
-        assertEquals(666.0, totalAmountSentBySender2, 0.01);
+        assertEquals(459.09, totalAmountSentBySender1, 0.0);
+        assertEquals(666.0, totalAmountSentBySender2, 0.0);
     }
 
     // Unit test for the getMaxTransactionAmount method in the TransactionDataFetcher class.
@@ -71,7 +77,33 @@ public class TransactionDataFetcherTest {
         double maxTransactionAmount = dataFetcher.getMaxTransactionAmount();
 
         // Assert the result
-        assertEquals(985.0, maxTransactionAmount, 0.01); // Using a delta for possible floating-point errors
+        assertEquals(985.0, maxTransactionAmount, 0.0);
+    }
+
+    // Unit test for the countTransactionsAbove method: each mtn counts once and amounts compare exactly.
+    @Test
+    public void testCountTransactionsAbove() {
+        assertEquals(0, dataFetcher.countTransactionsAbove(985.0));
+        assertEquals(1, dataFetcher.countTransactionsAbove(984.99));
+        assertEquals(1, dataFetcher.countTransactionsAbove(984.999));
+        assertEquals(dataFetcher.getTopTransactionsByAmount(100).size(), dataFetcher.countTransactionsAbove(Double.NEGATIVE_INFINITY));
+        for (Transaction transaction : dataFetcher.getTopTransactionsByAmount(100)) {
+            long above = dataFetcher.getTopTransactionsByAmount(100).stream().filter(other -> other.getAmount() > transaction.getAmount()).count();
+            assertEquals(above, dataFetcher.countTransactionsAbove(transaction.getAmount()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> dataFetcher.countTransactionsAbove(Double.NaN));
+    }
+
+    // Unit test that an amount with more decimals than minor units is rejected instead of being rounded.
+    @Test
+    public void testRejectsFractionalMinorUnits() {
+        TransactionDataFetcher fetcher = new TransactionDataFetcher(List.of());
+        Transaction invalid = new Transaction("1", 10.005, "Tom Shelby", 22, "Aunt Polly", 34, null, true, null);
+
+        assertThrows(IllegalArgumentException.class, () -> fetcher.append(invalid));
+        assertThrows(IllegalArgumentException.class, () -> fetcher.appendAll(List.of(transactions.get(0), invalid)));
+        assertEquals(transactions.get(0).getAmount(), fetcher.getTotalTransactionAmount(), 0.0);
+        assertEquals(1, fetcher.countTransactionsAbove(0.0));
     }
 
     // Unit test for the countUniqueClients method in the TransactionDataFetcher class.
@@ -156,7 +188,34 @@ public class TransactionDataFetcherTest {
         assertEquals(3, top3Transactions.size());
         assertEquals(transactions.get(4), top3Transactions.get(0)); 
         assertEquals(transactions.get(7), top3Transactions.get(1));
-        assertEquals(transactions.get(7), top3Transactions.get(2));
+        assertEquals(transactions.get(0), top3Transactions.get(2)); // the other issue rows of transactions.get(7) do not take a slot
+    }
+
+    // Unit test for the getTopTransactionsByAmount method in the TransactionDataFetcher class.
+    @Test
+    public void testGetTopTransactionsByAmount() {
+        // Test more transactions than are maintained, which are computed by a scan
+        List<Transaction> topTransactions = dataFetcher.getTopTransactionsByAmount(20);
+
+        // Assert the results: one entry per mtn, by amount descending
+        assertEquals(10, topTransactions.size());
+        assertEquals(dataFetcher.getTop3TransactionsByAmount(), topTransactions.subList(0, 3));
+        assertEquals(transactions.get(6), topTransactions.get(9));
+        assertTrue(dataFetcher.getTopTransactionsByAmount(0).isEmpty());
+    }
+
+    // Unit test for the getTopSenders method in the TransactionDataFetcher class.
+    @Test
+    public void testGetTopSenders() {
+        // Test the getTopSenders method
+        List<Map.Entry<String, Double>> topSenders = dataFetcher.getTopSenders(2);
+
+        // Assert the results: totals count each mtn once
+        assertEquals(2, topSenders.size());
+        assertEquals("Arthur Shelby", topSenders.get(0).getKey());
+        assertEquals(985.0, topSenders.get(0).getValue(), 0.0);
+        assertEquals("Tom Shelby", topSenders.get(1).getKey());
+        assertEquals(678.06, topSenders.get(1).getValue(), 0.0);
     }
 
 
@@ -170,6 +229,45 @@ public class TransactionDataFetcherTest {
         assertTrue(topSender.isPresent());
         assertEquals("Grace Burgess", topSender.get()); // Grace Burgess has the most total sent amount
     }
+
+    // Unit test for the append method: rows appended one by one give the same answers as a batch load.
+    @Test
+    public void testAppendMaintainsAggregates() {
+        TransactionDataFetcher incrementalFetcher = new TransactionDataFetcher(List.of());
+        for (Transaction transaction : transactions) {
+            incrementalFetcher.append(transaction);
+        }
+
+        assertEquals(dataFetcher.getTotalTransactionAmount(), incrementalFetcher.getTotalTransactionAmount(), 0.0);
+        assertEquals(dataFetcher.getTotalTransactionAmountSentBy("Tom Shelby"), incrementalFetcher.getTotalTransactionAmountSentBy("Tom Shelby"), 0.0);
+        assertEquals(dataFetcher.getMaxTransactionAmount(), incrementalFetcher.getMaxTransactionAmount(), 0.0);
+        assertEquals(dataFetcher.countUniqueClients(), incrementalFetcher.countUniqueClients());
+        assertEquals(dataFetcher.getUnsolvedIssueIds(), incrementalFetcher.getUnsolvedIssueIds());
+        assertEquals(dataFetcher.getTop3TransactionsByAmount(), incrementalFetcher.getTop3TransactionsByAmount());
+        assertEquals(dataFetcher.getTopSender(), incrementalFetcher.getTopSender());
+
+        // a new issue row for an existing mtn must not be counted twice in the totals
+        Transaction issueRow = transactions.get(0);
+        incrementalFetcher.append(new Transaction(issueRow.getMtn(), issueRow.getAmount(), issueRow.getSenderFullName(), issueRow.getSenderAge(),
+                issueRow.getBeneficiaryFullName(), issueRow.getBeneficiaryAge(), 99, false, "New issue"));
+
+        assertEquals(dataFetcher.getTotalTransactionAmount(), incrementalFetcher.getTotalTransactionAmount(), 0.0);
+        assertTrue(incrementalFetcher.getUnsolvedIssueIds().contains(99));
+    }
+
+    // Unit test that a sub-cent amount in a file fails the load with the position of the amount.
+    @Test
+    public void testFromJsonRejectsSubCentAmount(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("transactions.ndjson");
+        Files.writeString(file, "{\"mtn\": 1, \"amount\": 10.5, \"senderFullName\": \"Tom Shelby\"}\n"
+                + "{\"mtn\": 2, \"amount\": 10.005, \"senderFullName\": \"Tom Shelby\"}\n");
+
+        TransactionParseException e = assertThrows(TransactionParseException.class, () -> TransactionDataFetcher.fromJson(file));
+
+        assertEquals(2, e.getLineNumber());
+        assertEquals(2, e.getRecordNumber());
+        assertTrue(e.getMessage().contains("10.005"), e.getMessage());
+    }
     
 
 
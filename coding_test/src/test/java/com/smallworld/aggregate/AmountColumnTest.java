@@ -0,0 +1,95 @@
+package com.smallworld.aggregate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionDatasetGenerator;
+import com.smallworld.store.ColumnarTransactionStore;
+import com.smallworld.store.TransactionColumns;
+import com.smallworld.store.TransactionSnapshot;
+
+public class AmountColumnTest {
+
+    private static List<Transaction> transactions(int rows, long seed) {
+        List<Transaction> transactions = new ArrayList<>(rows + rows / 8);
+        new TransactionDatasetGenerator().seed(seed).rows(rows).clients(50).generate(transaction -> {
+            transactions.add(transaction);
+            if (transactions.size() % 8 == 0) {
+                // a later row of an old mtn with a refunded amount makes the store keep another record
+                Transaction refund = new Transaction(transactions.get(transactions.size() / 2));
+                refund.setAmount(-refund.getAmount());
+                transactions.add(refund);
+            }
+        });
+        return transactions;
+    }
+
+    private static void assertMatchesFirstRows(TransactionColumns store) {
+        long count = 0;
+        long sum = 0;
+        long max = Long.MIN_VALUE;
+        long min = Long.MAX_VALUE;
+        long above = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (store.isFirstOfMtn(row)) {
+                long units = store.amountUnits(row);
+                count++;
+                sum += units;
+                max = Math.max(max, units);
+                min = Math.min(min, units);
+                above += units > 500_000 ? 1 : 0;
+            }
+        }
+        AmountColumn amounts = new AmountColumn(store);
+        assertEquals(count, amounts.size());
+        assertEquals(sum, amounts.sum());
+        assertEquals(max, amounts.max());
+        assertEquals(min, amounts.min());
+        assertEquals(above, amounts.countAbove(500_000));
+    }
+
+    // Unit test that the kernels over the columnar store skip the records of rows repeating an mtn with other fields.
+    @Test
+    public void testColumnarStoreWithDivergentRows() {
+        ColumnarTransactionStore store = ColumnarTransactionStore.of(transactions(10_000, 3));
+
+        assertTrue(store.transactionCount() > store.firstAmountCount());
+        assertMatchesFirstRows(store);
+        assertEquals(0, new AmountColumn(new ColumnarTransactionStore()).size());
+    }
+
+    // Unit test that the column reads the rows appended after it was created.
+    @Test
+    public void testViewOfGrowingStore() {
+        ColumnarTransactionStore store = new ColumnarTransactionStore();
+        AmountColumn amounts = new AmountColumn(store);
+        for (Transaction transaction : transactions(3_000, 4)) {
+            store.append(transaction);
+        }
+
+        assertEquals(store.firstAmountCount(), amounts.size());
+        assertMatchesFirstRows(store);
+    }
+
+    // Unit test that the amounts of a mapped snapshot are gathered over several buffers and match the store it was written from.
+    @Test
+    public void testMappedStore(@TempDir Path directory) throws IOException {
+        ColumnarTransactionStore store = ColumnarTransactionStore.of(transactions(3 * AmountColumn.BUFFER_SIZE, 5));
+        Path file = directory.resolve("transactions.snapshot");
+        TransactionSnapshot.write(store, file);
+
+        TransactionColumns mapped = TransactionSnapshot.open(file);
+
+        assertMatchesFirstRows(mapped);
+        assertEquals(new AmountColumn(store).sum(), new AmountColumn(mapped).sum());
+    }
+}
@@ -0,0 +1,77 @@
+package com.smallworld.aggregate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class AmountKernelsTest {
+
+    private static void assertKernel(AmountKernels.Kernels kernels, long[] units, int from, int to, long threshold) {
+        long sum = 0;
+        long max = Long.MIN_VALUE;
+        long min = Long.MAX_VALUE;
+        int above = 0;
+        for (int i = from; i < to; i++) {
+            sum += units[i];
+            max = Math.max(max, units[i]);
+            min = Math.min(min, units[i]);
+            above += units[i] > threshold ? 1 : 0;
+        }
+        String range = "[" + from + ", " + to + ")";
+        assertEquals(sum, kernels.sum(units, from, to), range);
+        assertEquals(max, kernels.max(units, from, to), range);
+        assertEquals(min, kernels.min(units, from, to), range);
+        assertEquals(above, kernels.countAbove(units, from, to, threshold), range);
+    }
+
+    // Unit test that both kernel implementations match a naive loop on every range shape, including vector tails and offsets.
+    @Test
+    public void testKernelsMatchNaiveLoops() {
+        Random random = new Random(5);
+        long[] units = new long[1_000];
+        for (int i = 0; i < units.length; i++) {
+            units[i] = random.nextInt(10) == 0 ? -random.nextInt(1_000_000) : random.nextInt(100_000_000);
+        }
+        units[17] = Long.MAX_VALUE / 4;
+        units[500] = Long.MIN_VALUE / 4;
+
+        for (AmountKernels.Kernels kernels : new AmountKernels.Kernels[] {AmountKernels.scalar(), AmountKernels.vector()}) {
+            if (kernels == null) {
+                // run without the incubator module: only the scalar kernels exist
+                continue;
+            }
+            for (int from : new int[] {0, 1, 3, 7, 8, 9, 499}) {
+                for (int to = from; to <= units.length; to += to < from + 40 ? 1 : 97) {
+                    assertKernel(kernels, units, from, to, random.nextInt(100_000_000));
+                }
+            }
+        }
+    }
+
+    // Unit test that the selected kernels are the vector ones when the incubator module is present, and check ranges.
+    @Test
+    public void testSelection() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() && !"false".equals(System.getProperty("smallworld.vector"))) {
+            assertNotNull(AmountKernels.vector());
+            assertTrue(AmountKernels.isVectorized());
+        }
+        long[] units = new long[100];
+        Arrays.fill(units, 250);
+
+        assertEquals(25_000, AmountKernels.sum(units, 0, 100));
+        assertEquals(0, AmountKernels.sum(units, 50, 50));
+        assertEquals(Long.MIN_VALUE, AmountKernels.max(units, 3, 3));
+        assertEquals(Long.MAX_VALUE, AmountKernels.min(units, 3, 3));
+        assertEquals(100, AmountKernels.countAbove(units, 0, 100, 249));
+        assertEquals(0, AmountKernels.countAbove(units, 0, 100, 250));
+        assertThrows(IndexOutOfBoundsException.class, () -> AmountKernels.sum(units, 10, 101));
+        assertThrows(IndexOutOfBoundsException.class, () -> AmountKernels.max(units, 10, 9));
+        assertThrows(IndexOutOfBoundsException.class, () -> AmountKernels.countAbove(units, -1, 9, 0));
+    }
+}
@@ -0,0 +1,79 @@
+package com.smallworld.aggregate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class HyperLogLogTest {
+
+    // Unit test that estimates stay within three standard errors over the whole cardinality range, duplicates included.
+    @Test
+    public void testEstimateWithinErrorBound() {
+        for (int precision : new int[] {HyperLogLog.MIN_PRECISION, 10, 14}) {
+            for (int cardinality : new int[] {0, 1, 10, 100, 1_000, 10_000, 100_000, 1_000_000}) {
+                HyperLogLog sketch = new HyperLogLog(precision);
+                for (int i = 0; i < cardinality; i++) {
+                    sketch.add("Client " + i);
+                    sketch.add("Client " + i);
+                }
+
+                double bound = 3 * sketch.relativeStandardError() * cardinality;
+                long estimate = sketch.estimate();
+                assertTrue(Math.abs(estimate - cardinality) <= Math.max(bound, 1),
+                        "precision " + precision + ", cardinality " + cardinality + ": estimate " + estimate);
+            }
+        }
+    }
+
+    // Unit test that merged sketches estimate exactly what one sketch of the union estimates.
+    @Test
+    public void testMergeEqualsUnion() {
+        HyperLogLog union = new HyperLogLog(12);
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (int i = 0; i < 50_000; i++) {
+            union.add("Client " + i);
+            // the halves overlap on a fifth of the clients
+            if (i % 2 == 0 || i % 5 == 0) {
+                first.add("Client " + i);
+            }
+            if (i % 2 == 1 || i % 5 == 0) {
+                second.add("Client " + i);
+            }
+        }
+
+        assertEquals(union.estimate(), first.merge(second).estimate());
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(11)));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1));
+    }
+
+    // Unit test that a sketch survives Java serialization.
+    @Test
+    public void testSerialization() throws Exception {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add("Client " + i);
+        }
+        sketch.add(null);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(sketch);
+        }
+        HyperLogLog copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (HyperLogLog) in.readObject();
+        }
+
+        assertEquals(sketch.estimate(), copy.estimate());
+        assertEquals(sketch.precision(), copy.precision());
+        assertTrue(bytes.size() < (1 << 14) + 256);
+    }
+}
@@ -0,0 +1,71 @@
+package com.smallworld.aggregate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionDatasetGenerator;
+import com.smallworld.store.ColumnarTransactionStore;
+
+public class ParallelAggregatorTest {
+
+    private static List<Transaction> transactions(int rows, long seed) {
+        // about one in three rows repeats its mtn as an extra issue row
+        return new TransactionDatasetGenerator().seed(seed).rows(rows).clients(500).issueRowsPerMtn(1.5).generate();
+    }
+
+    // Unit test that parallel aggregation over many chunks is identical to the sequential one.
+    @Test
+    public void testParallelMatchesSequential() {
+        ColumnarTransactionStore store = ColumnarTransactionStore.of(transactions(5 * TransactionAggregates.CHUNK_SIZE + 123, 42));
+        TransactionAggregates sequential = TransactionAggregates.of(store);
+
+        for (int parallelism : new int[] {1, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                TransactionAggregates parallel = new ParallelAggregator(pool).aggregate(store, 0, store.size());
+
+                assertEquals(sequential.rowCount(), parallel.rowCount());
+                assertEquals(sequential.total(), parallel.total(), 0.0);
+                assertEquals(sequential.max(), parallel.max(), 0.0);
+                assertArrayEquals(sequential.topRows(), parallel.topRows());
+                assertEquals(sequential.topSender(), parallel.topSender());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Unit test that a fetcher in parallel mode answers every query like the sequential fetcher.
+    @Test
+    public void testParallelFetcherMatchesSequential() {
+        List<Transaction> transactions = transactions(3 * TransactionAggregates.CHUNK_SIZE, 7);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TransactionDataFetcher sequential = new TransactionDataFetcher(transactions);
+            TransactionDataFetcher parallel = new TransactionDataFetcher(transactions, pool);
+
+            assertEquals(sequential.getTotalTransactionAmount(), parallel.getTotalTransactionAmount(), 0.0);
+            assertEquals(sequential.getMaxTransactionAmount(), parallel.getMaxTransactionAmount(), 0.0);
+            assertEquals(sequential.getTop3TransactionsByAmount(), parallel.getTop3TransactionsByAmount());
+            assertEquals(sequential.getTopSender(), parallel.getTopSender());
+            assertEquals(sequential.getUnsolvedIssueIds(), parallel.getUnsolvedIssueIds());
+            assertEquals(sequential.getAllSolvedIssueMessages(), parallel.getAllSolvedIssueMessages());
+
+            List<Transaction> more = transactions(TransactionAggregates.CHUNK_SIZE + 5, 8);
+            sequential.appendAll(more);
+            parallel.appendAll(more);
+
+            assertEquals(sequential.getTotalTransactionAmount(), parallel.getTotalTransactionAmount(), 0.0);
+            assertEquals(sequential.getTopSender(), parallel.getTopSender());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
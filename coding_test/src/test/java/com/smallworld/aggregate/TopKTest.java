@@ -0,0 +1,50 @@
+package com.smallworld.aggregate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class TopKTest {
+
+    // Unit test that merging partial selections gives the same result as one selection over all elements.
+    @Test
+    public void testMergeMatchesSingleSelection() {
+        Random random = new Random(3);
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            values.add(random.nextInt(100_000));
+        }
+        TopK<Integer> all = new TopK<>(10, Comparator.naturalOrder(), Function.identity());
+        values.forEach(all::offer);
+
+        TopK<Integer> merged = new TopK<>(10, Comparator.naturalOrder(), Function.identity());
+        for (int chunk = 0; chunk < values.size(); chunk += 1_000) {
+            TopK<Integer> partial = new TopK<>(10, Comparator.naturalOrder(), Function.identity());
+            values.subList(chunk, chunk + 1_000).forEach(partial::offer);
+            merged.merge(partial);
+        }
+
+        List<Integer> expected = values.stream().distinct().sorted(Comparator.reverseOrder()).limit(10).collect(Collectors.toList());
+        assertEquals(expected, all.toList());
+        assertEquals(expected, merged.toList());
+    }
+
+    // Unit test that duplicates by key take a single slot.
+    @Test
+    public void testDeduplicatesByKey() {
+        TopK<String> top = new TopK<>(2, Comparator.comparing((String s) -> s.substring(1)), s -> s.charAt(0));
+        top.offer("a9");
+        top.offer("a8");
+        top.offer("b7");
+        top.offer("c1");
+
+        assertEquals(List.of("a9", "b7"), top.toList());
+    }
+}
@@ -0,0 +1,70 @@
+package com.smallworld.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.report.ReportMetric;
+
+public class CachingTransactionDataFetcherTest {
+
+    private final TransactionDataFetcher fetcher = new TransactionDataFetcher(List.of(
+            new Transaction("1", 100.0, "Tom Shelby", 22, "Alfie Solomons", 33, 1, false, "Looks like money laundering"),
+            new Transaction("2", 50.0, "Arthur Shelby", 60, "Tom Shelby", 22, 2, true, "Never gonna give you up")));
+
+    private final CachingTransactionDataFetcher cachingFetcher = new CachingTransactionDataFetcher(fetcher);
+
+    // Unit test that repeated queries are answered from the cache.
+    @Test
+    public void testRepeatedQueriesHitTheCache() {
+        Set<Integer> unsolvedIssueIds = cachingFetcher.getUnsolvedIssueIds();
+
+        assertSame(unsolvedIssueIds, cachingFetcher.getUnsolvedIssueIds());
+        assertEquals(100.0, cachingFetcher.getTotalTransactionAmountSentBy("Tom Shelby"), 0.0);
+        assertEquals(100.0, cachingFetcher.getTotalTransactionAmountSentBy("Tom Shelby"), 0.0);
+        assertEquals(0.0, cachingFetcher.getTotalTransactionAmountSentBy("Aunt Polly"), 0.0);
+        assertEquals(2, cachingFetcher.cache().hitCount());
+        assertEquals(3, cachingFetcher.cache().missCount());
+    }
+
+    // Unit test that appends and issue state changes invalidate the cached results.
+    @Test
+    public void testMutationsInvalidateCachedResults() {
+        assertEquals(Set.of(1), cachingFetcher.getUnsolvedIssueIds());
+        assertTrue(cachingFetcher.hasOpenComplianceIssues("Tom Shelby"));
+
+        assertEquals(1, cachingFetcher.setIssueSolved(1, true));
+
+        assertTrue(cachingFetcher.getUnsolvedIssueIds().isEmpty());
+        assertFalse(cachingFetcher.hasOpenComplianceIssues("Tom Shelby"));
+        assertEquals(List.of("Looks like money laundering", "Never gonna give you up"), cachingFetcher.getAllSolvedIssueMessages());
+
+        // changes made directly on the fetcher are seen as well
+        fetcher.append(new Transaction("3", 500.0, "Tom Shelby", 22, "Aunt Polly", 55, 3, false, "Something's fishy"));
+
+        assertEquals(600.0, cachingFetcher.getTotalTransactionAmountSentBy("Tom Shelby"), 0.0);
+        assertEquals(Set.of(3), cachingFetcher.getUnsolvedIssueIds());
+        assertEquals(0, cachingFetcher.cache().hitCount());
+    }
+
+    // Unit test that changing a returned transaction does not change the cached results.
+    @Test
+    public void testCachedTransactionsAreCopied() {
+        cachingFetcher.getTopTransactionsByAmount(1).get(0).setAmount(1.0);
+        cachingFetcher.getTransactionsByBeneficiaryName().get("Alfie Solomons").setSenderFullName("Aunt Polly");
+        cachingFetcher.report(Set.of(ReportMetric.TOP_TRANSACTIONS)).getTopTransactionsByAmount().get(0).setAmount(1.0);
+
+        assertEquals(100.0, cachingFetcher.getTopTransactionsByAmount(1).get(0).getAmount(), 0.0);
+        assertEquals("Tom Shelby", cachingFetcher.getTransactionsByBeneficiaryName().get("Alfie Solomons").getSenderFullName());
+        assertEquals(100.0, cachingFetcher.report(Set.of(ReportMetric.TOP_TRANSACTIONS)).getTopTransactionsByAmount().get(0).getAmount(), 0.0);
+        assertEquals(3, cachingFetcher.cache().hitCount());
+    }
+}
@@ -0,0 +1,57 @@
+package com.smallworld.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryCacheTest {
+
+    // Unit test that the least recently used entry is evicted once the cache is full.
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        QueryCache cache = new QueryCache(2, () -> 0L);
+        cache.get("a", () -> 1);
+        cache.get("b", () -> 2);
+        cache.get("a", () -> -1); // hit, makes "b" the eldest entry
+        cache.get("c", () -> 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertEquals(1, (int) cache.get("a", () -> -1));
+        assertEquals(20, (int) cache.get("b", () -> 20));
+        assertEquals(2, cache.hitCount());
+        assertEquals(4, cache.missCount());
+    }
+
+    // Unit test that a new data version drops every cached result.
+    @Test
+    public void testVersionChangeInvalidatesEntries() {
+        AtomicLong version = new AtomicLong();
+        QueryCache cache = new QueryCache(8, version::get);
+        cache.get("a", () -> 1);
+        cache.get("b", () -> 2);
+
+        version.incrementAndGet();
+
+        assertEquals(10, (int) cache.get("a", () -> 10));
+        assertEquals(2, cache.invalidationCount());
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.hitCount());
+    }
+
+    // Unit test that a result computed while the data changed is not cached.
+    @Test
+    public void testResultOfChangingDataIsNotCached() {
+        AtomicLong version = new AtomicLong();
+        QueryCache cache = new QueryCache(8, version::get);
+
+        assertEquals(1, (int) cache.get("a", () -> {
+            version.incrementAndGet();
+            return 1;
+        }));
+        assertEquals(0, cache.size());
+        assertEquals(2, (int) cache.get("a", () -> 2));
+    }
+}
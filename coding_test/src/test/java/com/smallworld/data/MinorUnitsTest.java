@@ -0,0 +1,51 @@
+package com.smallworld.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class MinorUnitsTest {
+
+    // Unit test that every amount with two decimals converts to minor units and back to the same double.
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            long units = i < 1_000 ? i - 500 : random.nextLong() % (1L << 50);
+            double amount = Double.parseDouble(BigDecimal.valueOf(units, 2).toPlainString());
+
+            assertEquals(units, MinorUnits.of(amount));
+            assertEquals(amount, MinorUnits.toAmount(units), 0.0);
+        }
+        assertEquals(45_909, MinorUnits.of(459.09));
+        assertEquals(1, MinorUnits.of(0.01));
+        assertEquals(0, MinorUnits.of(-0.0));
+    }
+
+    // Unit test that amounts which are not a whole number of minor units are rejected.
+    @Test
+    public void testRejectsInexactAmounts() {
+        for (double amount : new double[] {0.001, 10.005, 1e-300, 1e17, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+            assertFalse(MinorUnits.isExact(amount), Double.toString(amount));
+            assertThrows(IllegalArgumentException.class, () -> MinorUnits.of(amount));
+        }
+        assertTrue(MinorUnits.isExact(985.0));
+    }
+
+    // Unit test that floor reads two decimal amounts as decimals and rounds other amounts down.
+    @Test
+    public void testFloor() {
+        assertEquals(45_909, MinorUnits.floor(459.09));
+        assertEquals(45_908, MinorUnits.floor(459.0899));
+        assertEquals(-45_910, MinorUnits.floor(-459.091));
+        assertEquals(Long.MAX_VALUE, MinorUnits.floor(1e300));
+        assertEquals(Long.MIN_VALUE, MinorUnits.floor(Double.NEGATIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class, () -> MinorUnits.floor(Double.NaN));
+    }
+}
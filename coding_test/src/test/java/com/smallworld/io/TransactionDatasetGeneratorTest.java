@@ -0,0 +1,37 @@
+package com.smallworld.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.smallworld.data.Transaction;
+
+public class TransactionDatasetGeneratorTest {
+
+    // Unit test that the same seed produces the same rows and that written files read back unchanged.
+    @Test
+    public void testSeededAndReadable() throws IOException {
+        TransactionDatasetGenerator generator = new TransactionDatasetGenerator().seed(7).rows(2_000).clients(50).issueRowsPerMtn(2.0).senderSkew(1.0);
+        List<Transaction> transactions = generator.generate();
+
+        assertEquals(2_000, transactions.size());
+        assertEquals(transactions.toString(), generator.generate().toString());
+        assertTrue(transactions.stream().map(Transaction::getMtn).distinct().count() < transactions.size());
+
+        for (boolean ndjson : new boolean[] {false, true}) {
+            Path file = Files.createTempFile("transactions", ".json");
+            try {
+                generator.write(file, ndjson);
+                assertEquals(transactions.toString(), TransactionJsonReader.readAll(file).toString());
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.smallworld.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.smallworld.ConcurrentTransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.metrics.QueryMetrics;
+import com.smallworld.store.TransactionSnapshot;
+
+public class TransactionFeedFollowerTest {
+
+    // Unit test that a poll applies only the complete lines appended since the previous poll.
+    @Test
+    public void testPollReadsAppendedLines(@TempDir Path directory) throws IOException {
+        Path feed = directory.resolve("feed.ndjson");
+        List<List<Transaction>> batches = new ArrayList<>();
+        try (TransactionFeedFollower follower = TransactionFeedFollower.open(feed, batches::add)) {
+            assertEquals(0, follower.poll());
+
+            append(feed, row(1, 10.5, "Tom Shelby") + row(2, 20.25, "Arthur Shelby"));
+            assertEquals(2, follower.poll());
+            assertEquals(0, follower.poll());
+
+            String third = row(3, 5.0, "Grace Burgess");
+            append(feed, third.substring(0, 20));
+            assertEquals(0, follower.poll());
+            assertEquals(Files.size(feed) - 20, follower.offset());
+
+            append(feed, third.substring(20));
+            assertEquals(1, follower.poll());
+            assertEquals(Files.size(feed), follower.offset());
+            assertEquals(3, follower.rows());
+        }
+        assertEquals(2, batches.size());
+        assertEquals("Grace Burgess", batches.get(1).get(0).getSenderFullName());
+    }
+
+    // Unit test that a follower restarted on its checkpoint restores the rows before it and ends in the state of an uninterrupted follower.
+    @Test
+    public void testRestartFromCheckpoint(@TempDir Path directory) throws IOException {
+        Path feed = directory.resolve("feed.ndjson");
+        Path checkpoint = directory.resolve("feed.checkpoint");
+        QueryMetrics metrics = new QueryMetrics(false);
+        append(feed, row(1, 10.5, "Tom Shelby") + issueRow(1, 10.5, "Tom Shelby", 7, false) + row(2, 20.25, "Arthur Shelby"));
+        try (TransactionFeedFollower follower = TransactionFeedFollower.resume(feed, checkpoint, metrics)) {
+            assertEquals(3, follower.poll());
+        }
+        assertEquals(Files.size(feed), TransactionSnapshot.open(checkpoint).position());
+
+        append(feed, row(3, 5.0, "Grace Burgess") + issueRow(4, 7.75, "Tom Shelby", 8, true));
+        try (TransactionFeedFollower follower = TransactionFeedFollower.resume(feed, checkpoint, metrics)) {
+            ConcurrentTransactionDataFetcher fetcher = follower.fetcher();
+            assertEquals(3075, fetcher.getTotalTransactionAmountUnits());
+            assertEquals(Set.of(7), fetcher.getUnsolvedIssueIds());
+
+            assertEquals(2, follower.poll());
+            assertEquals(Files.size(feed), follower.offset());
+            assertEquals(2, follower.rows());
+            assertSameState(new ConcurrentTransactionDataFetcher(TransactionJsonReader.readAll(feed)), fetcher);
+        }
+
+        // a restart without new rows leaves the checkpoint as it is
+        long modified = Files.getLastModifiedTime(checkpoint).toMillis();
+        try (TransactionFeedFollower follower = TransactionFeedFollower.resume(feed, checkpoint, metrics)) {
+            assertEquals(0, follower.poll());
+            assertSameState(new ConcurrentTransactionDataFetcher(TransactionJsonReader.readAll(feed)), follower.fetcher());
+        }
+        assertEquals(modified, Files.getLastModifiedTime(checkpoint).toMillis());
+
+        Files.writeString(checkpoint, "-1");
+        assertThrows(IOException.class, () -> TransactionFeedFollower.resume(feed, checkpoint, metrics));
+    }
+
+    // Unit test that a malformed line leaves the offset before its batch and is reported with the batch offset.
+    @Test
+    public void testMalformedLine(@TempDir Path directory) throws IOException {
+        Path feed = directory.resolve("feed.ndjson");
+        List<Transaction> applied = new ArrayList<>();
+        append(feed, row(1, 10.5, "Tom Shelby"));
+        try (TransactionFeedFollower follower = TransactionFeedFollower.open(feed, applied::addAll)) {
+            follower.poll();
+            long offset = follower.offset();
+            append(feed, row(2, 20.25, "Arthur Shelby") + "{\"mtn\": 3, \"amount\": oops}\n");
+
+            TransactionParseException e = assertThrows(TransactionParseException.class, follower::poll);
+            assertEquals(2, e.getLineNumber());
+            assertTrue(e.getMessage().contains("after byte " + offset), e.getMessage());
+            assertEquals(offset, follower.offset());
+            assertEquals(1, applied.size());
+        }
+    }
+
+    // Unit test that a sub-cent amount is a parse error at its position that leaves the fetcher and the offset unchanged.
+    @Test
+    public void testSubCentAmount(@TempDir Path directory) throws IOException {
+        Path feed = directory.resolve("feed.ndjson");
+        ConcurrentTransactionDataFetcher fetcher = new ConcurrentTransactionDataFetcher(List.of());
+        try (TransactionFeedFollower follower = TransactionFeedFollower.open(feed, fetcher::appendAll)) {
+            append(feed, row(1, 10.5, "Tom Shelby"));
+            follower.poll();
+            long offset = follower.offset();
+            append(feed, row(2, 20.25, "Arthur Shelby") + row(3, 0.001, "Grace Burgess"));
+
+            TransactionParseException e = assertThrows(TransactionParseException.class, follower::poll);
+            assertEquals(2, e.getLineNumber());
+            assertEquals(2, e.getRecordNumber());
+            assertTrue(e.getMessage().contains("after byte " + offset), e.getMessage());
+            assertEquals(offset, follower.offset());
+            assertEquals(10.5, fetcher.getTotalTransactionAmount(), 0.0);
+        }
+    }
+
+    // Unit test that a started follower applies new rows to a live fetcher without being polled.
+    @Test
+    public void testFollowsLiveFetcher(@TempDir Path directory) throws Exception {
+        Path feed = directory.resolve("feed.ndjson");
+        ConcurrentTransactionDataFetcher fetcher = new ConcurrentTransactionDataFetcher(List.of());
+        try (TransactionFeedFollower follower = TransactionFeedFollower.open(feed, fetcher::appendAll).start()) {
+            append(feed, row(1, 10.5, "Tom Shelby") + row(2, 20.25, "Arthur Shelby"));
+            awaitUntil(() -> fetcher.getTotalTransactionAmount() == 30.75);
+
+            append(feed, row(3, 5.0, "Tom Shelby"));
+            awaitUntil(() -> fetcher.getTotalTransactionAmountSentBy("Tom Shelby") == 15.5);
+
+            append(feed, "not json\n");
+            awaitUntil(() -> follower.failure() != null);
+            assertInstanceOf(TransactionParseException.class, follower.failure());
+            assertEquals(3, follower.rows());
+        }
+    }
+
+    private static String row(int mtn, double amount, String sender) {
+        return "{\"mtn\": " + mtn + ", \"amount\": " + amount + ", \"senderFullName\": \"" + sender
+                + "\", \"senderAge\": 22, \"beneficiaryFullName\": \"Alfie Solomons\", \"beneficiaryAge\": 33, \"issueId\": null}\n";
+    }
+
+    private static String issueRow(int mtn, double amount, String sender, int issueId, boolean solved) {
+        return "{\"mtn\": " + mtn + ", \"amount\": " + amount + ", \"senderFullName\": \"" + sender
+                + "\", \"senderAge\": 22, \"beneficiaryFullName\": \"Alfie Solomons\", \"beneficiaryAge\": 33, \"issueId\": " + issueId
+                + ", \"issueSolved\": " + solved + ", \"issueMessage\": \"Looks like fraud\"}\n";
+    }
+
+    private static void assertSameState(ConcurrentTransactionDataFetcher expected, ConcurrentTransactionDataFetcher actual) {
+        assertEquals(expected.getTotalTransactionAmountUnits(), actual.getTotalTransactionAmountUnits());
+        assertEquals(expected.countUniqueClients(), actual.countUniqueClients());
+        assertEquals(expected.getUnsolvedIssueIds(), actual.getUnsolvedIssueIds());
+        assertEquals(expected.getAllSolvedIssueMessages(), actual.getAllSolvedIssueMessages());
+        assertEquals(expected.getTopSenders(10).toString(), actual.getTopSenders(10).toString());
+        assertEquals(expected.getTopTransactionsByAmount(10).toString(), actual.getTopTransactionsByAmount(10).toString());
+        assertEquals(expected.getTransactionsByBeneficiaryName().toString(), actual.getTransactionsByBeneficiaryName().toString());
+    }
+
+    private static void append(Path feed, String text) throws IOException {
+        Files.write(feed, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.smallworld.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.smallworld.data.Transaction;
+
+public class TransactionJsonReaderTest {
+
+    // Unit test that the streaming reader sees the same rows as a full Gson parse of transactions.json.
+    @Test
+    public void testReadMatchesGson() throws IOException {
+        List<Transaction> expected;
+        try (FileReader reader = new FileReader("transactions.json")) {
+            expected = Arrays.asList(new Gson().fromJson(reader, Transaction[].class));
+        }
+
+        List<Transaction> actual = TransactionJsonReader.readAll(Paths.get("transactions.json"));
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+
+    // Unit test for reading newline-delimited JSON, one transaction per line.
+    @Test
+    public void testReadNdjson() throws IOException {
+        String ndjson = "{\"mtn\": 1, \"amount\": 10.5, \"senderFullName\": \"A\", \"beneficiaryFullName\": \"B\", \"issueId\": null, \"issueSolved\": true}\n"
+                + "{\"mtn\": 2, \"amount\": 3.0, \"senderFullName\": \"B\", \"beneficiaryFullName\": \"A\", \"issueId\": 7, \"issueSolved\": false, \"issueMessage\": \"x\"}\n";
+        List<Transaction> transactions = new ArrayList<>();
+
+        long count = TransactionJsonReader.read(new StringReader(ndjson), transactions::add);
+
+        assertEquals(2, count);
+        assertEquals("1", transactions.get(0).getMtn());
+        assertNull(transactions.get(0).getIssueId());
+        assertEquals(7, transactions.get(1).getIssueId());
+        assertEquals("x", transactions.get(1).getIssueMessage());
+    }
+
+    // Unit test that malformed input is reported with its position instead of being swallowed.
+    @Test
+    public void testParseErrorReportsLine() {
+        String ndjson = "{\"mtn\": 1, \"amount\": 10.5}\n"
+                + "{\"mtn\": 2, \"amount\": oops}\n";
+
+        TransactionParseException e = assertThrows(TransactionParseException.class,
+                () -> TransactionJsonReader.read(new StringReader(ndjson), transaction -> { }));
+
+        assertEquals(2, e.getLineNumber());
+        assertEquals(2, e.getRecordNumber());
+    }
+
+    // Unit test that values of the wrong type are rejected with their position instead of being coerced.
+    @Test
+    public void testWrongTypeIsRejected() {
+        String ndjson = "{\"mtn\": 1, \"amount\": 10.5}\n"
+                + "{\"mtn\": 2, \"amount\": \"ten\"}\n";
+
+        TransactionParseException e = assertThrows(TransactionParseException.class,
+                () -> TransactionJsonReader.read(new StringReader(ndjson), transaction -> { }));
+
+        assertEquals(2, e.getLineNumber());
+        assertEquals(2, e.getRecordNumber());
+        assertThrows(TransactionParseException.class,
+                () -> TransactionJsonReader.read(new StringReader("{\"senderAge\": 22.5}"), transaction -> { }));
+        assertThrows(TransactionParseException.class,
+                () -> TransactionJsonReader.read(new StringReader("{\"issueSolved\": \"yes\"}"), transaction -> { }));
+    }
+
+    // Unit test that an object under a known field is an error and not read as the next fields.
+    @Test
+    public void testNestedValueUnderKnownFieldIsRejected() {
+        String ndjson = "{\"mtn\": {\"amount\": 1.0}, \"amount\": 10.5}\n";
+
+        TransactionParseException e = assertThrows(TransactionParseException.class,
+                () -> TransactionJsonReader.read(new StringReader(ndjson), transaction -> { }));
+
+        assertEquals(1, e.getRecordNumber());
+        assertEquals(1, e.getLineNumber());
+    }
+
+    // Unit test that a row without an mtn is rejected with its position, whether the mtn is missing or null.
+    @Test
+    public void testMissingMtnIsRejected() {
+        String ndjson = "{\"mtn\": 1, \"amount\": 10.5}\n"
+                + "{\"mtn\": null, \"amount\": 10.5}\n";
+
+        TransactionParseException e = assertThrows(TransactionParseException.class,
+                () -> TransactionJsonReader.read(new StringReader(ndjson), transaction -> { }));
+
+        assertEquals(2, e.getLineNumber());
+        assertEquals(2, e.getRecordNumber());
+        assertThrows(TransactionParseException.class,
+                () -> TransactionJsonReader.read(new StringReader("{\"amount\": 10.5}"), transaction -> { }));
+    }
+}
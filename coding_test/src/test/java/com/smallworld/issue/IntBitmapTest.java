@@ -0,0 +1,74 @@
+package com.smallworld.issue;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+public class IntBitmapTest {
+
+    // Random values spread over a few containers, dense enough for some of them to switch to bitmaps.
+    private static TreeSet<Integer> randomValues(Random random, int count) {
+        TreeSet<Integer> values = new TreeSet<>();
+        while (values.size() < count) {
+            int container = random.nextInt(4) - 1;
+            int spread = random.nextBoolean() ? 6_000 : 65_536;
+            values.add(container * 65_536 + random.nextInt(spread));
+        }
+        return values;
+    }
+
+    private static int[] toArray(TreeSet<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Unit test that adds and removes across array and bitmap containers match a sorted set.
+    @Test
+    public void testAddRemoveMatchesSortedSet() {
+        Random random = new Random(11);
+        IntBitmap bitmap = new IntBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 40_000; i++) {
+            int value = random.nextInt(3 * 65_536) - 65_536;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), bitmap.remove(value));
+            } else {
+                assertEquals(expected.add(value), bitmap.add(value));
+            }
+        }
+
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertArrayEquals(toArray(expected), bitmap.toArray());
+        assertTrue(bitmap.contains(expected.first()));
+        assertFalse(bitmap.contains(Integer.MAX_VALUE));
+    }
+
+    // Unit test that union, intersection and difference match the sorted set operations.
+    @Test
+    public void testSetOperationsMatchSortedSets() {
+        Random random = new Random(5);
+        for (int round = 0; round < 10; round++) {
+            TreeSet<Integer> left = randomValues(random, 1 + random.nextInt(12_000));
+            TreeSet<Integer> right = randomValues(random, 1 + random.nextInt(12_000));
+            IntBitmap leftBitmap = IntBitmap.of(toArray(left));
+            IntBitmap rightBitmap = IntBitmap.of(toArray(right));
+
+            TreeSet<Integer> union = new TreeSet<>(left);
+            union.addAll(right);
+            TreeSet<Integer> intersection = new TreeSet<>(left);
+            intersection.retainAll(right);
+            TreeSet<Integer> difference = new TreeSet<>(left);
+            difference.removeAll(right);
+
+            assertArrayEquals(toArray(union), leftBitmap.or(rightBitmap).toArray());
+            assertArrayEquals(toArray(intersection), leftBitmap.and(rightBitmap).toArray());
+            assertArrayEquals(toArray(difference), leftBitmap.andNot(rightBitmap).toArray());
+            assertArrayEquals(toArray(left), leftBitmap.toArray());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.smallworld.issue;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.smallworld.data.Transaction;
+import com.smallworld.store.ColumnarTransactionStore;
+import com.smallworld.store.StringDictionary;
+
+public class IssueStateEngineTest {
+
+    private final ColumnarTransactionStore store = ColumnarTransactionStore.of(List.of(
+            new Transaction("1", 10.0, "A", 20, "B", 30, 1, false, "m"),
+            new Transaction("1", 10.0, "A", 20, "B", 30, 2, true, "m"),
+            new Transaction("2", 5.0, "B", 30, "A", 20, null, false, null),
+            new Transaction("3", 2.5, "A", 20, "C", 40, 3, false, "n"),
+            new Transaction("4", 1.0, "D", 50, "C", 40, 3, true, "n")));
+    private final IssueStateEngine engine = IssueStateEngine.build(store);
+    private final int a = store.clients().idOf("A");
+    private final int b = store.clients().idOf("B");
+    private final int c = store.clients().idOf("C");
+    private final int d = store.clients().idOf("D");
+
+    // Unit test for the open and solved issue bitmaps and the open issues per client.
+    @Test
+    public void testOpenIssuesPerClient() {
+        assertEquals(IntBitmap.of(1, 3), engine.openIssues());
+        assertEquals(IntBitmap.of(2), engine.solvedIssues());
+        assertEquals(IntBitmap.of(1, 3), engine.openIssuesOf(a));
+        assertEquals(IntBitmap.of(1), engine.openIssuesOf(b));
+        assertEquals(IntBitmap.of(3), engine.openIssuesOf(c));
+        assertFalse(engine.hasOpenIssues(d));
+        assertFalse(engine.hasOpenIssues(StringDictionary.NULL_ID));
+        assertEquals(IntBitmap.of(1, 3), engine.openIssuesOf(b, c));
+        assertEquals(IntBitmap.of(1), engine.openIssuesOf(a).and(engine.openIssuesOf(b)));
+    }
+
+    // Unit test that rows without an issue are never reported, even when flagged unsolved.
+    @Test
+    public void testRowsWithoutIssueAreNotTracked() {
+        assertNull(store.toTransaction(2).getIssueId());
+        assertFalse(engine.isOpen(0));
+        assertArrayEquals(new int[0], engine.apply(new IssueResolved(0)));
+    }
+
+    // Unit test that events flip every row of their issue and update the client bitmaps.
+    @Test
+    public void testEventsUpdateIssueState() {
+        int[] changed = engine.apply(new IssueResolved(3));
+        for (int row : changed) {
+            store.setIssueSolved(row, true);
+        }
+
+        assertArrayEquals(new int[] {3}, changed);
+        assertFalse(engine.isOpen(3));
+        assertEquals(IntBitmap.of(2, 3), engine.solvedIssues());
+        assertFalse(engine.hasOpenIssues(c));
+        assertEquals(IntBitmap.of(1), engine.openIssuesOf(a));
+
+        assertArrayEquals(new int[] {3, 4}, engine.apply(new IssueOpened(3)));
+        assertTrue(engine.hasOpenIssues(d));
+        assertEquals(IntBitmap.of(1, 3), engine.openIssues());
+    }
+
+    // Unit test that negative issue ids come first in ascending order and the reserved id is rejected.
+    @Test
+    public void testSignedIssueIds() {
+        ColumnarTransactionStore signed = ColumnarTransactionStore.of(List.of(
+                new Transaction("1", 1.0, "A", 20, "B", 30, 5, false, "m"),
+                new Transaction("2", 1.0, "A", 20, "B", 30, Integer.MAX_VALUE, false, "m"),
+                new Transaction("3", 1.0, "A", 20, "B", 30, -7, false, "m"),
+                new Transaction("4", 1.0, "A", 20, "B", 30, Integer.MIN_VALUE + 1, false, "m")));
+
+        assertArrayEquals(new int[] {Integer.MIN_VALUE + 1, -7, 5, Integer.MAX_VALUE}, IssueStateEngine.build(signed).openIssues().toArray());
+
+        Transaction reserved = new Transaction("5", 1.0, "A", 20, "B", 30, Integer.MIN_VALUE, false, "m");
+        assertThrows(IllegalArgumentException.class, () -> signed.append(reserved));
+        assertEquals(4, signed.size());
+    }
+}
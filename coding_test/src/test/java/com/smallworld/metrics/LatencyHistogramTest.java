@@ -0,0 +1,58 @@
+package com.smallworld.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    // Unit test that every value falls in a bucket no wider than 1/64 of the value, over the whole long range.
+    @Test
+    public void testBucketPrecision() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int bucket = LatencyHistogram.bucketOf(value);
+            long highest = LatencyHistogram.highestValueOf(bucket);
+
+            assertTrue(bucket >= 0 && bucket < LatencyHistogram.BUCKET_COUNT);
+            assertTrue(value <= highest && highest - value <= value / 64, value + " -> " + highest);
+            assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value);
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    // Unit test that percentiles match the exact percentiles of the recorded values within the bucket precision.
+    @Test
+    public void testPercentiles() {
+        Random random = new Random(7);
+        long[] values = new long[200_000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // log-normal latencies around 20 microseconds
+            values[i] = (long) Math.exp(10 + random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.count());
+        assertEquals(values[0], snapshot.min());
+        assertEquals(values[values.length - 1], snapshot.max());
+        assertEquals(Arrays.stream(values).average().getAsDouble(), snapshot.mean(), 1e-6);
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = snapshot.valueAtPercentile(percentile);
+            assertTrue(reported >= exact && reported - exact <= exact / 64, percentile + ": " + exact + " -> " + reported);
+        }
+        assertEquals(snapshot.valueAtPercentile(99.9), snapshot.p999());
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().count());
+        assertEquals(0, histogram.snapshot().p99());
+    }
+}
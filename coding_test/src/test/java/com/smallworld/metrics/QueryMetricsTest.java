@@ -0,0 +1,74 @@
+package com.smallworld.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionDatasetGenerator;
+import com.smallworld.store.ColumnarTransactionStore;
+
+public class QueryMetricsTest {
+
+    // Unit test that disabled metrics record nothing, and enabled ones count calls and scanned rows per query.
+    @Test
+    public void testRecordsQueries() throws IOException {
+        QueryMetrics metrics = new QueryMetrics(false);
+        List<Transaction> transactions = new TransactionDatasetGenerator().seed(1).rows(1_000).generate();
+        TransactionDataFetcher fetcher = new TransactionDataFetcher(ColumnarTransactionStore.of(transactions), null, metrics);
+
+        fetcher.getTotalTransactionAmount();
+        assertTrue(metrics.snapshot().calledOperations().isEmpty());
+
+        metrics.setEnabled(true);
+        fetcher.getTotalTransactionAmount();
+        fetcher.getTotalTransactionAmount();
+        fetcher.getTop3TransactionsByAmount();
+        fetcher.getTopTransactionsByAmount(100);
+        fetcher.getAllSolvedIssueMessages();
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        OperationSnapshot total = snapshot.get(Operation.GET_TOTAL_TRANSACTION_AMOUNT);
+        assertEquals(2, total.calls());
+        assertEquals(0, total.rowsScanned());
+        assertEquals(2, total.latencyNanos().count());
+        assertEquals(2, snapshot.get(Operation.GET_TOP_TRANSACTIONS_BY_AMOUNT).calls());
+        assertEquals(1_000, snapshot.get(Operation.GET_TOP_TRANSACTIONS_BY_AMOUNT).rowsScanned());
+        assertEquals(1_000, snapshot.get(Operation.GET_ALL_SOLVED_ISSUE_MESSAGES).rowsScanned());
+        assertEquals(3, snapshot.calledOperations().size());
+
+        metrics.reset();
+        assertTrue(metrics.snapshot().calledOperations().isEmpty());
+    }
+
+    // Unit test that the JSON load records its rows and allocations, and that both dumps list every called operation.
+    @Test
+    public void testLoadAndDumps() throws IOException {
+        QueryMetrics metrics = new QueryMetrics(true);
+        TransactionDataFetcher fetcher = TransactionDataFetcher.fromJson(Paths.get("transactions.json"), metrics);
+        fetcher.hasOpenComplianceIssues("Tom Shelby");
+
+        OperationSnapshot load = metrics.snapshot().get(Operation.FROM_JSON);
+        assertEquals(1, load.calls());
+        assertEquals(13, load.rowsScanned());
+        assertTrue(load.allocatedBytes() > 0);
+
+        String text = metrics.snapshot().toText();
+        assertTrue(text.contains("fromJson"));
+        assertTrue(text.contains("hasOpenComplianceIssues"));
+
+        JsonNode json = new ObjectMapper().readTree(metrics.snapshot().toJson());
+        assertEquals(13, json.get("fromJson").get("rowsScanned").asLong());
+        assertEquals(1, json.get("hasOpenComplianceIssues").get("calls").asLong());
+        assertTrue(json.get("hasOpenComplianceIssues").get("latencyNanos").get("p999").asLong() > 0);
+        assertEquals(2, json.size());
+    }
+}
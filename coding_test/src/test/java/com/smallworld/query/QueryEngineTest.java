@@ -0,0 +1,281 @@
+package com.smallworld.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.MinorUnits;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionDatasetGenerator;
+import com.smallworld.store.ClientIndex;
+import com.smallworld.store.ColumnarTransactionStore;
+
+public class QueryEngineTest {
+
+    private static List<Transaction> loadTransactions() throws IOException {
+        try (FileReader reader = new FileReader("transactions.json")) {
+            return Arrays.asList(new Gson().fromJson(reader, Transaction[].class));
+        }
+    }
+
+    private static QueryEngine engine(List<Transaction> transactions) {
+        ColumnarTransactionStore store = ColumnarTransactionStore.of(transactions);
+        return new QueryEngine(store, ClientIndex.build(store));
+    }
+
+    // Unit test that the existing fetcher methods return the same as their formulation as a query.
+    @Test
+    public void testFetcherMethodsAsQueries() throws IOException {
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(loadTransactions());
+
+        assertEquals(dataFetcher.getTotalTransactionAmount(), dataFetcher.query(TransactionQuery.select(Aggregate.SUM)).single().getSum(), 0.0);
+        assertEquals(dataFetcher.getMaxTransactionAmount(), dataFetcher.query(TransactionQuery.select(Aggregate.MAX)).single().getMax(), 0.0);
+        assertEquals(dataFetcher.countUniqueClients(),
+                dataFetcher.query(TransactionQuery.select(Aggregate.DISTINCT_CLIENTS).everyRow()).single().getDistinctClients());
+        assertEquals(dataFetcher.countTransactionsAbove(150.2),
+                dataFetcher.query(TransactionQuery.select(Aggregate.COUNT).where(Filter.amountAbove(150.2))).single().getCount());
+        assertEquals(dataFetcher.getTopTransactionsByAmount(4),
+                dataFetcher.query(TransactionQuery.select().topTransactions(4)).single().getTopTransactions());
+
+        QueryResult sentBy = dataFetcher.query(TransactionQuery.select(Aggregate.SUM).where(Filter.sender("Grace Burgess")));
+        assertEquals(dataFetcher.getTotalTransactionAmountSentBy("Grace Burgess"), sentBy.single().getSum(), 0.0);
+        assertTrue(sentBy.isIndexed());
+        assertEquals(3, sentBy.getScannedRows());
+
+        QueryResult openIssues = dataFetcher.query(TransactionQuery.select(Aggregate.COUNT)
+                .where(Filter.client("Arthur Shelby").and(Filter.issueState(IssueState.OPEN))));
+        assertTrue(dataFetcher.hasOpenComplianceIssues("Arthur Shelby"));
+        assertEquals(2, openIssues.single().getCount());
+
+        List<QueryResult.Group> topSenders = dataFetcher.query(TransactionQuery.select().groupBy(Grouping.sender()).topGroups(3, Aggregate.SUM)).getGroups();
+        List<Map.Entry<String, Double>> expected = dataFetcher.getTopSenders(3);
+        assertEquals(expected.size(), topSenders.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getKey(), topSenders.get(i).getKey());
+            assertEquals(expected.get(i).getValue(), topSenders.get(i).getSum(), 0.0);
+        }
+
+        // the top sender adds up every row, not every mtn
+        QueryResult topSender = dataFetcher.query(TransactionQuery.select().groupBy(Grouping.sender()).everyRow().topGroups(1, Aggregate.SUM));
+        assertEquals(dataFetcher.getTopSender().orElseThrow(), topSender.getGroups().get(0).getKey());
+    }
+
+    // Unit test that amount bounds are compared exactly in minor units, with and without decimals beyond cents.
+    @Test
+    public void testAmountBounds() throws IOException {
+        QueryEngine engine = engine(loadTransactions());
+
+        assertEquals(2, count(engine, Filter.amountAbove(430.2)));
+        assertEquals(3, count(engine, Filter.amountAtLeast(430.2)));
+        assertEquals(3, count(engine, Filter.amountAbove(430.19)));
+        assertEquals(3, count(engine, Filter.amountAtLeast(430.195)));
+        assertEquals(1, count(engine, Filter.amountBelow(67.8)));
+        assertEquals(2, count(engine, Filter.amountAtMost(67.8)));
+        assertEquals(2, count(engine, Filter.amountBelow(67.805)));
+        assertEquals(2, count(engine, Filter.amountBetween(100, 200)));
+        assertEquals(0, count(engine, Filter.amountBetween(500, 100)));
+        assertEquals(10, count(engine, Filter.amountAbove(Double.NEGATIVE_INFINITY)));
+        assertEquals(0, count(engine, Filter.amountAbove(Double.POSITIVE_INFINITY)));
+        assertThrows(IllegalArgumentException.class, () -> Filter.amountAbove(Double.NaN));
+    }
+
+    // Unit test that each mtn is aggregated from its first matching row, also when an issue filter skips its first row.
+    @Test
+    public void testMtnDeduplication() throws IOException {
+        QueryEngine engine = engine(loadTransactions());
+
+        assertEquals(10, count(engine, Filter.all()));
+        assertEquals(13, engine.execute(TransactionQuery.select(Aggregate.COUNT).everyRow()).single().getCount());
+
+        // mtn 1284564 has a solved issue on its first row and an open one on its second
+        QueryResult open = engine.execute(TransactionQuery.select(Aggregate.COUNT, Aggregate.SUM)
+                .where(Filter.sender("Tom Shelby"))
+                .where(Filter.issueState(IssueState.OPEN)));
+        assertEquals(2, open.single().getCount());
+        assertEquals(580.4, open.single().getSum(), 0.0);
+
+        QueryResult noIssue = engine.execute(TransactionQuery.select(Aggregate.COUNT, Aggregate.SUM).where(Filter.issueState(IssueState.NONE)));
+        assertEquals(5, noIssue.single().getCount());
+        assertEquals(560.11, noIssue.single().getSum(), 0.0);
+    }
+
+    // Unit test for grouping by age buckets and by names, in key order.
+    @Test
+    public void testGrouping() throws IOException {
+        QueryEngine engine = engine(loadTransactions());
+
+        QueryResult byAge = engine.execute(TransactionQuery.select(Aggregate.COUNT, Aggregate.MIN, Aggregate.MAX).groupBy(Grouping.senderAge(10)));
+        assertEquals(List.of("20-29", "30-39", "50-59", "60-69"),
+                byAge.getGroups().stream().map(QueryResult.Group::getKey).collect(Collectors.toList()));
+        assertEquals(3, byAge.getGroup("30-39").getCount());
+        assertEquals(33.22, byAge.getGroup("30-39").getMin(), 0.0);
+        assertEquals(666.0, byAge.getGroup("30-39").getMax(), 0.0);
+        assertNull(byAge.getGroup("40-49"));
+
+        QueryResult byExactAge = engine.execute(TransactionQuery.select(Aggregate.COUNT).groupBy(Grouping.senderAge(1)).everyRow());
+        assertEquals(4, byExactAge.getGroup("22").getCount());
+
+        QueryResult byBeneficiary = engine.execute(TransactionQuery.select(Aggregate.DISTINCT_SENDERS)
+                .where(Filter.senderAgeBetween(30, 59))
+                .groupBy(Grouping.beneficiary()));
+        List<String> keys = byBeneficiary.getGroups().stream().map(QueryResult.Group::getKey).collect(Collectors.toList());
+        List<String> sorted = new ArrayList<>(keys);
+        sorted.sort(null);
+        assertEquals(sorted, keys);
+        assertEquals(6, keys.size());
+        assertEquals(1, byBeneficiary.getGroup("Michael Gray").getDistinctSenders());
+
+        assertThrows(IllegalStateException.class, byAge::single);
+        assertThrows(IllegalStateException.class, () -> byAge.getGroup("20-29").getSum());
+        assertThrows(IllegalArgumentException.class, () -> Grouping.senderAge(0));
+        assertThrows(IllegalArgumentException.class, () -> TransactionQuery.select().topGroups(1, Aggregate.TOP_TRANSACTIONS));
+    }
+
+    // Unit test that names missing from the dictionary match nothing and null names match rows without a name.
+    @Test
+    public void testNames() throws IOException {
+        List<Transaction> transactions = new ArrayList<>(loadTransactions());
+        transactions.add(new Transaction("1", 10.0, null, 40, "Tom Shelby", 22, null, true, null));
+        QueryEngine engine = engine(transactions);
+
+        assertEquals(0, count(engine, Filter.sender("Nobody")));
+        assertEquals(3, count(engine, Filter.sender("Nobody", "Tom Shelby")));
+        assertEquals(1, count(engine, Filter.sender((String) null)));
+        assertEquals(4, count(engine, Filter.client("Tom Shelby")));
+        assertEquals(0, count(engine, Filter.sender("Tom Shelby").and(Filter.sender("Aunt Polly"))));
+        assertEquals(1, count(engine, Filter.client("Tom Shelby").and(Filter.client("Alfie Solomons"))));
+
+        QueryResult bySender = engine.execute(TransactionQuery.select(Aggregate.SUM).groupBy(Grouping.sender()));
+        assertNull(bySender.getGroups().get(0).getKey());
+        assertEquals(10.0, bySender.getGroup(null).getSum(), 0.0);
+
+        QueryResult none = engine.execute(TransactionQuery.select(Aggregate.SUM, Aggregate.MAX).where(Filter.beneficiary("Nobody")));
+        assertEquals(0, none.getScannedRows());
+        assertEquals(0.0, none.single().getSum(), 0.0);
+        assertEquals(0.0, none.single().getMax(), 0.0);
+    }
+
+    // Unit test that random queries match a naive evaluation over transaction objects, with and without the client index.
+    @Test
+    public void testMatchesNaiveEvaluation() {
+        List<Transaction> transactions = new TransactionDatasetGenerator().seed(11).rows(5_000).clients(60).generate();
+        ColumnarTransactionStore store = ColumnarTransactionStore.of(transactions);
+        QueryEngine indexed = new QueryEngine(store, ClientIndex.build(store));
+        QueryEngine scanning = new QueryEngine(store, null);
+        List<String> names = transactions.stream().map(Transaction::getSenderFullName).distinct().collect(Collectors.toList());
+        Random random = new Random(7);
+
+        for (int i = 0; i < 200; i++) {
+            double min = random.nextInt(10_000) / 100.0;
+            double max = min + random.nextInt(50_000) / 100.0;
+            int minAge = random.nextInt(80);
+            Set<String> senders = new HashSet<>();
+            for (int j = random.nextInt(4); j > 0; j--) {
+                senders.add(names.get(random.nextInt(names.size())));
+            }
+            IssueState state = IssueState.values()[random.nextInt(3)];
+
+            Filter filter = Filter.amountBetween(min, max).and(Filter.beneficiaryAgeBetween(minAge, minAge + 30))
+                    .and(Filter.issueState(state, IssueState.NONE));
+            if (!senders.isEmpty()) {
+                filter = filter.and(Filter.sender(senders.toArray(new String[0])));
+            }
+            boolean everyRow = random.nextBoolean();
+            TransactionQuery query = TransactionQuery.select(Aggregate.SUM, Aggregate.COUNT, Aggregate.MAX, Aggregate.DISTINCT_BENEFICIARIES)
+                    .where(filter).groupBy(Grouping.sender()).topTransactions(2);
+            if (everyRow) {
+                query = query.everyRow();
+            }
+
+            Map<String, List<Transaction>> expected = new HashMap<>();
+            Set<String> seenMtns = new HashSet<>();
+            for (Transaction transaction : transactions) {
+                boolean matches = transaction.getAmount() >= min && transaction.getAmount() <= max
+                        && transaction.getBeneficiaryAge() >= minAge && transaction.getBeneficiaryAge() <= minAge + 30
+                        && (transaction.getIssueId() == null || (transaction.isIssueSolved() == (state == IssueState.SOLVED) && state != IssueState.NONE))
+                        && (senders.isEmpty() || senders.contains(transaction.getSenderFullName()));
+                if (matches && (everyRow || seenMtns.add(transaction.getMtn()))) {
+                    expected.computeIfAbsent(transaction.getSenderFullName(), name -> new ArrayList<>()).add(transaction);
+                }
+            }
+
+            QueryResult result = indexed.execute(query);
+            QueryResult scanned = scanning.execute(query);
+            assertEquals(!senders.isEmpty(), result.isIndexed());
+            assertEquals(expected.size(), result.getGroups().size(), query.toString());
+            assertEquals(expected.size(), scanned.getGroups().size());
+            for (QueryResult.Group group : result.getGroups()) {
+                List<Transaction> rows = expected.get(group.getKey());
+                long units = rows.stream().mapToLong(transaction -> MinorUnits.of(transaction.getAmount())).sum();
+                assertEquals(MinorUnits.toAmount(units), group.getSum(), 0.0);
+                assertEquals(rows.size(), group.getCount());
+                assertEquals(rows.stream().mapToDouble(Transaction::getAmount).max().orElseThrow(), group.getMax(), 0.0);
+                assertEquals(rows.stream().map(Transaction::getBeneficiaryFullName).distinct().count(), group.getDistinctBeneficiaries());
+                assertEquals(rows.stream().mapToDouble(Transaction::getAmount).boxed().sorted((a, b) -> Double.compare(b, a)).limit(2).collect(Collectors.toList()),
+                        group.getTopTransactions().stream().map(Transaction::getAmount).collect(Collectors.toList()));
+
+                QueryResult.Group same = scanned.getGroup(group.getKey());
+                assertEquals(group.getSum(), same.getSum(), 0.0);
+                assertEquals(group.getCount(), same.getCount());
+                assertEquals(group.getTopTransactions(), same.getTopTransactions());
+            }
+        }
+    }
+
+    // Unit test that queries are values and that a fetcher answers them after appends.
+    @Test
+    public void testQueryValuesAndAppends() throws IOException {
+        TransactionQuery query = TransactionQuery.select(Aggregate.SUM).where(Filter.sender("Tom Shelby").and(Filter.amountAbove(100)));
+        assertEquals(query, TransactionQuery.select(Aggregate.SUM).where(Filter.amountAbove(100)).where(Filter.sender("Tom Shelby")));
+        assertEquals(query.hashCode(), TransactionQuery.select(Aggregate.SUM).where(Filter.amountAbove(100)).where(Filter.sender("Tom Shelby")).hashCode());
+        assertFalse(query.equals(query.everyRow()));
+
+        TransactionDataFetcher dataFetcher = new TransactionDataFetcher(loadTransactions());
+        assertEquals(580.4, dataFetcher.query(query).single().getSum(), 0.0);
+        dataFetcher.append(new Transaction("99", 250.0, "Tom Shelby", 22, "New Client", 30, null, true, null));
+        assertEquals(830.4, dataFetcher.query(query).single().getSum(), 0.0);
+        assertEquals(1, dataFetcher.query(TransactionQuery.select(Aggregate.COUNT).where(Filter.beneficiary("New Client"))).single().getCount());
+    }
+
+    // Unit test that an unfiltered, ungrouped query answered by the amount kernels equals the same query scanning every row.
+    @Test
+    public void testAmountKernelsMatchScan() {
+        List<Transaction> transactions = new TransactionDatasetGenerator().seed(9).rows(20_000).clients(200).generate();
+        QueryEngine engine = engine(transactions);
+        TransactionQuery kernels = TransactionQuery.select(Aggregate.SUM, Aggregate.COUNT, Aggregate.MAX, Aggregate.MIN);
+        // an amount bound every row meets forces the scan
+        TransactionQuery scan = kernels.where(Filter.amountAtLeast(-1e12));
+
+        QueryResult.Group expected = engine.execute(scan).single();
+        QueryResult actual = engine.execute(kernels);
+
+        assertEquals(expected.getCount(), actual.single().getCount());
+        assertEquals(expected.getSum(), actual.single().getSum(), 0.0);
+        assertEquals(expected.getMax(), actual.single().getMax(), 0.0);
+        assertEquals(expected.getMin(), actual.single().getMin(), 0.0);
+        assertFalse(actual.isIndexed());
+        assertEquals(0, engine(List.of()).execute(kernels).single().getCount());
+    }
+
+    private static long count(QueryEngine engine, Filter filter) {
+        return engine.execute(TransactionQuery.select(Aggregate.COUNT).where(filter)).single().getCount();
+    }
+}
@@ -0,0 +1,46 @@
+package com.smallworld.report;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import com.smallworld.TransactionDataFetcher;
+
+public class TransactionReportTest {
+
+    // Unit test that a report with every metric matches the individual fetcher methods.
+    @Test
+    public void testAllMetricsMatchFetcher() throws IOException {
+        TransactionDataFetcher dataFetcher = TransactionDataFetcher.fromJson(Paths.get("transactions.json"));
+
+        TransactionReport report = dataFetcher.report(EnumSet.allOf(ReportMetric.class));
+
+        assertEquals(dataFetcher.getTotalTransactionAmount(), report.getTotalTransactionAmount(), 0.0);
+        assertEquals(dataFetcher.getTotalTransactionAmountSentBy("Grace Burgess"), report.getTotalTransactionAmountBySender().get("Grace Burgess"), 0.0);
+        assertEquals(dataFetcher.getMaxTransactionAmount(), report.getMaxTransactionAmount(), 0.0);
+        assertEquals(dataFetcher.countUniqueClients(), report.getUniqueClientCount());
+        assertEquals(dataFetcher.getUnsolvedIssueIds(), report.getUnsolvedIssueIds());
+        assertEquals(dataFetcher.getAllSolvedIssueMessages(), report.getSolvedIssueMessages());
+        assertEquals(dataFetcher.getTransactionsByBeneficiaryName(), report.getTransactionsByBeneficiaryName());
+        assertEquals(dataFetcher.getTop3TransactionsByAmount(), report.getTopTransactionsByAmount());
+        assertEquals(dataFetcher.getTopSender(), report.getTopSender());
+    }
+
+    // Unit test that only the selected metrics are available.
+    @Test
+    public void testUnselectedMetricThrows() throws IOException {
+        TransactionDataFetcher dataFetcher = TransactionDataFetcher.fromJson(Paths.get("transactions.json"));
+
+        TransactionReport report = dataFetcher.report(EnumSet.of(ReportMetric.MAX, ReportMetric.TOP_TRANSACTIONS), 5);
+
+        assertEquals(985.0, report.getMaxTransactionAmount(), 0.0);
+        assertEquals(5, report.getTopTransactionsByAmount().size());
+        assertThrows(IllegalStateException.class, report::getTotalTransactionAmount);
+        assertThrows(UnsupportedOperationException.class, () -> report.getTopTransactionsByAmount().clear());
+    }
+}
@@ -0,0 +1,195 @@
+package com.smallworld.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smallworld.ConcurrentTransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionJsonReader;
+import com.smallworld.metrics.Operation;
+import com.smallworld.metrics.QueryMetrics;
+
+public class TransactionQueryServerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final HttpClient CLIENT = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private static ConcurrentTransactionDataFetcher fetcher;
+    private static TransactionQueryServer server;
+
+    @BeforeAll
+    public static void start() throws IOException {
+        fetcher = new ConcurrentTransactionDataFetcher(TransactionJsonReader.readAll(Paths.get("transactions.json")), null, new QueryMetrics(true));
+        // a beneficiary without a name and one named by the empty string
+        fetcher.append(new Transaction("900", 1.0, "Tom Shelby", 22, null, 40, null, false, null));
+        fetcher.append(new Transaction("901", 2.0, "Tom Shelby", 22, "", 40, null, false, null));
+        server = TransactionQueryServer.start(fetcher, new InetSocketAddress("localhost", 0));
+    }
+
+    @AfterAll
+    public static void stop() {
+        server.close();
+    }
+
+    private static HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest.Builder request(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.address().getPort() + pathAndQuery));
+    }
+
+    private static JsonNode get(String pathAndQuery) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(request(pathAndQuery));
+        assertEquals(200, response.statusCode(), response.body());
+        assertEquals("application/json", response.headers().firstValue("Content-Type").orElse(null));
+        return MAPPER.readTree(response.body());
+    }
+
+    private static String clients(String... names) {
+        StringBuilder query = new StringBuilder();
+        for (String name : names) {
+            query.append(query.length() == 0 ? '?' : '&').append("client=").append(URLEncoder.encode(name, StandardCharsets.UTF_8));
+        }
+        return query.toString();
+    }
+
+    // Unit test that the scalar and list endpoints answer what the fetcher answers.
+    @Test
+    public void testEndpointsMatchFetcher() throws Exception {
+        assertEquals(fetcher.version(), get("/version").asLong());
+        assertEquals(fetcher.getTotalTransactionAmount(), get("/total").asDouble(), 0.0);
+        assertEquals(fetcher.getMaxTransactionAmount(), get("/max").asDouble(), 0.0);
+        assertEquals(fetcher.countUniqueClients(), get("/clients/count").asLong());
+        assertEquals(fetcher.countTransactionsAbove(150.5), get("/transactions/count-above?amount=150.5").asLong());
+        assertEquals(fetcher.getTopSender().orElseThrow(), get("/senders/top-sender").asText());
+        assertEquals(fetcher.getAllSolvedIssueMessages(), MAPPER.convertValue(get("/issues/solved/messages"), List.class));
+
+        Set<Integer> unsolvedIssueIds = new TreeSet<>();
+        get("/issues/unsolved").forEach(id -> unsolvedIssueIds.add(id.asInt()));
+        assertEquals(new TreeSet<>(fetcher.getUnsolvedIssueIds()), unsolvedIssueIds);
+
+        List<String> topMtns = new ArrayList<>();
+        get("/transactions/top?k=2").forEach(transaction -> topMtns.add(transaction.get("mtn").asText()));
+        List<String> expectedTopMtns = new ArrayList<>();
+        fetcher.getTopTransactionsByAmount(2).forEach(transaction -> expectedTopMtns.add(transaction.getMtn()));
+        assertEquals(expectedTopMtns, topMtns);
+
+        JsonNode topSenders = get("/senders/top?k=10");
+        List<Map.Entry<String, Double>> expectedTopSenders = fetcher.getTopSenders(10);
+        assertEquals(expectedTopSenders.size(), topSenders.size());
+        for (int i = 0; i < expectedTopSenders.size(); i++) {
+            assertEquals(expectedTopSenders.get(i).getKey(), topSenders.get(i).get("sender").asText());
+            assertEquals(expectedTopSenders.get(i).getValue(), topSenders.get(i).get("total").asDouble(), 0.0);
+        }
+
+        JsonNode report = get("/report?topN=2");
+        assertEquals(fetcher.getTotalTransactionAmount(), report.get("totalTransactionAmount").asDouble(), 0.0);
+        assertEquals(2, report.get("topTransactionsByAmount").size());
+        assertEquals(fetcher.getTopSender().orElseThrow(), report.get("topSender").asText());
+    }
+
+    // Unit test that batch endpoints answer every client given as parameters or as a POST body, in request order.
+    @Test
+    public void testBatchEndpoints() throws Exception {
+        String[] names = {"Tom Shelby", "Grace Burgess", "Nobody", "Arthur Shelby"};
+
+        JsonNode totals = get("/total/sent-by" + clients(names));
+        JsonNode open = get("/clients/open-issues" + clients(names));
+        List<String> fieldOrder = new ArrayList<>();
+        totals.fieldNames().forEachRemaining(fieldOrder::add);
+        assertEquals(List.of(names), fieldOrder);
+        for (String name : names) {
+            assertEquals(fetcher.getTotalTransactionAmountSentBy(name), totals.get(name).asDouble(), 0.0);
+            assertEquals(fetcher.hasOpenComplianceIssues(name), open.get(name).asBoolean());
+        }
+
+        HttpResponse<String> posted = send(request("/total/sent-by" + clients(names[0]))
+                .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(List.of(names[1], names[3])))));
+        assertEquals(200, posted.statusCode());
+        JsonNode postedTotals = MAPPER.readTree(posted.body());
+        assertEquals(3, postedTotals.size());
+        assertEquals(fetcher.getTotalTransactionAmountSentBy(names[3]), postedTotals.get(names[3]).asDouble(), 0.0);
+
+        Set<Integer> openIssues = new TreeSet<>();
+        get("/issues/open" + clients("Tom Shelby", "Aunt Polly")).forEach(id -> openIssues.add(id.asInt()));
+        Set<Integer> expectedOpenIssues = new TreeSet<>();
+        fetcher.read(snapshot -> snapshot.getOpenIssues(List.of("Tom Shelby", "Aunt Polly"))).forEach(expectedOpenIssues::add);
+        assertEquals(expectedOpenIssues, openIssues);
+    }
+
+    // Unit test that the beneficiary map is streamed with chunked encoding and holds every beneficiary's transaction.
+    @Test
+    public void testStreamedBeneficiaries() throws Exception {
+        HttpResponse<String> response = send(request("/beneficiaries"));
+
+        assertEquals(200, response.statusCode());
+        assertEquals("chunked", response.headers().firstValue("Transfer-Encoding").orElse(null));
+        JsonNode beneficiaries = MAPPER.readTree(response.body());
+        Map<String, Transaction> expected = fetcher.getTransactionsByBeneficiaryName();
+        assertEquals(expected.size(), beneficiaries.size());
+        Map<String, JsonNode> transactionsByName = new HashMap<>();
+        beneficiaries.forEach(entry -> transactionsByName.put(entry.get("name").isNull() ? null : entry.get("name").asText(), entry.get("transaction")));
+        assertEquals(expected.keySet(), transactionsByName.keySet());
+        assertTrue(expected.containsKey(null) && expected.containsKey(""));
+        for (Map.Entry<String, Transaction> entry : expected.entrySet()) {
+            JsonNode transaction = transactionsByName.get(entry.getKey());
+            assertEquals(entry.getValue().getMtn(), transaction.get("mtn").asText());
+            assertEquals(entry.getValue().getAmount(), transaction.get("amount").asDouble(), 0.0);
+            assertEquals(entry.getKey(), transaction.get("beneficiaryFullName").textValue());
+        }
+    }
+
+    // Unit test that /metrics reports the metrics of the served fetcher.
+    @Test
+    public void testMetricsOfFetcher() throws Exception {
+        get("/max");
+
+        JsonNode metrics = get("/metrics");
+        assertEquals(fetcher.metrics().snapshot().get(Operation.GET_MAX_TRANSACTION_AMOUNT).calls(),
+                metrics.get("getMaxTransactionAmount").get("calls").asLong());
+    }
+
+    // Unit test that bad parameters, unknown paths and other methods are rejected with a JSON error.
+    @Test
+    public void testErrors() throws Exception {
+        HttpResponse<String> badK = send(request("/transactions/top?k=-1"));
+        HttpResponse<String> notANumber = send(request("/senders/top?k=ten"));
+        HttpResponse<String> missingAmount = send(request("/transactions/count-above"));
+        HttpResponse<String> badBody = send(request("/total/sent-by").POST(HttpRequest.BodyPublishers.ofString("{")));
+        HttpResponse<String> unknown = send(request("/total/unknown"));
+        HttpResponse<String> delete = send(request("/total").DELETE());
+        HttpResponse<String> nullClient = send(request("/clients/open-issues").POST(HttpRequest.BodyPublishers.ofString("[null]")));
+
+        assertEquals(400, badK.statusCode());
+        assertTrue(MAPPER.readTree(badK.body()).has("error"));
+        assertEquals(400, notANumber.statusCode());
+        assertEquals(400, missingAmount.statusCode());
+        assertEquals(400, badBody.statusCode());
+        assertEquals(404, unknown.statusCode());
+        assertEquals(405, delete.statusCode());
+        assertEquals(400, nullClient.statusCode());
+    }
+}
@@ -0,0 +1,259 @@
+package com.smallworld.shard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionDatasetGenerator;
+import com.smallworld.io.TransactionJsonReader;
+
+public class ShardCoordinatorTest {
+
+    private static List<Transaction> transactions(int rows, long seed) {
+        List<Transaction> generated = new TransactionDatasetGenerator().seed(seed).rows(rows).clients(300).generate();
+        List<Transaction> transactions = new ArrayList<>(generated.size() * 11 / 10);
+        for (int row = 0; row < generated.size(); row++) {
+            Transaction transaction = generated.get(row);
+            if (row % 50 == 49) {
+                transaction.setBeneficiaryFullName(null);
+            }
+            transactions.add(transaction);
+            if (row % 10 == 9) {
+                // an issue raised later repeats an old mtn, usually in a later shard
+                Transaction late = new Transaction(generated.get(row / 2));
+                late.setIssueId(rows + row);
+                late.setIssueSolved(row % 20 == 9);
+                transactions.add(late);
+            }
+        }
+        return transactions;
+    }
+
+    private static List<Shard> split(List<Transaction> transactions, int shards, Random random) {
+        List<Integer> cuts = new ArrayList<>();
+        for (int i = 1; i < shards; i++) {
+            cuts.add(random.nextInt(transactions.size() + 1));
+        }
+        cuts.add(0);
+        cuts.add(transactions.size());
+        cuts.sort(null);
+        List<Shard> split = new ArrayList<>();
+        for (int i = 0; i + 1 < cuts.size(); i++) {
+            split.add(new SerializingShard(LocalShard.of(transactions.subList(cuts.get(i), cuts.get(i + 1)))));
+        }
+        return split;
+    }
+
+    private static ShardAggregates aggregate(List<? extends Shard> shards, int topN) throws IOException {
+        return aggregate(shards, topN, ShardAggregates.EXACT_CLIENTS);
+    }
+
+    private static ShardAggregates aggregate(List<? extends Shard> shards, int topN, int clientPrecision) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            return new ShardCoordinator(shards, executor).aggregate(topN, clientPrecision);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // sums are exact in minor units, so they match to the bit however the rows are split
+    private static void assertSameResults(TransactionDataFetcher expected, ShardAggregates actual, List<Transaction> transactions) {
+        assertEquals(expected.getTotalTransactionAmount(), actual.getTotalTransactionAmount(), 0.0);
+        assertEquals(expected.getMaxTransactionAmount(), actual.getMaxTransactionAmount(), 0.0);
+        assertEquals(expected.countUniqueClients(), actual.countUniqueClients());
+        assertEquals(expected.getUnsolvedIssueIds(), actual.getUnsolvedIssueIds());
+        assertEquals(expected.getAllSolvedIssueMessages(), actual.getAllSolvedIssueMessages());
+        assertEquals(expected.getTopSender(), actual.getTopSender());
+        List<Map.Entry<String, Double>> expectedTopSenders = expected.getTopSenders(10);
+        List<Map.Entry<String, Double>> actualTopSenders = actual.getTopSenders(10);
+        assertEquals(expectedTopSenders.size(), actualTopSenders.size());
+        for (int i = 0; i < expectedTopSenders.size(); i++) {
+            assertEquals(expectedTopSenders.get(i).getKey(), actualTopSenders.get(i).getKey());
+            assertEquals(expectedTopSenders.get(i).getValue(), actualTopSenders.get(i).getValue(), 0.0);
+        }
+        assertEquals(describe(expected.getTopTransactionsByAmount(actual.topN())), describe(actual.getTopTransactionsByAmount(actual.topN())));
+        for (Transaction transaction : transactions) {
+            String sender = transaction.getSenderFullName();
+            String beneficiary = transaction.getBeneficiaryFullName();
+            assertEquals(expected.getTotalTransactionAmountSentBy(sender), actual.getTotalTransactionAmountSentBy(sender), 0.0);
+            assertEquals(expected.hasOpenComplianceIssues(sender), actual.hasOpenComplianceIssues(sender));
+            assertEquals(expected.hasOpenComplianceIssues(beneficiary), actual.hasOpenComplianceIssues(beneficiary));
+        }
+        Map<String, Transaction> expectedByBeneficiary = expected.getTransactionsByBeneficiaryName();
+        Map<String, Transaction> actualByBeneficiary = actual.getTransactionsByBeneficiaryName();
+        assertEquals(expectedByBeneficiary.keySet(), actualByBeneficiary.keySet());
+        for (String beneficiary : expectedByBeneficiary.keySet()) {
+            assertEquals(expectedByBeneficiary.get(beneficiary).toString(), actualByBeneficiary.get(beneficiary).toString());
+        }
+    }
+
+    // Transaction equality only compares mtns
+    private static List<String> describe(List<Transaction> transactions) {
+        List<String> descriptions = new ArrayList<>();
+        transactions.forEach(transaction -> descriptions.add(transaction.toString()));
+        return descriptions;
+    }
+
+    // Unit test that merged shard aggregates equal a single fetcher over all rows, however the rows are split.
+    @Test
+    public void testShardedMatchesSingleFetcher() throws IOException {
+        List<Transaction> transactions = transactions(20_000, 42);
+        TransactionDataFetcher expected = new TransactionDataFetcher(transactions);
+        Random random = new Random(7);
+
+        for (int shards : new int[] {1, 2, 7, 40}) {
+            ShardAggregates actual = aggregate(split(transactions, shards, random), 16);
+
+            assertEquals(transactions.size(), actual.rowCount());
+            assertSameResults(expected, actual, transactions);
+        }
+    }
+
+    // Unit test that one shard per row of transactions.json, with issue rows split from their transaction, matches the fetcher.
+    @Test
+    public void testSingleRowShardsOfSampleData() throws IOException {
+        List<Transaction> transactions = TransactionJsonReader.readAll(Paths.get("transactions.json"));
+        List<Shard> shards = new ArrayList<>();
+        for (Transaction transaction : transactions) {
+            shards.add(new SerializingShard(LocalShard.of(List.of(transaction))));
+        }
+
+        assertSameResults(new TransactionDataFetcher(transactions), aggregate(shards, 3), transactions);
+    }
+
+    // Unit test that NDJSON files of overlapping generated datasets are loaded in parallel and merged like one dataset.
+    @Test
+    public void testFileShards(@TempDir Path directory) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        List<Shard> shards = new ArrayList<>();
+        for (int seed = 0; seed < 4; seed++) {
+            // the generator numbers mtns from the same start, so files share mtns
+            TransactionDatasetGenerator generator = new TransactionDatasetGenerator().seed(seed).rows(2_000).clients(50);
+            Path file = directory.resolve("day-" + seed + ".ndjson");
+            generator.write(file, true);
+            transactions.addAll(generator.generate());
+            shards.add(LocalShard.ofFile(file));
+        }
+
+        ShardAggregates actual = aggregate(shards, 16);
+
+        assertSameResults(new TransactionDataFetcher(transactions), actual, transactions);
+        assertThrows(IllegalArgumentException.class, () -> actual.getTopTransactionsByAmount(17));
+        assertThrows(IllegalArgumentException.class, () -> actual.merge(new ShardAggregates(3)));
+    }
+
+    // Unit test that shards counting clients with a sketch estimate the client count within its error bound.
+    @Test
+    public void testApproximateClientCount() throws IOException {
+        List<Transaction> transactions = new TransactionDatasetGenerator().seed(3).rows(40_000).clients(20_000).generate();
+        TransactionDataFetcher expected = new TransactionDataFetcher(transactions);
+
+        ShardAggregates actual = aggregate(split(transactions, 8, new Random(11)), 16, 12);
+
+        long exact = expected.countUniqueClients();
+        assertEquals(12, actual.clientPrecision());
+        assertTrue(Math.abs(actual.countUniqueClients() - exact) <= 3 * 1.04 / Math.sqrt(1 << 12) * exact);
+        // merged sketches equal the sketch of all names, so the fetcher estimates the same count
+        assertEquals(expected.countUniqueClients(12), actual.countUniqueClients());
+        assertEquals(exact, expected.countUniqueClients(ShardAggregates.EXACT_CLIENTS));
+        assertEquals(expected.getTotalTransactionAmount(), actual.getTotalTransactionAmount(), 0.0);
+        assertThrows(IllegalArgumentException.class, () -> actual.merge(new ShardAggregates(16)));
+    }
+
+    // Unit test that a large multi-shard input is deduplicated one bounded hash partition at a time.
+    @Test
+    public void testPartitionedMtnDeduplication() throws IOException {
+        List<Transaction> transactions = transactions(200_000, 17);
+        TransactionDataFetcher expected = new TransactionDataFetcher(transactions);
+        List<Integer> cuts = List.of(0, 20_000, 45_000, 70_000, 100_000, 130_000, 150_000, 180_000, transactions.size());
+        Map<Integer, Integer> mtnsByPartition = new ConcurrentHashMap<>();
+        List<Shard> shards = new ArrayList<>();
+        long shardMtns = 0;
+        for (int i = 0; i + 1 < cuts.size(); i++) {
+            LocalShard shard = LocalShard.of(transactions.subList(cuts.get(i), cuts.get(i + 1)));
+            shardMtns += shard.load();
+            shards.add(new SerializingShard(shard, mtnsByPartition));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ShardAggregates actual = new ShardCoordinator(shards, executor, 10_000).aggregate(16, ShardAggregates.EXACT_CLIENTS);
+
+            assertSameResults(expected, actual, transactions);
+        } finally {
+            executor.shutdownNow();
+        }
+        // the coordinator never held more than about one partition's share of the shard mtns
+        assertEquals((shardMtns + 9_999) / 10_000, mtnsByPartition.size());
+        assertEquals(shardMtns, mtnsByPartition.values().stream().mapToLong(Integer::longValue).sum());
+        assertTrue(mtnsByPartition.values().stream().allMatch(mtns -> mtns < 12_000), mtnsByPartition.toString());
+    }
+
+    /**
+     * Stands in for a shard in another JVM: partial aggregates only reach the coordinator
+     * through Java serialization.
+     */
+    private static final class SerializingShard implements Shard {
+
+        private final Shard shard;
+        private final Map<Integer, Integer> mtnsByPartition;
+
+        SerializingShard(Shard shard) {
+            this(shard, null);
+        }
+
+        SerializingShard(Shard shard, Map<Integer, Integer> mtnsByPartition) {
+            this.shard = shard;
+            this.mtnsByPartition = mtnsByPartition;
+        }
+
+        @Override
+        public int load() throws IOException {
+            return shard.load();
+        }
+
+        @Override
+        public Set<String> mtns(int partition, int partitions) throws IOException {
+            Set<String> mtns = shard.mtns(partition, partitions);
+            if (mtnsByPartition != null) {
+                mtnsByPartition.merge(partition, mtns.size(), Integer::sum);
+            }
+            return mtns;
+        }
+
+        @Override
+        public ShardAggregates aggregate(Set<String> excludedMtns, int topN, int clientPrecision) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(shard.aggregate(excludedMtns, topN, clientPrecision));
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (ShardAggregates) in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
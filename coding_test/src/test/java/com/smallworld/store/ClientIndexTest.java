@@ -0,0 +1,34 @@
+package com.smallworld.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.smallworld.data.Transaction;
+
+public class ClientIndexTest {
+
+    // Unit test for posting lists and deduplicated sent totals.
+    @Test
+    public void testPostingsAndTotals() {
+        ColumnarTransactionStore store = ColumnarTransactionStore.of(List.of(
+                new Transaction("1", 10.0, "A", 20, "B", 30, 1, false, "m"),
+                new Transaction("1", 10.0, "A", 20, "B", 30, 2, true, "m"),
+                new Transaction("2", 5.0, "B", 30, "A", 20, null, true, null),
+                new Transaction("3", 2.5, "A", 20, "C", 40, 3, false, "n")));
+        ClientIndex index = ClientIndex.build(store);
+        int a = store.clients().idOf("A");
+        int b = store.clients().idOf("B");
+        int c = store.clients().idOf("C");
+
+        assertArrayEquals(new int[] {0, 1, 3}, index.senderRows(a));
+        assertArrayEquals(new int[] {2}, index.beneficiaryRows(a));
+        assertEquals(12.5, index.totalSentBy(a), 0.0);
+        assertEquals(5.0, index.totalSentBy(b), 0.0);
+        assertEquals(0.0, index.totalSentBy(c), 0.0);
+        assertEquals(0.0, index.totalSentBy(StringDictionary.NULL_ID), 0.0);
+    }
+}
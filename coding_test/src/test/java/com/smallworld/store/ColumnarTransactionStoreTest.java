@@ -0,0 +1,117 @@
+package com.smallworld.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.smallworld.data.Transaction;
+import com.smallworld.io.TransactionJsonReader;
+
+public class ColumnarTransactionStoreTest {
+
+    // Unit test that every row can be rebuilt from the columns with all of its fields.
+    @Test
+    public void testToTransactionRoundTrip() throws IOException {
+        List<Transaction> transactions = TransactionJsonReader.readAll(Paths.get("transactions.json"));
+
+        ColumnarTransactionStore store = ColumnarTransactionStore.of(transactions);
+
+        assertEquals(transactions.size(), store.size());
+        for (int row = 0; row < transactions.size(); row++) {
+            assertEquals(transactions.get(row).toString(), store.toTransaction(row).toString());
+        }
+    }
+
+    // Unit test for the first-of-mtn flags and the shared client dictionary.
+    @Test
+    public void testFirstOfMtnAndDictionaries() {
+        ColumnarTransactionStore store = new ColumnarTransactionStore(1);
+        store.append(new Transaction("1", 10.0, "A", 20, "B", 30, 1, false, "m"));
+        store.append(new Transaction("1", 10.0, "A", 20, "B", 30, 2, true, "m"));
+        store.append(new Transaction("2", 5.0, "B", 30, "C", 40, 0, true, null));
+
+        assertTrue(store.isFirstOfMtn(0));
+        assertFalse(store.isFirstOfMtn(1));
+        assertTrue(store.isFirstOfMtn(2));
+        assertEquals(3, store.clients().size());
+        assertEquals(store.beneficiary(0), store.sender(2));
+        assertEquals(1, store.messages().size());
+        assertEquals(StringDictionary.NULL_ID, store.issueMessage(2));
+    }
+
+    // Unit test that the issue rows of a transaction share one transaction record.
+    @Test
+    public void testRowsAreNormalizedPerMtn() throws IOException {
+        List<Transaction> transactions = TransactionJsonReader.readAll(Paths.get("transactions.json"));
+
+        ColumnarTransactionStore store = ColumnarTransactionStore.of(transactions);
+
+        // the file is a well formed join, so records are only created by the first row of an mtn
+        assertEquals(store.mtns().size(), store.transactionCount());
+        int records = 0;
+        for (int row = 0; row < store.size(); row++) {
+            boolean newRecord = store.transactionOf(row) == records;
+            assertEquals(newRecord, store.isFirstOfMtn(row));
+            records += newRecord ? 1 : 0;
+        }
+        assertEquals(store.transactionOf(1), store.transactionOf(2));
+    }
+
+    // Unit test that rows whose transaction fields differ from the stored transaction read back unchanged.
+    @Test
+    public void testDivergingRowsKeepTheirOwnFields() {
+        ColumnarTransactionStore store = new ColumnarTransactionStore(1);
+        store.append(new Transaction("7", 10.0, "A", 20, "B", 30, 1, false, "m"));
+        store.append(new Transaction("7", 12.5, "A", 20, "B", 30, 2, false, "m"));
+        store.append(new Transaction("7", 12.5, "A", 20, "B", 30, 3, false, "m"));
+
+        assertEquals(2, store.transactionCount());
+        assertEquals(10.0, store.amount(0), 0.0);
+        assertEquals(12.5, store.amount(1), 0.0);
+        assertEquals(store.transactionOf(1), store.transactionOf(2));
+        assertTrue(store.isFirstOfMtn(0));
+        assertFalse(store.isFirstOfMtn(1));
+    }
+
+    // Unit test that numeric mtns are stored as numbers and every other mtn text reads back unchanged.
+    @Test
+    public void testMtnTextRoundTrip() {
+        ColumnarTransactionStore store = new ColumnarTransactionStore();
+        List<String> mtns = List.of("663458", "0", "-42", "007", "-0", "MTN-1", "", "123456789012345678901234");
+        for (String mtn : mtns) {
+            store.append(new Transaction(mtn, 1.0, "A", 20, "B", 30, 0, true, null));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            store.append(new Transaction(Long.toString(1_000_000L + i * 7L), 1.0, "A", 20, "B", 30, 0, true, null));
+        }
+
+        for (int row = 0; row < mtns.size(); row++) {
+            assertEquals(mtns.get(row), store.mtns().get(store.mtn(row)));
+            assertEquals(store.mtn(row), store.mtns().idOf(mtns.get(row)));
+        }
+        assertEquals(mtns.size() + 100_000, store.mtns().size());
+        assertEquals(StringDictionary.NULL_ID, store.mtns().idOf("1000001"));
+        assertEquals("1699993", store.toTransaction(store.size() - 1).getMtn());
+    }
+
+    // Unit test that a row without an mtn is rejected and leaves the store unchanged.
+    @Test
+    public void testNullMtnIsRejected() {
+        ColumnarTransactionStore store = new ColumnarTransactionStore(1);
+        store.append(new Transaction("1", 10.0, "A", 20, "B", 30, 1, false, "m"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> store.append(new Transaction(null, 5.0, "A", 20, "B", 30, 2, false, "m")));
+
+        assertEquals(1, store.size());
+        assertEquals(1, store.transactionCount());
+        assertEquals(1, store.mtns().size());
+    }
+}
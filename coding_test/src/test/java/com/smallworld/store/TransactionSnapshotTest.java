@@ -0,0 +1,266 @@
+package com.smallworld.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.smallworld.TransactionDataFetcher;
+import com.smallworld.io.TransactionDatasetGenerator;
+
+public class TransactionSnapshotTest {
+
+    private Path file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = Files.createTempFile("transactions", ".snapshot");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    // Unit test that a fetcher over a mapped snapshot answers every query like the fetcher it was written from.
+    @Test
+    public void testMappedFetcherMatchesHeapFetcher() throws IOException {
+        TransactionDataFetcher heap = new TransactionDataFetcher(new TransactionDatasetGenerator().seed(5).rows(20_000).clients(300).generate());
+        heap.writeSnapshot(file);
+
+        TransactionDataFetcher mapped = TransactionDataFetcher.openSnapshot(file);
+
+        assertEquals(heap.getTotalTransactionAmount(), mapped.getTotalTransactionAmount(), 0.0);
+        String client = heap.getTopSender().get();
+        assertEquals(heap.getTotalTransactionAmountSentBy(client), mapped.getTotalTransactionAmountSentBy(client), 0.0);
+        assertEquals(heap.getTotalTransactionAmountSentBy("Nobody"), mapped.getTotalTransactionAmountSentBy("Nobody"), 0.0);
+        assertEquals(heap.getMaxTransactionAmount(), mapped.getMaxTransactionAmount(), 0.0);
+        assertEquals(heap.countUniqueClients(), mapped.countUniqueClients());
+        assertEquals(heap.hasOpenComplianceIssues(client), mapped.hasOpenComplianceIssues(client));
+        assertEquals(heap.getTransactionsByBeneficiaryName().toString(), mapped.getTransactionsByBeneficiaryName().toString());
+        assertEquals(heap.getUnsolvedIssueIds(), mapped.getUnsolvedIssueIds());
+        assertEquals(heap.getAllSolvedIssueMessages(), mapped.getAllSolvedIssueMessages());
+        assertEquals(heap.getTopTransactionsByAmount(20).toString(), mapped.getTopTransactionsByAmount(20).toString());
+        assertEquals(heap.getTopSender(), mapped.getTopSender());
+        assertThrows(UnsupportedOperationException.class, () -> mapped.appendAll(List.of()));
+    }
+
+    // Unit test that a corrupted snapshot is rejected by the checksum.
+    @Test
+    public void testCorruptionDetected() throws IOException {
+        new TransactionDataFetcher(new TransactionDatasetGenerator().rows(100).generate()).writeSnapshot(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42}), Files.size(file) - 3);
+        }
+
+        IOException e = assertThrows(IOException.class, () -> TransactionSnapshot.open(file));
+        assertEquals("Snapshot checksum mismatch: " + file, e.getMessage());
+    }
+
+    // Unit test that a corrupted header is rejected, also without verifying the body, and that sections must fit the file.
+    @Test
+    public void testMalformedHeaderDetected() throws IOException {
+        new TransactionDataFetcher(new TransactionDatasetGenerator().rows(100).generate()).writeSnapshot(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42}), 8);
+        }
+
+        IOException e = assertThrows(IOException.class, () -> TransactionSnapshot.open(file, false));
+        assertEquals("Snapshot header checksum mismatch: " + file, e.getMessage());
+
+        // a section running past the end of the file, under a header checksum that matches
+        new TransactionDataFetcher(new TransactionDatasetGenerator().rows(100).generate()).writeSnapshot(file);
+        ByteBuffer header = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.read(header, 0);
+            header.putLong(40, Files.size(file));
+            CRC32C crc = new CRC32C();
+            crc.update(header.duplicate().position(0).limit(248));
+            header.putLong(248, crc.getValue());
+            channel.write(header.flip(), 0);
+        }
+
+        e = assertThrows(IOException.class, () -> TransactionSnapshot.open(file, false));
+        assertTrue(e.getMessage().startsWith("Malformed snapshot, section 0 "), e.getMessage());
+    }
+
+    // Unit test that rewriting a snapshot replaces the file atomically, so a store that mapped the old file keeps reading it.
+    @Test
+    public void testRewriteKeepsMappedStore() throws IOException {
+        TransactionDataFetcher first = new TransactionDataFetcher(new TransactionDatasetGenerator().seed(1).rows(1_000).generate());
+        first.writeSnapshot(file);
+        TransactionDataFetcher mapped = TransactionDataFetcher.openSnapshot(file);
+
+        TransactionDataFetcher second = new TransactionDataFetcher(new TransactionDatasetGenerator().seed(2).rows(10).generate());
+        second.writeSnapshot(file);
+
+        assertEquals(first.getTotalTransactionAmount(), mapped.getTotalTransactionAmount(), 0.0);
+        assertEquals(second.getTotalTransactionAmount(), TransactionDataFetcher.openSnapshot(file).getTotalTransactionAmount(), 0.0);
+        try (Stream<Path> siblings = Files.list(file.getParent())) {
+            assertTrue(siblings.noneMatch(sibling -> sibling.getFileName().toString().startsWith(file.getFileName() + ".")));
+        }
+    }
+
+    // Unit test that opening a snapshot reads no row whatever its size; indexes and aggregates are built by the first query.
+    @Test
+    public void testOpenReadsNoRow() throws IOException {
+        TransactionDataFetcher heap = new TransactionDataFetcher(new TransactionDatasetGenerator().seed(5).rows(50_000).clients(300).generate());
+        heap.writeSnapshot(file);
+
+        RowCountingColumns columns = new RowCountingColumns(TransactionSnapshot.open(file, false));
+        TransactionDataFetcher mapped = new TransactionDataFetcher(columns);
+        assertEquals(heap.countUniqueClients(), mapped.countUniqueClients());
+        assertEquals(0, columns.rowReads);
+
+        assertEquals(heap.getTotalTransactionAmount(), mapped.getTotalTransactionAmount(), 0.0);
+        assertTrue(columns.rowReads > 0);
+        assertEquals(heap.getUnsolvedIssueIds(), TransactionDataFetcher.openSnapshot(file, false).getUnsolvedIssueIds());
+    }
+
+    // Unit test that the first queries of a read-only fetcher may run on several threads at once.
+    @Test
+    public void testConcurrentFirstQueries() throws Exception {
+        TransactionDataFetcher heap = new TransactionDataFetcher(new TransactionDatasetGenerator().seed(6).rows(50_000).clients(300).generate());
+        heap.writeSnapshot(file);
+        String client = heap.getTopSender().get();
+        TransactionDataFetcher mapped = TransactionDataFetcher.openSnapshot(file, false);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> answers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                answers.add(executor.submit(() -> mapped.getTopSender().get() + " " + mapped.getTotalTransactionAmount() + " "
+                        + mapped.hasOpenComplianceIssues(client) + " " + mapped.getTotalTransactionAmountSentBy(client)));
+            }
+            String expected = heap.getTopSender().get() + " " + heap.getTotalTransactionAmount() + " "
+                    + heap.hasOpenComplianceIssues(client) + " " + heap.getTotalTransactionAmountSentBy(client);
+            for (Future<String> answer : answers) {
+                assertEquals(expected, answer.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Columns counting every read of a row value.
+     */
+    private static final class RowCountingColumns implements TransactionColumns {
+
+        private final TransactionColumns columns;
+        private long rowReads;
+
+        RowCountingColumns(TransactionColumns columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public int size() {
+            return columns.size();
+        }
+
+        @Override
+        public int mtn(int row) {
+            rowReads++;
+            return columns.mtn(row);
+        }
+
+        @Override
+        public boolean isFirstOfMtn(int row) {
+            rowReads++;
+            return columns.isFirstOfMtn(row);
+        }
+
+        @Override
+        public double amount(int row) {
+            rowReads++;
+            return columns.amount(row);
+        }
+
+        @Override
+        public long amountUnits(int row) {
+            rowReads++;
+            return columns.amountUnits(row);
+        }
+
+        @Override
+        public int sender(int row) {
+            rowReads++;
+            return columns.sender(row);
+        }
+
+        @Override
+        public int senderAge(int row) {
+            rowReads++;
+            return columns.senderAge(row);
+        }
+
+        @Override
+        public int beneficiary(int row) {
+            rowReads++;
+            return columns.beneficiary(row);
+        }
+
+        @Override
+        public int beneficiaryAge(int row) {
+            rowReads++;
+            return columns.beneficiaryAge(row);
+        }
+
+        @Override
+        public int issueId(int row) {
+            rowReads++;
+            return columns.issueId(row);
+        }
+
+        @Override
+        public boolean isIssueSolved(int row) {
+            rowReads++;
+            return columns.isIssueSolved(row);
+        }
+
+        @Override
+        public int issueMessage(int row) {
+            rowReads++;
+            return columns.issueMessage(row);
+        }
+
+        @Override
+        public StringDictionary mtns() {
+            return columns.mtns();
+        }
+
+        @Override
+        public StringDictionary clients() {
+            return columns.clients();
+        }
+
+        @Override
+        public StringDictionary messages() {
+            return columns.messages();
+        }
+
+        @Override
+        public boolean hasNullClient() {
+            return columns.hasNullClient();
+        }
+    }
+}